@@ -5,67 +5,75 @@ import java.io.Serializable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.collectionspace.services.common.api.CommonAPI;
+import org.collectionspace.services.common.context.ServiceBindingUtils;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
-import org.collectionspace.services.nuxeo.client.java.CoreSessionWrapper;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
+import org.collectionspace.services.nuxeo.listener.AbstractAsyncDocumentListener;
 import org.collectionspace.services.nuxeo.util.NuxeoUtils;
 import org.nuxeo.ecm.core.api.Blob;
-import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.api.blobholder.DocumentBlobHolder;
 //import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventContext;
-import org.nuxeo.ecm.core.event.EventListener;
 import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
 //import org.nuxeo.ecm.platform.picture.api.ImagingDocumentConstants;
 import org.nuxeo.ecm.platform.picture.api.ImagingDocumentConstants;
 
-public class UpdateImageDerivatives implements EventListener {
-
-	// All Nuxeo sessions that get passed around to CollectionSpace code need to
-	// be wrapped inside of a CoreSessionWrapper. For example:
-	// 		CoreSessionInterface coreSession = new
-	// 		CoreSessionWrapper(docEventContext.getCoreSession());
+/**
+ * Purges the original image of a URL sourced picture once its derivatives have
+ * been generated. Picture documents that were the source of several events in
+ * the same transaction are processed once; failures are retried and, failing
+ * that, recorded as dead letters (see AbstractAsyncDocumentListener).
+ */
+public class UpdateImageDerivatives extends AbstractAsyncDocumentListener {
 
 	// FIXME: We might experiment here with using log4j instead of Apache
 	// Commons Logging; am using the latter to follow Ray's pattern for now
 	private final static Log logger = LogFactory.getLog(UpdateImageDerivatives.class);
 
 	@Override
-	public void handleEvent(Event event) throws ClientException {
+	protected boolean accepts(Event event) {
+		return shouldProcessEvent(event);
+	}
+
+	@Override
+	protected void handleDocumentEvent(Event event, CoreSessionInterface nuxeoSession) throws Exception {
 		if (logger.isTraceEnabled()) {
-			logger.trace(String.format("Entering handleEvent in '%s'...", getClass().getName()));
+			logger.trace(String.format("Entering handleDocumentEvent in '%s'...", getClass().getName()));
 		}
 
-		if (shouldProcessEvent(event) == true) {
-			DocumentEventContext docEventContext = (DocumentEventContext) event.getContext();
-			DocumentModel docModel = docEventContext.getSourceDocument();
+		DocumentEventContext docEventContext = (DocumentEventContext) event.getContext();
+		//
+		// Get the current state of the document, rather than the one it was in when the event was raised,
+		// since it may have changed since then, or be left changed by a failed attempt.
+		//
+		DocumentModel docModel = nuxeoSession.getDocument(docEventContext.getSourceDocument().getRef());
 
-			String eventType = event.getName();
-			if (logger.isTraceEnabled()) {
-				logger.trace(String.format("A(n) '%s' event was received by the %s event listener.",
-								eventType, getClass().getName()));
-				//logg
-			}
+		String eventType = event.getName();
+		if (logger.isTraceEnabled()) {
+			logger.trace(String.format("A(n) '%s' event was received by the %s event listener.",
+							eventType, getClass().getName()));
+		}
 
-			String source = (String)docModel.getProperty(CommonAPI.NUXEO_DUBLINCORE_SCHEMANAME,
-					CommonAPI.NUXEO_DUBLINCORE_SOURCE);
+		String source = (String)docModel.getProperty(CommonAPI.NUXEO_DUBLINCORE_SCHEMANAME,
+				CommonAPI.NUXEO_DUBLINCORE_SOURCE);
 
-			if (source != null && source.equalsIgnoreCase(CommonAPI.URL_SOURCED_PICTURE)) {
-				CoreSessionInterface nuxeoSession = new CoreSessionWrapper(docEventContext.getCoreSession());
-				purgeOriginalImage(docModel, nuxeoSession);
-				nuxeoSession.save();
-			} else {
-				if (logger.isTraceEnabled()) {
-					logger.trace(String.format("The Nuxeo document titled '%s' did not need processing by the '%s' Nuxeo listener.",
-									docModel.getTitle(), getClass().getName()));
-				}
+		if (source != null && source.equalsIgnoreCase(CommonAPI.URL_SOURCED_PICTURE)) {
+			purgeOriginalImage(docModel, nuxeoSession);
+			nuxeoSession.save();
+			ListResultCache.get().invalidateOnCommit(NuxeoUtils.getTenantId(docModel),
+					ServiceBindingUtils.getUnqualifiedTenantDocType(docModel.getType()));
+		} else {
+			if (logger.isTraceEnabled()) {
+				logger.trace(String.format("The Nuxeo document titled '%s' did not need processing by the '%s' Nuxeo listener.",
+								docModel.getTitle(), getClass().getName()));
 			}
 		}
 
 		if (logger.isTraceEnabled()) {
-			logger.trace(String.format("Exiting handleEvent in '%s'.", getClass().getName()));
+			logger.trace(String.format("Exiting handleDocumentEvent in '%s'.", getClass().getName()));
 		}
 	}
 
@@ -105,8 +113,8 @@ public class UpdateImageDerivatives implements EventListener {
 		}
 		
 		if (logger.isTraceEnabled()) {
-			logger.trace(String.format("Exiting handleEvent in '%s'.", getClass().getName()));			
-		}	
+			logger.trace(String.format("Exiting purgeOriginalImage in '%s'.", getClass().getName()));
+		}
 	}
 	
 	private boolean shouldProcessEvent(Event event) {
@@ -1,7 +1,10 @@
 package org.collectionspace.services.listener;
 
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -9,9 +12,11 @@ import org.apache.commons.logging.LogFactory;
 
 import org.collectionspace.services.client.workflow.WorkflowClient;
 import org.collectionspace.services.common.api.Tools;
+import org.collectionspace.services.common.context.ServiceBindingUtils;
 import org.collectionspace.services.movement.nuxeo.MovementConstants;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionWrapper;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
 import org.collectionspace.services.nuxeo.util.NuxeoUtils;
 
 import org.nuxeo.ecm.core.api.ClientException;
@@ -19,11 +24,12 @@ import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
 import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventBundle;
 import org.nuxeo.ecm.core.event.EventContext;
-import org.nuxeo.ecm.core.event.EventListener;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
 import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
 
-public abstract class AbstractUpdateObjectLocationValues implements EventListener {
+public abstract class AbstractUpdateObjectLocationValues implements PostCommitEventListener {
 
     // FIXME: We might experiment here with using log4j instead of Apache Commons Logging;
     // am using the latter to follow Ray's pattern for now
@@ -61,9 +67,74 @@ public abstract class AbstractUpdateObjectLocationValues implements EventListene
         MOVEMENT, RELATION;
     }
 
+    /**
+     * The CollectionObject records to update, collected from the events of
+     * one repository, and the session to update them with.
+     */
+    private static class PendingUpdates {
+        final CoreSessionInterface coreSession;
+        final CollectionObjectUpdates updates = new CollectionObjectUpdates();
+
+        PendingUpdates(CoreSessionInterface coreSession) {
+            this.coreSession = coreSession;
+        }
+    }
+
+    /**
+     * Handles the events of a committed transaction. A transaction that
+     * creates or deletes many relations (e.g. a bulk request relating one
+     * Movement to many CollectionObjects) yields many events; each affected
+     * CollectionObject is updated once, after all of them have been read.
+     *
+     * This listener is registered with async="true" postCommit="true", as it
+     * was when it handled one event at a time, so it still runs on a Nuxeo
+     * event worker after the transaction has committed, and reads committed
+     * state. By then, the Movement or Relation of an aboutToRemove event is
+     * usually gone, and is no longer found among a CollectionObject's related
+     * Movements; it is still filtered out, in case it is not.
+     *
+     * A failure to read an event, or to update a CollectionObject, is logged,
+     * and the remaining events and CollectionObjects are still handled.
+     */
     @Override
+    public void handleEvent(EventBundle events) throws ClientException {
+        Map<String, PendingUpdates> pendingUpdatesByRepository = new LinkedHashMap<>();
+        for (Event event : events) {
+            try {
+                collectCollectionObjectCsids(event, pendingUpdatesByRepository);
+            } catch (Exception e) {
+                logger.error("Could not find the CollectionObject records affected by a(n) " + event.getName()
+                        + " event. Their values will not be updated for this event.", e);
+            }
+        }
+        for (PendingUpdates pendingUpdates : pendingUpdatesByRepository.values()) {
+            updateCollectionObjects(pendingUpdates);
+        }
+    }
+
+    /**
+     * Handles a single event, as if it were the only event in its transaction.
+     */
     public void handleEvent(Event event) throws ClientException {
-    
+        Map<String, PendingUpdates> pendingUpdatesByRepository = new LinkedHashMap<>();
+        collectCollectionObjectCsids(event, pendingUpdatesByRepository);
+        for (PendingUpdates pendingUpdates : pendingUpdatesByRepository.values()) {
+            updateCollectionObjects(pendingUpdates);
+        }
+    }
+
+    /**
+     * Collects the CSIDs of the CollectionObject records whose values may be
+     * affected by an event.
+     *
+     * @param event a document event.
+     * @param pendingUpdatesByRepository the CollectionObject CSIDs collected so
+     * far, by repository name.
+     * @throws ClientException
+     */
+    private void collectCollectionObjectCsids(Event event, Map<String, PendingUpdates> pendingUpdatesByRepository)
+            throws ClientException {
+
         boolean isAboutToBeRemovedEvent = false;
         String movementCsidToFilter = "";
         String eventType = "";
@@ -176,18 +247,47 @@ public abstract class AbstractUpdateObjectLocationValues implements EventListene
 
         // All Nuxeo sessions that get passed around to CollectionSpace code need to be
         // wrapped inside of a CoreSessionWrapper
-        CoreSessionInterface coreSession = new CoreSessionWrapper(docEventContext.getCoreSession());
-        Set<String> collectionObjectCsids = new HashSet<>();
+        String repositoryName = docEventContext.getRepositoryName();
+        PendingUpdates pendingUpdates = pendingUpdatesByRepository.get(repositoryName);
+        if (pendingUpdates == null) {
+            pendingUpdates = new PendingUpdates(new CoreSessionWrapper(docEventContext.getCoreSession()));
+            pendingUpdatesByRepository.put(repositoryName, pendingUpdates);
+        }
 
+        CollectionObjectUpdates updates = pendingUpdates.updates;
         if (notificationDocumentType == EventNotificationDocumentType.RELATION) {
             String relatedCollectionObjectCsid =
                     getCsidForDesiredDocTypeFromRelation(docModel, COLLECTIONOBJECT_DOCTYPE, MOVEMENT_DOCTYPE);
-            collectionObjectCsids.add(relatedCollectionObjectCsid);
+            if (Tools.notBlank(relatedCollectionObjectCsid)) {
+                updates.add(relatedCollectionObjectCsid, movementCsidToFilter);
+            }
         } else if (notificationDocumentType == EventNotificationDocumentType.MOVEMENT) {
-            collectionObjectCsids.addAll(getCollectionObjectCsidsRelatedToMovement(movementCsid, coreSession));
+            // A Movement record may be the source of several events in a
+            // transaction; only look up its related CollectionObjects once.
+            Set<String> relatedCollectionObjectCsids = updates.getRelatedCollectionObjectCsids(movementCsid);
+            if (relatedCollectionObjectCsids == null) {
+                relatedCollectionObjectCsids = getCollectionObjectCsidsRelatedToMovement(movementCsid, pendingUpdates.coreSession);
+                updates.setRelatedCollectionObjectCsids(movementCsid, relatedCollectionObjectCsids);
+            }
+            for (String collectionObjectCsid : relatedCollectionObjectCsids) {
+                updates.add(collectionObjectCsid, movementCsidToFilter);
+            }
         }
+    }
+
+    /**
+     * Updates the collected CollectionObject records, each once, with values
+     * from their most recent related Movement records. A CollectionObject that
+     * cannot be updated is logged and skipped.
+     *
+     * @param pendingUpdates the CollectionObject CSIDs collected from the
+     * events of one repository.
+     */
+    private void updateCollectionObjects(PendingUpdates pendingUpdates) {
+        CoreSessionInterface coreSession = pendingUpdates.coreSession;
+        CollectionObjectUpdates updates = pendingUpdates.updates;
 
-        if (collectionObjectCsids.isEmpty()) {
+        if (updates.isEmpty()) {
             if (logger.isTraceEnabled()) {
                 logger.trace("Could not obtain any CSIDs of related CollectionObject records.");
                 logger.trace(NO_FURTHER_PROCESSING_MESSAGE);
@@ -195,50 +295,79 @@ public abstract class AbstractUpdateObjectLocationValues implements EventListene
             return;
         } else {
             if (logger.isTraceEnabled()) {
-                logger.trace("Found " + collectionObjectCsids.size() + " CSID(s) of related CollectionObject records.");
+                logger.trace("Found " + updates.getCollectionObjectCsids().size() + " CSID(s) of related CollectionObject records.");
             }
         }
+        // The tenant IDs and document types of the updated CollectionObjects, whose cached lists are to be dropped
+        // once they are committed
+        Map<String, String> updatedDocTypesByTenant = new LinkedHashMap<>();
         // Iterate through the list of CollectionObject CSIDs found.
         // For each CollectionObject, obtain its most recent, related Movement,
         // and update relevant field(s) with values from that Movement record.
-        DocumentModel collectionObjectDocModel;
-        DocumentModel mostRecentMovementDocModel;
-        for (String collectionObjectCsid : collectionObjectCsids) {
-            if (logger.isTraceEnabled()) {
-                logger.trace("CollectionObject CSID=" + collectionObjectCsid);
-            }
-            // Verify that the CollectionObject is both retrievable and active.
-            collectionObjectDocModel = getCurrentDocModelFromCsid(coreSession, collectionObjectCsid);
-            if (collectionObjectDocModel == null) {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("CollectionObject is not current (i.e. is a non-current version), is a proxy, or is unretrievable.");
-                }
-                continue;
-            }
-            // Verify that the CollectionObject record is active.
-            if (!isActiveDocument(collectionObjectDocModel)) {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("CollectionObject is inactive (i.e. deleted or in an otherwise inactive lifestyle state).");
+        for (String collectionObjectCsid : updates.getCollectionObjectCsids()) {
+            try {
+                DocumentModel updatedDocModel = updateCollectionObject(coreSession, collectionObjectCsid,
+                        updates.getMovementCsidsToFilter(collectionObjectCsid));
+                if (updatedDocModel != null) {
+                    updatedDocTypesByTenant.put(NuxeoUtils.getTenantId(updatedDocModel),
+                            ServiceBindingUtils.getUnqualifiedTenantDocType(updatedDocModel.getType()));
                 }
-                continue;
+            } catch (Exception e) {
+                logger.error("Could not update the values of CollectionObject record " + collectionObjectCsid
+                        + " from its most recent Movement record.", e);
             }
-            // Get the CollectionObject's most recent, related Movement.
-            mostRecentMovementDocModel = getMostRecentMovement(coreSession, collectionObjectCsid,
-                    isAboutToBeRemovedEvent, movementCsidToFilter);
-            if (mostRecentMovementDocModel == null) {
-                continue;
+        }
+        for (Map.Entry<String, String> entry : updatedDocTypesByTenant.entrySet()) {
+            ListResultCache.get().invalidateOnCommit(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Updates a CollectionObject record with values from its most recent
+     * related Movement record.
+     *
+     * @param coreSession a repository session.
+     * @param collectionObjectCsid the CSID of the CollectionObject record.
+     * @param movementCsidsToFilter the CSIDs of Movement records to filter out.
+     * @return the updated CollectionObject, or null if it was not updated.
+     * @throws ClientException
+     */
+    private DocumentModel updateCollectionObject(CoreSessionInterface coreSession, String collectionObjectCsid,
+            Set<String> movementCsidsToFilter) throws ClientException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("CollectionObject CSID=" + collectionObjectCsid);
+        }
+        // Verify that the CollectionObject is both retrievable and active.
+        DocumentModel collectionObjectDocModel = getCurrentDocModelFromCsid(coreSession, collectionObjectCsid);
+        if (collectionObjectDocModel == null) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("CollectionObject is not current (i.e. is a non-current version), is a proxy, or is unretrievable.");
             }
-            // Update the CollectionObject with values from that Movement.
-            collectionObjectDocModel =
-                    updateCollectionObjectValuesFromMovement(collectionObjectDocModel, mostRecentMovementDocModel);
+            return null;
+        }
+        // Verify that the CollectionObject record is active.
+        if (!isActiveDocument(collectionObjectDocModel)) {
             if (logger.isTraceEnabled()) {
-                String computedCurrentLocationRefName =
-                        (String) collectionObjectDocModel.getProperty(COLLECTIONOBJECTS_COMMON_SCHEMA,
-                        COMPUTED_CURRENT_LOCATION_PROPERTY);
-                logger.trace("computedCurrentLocation refName after value update=" + computedCurrentLocationRefName);
+                logger.trace("CollectionObject is inactive (i.e. deleted or in an otherwise inactive lifestyle state).");
             }
-            coreSession.saveDocument(collectionObjectDocModel);
+            return null;
         }
+        // Get the CollectionObject's most recent, related Movement.
+        DocumentModel mostRecentMovementDocModel =
+                getMostRecentMovement(coreSession, collectionObjectCsid, movementCsidsToFilter);
+        if (mostRecentMovementDocModel == null) {
+            return null;
+        }
+        // Update the CollectionObject with values from that Movement.
+        collectionObjectDocModel =
+                updateCollectionObjectValuesFromMovement(collectionObjectDocModel, mostRecentMovementDocModel);
+        if (logger.isTraceEnabled()) {
+            String computedCurrentLocationRefName =
+                    (String) collectionObjectDocModel.getProperty(COLLECTIONOBJECTS_COMMON_SCHEMA,
+                    COMPUTED_CURRENT_LOCATION_PROPERTY);
+            logger.trace("computedCurrentLocation refName after value update=" + computedCurrentLocationRefName);
+        }
+        return coreSession.saveDocument(collectionObjectDocModel);
     }
 
     /**
@@ -416,6 +545,30 @@ public abstract class AbstractUpdateObjectLocationValues implements EventListene
     protected static DocumentModel getMostRecentMovement(CoreSessionInterface session, String collectionObjectCsid,
             boolean isAboutToBeRemovedEvent, String aboutToBeRemovedMovementCsidToFilter)
             throws ClientException {
+        Set<String> movementCsidsToFilter = Collections.emptySet();
+        if (isAboutToBeRemovedEvent && Tools.notBlank(aboutToBeRemovedMovementCsidToFilter)) {
+            movementCsidsToFilter = Collections.singleton(aboutToBeRemovedMovementCsidToFilter);
+        }
+        return getMostRecentMovement(session, collectionObjectCsid, movementCsidsToFilter);
+    }
+
+    /**
+     * Returns the most recent Movement record related to a CollectionObject,
+     * as above.
+     *
+     * @param session a repository session.
+     * @param collectionObjectCsid a CollectionObject identifier (CSID)
+     * @param movementCsidsToFilter the CSIDs of Movement records slated for
+     * deletion, or of Movement records referenced by Relation records slated
+     * for deletion. These records are filtered out, prior to returning the
+     * most recent Movement record.
+     * @throws ClientException
+     * @return the most recent Movement record related to the CollectionObject
+     * identified by the supplied CSID.
+     */
+    protected static DocumentModel getMostRecentMovement(CoreSessionInterface session, String collectionObjectCsid,
+            Set<String> movementCsidsToFilter)
+            throws ClientException {
         DocumentModel mostRecentMovementDocModel = null;
         // Get Relation records for Movements related to this CollectionObject.
         //
@@ -482,13 +635,11 @@ public abstract class AbstractUpdateObjectLocationValues implements EventListene
             // If our event involves a Movement record that is about to be
             // (hard) deleted, or a Movement record referenced by a Relation
             // record that is about to be (hard) deleted, filter out that record.
-            if (isAboutToBeRemovedEvent && Tools.notBlank(aboutToBeRemovedMovementCsidToFilter)) {
-                if (relatedMovementCsid.equals(aboutToBeRemovedMovementCsidToFilter)) {
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Skipping about-to-be-deleted Movement record or referenced, related Movement record ...");
-                    }
-                    continue;
+            if (movementCsidsToFilter.contains(relatedMovementCsid)) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Skipping about-to-be-deleted Movement record or referenced, related Movement record ...");
                 }
+                continue;
             }
             movementDocModel = getCurrentDocModelFromCsid(session, relatedMovementCsid);
             if (movementDocModel == null) {
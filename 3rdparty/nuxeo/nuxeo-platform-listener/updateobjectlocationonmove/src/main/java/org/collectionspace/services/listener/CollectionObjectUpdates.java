@@ -0,0 +1,84 @@
+package org.collectionspace.services.listener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.collectionspace.services.common.api.Tools;
+
+/**
+ * The CollectionObject records whose values are to be updated after the
+ * events of a transaction, each listed once however many events it was
+ * found from, in the order it was first found.
+ *
+ * For each CollectionObject, the CSIDs of the Movement records to filter out
+ * when finding its most recent Movement (those about to be removed, or
+ * referenced by Relations about to be removed) are merged from all of its
+ * events.
+ */
+public class CollectionObjectUpdates {
+    // CollectionObject CSID -> CSIDs of Movement records to filter out
+    private final Map<String, Set<String>> collectionObjectCsids = new LinkedHashMap<>();
+    // Movement CSID -> CSIDs of the CollectionObject records related to it
+    private final Map<String, Set<String>> movementCollectionObjectCsids = new HashMap<>();
+
+    /**
+     * Adds a CollectionObject to be updated.
+     *
+     * @param collectionObjectCsid the CSID of the CollectionObject record.
+     * @param movementCsidToFilter the CSID of a Movement record to filter out,
+     * or blank if there is none.
+     */
+    public void add(String collectionObjectCsid, String movementCsidToFilter) {
+        Set<String> movementCsidsToFilter = collectionObjectCsids.get(collectionObjectCsid);
+        if (movementCsidsToFilter == null) {
+            movementCsidsToFilter = new HashSet<>();
+            collectionObjectCsids.put(collectionObjectCsid, movementCsidsToFilter);
+        }
+        if (Tools.notBlank(movementCsidToFilter)) {
+            movementCsidsToFilter.add(movementCsidToFilter);
+        }
+    }
+
+    /**
+     * @return the CSIDs of the CollectionObject records to be updated, in the
+     * order they were first added.
+     */
+    public Set<String> getCollectionObjectCsids() {
+        return Collections.unmodifiableSet(collectionObjectCsids.keySet());
+    }
+
+    /**
+     * @param collectionObjectCsid the CSID of a CollectionObject record.
+     * @return the CSIDs of the Movement records to filter out when updating
+     * the CollectionObject.
+     */
+    public Set<String> getMovementCsidsToFilter(String collectionObjectCsid) {
+        Set<String> result = collectionObjectCsids.get(collectionObjectCsid);
+        return result != null ? Collections.unmodifiableSet(result) : Collections.<String>emptySet();
+    }
+
+    /**
+     * @param movementCsid the CSID of a Movement record.
+     * @return the CSIDs of the CollectionObject records related to the Movement,
+     * or null if they haven't been looked up in this transaction.
+     */
+    public Set<String> getRelatedCollectionObjectCsids(String movementCsid) {
+        return movementCollectionObjectCsids.get(movementCsid);
+    }
+
+    /**
+     * Records the CSIDs of the CollectionObject records related to a Movement,
+     * so they are only looked up once in a transaction.
+     */
+    public void setRelatedCollectionObjectCsids(String movementCsid, Set<String> collectionObjectCsids) {
+        movementCollectionObjectCsids.put(movementCsid, collectionObjectCsids);
+    }
+
+    public boolean isEmpty() {
+        return collectionObjectCsids.isEmpty();
+    }
+}
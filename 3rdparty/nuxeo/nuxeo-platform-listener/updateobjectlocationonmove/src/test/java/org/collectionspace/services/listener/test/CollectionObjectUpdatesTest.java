@@ -0,0 +1,58 @@
+package org.collectionspace.services.listener.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import org.collectionspace.services.listener.CollectionObjectUpdates;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class CollectionObjectUpdatesTest {
+
+    @Test
+    public void testCoalescesEventsOfOneTransaction() {
+        CollectionObjectUpdates updates = new CollectionObjectUpdates();
+
+        // A bulk request relates one Movement to three CollectionObjects,
+        // and a later event in the same transaction affects the first again.
+        updates.add("co-1", "");
+        updates.add("co-2", "");
+        updates.add("co-3", "");
+        updates.add("co-1", null);
+
+        assertEquals(updates.getCollectionObjectCsids(),
+                new LinkedHashSet<String>(Arrays.asList("co-1", "co-2", "co-3")));
+        assertTrue(updates.getMovementCsidsToFilter("co-1").isEmpty());
+    }
+
+    @Test
+    public void testMergesMovementsToFilter() {
+        CollectionObjectUpdates updates = new CollectionObjectUpdates();
+
+        updates.add("co-1", "mv-1");
+        updates.add("co-1", "");
+        updates.add("co-1", "mv-2");
+        updates.add("co-2", "mv-1");
+
+        assertEquals(updates.getCollectionObjectCsids().size(), 2);
+        assertEquals(updates.getMovementCsidsToFilter("co-1"), new HashSet<String>(Arrays.asList("mv-1", "mv-2")));
+        assertEquals(updates.getMovementCsidsToFilter("co-2"), Collections.singleton("mv-1"));
+        assertTrue(updates.getMovementCsidsToFilter("co-3").isEmpty());
+    }
+
+    @Test
+    public void testRemembersRelatedCollectionObjects() {
+        CollectionObjectUpdates updates = new CollectionObjectUpdates();
+
+        assertTrue(updates.isEmpty());
+        assertNull(updates.getRelatedCollectionObjectCsids("mv-1"));
+
+        updates.setRelatedCollectionObjectCsids("mv-1", Collections.<String>emptySet());
+
+        assertNotNull(updates.getRelatedCollectionObjectCsids("mv-1"));
+        assertTrue(updates.isEmpty());
+    }
+}
@@ -1,18 +1,20 @@
 package org.collectionspace.services.listener;
 
-import java.util.ArrayList;
-import java.util.IllegalFormatException;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.collectionspace.services.client.IRelationsManager;
 import org.collectionspace.services.client.workflow.WorkflowClient;
+import org.collectionspace.services.common.relation.nuxeo.RelationsUtils;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionWrapper;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
+import org.collectionspace.services.nuxeo.util.NuxeoUtils;
 import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
-import org.nuxeo.ecm.core.api.impl.LifeCycleFilter;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventContext;
 import org.nuxeo.ecm.core.event.EventListener;
@@ -22,98 +24,138 @@ public class UpdateRelationsOnDelete implements EventListener {
 
     // FIXME: We might experiment here with using log4j instead of Apache Commons Logging;
     // am using the latter to follow Ray's pattern for now
-    final Log logger = LogFactory.getLog(UpdateRelationsOnDelete.class);
-    
+    final static Log logger = LogFactory.getLog(UpdateRelationsOnDelete.class);
+
     // FIXME: Get these constant values from external sources rather than redeclaring here
     final static String RELATION_DOCTYPE = "Relation";
-    final static String RELATIONS_COMMON_SUBJECT_CSID_FIELD = "relations_common:subjectCsid";
-    final static String RELATIONS_COMMON_OBJECT_CSID_FIELD = "relations_common:objectCsid";
+
+    // The number of relation records soft deleted in the transaction that soft
+    // deletes the record they pertain to. Any others are soft deleted after that
+    // transaction has been committed, by UpdateRelationsOnDeleteWorker.
+    final static int CHUNK_SIZE = 100;
 
     @Override
     public void handleEvent(Event event) throws ClientException {
         logger.trace("In handleEvent in UpdateRelationsOnDelete ...");
-        
+
         EventContext eventContext = event.getContext();
+        String csid = getSoftDeletedRecordCsid(eventContext);
+        if (csid == null) {
+            return;
+        }
+
+        DocumentModel docModel = ((DocumentEventContext) eventContext).getSourceDocument();
+        CoreSessionInterface session = new CoreSessionWrapper(docModel.getCoreSession());
+        Set<String> attemptedIds = new HashSet<String>();
+        // Any relation records that can't be soft deleted here are attempted again by UpdateRelationsOnDeleteWorker
+        Set<String> failedIds = new HashSet<String>();
+        int matchCount = softDeleteRelations(session, csid, CHUNK_SIZE, attemptedIds, failedIds);
+        if (attemptedIds.size() > failedIds.size()) {
+            ListResultCache.get().invalidateOnCommit(NuxeoUtils.getTenantId(docModel), IRelationsManager.DOC_TYPE);
+        }
+
+        logger.info("Soft deleted " + (attemptedIds.size() - failedIds.size()) + " relation records pertaining to a soft deleted record.");
+        if (matchCount >= CHUNK_SIZE) {
+            logger.info("Any further relation records pertaining to the soft deleted record with CSID " + csid
+                    + " will be soft deleted once it has been committed.");
+        }
+    }
 
+    /**
+     * Gets the CSID of the record that has been soft deleted, if a supplied
+     * event concerns the soft deletion of a record other than a relation.
+     *
+     * @param eventContext an event context
+     *
+     * @return the CSID of the soft deleted record, or null
+     */
+    static String getSoftDeletedRecordCsid(EventContext eventContext) {
         if (isDocumentSoftDeletedEvent(eventContext)) {
-            
+
             logger.trace("A soft deletion event was received by UpdateRelationsOnDelete ...");
-            
+
             DocumentEventContext docContext = (DocumentEventContext) eventContext;
             DocumentModel docModel = docContext.getSourceDocument();
-            
+
             // Exclude soft deletion events involving Relation records themselves
             // from handling by this event handler.
-            if (docModel != null && docModel.getType().startsWith(RELATION_DOCTYPE)) {
-                return;
+            if (docModel == null || docModel.getType().startsWith(RELATION_DOCTYPE)) {
+                return null;
             }
-  
-            // Retrieve a list of relation records, where the soft deleted
-            // document provided in the context of the current event is
-            // either the subject or object of any relation
-            
-            // Build a query string
-            String csid = docModel.getName();
-            
-            String queryString;
-            try {
-                queryString =
-                    String.format("SELECT * FROM Relation WHERE ecm:isProxy = 0 AND (%1$s='%3$s' OR %2$s='%3$s')",
-                    RELATIONS_COMMON_SUBJECT_CSID_FIELD, RELATIONS_COMMON_OBJECT_CSID_FIELD, csid);
-                logger.trace("Query string=" + queryString);
-            } catch (IllegalFormatException ife) {
-                logger.warn("Construction of formatted query string failed: ", ife);
-                logger.warn("Actions in this event listener will NOT be performed, as a result of a previous Exception.");
-                return;
+
+            return docModel.getName();
+        }
+
+        return null;
+    }
+
+    /**
+     * Soft deletes a chunk of the relation records where a soft deleted record
+     * is either the subject or object. The query excludes any relation records
+     * that have already been soft deleted or are locked, so each chunk picks up
+     * where the last one ended.
+     *
+     * @param session a repository session
+     * @param csid the CSID of the soft deleted record
+     * @param chunkSize the maximum number of relation records to soft delete
+     * @param attemptedIds the ids of the relation records already attempted, to
+     * which those attempted in this chunk are added. A record that could not be
+     * soft deleted is selected again by the query for the next chunk, but is not
+     * attempted again.
+     * @param failedIds the ids of the relation records that could not be soft
+     * deleted, to which those of this chunk are added
+     *
+     * @return the number of relation records selected by the query; if fewer
+     * than the chunk size, there are no more to soft delete
+     * @throws ClientException
+     */
+    static int softDeleteRelations(CoreSessionInterface session, String csid, int chunkSize,
+            Set<String> attemptedIds, Set<String> failedIds) throws ClientException {
+        String queryString = RelationsUtils.buildCascadeDeleteQuery(csid);
+        logger.trace("Query string=" + queryString);
+
+        DocumentModelList matchingDocuments;
+        try {
+            matchingDocuments = session.query(queryString, chunkSize);
+        } catch (ClientException ce) {
+            logger.warn("Error attempting to retrieve relation records where "
+                    + "the record with CSID " + csid
+                    + " is the subject or object of any relation: " + ce.getMessage());
+            throw ce;
+        }
+
+        // Cycle through the list results, soft deleting each matching relation record
+        for (DocumentModel doc : matchingDocuments) {
+            if (attemptedIds.add(doc.getId()) == false) {
+                continue;
             }
-            
-            // Create a filter to exclude from the list results any records
-            // that have already been soft deleted or are locked
-            List<String> workflowStatesToFilter = new ArrayList<String>();
-            workflowStatesToFilter.add(WorkflowClient.WORKFLOWSTATE_DELETED);
-            workflowStatesToFilter.add(WorkflowClient.WORKFLOWSTATE_LOCKED);
-            workflowStatesToFilter.add(WorkflowClient.WORKFLOWSTATE_LOCKED_DELETED);
-            workflowStatesToFilter.add(WorkflowClient.WORKFLOWSTATE_REPLICATED_DELETED);
-            
-            LifeCycleFilter workflowStateFilter = new LifeCycleFilter(null, workflowStatesToFilter);
-            
-            // Perform the filtered query
-            CoreSessionInterface session = new CoreSessionWrapper(docModel.getCoreSession());
-            DocumentModelList matchingDocuments;
             try {
-                matchingDocuments = session.query(queryString.toString(), workflowStateFilter);
-            } catch (ClientException ce) {
-                logger.warn("Error attempting to retrieve relation records where "
-                        + "record of type '" + docModel.getType() + "' with CSID " + csid
-                        + " is the subject or object of any relation: " + ce.getMessage());
-                throw ce;
-            }
-
-            // Cycle through the list results, soft deleting each matching relation record
-            logger.info("Attempting to soft delete " + matchingDocuments.size() + " relation records pertaining to a soft deleted record.");
-            for (DocumentModel doc : matchingDocuments) {
                 doc.followTransition(WorkflowClient.WORKFLOWTRANSITION_DELETE);
+            } catch (ClientException ce) {
+                failedIds.add(doc.getId());
+                logger.warn("Could not soft delete the relation record with CSID " + doc.getName()
+                        + " pertaining to the soft deleted record with CSID " + csid + ": " + ce.getMessage());
             }
-
         }
 
+        return matchingDocuments.size();
     }
-    
+
     // FIXME: Generic methods like the following might be split off
     // into an event utilities class. - ADR 2012-12-05
 
     /**
      * Identifies whether a supplied event concerns a document that has
      * been transitioned to the 'deleted' workflow state.
-     * 
+     *
      * @param eventContext an event context
-     * 
+     *
      * @return true if this event concerns a document that has
      * been transitioned to the 'deleted' workflow state.
      */
-    private boolean isDocumentSoftDeletedEvent(EventContext eventContext) {
+    private static boolean isDocumentSoftDeletedEvent(EventContext eventContext) {
         boolean isSoftDeletedEvent = false;
-        
+
         if (eventContext instanceof DocumentEventContext) {
             if (eventContext.getProperties().containsKey(WorkflowClient.WORKFLOWTRANSITION_TO)
                     &&
@@ -123,7 +165,7 @@ public class UpdateRelationsOnDelete implements EventListener {
                 isSoftDeletedEvent = true;
             }
         }
-        
+
         return isSoftDeletedEvent;
     }
 }
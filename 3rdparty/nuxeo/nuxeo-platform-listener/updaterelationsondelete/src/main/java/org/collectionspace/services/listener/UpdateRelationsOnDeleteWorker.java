@@ -0,0 +1,87 @@
+package org.collectionspace.services.listener;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.collectionspace.services.client.IRelationsManager;
+import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
+import org.collectionspace.services.nuxeo.listener.AbstractAsyncDocumentListener;
+import org.collectionspace.services.nuxeo.util.NuxeoUtils;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+
+/**
+ * Soft deletes the relation records pertaining to soft deleted records that
+ * UpdateRelationsOnDelete left for after the soft deletion was committed (e.g.
+ * the members of a large group, or the relations of a heavily related term).
+ *
+ * This runs asynchronously, so the request that soft deleted the records
+ * doesn't wait for (or hold locks during) the soft deletion of their relations.
+ * The relations are soft deleted in chunks, each in its own transaction. Until
+ * they all have been, they are reported as pending by the relations service's
+ * cleanup status resource.
+ *
+ * If some relation records can't be soft deleted, the event fails, so that it
+ * is retried and, if they still can't be, recorded as a dead letter; the cleanup
+ * status resource then reports the soft deletion as failed. It finds the dead
+ * letters by this class's name, RelationsUtils.CASCADE_DELETE_WORKER, which must
+ * be kept in step with it.
+ */
+public class UpdateRelationsOnDeleteWorker extends AbstractAsyncDocumentListener {
+
+    final Log logger = LogFactory.getLog(UpdateRelationsOnDeleteWorker.class);
+
+    // The number of relation records soft deleted in each transaction
+    final static int CHUNK_SIZE = 500;
+
+    @Override
+    protected boolean accepts(Event event) {
+        return UpdateRelationsOnDelete.getSoftDeletedRecordCsid(event.getContext()) != null;
+    }
+
+    /*
+     * Soft deletes the remaining relation records of a soft deleted record,
+     * committing each chunk. If this fails, the chunks already committed stay
+     * soft deleted, and a retry picks up where the last committed chunk ended.
+     * If any relation records could not be soft deleted, this throws once the
+     * others have been.
+     */
+    @Override
+    protected void handleDocumentEvent(Event event, CoreSessionInterface session) throws Exception {
+        logger.trace("In handleDocumentEvent in UpdateRelationsOnDeleteWorker ...");
+
+        String csid = UpdateRelationsOnDelete.getSoftDeletedRecordCsid(event.getContext());
+        String tenantId = NuxeoUtils.getTenantId(((DocumentEventContext) event.getContext()).getSourceDocument());
+        Set<String> attemptedIds = new HashSet<>();
+        Set<String> failedIds = new HashSet<>();
+        while (true) {
+            int attemptedBefore = attemptedIds.size();
+            int matchCount = UpdateRelationsOnDelete.softDeleteRelations(session, csid, CHUNK_SIZE, attemptedIds, failedIds);
+            if (attemptedIds.size() == attemptedBefore) {
+                // Nothing left, or nothing but records that could not be soft deleted
+                break;
+            }
+
+            session.save();
+            ListResultCache.get().invalidateOnCommit(tenantId, IRelationsManager.DOC_TYPE);
+            commitAndStartTransaction();
+            if (matchCount < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        int softDeletedCount = attemptedIds.size() - failedIds.size();
+        if (softDeletedCount > 0) {
+            logger.info("Soft deleted " + softDeletedCount + " further relation records pertaining to the soft deleted record with CSID "
+                    + csid + ".");
+        }
+        if (failedIds.isEmpty() == false) {
+            throw new ClientException("Could not soft delete " + failedIds.size()
+                    + " relation records pertaining to the soft deleted record with CSID " + csid + ".");
+        }
+    }
+}
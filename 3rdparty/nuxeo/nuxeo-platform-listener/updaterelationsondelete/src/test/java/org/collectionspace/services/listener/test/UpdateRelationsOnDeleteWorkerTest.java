@@ -0,0 +1,223 @@
+package org.collectionspace.services.listener.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.collectionspace.services.client.workflow.WorkflowClient;
+import org.collectionspace.services.listener.UpdateRelationsOnDeleteWorker;
+import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.listener.AbstractAsyncDocumentListener;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+import org.nuxeo.ecm.core.event.impl.EventImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests UpdateRelationsOnDeleteWorker against an in-memory repository of
+ * relation records, some of which may refuse to be soft deleted.
+ */
+public class UpdateRelationsOnDeleteWorkerTest {
+    private static final String CSID = "1a2b3c4d-0000-0000-0000-000000000001";
+
+    @Test
+    public void testSoftDeletesAllRelationsInChunks() {
+        Repository repository = new Repository(1200, 0);
+        TestWorker worker = new TestWorker(repository);
+
+        worker.process(softDeletedEvent("CollectionObject"), Long.MAX_VALUE);
+
+        assertEquals(repository.countActive(), 0);
+        assertTrue(repository.getQueryCount() >= 3);
+        assertEquals(worker.deadLetterAttempts.size(), 0);
+    }
+
+    @Test
+    public void testRetriesAndDeadLettersFailedRelations() {
+        Repository repository = new Repository(600, 2);
+        TestWorker worker = new TestWorker(repository);
+
+        worker.process(softDeletedEvent("CollectionObject"), Long.MAX_VALUE);
+
+        // The relations that could be soft deleted are, and the others are left for the dead letter
+        assertEquals(repository.countActive(), 2);
+        assertEquals(worker.deadLetterAttempts.size(), 1);
+        assertEquals(worker.deadLetterAttempts.get(0).intValue(), AbstractAsyncDocumentListener.MAX_ATTEMPTS);
+        assertEquals(repository.getFailedTransitionCount(), 2 * AbstractAsyncDocumentListener.MAX_ATTEMPTS);
+    }
+
+    @Test
+    public void testIgnoresRelations() {
+        TestWorker worker = new TestWorker(new Repository(10, 0));
+
+        assertTrue(worker.coalesce(Collections.singletonList(softDeletedEvent("Relation"))).isEmpty());
+        assertEquals(worker.coalesce(Collections.singletonList(softDeletedEvent("CollectionObject"))).size(), 1);
+    }
+
+    private static Event softDeletedEvent(String docType) {
+        DocumentModel source = fakeDocument(CSID, docType, null);
+        DocumentEventContext context = new DocumentEventContext(null, null, source);
+        context.setProperty(WorkflowClient.WORKFLOWTRANSITION_TO, WorkflowClient.WORKFLOWSTATE_DELETED);
+        return new EventImpl("lifecycle_transition_event", context);
+    }
+
+    /*
+     * A DocumentModel that has an id, a name and a type but no schemas, and
+     * that soft deletes itself from a repository when transitioned.
+     */
+    private static DocumentModel fakeDocument(final String name, final String type, final Repository repository) {
+        return (DocumentModel) Proxy.newProxyInstance(DocumentModel.class.getClassLoader(), new Class<?>[] { DocumentModel.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                        case "getId":
+                        case "getName":
+                            return name;
+                        case "getType":
+                            return type;
+                        case "followTransition":
+                            return repository.softDelete(name);
+                        case "hasSchema":
+                            return false;
+                        case "hashCode":
+                            return name.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return type + ":" + name;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+
+    private static class Repository {
+        // Relation id -> whether it is soft deleted
+        private final Map<String, Boolean> relations = new LinkedHashMap<>();
+        private final Set<String> failing = new HashSet<>();
+        private int queryCount = 0;
+        private int failedTransitionCount = 0;
+
+        Repository(int relationCount, int failingCount) {
+            for (int i = 0; i < relationCount; i++) {
+                String id = "relation-" + i;
+                relations.put(id, Boolean.FALSE);
+                if (i < failingCount) {
+                    failing.add(id);
+                }
+            }
+        }
+
+        /*
+         * Like the cascade delete query, selects the relations that aren't soft deleted.
+         */
+        DocumentModelListImpl query(int max) {
+            queryCount++;
+            DocumentModelListImpl result = new DocumentModelListImpl();
+            for (Map.Entry<String, Boolean> entry : relations.entrySet()) {
+                if (result.size() >= max) {
+                    break;
+                }
+                if (entry.getValue() == false) {
+                    result.add(fakeDocument(entry.getKey(), "Relation", this));
+                }
+            }
+            return result;
+        }
+
+        boolean softDelete(String id) throws ClientException {
+            if (failing.contains(id)) {
+                failedTransitionCount++;
+                throw new ClientException("The relation record " + id + " is locked");
+            }
+            relations.put(id, Boolean.TRUE);
+            return true;
+        }
+
+        int countActive() {
+            int result = 0;
+            for (Boolean deleted : relations.values()) {
+                if (deleted == false) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        int getQueryCount() {
+            return queryCount;
+        }
+
+        int getFailedTransitionCount() {
+            return failedTransitionCount;
+        }
+
+        CoreSessionInterface getSession() {
+            return (CoreSessionInterface) Proxy.newProxyInstance(CoreSessionInterface.class.getClassLoader(),
+                    new Class<?>[] { CoreSessionInterface.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                            case "query":
+                                if (args.length == 2 && args[1] instanceof Integer) {
+                                    return query((Integer) args[1]);
+                                }
+                                break;
+                            case "save":
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    private static class TestWorker extends UpdateRelationsOnDeleteWorker {
+        private final Repository repository;
+        final List<Integer> deadLetterAttempts = new ArrayList<>();
+
+        TestWorker(Repository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public long process(Event event, long maxBackoffMillis) {
+            return super.process(event, maxBackoffMillis);
+        }
+
+        @Override
+        public List<Event> coalesce(Iterable<Event> events) {
+            return super.coalesce(events);
+        }
+
+        @Override
+        protected CoreSessionInterface getSession(Event event) {
+            return repository.getSession();
+        }
+
+        @Override
+        protected long getBackoffMillis(int attempt) {
+            return 0;
+        }
+
+        @Override
+        protected void deadLetter(Event event, int attempts, Throwable error) {
+            deadLetterAttempts.add(attempts);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.jaxb.AbstractCommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonListWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the building of a page of list results, the way the document
+ * handlers build it from the repository's results, and its conversion to
+ * JAXB list items or its writing by CommonListWriter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonListBenchmark {
+    private static final String[] FIELDS = {
+        "csid", "uri", "refName", "updatedAt", "workflowState", "objectNumber", "objectName", "responsibleDepartment"
+    };
+
+    /** The number of items in the page */
+    @Param({"40", "1000"})
+    public int pageSize;
+
+    private List<HashMap<String, Object>> items;
+
+    @Setup
+    public void setup() {
+        items = new ArrayList<HashMap<String, Object>>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            String csid = String.format("2ece74b2-2053-458c-a252-%012d", i);
+            HashMap<String, Object> item = new HashMap<String, Object>();
+            item.put("csid", csid);
+            item.put("uri", "/collectionobjects/" + csid);
+            item.put("refName", "urn:cspace:core.collectionspace.org:collectionobjects:id(" + csid + ")'" + i + "'");
+            item.put("updatedAt", "2016-07-27T04:31:38.648Z");
+            item.put("workflowState", "project");
+            item.put("objectNumber", Integer.toString(i));
+            item.put("objectName", "Object " + i);
+            List<String> departments = new ArrayList<String>();
+            departments.add("Antiquities");
+            departments.add("Decorative Arts");
+            item.put("responsibleDepartment", departments);
+            items.add(item);
+        }
+    }
+
+    @Benchmark
+    public CommonList buildList() throws Exception {
+        CommonList list = new CommonList();
+        list.setPageNum(0);
+        list.setPageSize(pageSize);
+        list.setTotalItems(pageSize);
+        list.setItemsInPage(pageSize);
+        list.setFieldsReturned(FIELDS);
+        for (HashMap<String, Object> item : items) {
+            list.addItem(item);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<AbstractCommonList.ListItem> buildListItems() throws Exception {
+        return buildList().getListItem();
+    }
+
+    @Benchmark
+    public byte[] writeList() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pageSize * 512);
+        CommonListWriter.write(buildList(), out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the fixture payloads of the benchmarks from the classpath.
+ */
+final class Fixtures {
+    /** A collectionobject, as returned by a read */
+    static final String COLLECTIONOBJECT = "fixtures/collectionobject.xml";
+
+    /** A page of 40 collectionobjects, as returned by a list */
+    static final String COLLECTIONOBJECT_LIST = "fixtures/collectionobject-list.xml";
+
+    private Fixtures() {
+        //empty
+    }
+
+    static byte[] readBytes(String name) throws IOException {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException(String.format("The fixture %s was not found.", name));
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    static String readString(String name) throws IOException {
+        return new String(readBytes(name), "UTF-8");
+    }
+}
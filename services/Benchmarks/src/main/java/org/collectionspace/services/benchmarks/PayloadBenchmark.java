@@ -0,0 +1,94 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.client.PoxPayloadIn;
+import org.collectionspace.services.client.PoxPayloadOut;
+import org.collectionspace.services.common.xmljson.XmlToJsonStreamConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parsing and serializing of the multipart (POX) payloads that
+ * every create, read and update goes through, and the conversion of read and
+ * list payloads to JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+    private String payloadXml;
+    private byte[] payloadBytes;
+    private byte[] listBytes;
+    private PoxPayloadOut payloadOut;
+
+    @Setup
+    public void setup() throws Exception {
+        payloadXml = Fixtures.readString(Fixtures.COLLECTIONOBJECT);
+        payloadBytes = Fixtures.readBytes(Fixtures.COLLECTIONOBJECT);
+        listBytes = Fixtures.readBytes(Fixtures.COLLECTIONOBJECT_LIST);
+        payloadOut = new PoxPayloadOut(payloadBytes);
+    }
+
+    @Benchmark
+    public PoxPayloadIn parsePayloadIn() throws Exception {
+        return new PoxPayloadIn(payloadXml);
+    }
+
+    @Benchmark
+    public PoxPayloadOut parsePayloadOut() throws Exception {
+        return new PoxPayloadOut(payloadBytes);
+    }
+
+    @Benchmark
+    public String serializePayloadOut() {
+        // Serializing detaches the parts' elements into a new document, so it can be repeated
+        return payloadOut.asXML();
+    }
+
+    @Benchmark
+    public byte[] convertPayloadToJson() throws Exception {
+        return toJson(payloadBytes);
+    }
+
+    @Benchmark
+    public byte[] convertListToJson() throws Exception {
+        return toJson(listBytes);
+    }
+
+    private static byte[] toJson(byte[] xml) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(xml.length);
+        new XmlToJsonStreamConverter(new ByteArrayInputStream(xml), out).convert();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.common.query.nuxeo.QueryManagerNuxeoImpl;
+import org.collectionspace.services.common.storage.JDBCTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the building of the NXQL where clauses of keyword and partial
+ * term searches.
+ *
+ * QueryManagerNuxeoImpl caches the clauses of the last 1000 keyword and partial
+ * term searches, so each search is measured twice: the *Hit benchmarks repeat
+ * one input, whose clause is cached after the first call, and the *Miss
+ * benchmarks cycle through MISS_INPUTS different inputs, so that each input's
+ * clause has been evicted by the time it is searched again.
+ *
+ * There is no database, so the partial term clauses are built with the LIKE
+ * form that QueryManagerNuxeoImpl falls back to; the first call looks up the
+ * datasource and fails, which is done in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildingBenchmark {
+    private static final String SIMPLE_KEYWORDS = "ceramic";
+    private static final String COMPLEX_KEYWORDS = "\"blue glazed\" bowl AND NOT chipped OR cracked o'keeffe 1920-1930";
+    private static final String PARTIAL_TERM_FIELD = "persons_common:personTermGroupList/*/termDisplayName";
+    private static final String PARTIAL_TERM = "Geor'gia O";
+
+    // Several times the number of clauses that QueryManagerNuxeoImpl caches
+    private static final int MISS_INPUTS = 4096;
+
+    private QueryManagerNuxeoImpl queryManager;
+
+    private String[] simpleKeywords;
+    private String[] complexKeywords;
+    private String[] partialTerms;
+    private int next;
+
+    @Setup
+    public void setup() {
+        queryManager = new QueryManagerNuxeoImpl();
+        partialTermHit();
+
+        simpleKeywords = new String[MISS_INPUTS];
+        complexKeywords = new String[MISS_INPUTS];
+        partialTerms = new String[MISS_INPUTS];
+        for (int i = 0; i < MISS_INPUTS; i++) {
+            simpleKeywords[i] = SIMPLE_KEYWORDS + i;
+            complexKeywords[i] = COMPLEX_KEYWORDS + " " + i;
+            partialTerms[i] = PARTIAL_TERM + i;
+        }
+    }
+
+    private int nextInput() {
+        int result = next;
+        next = (next + 1) % MISS_INPUTS;
+        return result;
+    }
+
+    @Benchmark
+    public String simpleKeywordsHit() {
+        return queryManager.createWhereClauseFromKeywords(SIMPLE_KEYWORDS);
+    }
+
+    @Benchmark
+    public String simpleKeywordsMiss() {
+        return queryManager.createWhereClauseFromKeywords(simpleKeywords[nextInput()]);
+    }
+
+    @Benchmark
+    public String complexKeywordsHit() {
+        return queryManager.createWhereClauseFromKeywords(COMPLEX_KEYWORDS);
+    }
+
+    @Benchmark
+    public String complexKeywordsMiss() {
+        return queryManager.createWhereClauseFromKeywords(complexKeywords[nextInput()]);
+    }
+
+    @Benchmark
+    public String partialTermHit() {
+        return queryManager.createWhereClauseForPartialMatch(JDBCTools.NUXEO_DATASOURCE_NAME,
+                JDBCTools.DEFAULT_NUXEO_REPOSITORY_NAME, null, PARTIAL_TERM_FIELD, false, PARTIAL_TERM);
+    }
+
+    @Benchmark
+    public String partialTermMiss() {
+        return queryManager.createWhereClauseForPartialMatch(JDBCTools.NUXEO_DATASOURCE_NAME,
+                JDBCTools.DEFAULT_NUXEO_REPOSITORY_NAME, null, PARTIAL_TERM_FIELD, false, partialTerms[nextInput()]);
+    }
+
+    @Benchmark
+    public String partialTermWithStartingWildcardHit() {
+        return queryManager.createWhereClauseForPartialMatch(JDBCTools.NUXEO_DATASOURCE_NAME,
+                JDBCTools.DEFAULT_NUXEO_REPOSITORY_NAME, null, PARTIAL_TERM_FIELD, false, "*" + PARTIAL_TERM);
+    }
+
+    @Benchmark
+    public String partialTermWithStartingWildcardMiss() {
+        return queryManager.createWhereClauseForPartialMatch(JDBCTools.NUXEO_DATASOURCE_NAME,
+                JDBCTools.DEFAULT_NUXEO_REPOSITORY_NAME, null, PARTIAL_TERM_FIELD, true, partialTerms[nextInput()]);
+    }
+}
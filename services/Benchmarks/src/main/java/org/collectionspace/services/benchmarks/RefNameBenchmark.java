@@ -0,0 +1,75 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.common.UriTemplate;
+import org.collectionspace.services.common.UriTemplateFactory;
+import org.collectionspace.services.common.api.RefNameUtils;
+import org.collectionspace.services.common.api.RefNameUtils.AuthorityTermInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parsing of authority term refNames and the building of
+ * resource and item URIs, which are done for every term and relation of
+ * a payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefNameBenchmark {
+    private static final String TERM_REFNAME =
+            "urn:cspace:core.collectionspace.org:personauthorities:name(person):item:name(GeorgiaOKeeffe1597212345)'Georgia OKeeffe'";
+
+    private UriTemplate itemTemplate;
+    private Map<String, String> itemValues;
+
+    @Setup
+    public void setup() {
+        itemTemplate = UriTemplateFactory.getURITemplate(UriTemplateFactory.ITEM);
+        itemValues = new HashMap<String, String>();
+        itemValues.put(UriTemplateFactory.SERVICENAME_VAR, "personauthorities");
+        itemValues.put(UriTemplateFactory.IDENTIFIER_VAR, "5f6c6e8e-7b4c-4f0e-9a63");
+        itemValues.put(UriTemplateFactory.ITEM_IDENTIFIER_VAR, "0b1a3c32-52d1-4a4b-a2d8");
+    }
+
+    @Benchmark
+    public AuthorityTermInfo parseAuthorityTermInfo() {
+        return RefNameUtils.parseAuthorityTermInfo(TERM_REFNAME);
+    }
+
+    @Benchmark
+    public String buildItemUri() {
+        return itemTemplate.buildUri(itemValues);
+    }
+}
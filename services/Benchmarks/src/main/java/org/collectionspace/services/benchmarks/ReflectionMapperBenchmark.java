@@ -0,0 +1,80 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.common.ReflectionMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the calling of list item setters by name, which is done for
+ * each list result field of each document. The cached setters of
+ * ReflectionMapper are compared with looking up the setter on each call,
+ * as ReflectionMapper used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionMapperBenchmark {
+    private static final String CSID = "5f6c6e8e-7b4c-4f0e-9a63";
+
+    private ListItem item;
+
+    public static class ListItem {
+        private String csid;
+
+        public void setCsid(String csid) {
+            this.csid = csid;
+        }
+
+        public String getCsid() {
+            return csid;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        item = new ListItem();
+    }
+
+    @Benchmark
+    public Object callSetterWithLookup() throws Exception {
+        Method m = item.getClass().getMethod("setCsid", String.class);
+        m.invoke(item, CSID);
+        return item;
+    }
+
+    @Benchmark
+    public ReflectionMapper.STATUS callSetter() {
+        return ReflectionMapper.callSetter(item, "setCsid", CSID);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Copyright (c) 2009 Regents of the University of California
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.collectionspace.services.IntegrationTests.xmlreplay;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lock-free histogram of latencies, from 1 microsecond to 1000 seconds, which keeps two significant
+ *  digits of each value: values below 100 microseconds are counted per microsecond, values below 1 millisecond
+ *  per 10 microseconds, values below 10 milliseconds per 100 microseconds, and so on.  Percentiles are
+ *  reported as the upper bound of their bucket, so they are at most about 10% high.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 100;       // 0..99 microseconds
+    private static final int BUCKETS_PER_DECADE = 90;    // 10..99 times a power of ten
+    private static final int DECADES = 7;                // up to 99 * 10^7 microseconds, i.e. 990 seconds
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + DECADES * BUCKETS_PER_DECADE + 1; // the last one is for larger values
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long elapsedNanos){
+        long micros = Math.max(0, elapsedNanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get())){
+            if (maxMicros.compareAndSet(max, micros)){
+                break;
+            }
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public double getMeanMillis(){
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / 1000.0 / n;
+    }
+
+    public double getMaxMillis(){
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** @param percentile e.g. 99 for the 99th percentile
+     *  @return the upper bound of the bucket of the percentile, in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile){
+        long n = count.get();
+        if (n == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++){
+            seen += buckets.get(i);
+            if (seen >= rank){
+                return Math.min(getBucketUpperBoundMicros(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /** @return the number of values in each bucket (not cumulative); see getBucketUpperBoundMicros() */
+    public long[] getBucketCounts(){
+        long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++){
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    static int bucketIndex(long micros){
+        if (micros < LINEAR_BUCKETS){
+            return (int)micros;
+        }
+        int decade = 0;
+        long digits = micros;
+        while (digits >= 100){
+            digits /= 10;
+            decade++;
+        }
+        if (decade > DECADES){
+            return BUCKET_COUNT - 1;
+        }
+        return LINEAR_BUCKETS + (decade - 1) * BUCKETS_PER_DECADE + (int)(digits - 10);
+    }
+
+    /** @return the (exclusive) upper bound of a bucket, in microseconds; Long.MAX_VALUE for the last one. */
+    public static long getBucketUpperBoundMicros(int index){
+        if (index < LINEAR_BUCKETS){
+            return index + 1;
+        }
+        if (index >= BUCKET_COUNT - 1){
+            return Long.MAX_VALUE;
+        }
+        int decade = (index - LINEAR_BUCKETS) / BUCKETS_PER_DECADE + 1;
+        long digits = (index - LINEAR_BUCKETS) % BUCKETS_PER_DECADE + 10;
+        long scale = 1;
+        for (int i = 0; i < decade; i++){
+            scale *= 10;
+        }
+        return (digits + 1) * scale;
+    }
+}
@@ -10,6 +10,7 @@ import org.dom4j.io.SAXReader;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**  This class is used to replay a request to the Services layer, by sending the XML payload
  *   in an appropriate Multipart request.
@@ -30,6 +31,7 @@ public class XmlReplay {
     public static final String DEFAULT_DEV_MASTER_CONTROL = "dev-master.xml";
 	private static final int MAX_REATTEMPTS = 10;
 	private static final String REATTEMPT_KEY = "REATTEMPT_KEY";
+    private static final AtomicLong runCount = new AtomicLong();
 
     private String reportsDir = "";
     public String getReportsDir(){
@@ -282,6 +284,17 @@ public class XmlReplay {
         return results;
     }
 
+    /** Notified of each test (step) run by runXmlReplayFile in load mode, see XmlReplayLoad. */
+    public static interface StepListener {
+        /** @param stepID the testGroupID.testID of the step
+         *  @param method the HTTP method of the step
+         *  @param elapsedNanos the time the request took, excluding the reading of the control and payload files
+         *  @param success true if the response had an expected code
+         *  @return false to stop running the control file (after its autoDeletePOSTS cleanup)
+         */
+        boolean stepCompleted(String stepID, String method, long elapsedNanos, boolean success);
+    }
+
     public static class AuthsMap {
         Map<String,String> map;
         String defaultID="";
@@ -482,6 +495,28 @@ public class XmlReplay {
                                           List<String> reportsList,
                                           String reportsDir)
                                           throws Exception {
+        return runXmlReplayFile(xmlReplayBaseDir, controlFileName, testGroupID, oneTestID, serviceResultsMap, param_autoDeletePOSTS,
+                                dump, protoHostPortParam, defaultAuths, reportsList, reportsDir, null);
+    }
+
+    /** Runs a control file.  If stepListener is not null, this runs in load mode: nothing is printed, response payloads are
+     *  not validated against the expected ones (only the response codes are checked), no HTML report is saved, and the
+     *  stepListener is told how long each request took.
+     */
+    public static List<ServiceResult> runXmlReplayFile(String xmlReplayBaseDir,
+                                          String controlFileName,
+                                          String testGroupID,
+                                          String oneTestID,
+                                          Map<String, ServiceResult> serviceResultsMap,
+                                          boolean param_autoDeletePOSTS,
+                                          Dump dump,
+                                          String protoHostPortParam,
+                                          AuthsMap defaultAuths,
+                                          List<String> reportsList,
+                                          String reportsDir,
+                                          StepListener stepListener)
+                                          throws Exception {
+        boolean loadMode = (stepListener != null);
         //Internally, we maintain two collections of ServiceResult:
         //  the first is the return value of this method.
         //  the second is the serviceResultsMap, which is used for keeping track of CSIDs created by POSTs, for later reference by DELETE, etc.
@@ -529,7 +564,9 @@ public class XmlReplay {
                           +"\r\n";
         report.addRunInfo(xmlReplayHeader);
 
-        System.out.println(xmlReplayHeader);
+        if ( ! loadMode){
+            System.out.println(xmlReplayHeader);
+        }
 
         String autoDeletePOSTS = "";
         List<Node> testgroupNodes;
@@ -544,10 +581,15 @@ public class XmlReplay {
         evalStruct.serviceResultsMap = serviceResultsMap;
         evalStruct.jexl = jexl;
 
+        boolean keepRunning = true;
         for (Node testgroup : testgroupNodes) {
+            if ( ! keepRunning){
+                break;
+            }
 
             XmlReplayEval.MapContextWKeys jc = new XmlReplayEval.MapContextWKeys();//MapContext();  //Get a new JexlContext for each test group.
             evalStruct.jc = jc;
+            jc.set("runID", newRunID());  //So that control files can create unique shortIdentifiers, e.g. when run by several virtual users.
 
             autoDeletePOSTS = testgroup.valueOf("@autoDeletePOSTS");
             List<Node> tests;
@@ -560,12 +602,19 @@ public class XmlReplay {
             int testElementIndex = -1;
 
             for (Node testNode : tests) {
+                if ( ! keepRunning){
+                    break;
+                }
                 long startTime = System.currentTimeMillis();
+                long requestStartNanos = 0;
+                long requestNanos = 0;
+                String testIDLabel = testGroupID+'.'+(testElementIndex+1);
+                String method = "";
                 try {
                     testElementIndex++;
                     String testID = testNode.valueOf("@ID");
-                    String testIDLabel = Tools.notEmpty(testID) ? (testGroupID+'.'+testID) : (testGroupID+'.'+testElementIndex);
-                    String method = testNode.valueOf("method");
+                    testIDLabel = Tools.notEmpty(testID) ? (testGroupID+'.'+testID) : (testGroupID+'.'+testElementIndex);
+                    method = testNode.valueOf("method");
                     String contentType = testNode.valueOf("contentType");
                     String uri = testNode.valueOf("uri");
                     String fullURL = Tools.glue(protoHostPort, "/", uri);
@@ -617,6 +666,7 @@ public class XmlReplay {
                     }
 
                     ServiceResult serviceResult;
+                    requestStartNanos = System.nanoTime();
                     boolean isPOST = method.equalsIgnoreCase("POST");
                     boolean isPUT =  method.equalsIgnoreCase("PUT");
                     if ( isPOST || isPUT ) {
@@ -684,6 +734,7 @@ public class XmlReplay {
                     } else {
                         throw new Exception("HTTP method not supported by XmlReplay: "+method);
                     }
+                    requestNanos = System.nanoTime() - requestStartNanos;
 
                     serviceResult.testID = testID;
                     serviceResult.fullURL = fullURL;
@@ -704,7 +755,7 @@ public class XmlReplay {
                     //  ALL VALIDATION FOR ALL REQUESTS IS DONE HERE:
                     //=====================================================
                     boolean hasError = false;
-                    String vError = validateResponse(serviceResult, serviceResultsMap, expectedResponseParts, evalStruct);
+                    String vError = loadMode ? "" : validateResponse(serviceResult, serviceResultsMap, expectedResponseParts, evalStruct);
                     if (Tools.notEmpty(vError)){
                         serviceResult.error = vError;
                         serviceResult.failureReason = " : VALIDATION ERROR; ";
@@ -713,6 +764,10 @@ public class XmlReplay {
                     if (hasError == false){
                         hasError = ! serviceResult.gotExpectedResult();
                     }
+                    if (loadMode){
+                        keepRunning = stepListener.stepCompleted(testIDLabel, method, requestNanos, ! hasError);
+                        continue;
+                    }
 
                     boolean doingAuto = (dump.dumpServiceResult == ServiceResult.DUMP_OPTIONS.auto);
                     String serviceResultRow = serviceResult.dump(dump.dumpServiceResult, hasError)+"; time:"+(System.currentTimeMillis()-startTime);
@@ -741,12 +796,19 @@ public class XmlReplay {
                     }
                 } catch (Throwable t) {
                     String msg = "ERROR: XmlReplay experienced an error in a test node: "+testNode+" Throwable: "+t;
-                    System.out.println(msg);
-                    System.out.println(Tools.getStackTrace(t));
                     ServiceResult serviceResult = new ServiceResult();
                     serviceResult.error = msg;
                     serviceResult.failureReason = " : SYSTEM ERROR; ";
                     results.add(serviceResult);
+                    if (loadMode){
+                        if (requestStartNanos > 0 && requestNanos == 0){
+                            requestNanos = System.nanoTime() - requestStartNanos;
+                        }
+                        keepRunning = stepListener.stepCompleted(testIDLabel, method, requestNanos, false);
+                    } else {
+                        System.out.println(msg);
+                        System.out.println(Tools.getStackTrace(t));
+                    }
                 }
             }
             if (Tools.isTrue(autoDeletePOSTS) && param_autoDeletePOSTS){
@@ -754,6 +816,10 @@ public class XmlReplay {
             }
         }
 
+        if (loadMode){
+            return results;
+        }
+
         //=== Now spit out the HTML report file ===
         File m = new File(controlFileName);
         String localName = m.getName();//don't instantiate, just use File to extract file name without directory.
@@ -794,7 +860,10 @@ public class XmlReplay {
                         +"  -DtestGroupID=<oneID> \r\n"
                         +"  -DtestID=<one TestGroup ID>"
                         +"  -DautoDeletePOSTS=<true|false> \r\n"
-                        +"    (note: -DautoDeletePOSTS won't force deletion if set to false in control file.";
+                        +"    (note: -DautoDeletePOSTS won't force deletion if set to false in control file.\r\n"
+                        +" To run a control file's test group as a load test (see XmlReplayLoad), with the protoHostPort and auths of a master: \r\n"
+                        +"  -DxmlReplayMaster=<master> -DcontrolFilename=<file> -DtestGroupID=<oneID> \r\n"
+                        +"  -DvirtualUsers=<n> -DrampUp=<seconds> -DthinkTime=<milliseconds> -Dduration=<seconds>";
         return result;
     }
 
@@ -814,6 +883,16 @@ public class XmlReplay {
         return result;
     }
 
+    /** @return an ID, unique in this JVM, for a run of a test group; made of letters and digits only. */
+    private static String newRunID(){
+        return Long.toString(System.currentTimeMillis(), 36)+'x'+runCount.incrementAndGet();
+    }
+
+    private static long seconds(String value, long defaultSeconds){
+        long seconds = Tools.notEmpty(value) ? Long.parseLong(value) : defaultSeconds;
+        return seconds * 1000;
+    }
+
     public static void main(String[]args) throws Exception {
         Options options = createOptions();
         //System.out.println("System CLASSPATH: "+prop.getProperty("java.class.path", null));
@@ -830,6 +909,7 @@ public class XmlReplay {
             String dumpResults      = opt(line, "dumpResults");
             String controlFilename   = opt(line, "controlFilename");
             String xmlReplayMaster  = opt(line, "xmlReplayMaster");
+            String virtualUsers     = opt(line, "virtualUsers");
 
             if (Tools.isBlank(reportsDir)){
                 reportsDir = xmlReplayBaseDir + XmlReplayTest.REPORTS_DIRNAME;
@@ -875,7 +955,23 @@ public class XmlReplay {
                                        : ("\r\n    will use control file: "+f.getCanonicalPath()) )
                              );
             
-            if (Tools.notEmpty(xmlReplayMaster)){
+            if (Tools.notEmpty(virtualUsers)){
+                if (Tools.isEmpty(xmlReplayMaster) || Tools.isEmpty(controlFilename) || !f.exists()){
+                    System.err.println("ERROR: a load test needs both an xmlReplayMaster and an existing controlFilename.");
+                    return;
+                }
+                XmlReplay replay = new XmlReplay(xmlReplayBaseDirResolved, reportsDir);
+                replay.readOptionsFromMasterConfigFile(xmlReplayMaster);
+                replay.setControlFileName(controlFilename);
+                replay.setAutoDeletePOSTS(bAutoDeletePOSTS);
+                XmlReplayLoad load = new XmlReplayLoad(replay);
+                load.setTestGroupID(testGroupID);
+                load.setVirtualUsers(Integer.parseInt(virtualUsers));
+                load.setRampUpMillis(seconds(opt(line, "rampUp"), 0));
+                load.setThinkTimeMillis(Tools.notEmpty(opt(line, "thinkTime")) ? Long.parseLong(opt(line, "thinkTime")) : 0);
+                load.setDurationMillis(seconds(opt(line, "duration"), 60));
+                load.run();
+            } else if (Tools.notEmpty(xmlReplayMaster)){
                 if (Tools.notEmpty(controlFilename)){
                     System.out.println("WARN: controlFilename: "+controlFilename+" will not be used because master was specified.  Running master: "+xmlReplayMaster);
                 }
@@ -0,0 +1,416 @@
+/**
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Copyright (c) 2009 Regents of the University of California
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.collectionspace.services.IntegrationTests.xmlreplay;
+
+import org.collectionspace.services.client.ClientConnectionPool;
+import org.collectionspace.services.common.api.FileTools;
+import org.collectionspace.services.common.api.Tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**  Runs an XmlReplay control file as a load test: a number of virtual users each replay the control file's test group
+ *   over and over, each with its own results map (so each creates, reads and deletes its own records), until the
+ *   duration is over.  The users are started evenly over the ramp-up period, and wait for the think time after each step.
+ *
+ *   The latency of each step (test) is recorded in a LatencyHistogram.  At the end, a summary of each step's count, errors,
+ *   throughput and latency percentiles is printed and saved in the reports dir as CSV and HTML, and the histograms are
+ *   saved as CSV.  Response payloads are not validated in load mode, only the response codes.
+ *
+ *   The requests are made by XmlReplayTransport, with the pooled, keep-alive connections of ClientConnectionPool; unless
+ *   the pool's limits are set with system properties, they are raised to allow a connection per virtual user.
+ *
+ *   Run it with XmlReplay's main(), e.g.:
+ *      mvn exec:java -DxmlReplayMaster=xml-replay-master.xml -DcontrolFilename=authority/authority.xml -DtestGroupID=TestAuthoritiesMultiVocabSearch
+ *                    -DvirtualUsers=20 -DrampUp=30 -DthinkTime=500 -Dduration=300
+ */
+public class XmlReplayLoad {
+
+    public static final String CSV_SEPARATOR = ",";
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+
+    private final XmlReplay replay;
+    private String testGroupID = "";
+    private int virtualUsers = 1;
+    private long rampUpMillis = 0;
+    private long thinkTimeMillis = 0;
+    private long durationMillis = TimeUnit.MINUTES.toMillis(1);
+
+    // By step ID, in the order of the step IDs
+    private final ConcurrentSkipListMap<String, StepStats> stepStats = new ConcurrentSkipListMap<String, StepStats>();
+    private final StepStats totalStats = new StepStats("TOTAL", "");
+    private volatile long deadline;
+    private long startTime;
+    private long endTime;
+
+    /** @param replay an XmlReplay whose options (protoHostPort, auths, dump) have been read from a master file,
+     *                and whose control file has been set.
+     */
+    public XmlReplayLoad(XmlReplay replay){
+        this.replay = replay;
+    }
+
+    public String getTestGroupID() {
+        return testGroupID;
+    }
+    public void setTestGroupID(String testGroupID) {
+        this.testGroupID = testGroupID;
+    }
+
+    public int getVirtualUsers() {
+        return virtualUsers;
+    }
+    public void setVirtualUsers(int virtualUsers) {
+        this.virtualUsers = Math.max(1, virtualUsers);
+    }
+
+    public long getRampUpMillis() {
+        return rampUpMillis;
+    }
+    public void setRampUpMillis(long rampUpMillis) {
+        this.rampUpMillis = Math.max(0, rampUpMillis);
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+    public void setThinkTimeMillis(long thinkTimeMillis) {
+        this.thinkTimeMillis = Math.max(0, thinkTimeMillis);
+    }
+
+    /** @return the duration of the run, including the ramp-up */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = Math.max(0, durationMillis);
+    }
+
+    public Map<String, StepStats> getStepStats(){
+        return stepStats;
+    }
+
+    public StepStats getTotalStats(){
+        return totalStats;
+    }
+
+    public String toString(){
+        return "XmlReplayLoad{"+replay.getControlFileName()+", testGroup: "+testGroupID+", virtualUsers: "+virtualUsers
+                +", rampUp: "+rampUpMillis+"ms, thinkTime: "+thinkTimeMillis+"ms, duration: "+durationMillis+"ms}";
+    }
+
+    // ============== METHODS ===========================================================
+
+    /** Runs the load test, prints its summary and saves its reports.
+     *  @return the files of the reports that were saved.
+     */
+    public List<File> run() throws Exception {
+        sizeConnectionPool();
+        System.out.println("XmlReplay load test running: "+this);
+
+        ExecutorService users = Executors.newFixedThreadPool(virtualUsers);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        startTime = System.currentTimeMillis();
+        deadline = startTime + durationMillis;
+        try {
+            for (int i = 0; i < virtualUsers; i++){
+                long startDelay = (virtualUsers > 1) ? (rampUpMillis * i / (virtualUsers - 1)) : 0;
+                futures.add(users.submit(new VirtualUser(startTime + startDelay)));
+            }
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } finally {
+            users.shutdownNow();
+            endTime = System.currentTimeMillis();
+        }
+
+        System.out.println(formatText());
+        return saveReports();
+    }
+
+    /* Makes sure that the connection pool doesn't make the virtual users wait for a connection. */
+    private void sizeConnectionPool(){
+        if (System.getProperty(ClientConnectionPool.MAX_PER_ROUTE_PROPERTY) == null){
+            System.setProperty(ClientConnectionPool.MAX_PER_ROUTE_PROPERTY, Integer.toString(virtualUsers));
+        }
+        if (System.getProperty(ClientConnectionPool.MAX_TOTAL_PROPERTY) == null){
+            System.setProperty(ClientConnectionPool.MAX_TOTAL_PROPERTY, Integer.toString(virtualUsers * 2));
+        }
+    }
+
+    private class VirtualUser implements Runnable, XmlReplay.StepListener {
+        private final long startAt;
+
+        VirtualUser(long startAt){
+            this.startAt = startAt;
+        }
+
+        public void run(){
+            try {
+                if ( ! sleepUntil(startAt)){
+                    return;
+                }
+                while (System.currentTimeMillis() < deadline && ! Thread.currentThread().isInterrupted()){
+                    XmlReplay.runXmlReplayFile(replay.getBaseDir(),
+                                               replay.getControlFileName(),
+                                               testGroupID,
+                                               "",
+                                               new ConcurrentHashMap<String, ServiceResult>(),
+                                               replay.isAutoDeletePOSTS(),
+                                               replay.getDump(),
+                                               replay.getProtoHostPort(),
+                                               replay.getDefaultAuthsMap(),
+                                               new ArrayList<String>(),
+                                               replay.getReportsDir(),
+                                               this);
+                }
+            } catch (Exception e){
+                System.err.println("ERROR: XmlReplay load test virtual user stopped: "+e);
+            }
+        }
+
+        public boolean stepCompleted(String stepID, String method, long elapsedNanos, boolean success){
+            StepStats stats = stepStats.get(stepID);
+            if (stats == null){
+                stats = new StepStats(stepID, method);
+                StepStats existing = stepStats.putIfAbsent(stepID, stats);
+                if (existing != null){
+                    stats = existing;
+                }
+            }
+            stats.record(elapsedNanos, success);
+            totalStats.record(elapsedNanos, success);
+            return sleepUntil(Math.min(System.currentTimeMillis() + thinkTimeMillis, deadline))
+                    && System.currentTimeMillis() < deadline;
+        }
+
+        /* @return false if interrupted */
+        private boolean sleepUntil(long time){
+            long millis = time - System.currentTimeMillis();
+            if (millis <= 0){
+                return true;
+            }
+            try {
+                Thread.sleep(millis);
+                return true;
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /** The count, errors and latencies of one step of the control file, or of all of them. */
+    public static class StepStats {
+        private final String stepID;
+        private final String method;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        StepStats(String stepID, String method){
+            this.stepID = stepID;
+            this.method = method;
+        }
+
+        void record(long elapsedNanos, boolean success){
+            // A step that failed before its request was sent has no latency
+            if (success || elapsedNanos > 0){
+                latencies.record(elapsedNanos);
+            }
+            if ( ! success){
+                errors.incrementAndGet();
+            }
+        }
+
+        public String getStepID(){
+            return stepID;
+        }
+        public String getMethod(){
+            return method;
+        }
+        public LatencyHistogram getLatencies(){
+            return latencies;
+        }
+        public long getErrors(){
+            return errors.get();
+        }
+    }
+
+    //================= Reports ======================================================
+
+    private double getElapsedSeconds(){
+        return Math.max(1, endTime - startTime) / 1000.0;
+    }
+
+    private List<StepStats> getAllStats(){
+        List<StepStats> result = new ArrayList<StepStats>(stepStats.values());
+        result.add(totalStats);
+        return result;
+    }
+
+    private static String format(double value){
+        return String.format(Locale.US, "%.2f", value);
+    }
+
+    private String[] getColumns(){
+        List<String> columns = new ArrayList<String>();
+        columns.add("step");
+        columns.add("method");
+        columns.add("count");
+        columns.add("errors");
+        columns.add("throughput/s");
+        columns.add("mean ms");
+        for (double percentile : PERCENTILES){
+            columns.add("p"+(int)percentile+" ms");
+        }
+        columns.add("max ms");
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    private String[] getRow(StepStats stats){
+        LatencyHistogram latencies = stats.getLatencies();
+        List<String> row = new ArrayList<String>();
+        row.add(stats.getStepID());
+        row.add(stats.getMethod());
+        row.add(Long.toString(latencies.getCount()));
+        row.add(Long.toString(stats.getErrors()));
+        row.add(format(latencies.getCount() / getElapsedSeconds()));
+        row.add(format(latencies.getMeanMillis()));
+        for (double percentile : PERCENTILES){
+            row.add(format(latencies.getPercentileMillis(percentile)));
+        }
+        row.add(format(latencies.getMaxMillis()));
+        return row.toArray(new String[row.size()]);
+    }
+
+    public String formatText(){
+        StringBuffer sb = new StringBuffer();
+        sb.append("========================================================================\r\n");
+        sb.append("XmlReplay load test: ").append(this).append("\r\n");
+        sb.append("   elapsed: ").append(format(getElapsedSeconds())).append("s\r\n");
+        String rowFormat = "%-50s %-6s %8s %7s %12s %9s %9s %9s %9s %9s %9s\r\n";
+        sb.append(String.format(Locale.US, rowFormat, (Object[])getColumns()));
+        for (StepStats stats : getAllStats()){
+            sb.append(String.format(Locale.US, rowFormat, (Object[])getRow(stats)));
+        }
+        sb.append("========================================================================\r\n");
+        return sb.toString();
+    }
+
+    public String formatCSV(){
+        StringBuffer sb = new StringBuffer();
+        sb.append(join(getColumns())).append("\r\n");
+        for (StepStats stats : getAllStats()){
+            sb.append(join(getRow(stats))).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+    /** @return a CSV with a row per non-empty bucket of each step's latency histogram. */
+    public String formatHistogramsCSV(){
+        StringBuffer sb = new StringBuffer();
+        sb.append("step,upper bound ms,count\r\n");
+        for (StepStats stats : getAllStats()){
+            long[] counts = stats.getLatencies().getBucketCounts();
+            for (int i = 0; i < counts.length; i++){
+                if (counts[i] > 0){
+                    long upperBound = LatencyHistogram.getBucketUpperBoundMicros(i);
+                    sb.append(stats.getStepID()).append(CSV_SEPARATOR)
+                      .append(upperBound == Long.MAX_VALUE ? "+Inf" : format(upperBound / 1000.0)).append(CSV_SEPARATOR)
+                      .append(counts[i]).append("\r\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public String formatHTML(){
+        StringBuffer sb = new StringBuffer(XmlReplayReport.formatPageStart(replay.getBaseDir()));
+        sb.append("<div class='REPORTTIME'>XmlReplay load test  ").append(Tools.nowLocale()).append("</div>");
+        sb.append("<div class='RUNINFO'>").append(escape(toString()))
+          .append("<br />\r\nelapsed: ").append(format(getElapsedSeconds())).append("s</div><br />\r\n");
+        sb.append("<table border='1' class='DETAIL_TABLE'>\r\n<tr>");
+        for (String column : getColumns()){
+            sb.append("<th>").append(escape(column)).append("</th>");
+        }
+        sb.append("</tr>\r\n");
+        for (StepStats stats : getAllStats()){
+            sb.append("<tr>");
+            for (String value : getRow(stats)){
+                sb.append("<td>").append(escape(value)).append("</td>");
+            }
+            sb.append("</tr>\r\n");
+        }
+        sb.append("</table>");
+        sb.append(XmlReplayReport.HTML_PAGE_END);
+        return sb.toString();
+    }
+
+    private static String join(String[] values){
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < values.length; i++){
+            if (i > 0){
+                sb.append(CSV_SEPARATOR);
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String s){
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private List<File> saveReports(){
+        List<File> result = new ArrayList<File>();
+        String reportName = "load-"+new File(replay.getControlFileName()).getName()+'-'+testGroupID;
+        saveReport(reportName+".csv", formatCSV(), result);
+        saveReport(reportName+"-histograms.csv", formatHistogramsCSV(), result);
+        saveReport(reportName+".html", formatHTML(), result);
+        return result;
+    }
+
+    private void saveReport(String reportName, String content, List<File> savedReports){
+        try {
+            File file = FileTools.saveFile(replay.getReportsDir(), reportName, content, true);
+            if (file != null){
+                System.out.println("XmlReplay load test report: "+file.getCanonicalPath());
+                savedReports.add(file);
+            }
+        } catch (Exception e){
+            System.out.println("ERROR saving XmlReplay load test report in: "+replay.getReportsDir()+" reportName: "+reportName+" error: "+e);
+        }
+    }
+}
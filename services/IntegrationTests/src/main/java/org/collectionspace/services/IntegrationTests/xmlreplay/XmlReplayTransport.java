@@ -25,21 +25,23 @@ package org.collectionspace.services.IntegrationTests.xmlreplay;
 
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
 import org.apache.commons.io.FileUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.collectionspace.services.client.ClientConnectionPool;
 import org.collectionspace.services.common.api.Tools;
 
 /**
@@ -68,7 +70,7 @@ public class XmlReplayTransport {
         //pr.overrideGotExpectedResult();
         //if (true) return pr;
         //END-HACK
-        HttpClient client = new HttpClient();
+        HttpClient client = ClientConnectionPool.getInstance().newHttpClient();
         GetMethod getMethod = new GetMethod(urlString);
         getMethod.addRequestHeader("Accept", "multipart/mixed");
         getMethod.addRequestHeader("Accept", "application/xml");
@@ -87,10 +89,11 @@ public class XmlReplayTransport {
                 pr.boundary = PayloadLogger.parseBoundary(hdrStr);
             }
             pr.contentLength = getMethod.getResponseContentLength();
-            getMethod.releaseConnection();
         } catch (Throwable t){
             //System.err.println("ERROR getting content from response: "+t);
             pr.error = t.toString();
+        } finally {
+            getMethod.releaseConnection();
         }
         return pr;
     }
@@ -105,7 +108,7 @@ public class XmlReplayTransport {
             pr.error = "url was empty.  Check the result for fromTestID: "+fromTestID+". currentTest: "+testID;
             return pr;
         }
-        HttpClient client = new HttpClient();
+        HttpClient client = ClientConnectionPool.getInstance().newHttpClient();
         DeleteMethod deleteMethod = new DeleteMethod(urlString);
         deleteMethod.setRequestHeader("Accept", "multipart/mixed");
         deleteMethod.addRequestHeader("Accept", "application/xml");
@@ -119,9 +122,10 @@ public class XmlReplayTransport {
             //System.out.println("statusCode: "+statusCode1+" statusLine ==>" + deleteMethod.getStatusLine());
             pr.responseMessage = deleteMethod.getStatusText();
             res = deleteMethod.getResponseBodyAsString();
-            deleteMethod.releaseConnection();
         } catch (Throwable t){
             pr.error = t.toString();
+        } finally {
+            deleteMethod.releaseConnection();
         }
         pr.result = res;
         pr.responseCode = statusCode1;
@@ -219,46 +223,45 @@ public class XmlReplayTransport {
         String deleteURL = "";
         String location = "";
         try {
-            URL url = new URL(urlString);
-            HttpURLConnection conn;
-            conn = (HttpURLConnection) url.openConnection();
+            HttpClient client = ClientConnectionPool.getInstance().newHttpClient();
+            EntityEnclosingMethod httpMethod;
+            if ("PUT".equalsIgnoreCase(method)) {
+                httpMethod = new PutMethod(urlString);
+            } else {
+                httpMethod = new PostMethod(urlString);
+            }
 
+            String contentTypeHeader;
             if (MULTIPART_MIXED.equalsIgnoreCase(contentType)){
-                conn.setRequestProperty("Accept", "multipart/mixed");
-                conn.setRequestProperty("content-type", "multipart/mixed; boundary=" + boundary);
+                httpMethod.setRequestHeader("Accept", "multipart/mixed");
+                contentTypeHeader = "multipart/mixed; boundary=" + boundary;
             } else {
-                conn.setRequestProperty("Accept", "application/xml");
-                conn.setRequestProperty("content-type", contentType);
+                httpMethod.setRequestHeader("Accept", "application/xml");
+                contentTypeHeader = contentType;
             }
-            conn.setRequestProperty("Authorization", formatAuth(authForTest));  //TODO: remove test user : hard-coded as "dGVzdDp0ZXN0"
-            conn.setRequestProperty("Connection", "close");
-            conn.setRequestProperty("X-XmlReplay-fromTestID", fromTestID);
-            conn.setDoOutput(true);
-            conn.setDoInput(true);
-            conn.setRequestMethod(method); // "POST" or "PUT"
-            OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
-            wr.write(content);
-            wr.flush();
+            httpMethod.setRequestHeader("Authorization", formatAuth(authForTest));  //TODO: remove test user : hard-coded as "dGVzdDp0ZXN0"
+            httpMethod.setRequestHeader("X-XmlReplay-fromTestID", fromTestID);
+            httpMethod.setRequestEntity(new ByteArrayRequestEntity(content.getBytes(), contentTypeHeader));
 
             try {
                 result.requestPayload = content;
                 result.requestPayloadsRaw = contentRaw;
-                result.responseCode = conn.getResponseCode();
+                result.responseCode = client.executeMethod(httpMethod);
                 //System.out.println("responseCode: "+result.responseCode);
                 if (400 <= result.responseCode && result.responseCode <= 499){
                     return result;
                 }
-                readStream(conn, result);
+                readStream(httpMethod, result);
             } catch (Throwable t){
                 //System.err.println("ERROR getting content from response: "+t);
                 result.error = t.toString();
+            } finally {
+                httpMethod.releaseConnection();
             }
-            wr.close();
 
-            Map<String, List<String>> headers = conn.getHeaderFields();
-            List<String> locations = headers.get("Location");
-            if (locations != null){
-                String locationZero = locations.get(0);
+            Header locationHeader = httpMethod.getResponseHeader("Location");
+            if (locationHeader != null){
+                String locationZero = locationHeader.getValue();
                 if (locationZero != null){
                     String[] segments = locationZero.split("/");
                     location = segments[segments.length - 1];
@@ -282,7 +285,7 @@ public class XmlReplayTransport {
         String deleteURL = "";
         String location = "";
         try {
-            HttpClient client = new HttpClient();
+            HttpClient client = ClientConnectionPool.getInstance().newHttpClient();
             PostMethod postMethod = new PostMethod(urlString);
             postMethod.setRequestHeader("Accept", "multipart/mixed");
             postMethod.addRequestHeader("Accept", "application/xml");
@@ -308,9 +311,10 @@ public class XmlReplayTransport {
                         deleteURL = Tools.glue(urlString, "/", location);
                     }
                 }
-                postMethod.releaseConnection();
             } catch (Throwable t){
                 result.error = t.toString();
+            } finally {
+                postMethod.releaseConnection();
             }
             result.result = res;
             result.location = location;
@@ -322,8 +326,8 @@ public class XmlReplayTransport {
         return result;
     }
 
-    private static void readStream(HttpURLConnection  conn, ServiceResult result) throws Throwable {
-        BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+    private static void readStream(HttpMethod method, ServiceResult result) throws Throwable {
+        BufferedReader rd = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
         try {
                 String line;
                 StringBuffer sb = new StringBuffer();
@@ -332,7 +336,8 @@ public class XmlReplayTransport {
                 }
                 String msg = sb.toString();
                 result.result = msg;
-                result.boundary = PayloadLogger.parseBoundary(conn.getHeaderField("CONTENT-TYPE"));
+                Header contentTypeHeader = method.getResponseHeader("CONTENT-TYPE");
+                result.boundary = PayloadLogger.parseBoundary(contentTypeHeader != null ? contentTypeHeader.getValue() : null);
         } finally {
             rd.close();
         }
@@ -0,0 +1,90 @@
+/**
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Copyright (c) 2009 Regents of the University of California
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.IntegrationTests.test;
+
+import org.collectionspace.services.IntegrationTests.xmlreplay.LatencyHistogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    private static long millis(double millis){
+        return (long)(millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testEmpty(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getPercentileMillis(99), 0.0);
+        Assert.assertEquals(histogram.getMeanMillis(), 0.0);
+    }
+
+    @Test
+    public void testPercentiles(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++){
+            histogram.record(millis(i));
+        }
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getMeanMillis(), 50.5, 0.001);
+        Assert.assertEquals(histogram.getMaxMillis(), 100.0, 0.001);
+        // Values are kept with two significant digits
+        Assert.assertEquals(histogram.getPercentileMillis(50), 51.0, 0.001);
+        Assert.assertEquals(histogram.getPercentileMillis(90), 91.0, 0.001);
+        Assert.assertEquals(histogram.getPercentileMillis(100), 100.0, 0.001);
+    }
+
+    @Test
+    public void testBucketsKeepTwoSignificantDigits(){
+        long[] micros = {0, 1, 99, 100, 999, 1000, 12345, 999999, 1234567, 987654321};
+        long previousUpperBound = 0;
+        for (long value : micros){
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value * 1000);
+            long[] counts = histogram.getBucketCounts();
+            int bucket = -1;
+            for (int i = 0; i < counts.length; i++){
+                if (counts[i] == 1){
+                    bucket = i;
+                }
+            }
+            long upperBound = LatencyHistogram.getBucketUpperBoundMicros(bucket);
+            Assert.assertTrue(value < upperBound, value+" should be below "+upperBound);
+            Assert.assertTrue(upperBound - value <= Math.max(1, value / 10), value+" is too far below "+upperBound);
+            Assert.assertTrue(upperBound >= previousUpperBound);
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void testValuesAboveTheRangeAreCounted(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.SECONDS.toNanos(5000));
+        long[] counts = histogram.getBucketCounts();
+        Assert.assertEquals(counts[counts.length - 1], 1);
+        Assert.assertEquals(histogram.getPercentileMillis(50), 5000000.0, 0.001);
+    }
+}
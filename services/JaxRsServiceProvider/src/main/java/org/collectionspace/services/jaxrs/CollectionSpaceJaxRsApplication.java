@@ -76,6 +76,7 @@ import org.collectionspace.services.common.ResourceMapImpl;
 import org.collectionspace.services.common.publicitem.PublicItemResource;
 import org.collectionspace.services.common.relation.RelationResource;
 import org.collectionspace.services.common.security.SecurityInterceptor;
+import org.collectionspace.services.nuxeo.client.java.CommonListWriter;
 
 /**
  * CollectionSpaceJaxRsApplication, the root application
@@ -98,6 +99,7 @@ public class CollectionSpaceJaxRsApplication extends Application
     	// Instantiate all our JaxRS resources
     	//
         singletons.add(new SecurityInterceptor());
+        singletons.add(new CommonListWriter());
         
         singletons.add(new AccountResource());
         singletons.add(new TenantResource());
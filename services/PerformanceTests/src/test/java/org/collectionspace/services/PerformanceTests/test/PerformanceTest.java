@@ -22,9 +22,12 @@
  */
 package org.collectionspace.services.PerformanceTests.test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -354,7 +357,7 @@ public class PerformanceTest extends CollectionSpacePerformanceTest {
      * @throws Exception 
      */
     private void deleteCollectionObjects() throws Exception {
-        CollectionObjectClient collectionObjectClient = new CollectionObjectClient();
+        final CollectionObjectClient collectionObjectClient = new CollectionObjectClient();
 
         List<AbstractCommonList.ListItem> coListItems = null;
         do {
@@ -368,9 +371,21 @@ public class PerformanceTest extends CollectionSpacePerformanceTest {
                 res.close();
             }
 
+            // Delete the page in parallel, over the client's pooled connections
             Date startTime = new Date();
+            List<Future<Void>> deletes = new ArrayList<Future<Void>>();
             for (AbstractCommonList.ListItem i : coListItems) {
-                deleteCollectionObject(collectionObjectClient, AbstractCommonListUtils.ListItemGetElementValue(i, "csid"));
+                final String resourceId = AbstractCommonListUtils.ListItemGetElementValue(i, "csid");
+                deletes.add(collectionObjectClient.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        deleteCollectionObject(collectionObjectClient, resourceId);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> delete : deletes) {
+                delete.get();
             }
             Date stopTime = new Date();
 
@@ -217,6 +217,7 @@ public class AccountStorageClient extends JpaStorageClientImpl {
                     new DocumentWrapperImpl<AccountsCommon>(accountFound);
             handler.handle(Action.UPDATE, wrapDoc);
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, AccountsCommon.class);
             handler.complete(Action.UPDATE, wrapDoc);
         } catch (BadRequestException bre) {
             if (em != null && em.getTransaction().isActive()) {
@@ -265,6 +266,7 @@ public class AccountStorageClient extends JpaStorageClientImpl {
             userStorageClient.delete(em, accountFound.getUserId());
             em.remove(accountFound);
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, AccountsCommon.class);
 
         } catch (DocumentException de) {
             if (em != null && em.getTransaction().isActive()) {
@@ -28,6 +28,8 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.ClientRequestContext;
@@ -43,7 +45,7 @@ import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.jaxb.AbstractCommonList;
 import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
-import org.jboss.resteasy.client.jaxrs.engines.URLConnectionEngine;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
 import org.jboss.resteasy.client.core.executors.ApacheHttpClient4Executor;
 import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
@@ -52,7 +54,7 @@ import org.slf4j.LoggerFactory;
 
 // FIXME: Deprecated classes that need to be updated
 import org.jboss.resteasy.client.ProxyFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.conn.ssl.SSLContexts;
 
 import java.security.SecureRandom;
@@ -451,7 +453,7 @@ public abstract class AbstractServiceClientImpl<CLT, REQUEST_PT, RESPONSE_PT, P
     @Override
     public void setupHttpClient() throws Exception {
     	try {
-	        this.httpClient = new HttpClient();
+	        this.httpClient = ClientConnectionPool.getInstance().newHttpClient();
 	        if (useAuth()) {
 	            String user = properties.getProperty(USER_PROPERTY);
 	            String password = properties.getProperty(PASSWORD_PROPERTY);
@@ -485,29 +487,25 @@ public abstract class AbstractServiceClientImpl<CLT, REQUEST_PT, RESPONSE_PT, P
      */
     public void setupHttpClient4() throws Exception {
     	try {
-	        this.httpClient4 = new DefaultHttpClient();
+	        org.apache.http.client.CredentialsProvider credentialsProvider = null;
 	        if (useAuth()) {
 	            String user = properties.getProperty(USER_PROPERTY);
 	            String password = properties.getProperty(PASSWORD_PROPERTY);
 	            if (logger.isDebugEnabled()) {
-	                logger.debug("setupHttpClient() using url=" + url + " user="
+	                logger.debug("setupHttpClient4() using url=" + url + " user="
 	                        + user + " password=" + password);
 	            }
 	
-	            httpClient.getState().setCredentials(
-	                    new AuthScope(url.getHost(), url.getPort(),
-	                    AuthScope.ANY_REALM),
-	                    new UsernamePasswordCredentials(user, password));
-	            // JAXRS client library requires HTTP preemptive authentication
-	            httpClient.getParams().setAuthenticationPreemptive(true);
-	            if (logger.isDebugEnabled()) {
-	                logger.debug("setupHttpClient: set preemptive authentication");
-	            }
+	            credentialsProvider = new BasicCredentialsProvider();
+	            credentialsProvider.setCredentials(
+	                    new org.apache.http.auth.AuthScope(url.getHost(), url.getPort()),
+	                    new org.apache.http.auth.UsernamePasswordCredentials(user, password));
 	        } else {
 	            if (logger.isDebugEnabled()) {
-	                logger.debug("setupHttpClient() : no auth mode!");
+	                logger.debug("setupHttpClient4() : no auth mode!");
 	            }
 	        }
+	        this.httpClient4 = ClientConnectionPool.getInstance().newHttpClient4(credentialsProvider);
     	} catch (Throwable e) {
     		throw new Exception("Could not setup an HTTP client as requested with ", e);
     	}
@@ -529,7 +527,20 @@ public abstract class AbstractServiceClientImpl<CLT, REQUEST_PT, RESPONSE_PT, P
     public P getProxy() {
     	return proxy;
     }
-    
+
+    /**
+     * Runs a request asynchronously, on the bounded executor shared by all the
+     * clients, so that parallel callers (e.g. migration tools) make their
+     * requests over the pooled connections without managing threads themselves.
+     * The proxy is thread safe, so the request can use this client.
+     *
+     * @param request the request, e.g. a call to one of this client's methods
+     * @return the future result of the request
+     */
+    public <T> Future<T> submit(Callable<T> request) {
+    	return ClientConnectionPool.getInstance().getAsyncExecutor().submit(request);
+    }
+
     /**
      * allow to reset proxy as per security needs
      */
@@ -547,7 +558,12 @@ public abstract class AbstractServiceClientImpl<CLT, REQUEST_PT, RESPONSE_PT, P
 //        	client = (ResteasyClient)ClientBuilder.newClient();
 //    	}
     	
-    	client = new ResteasyClientBuilder().httpEngine(new URLConnectionEngine()).build();
+    	// Share the pooled keep-alive connections (and the bounded executor of asynchronous requests) of all the clients
+    	ClientConnectionPool pool = ClientConnectionPool.getInstance();
+    	client = new ResteasyClientBuilder()
+    			.httpEngine(new ApacheHttpClient4Engine(pool.getHttpClient4()))
+    			.asyncExecutor(pool.getAsyncExecutor())
+    			.build();
     	
         if (useAuth()) {
             String user = properties.getProperty(USER_PROPERTY);
@@ -597,7 +613,7 @@ public abstract class AbstractServiceClientImpl<CLT, REQUEST_PT, RESPONSE_PT, P
         
         try {
 	        setupHttpClient();
-	        setupHttpClient(); // temp fix for CSPACE-6281
+	        setupHttpClient4(); // temp fix for CSPACE-6281
         } catch (Exception e) {
     		throw new RuntimeException(e.getMessage());
         }
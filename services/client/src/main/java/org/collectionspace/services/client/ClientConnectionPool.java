@@ -0,0 +1,319 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.client;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP connections shared by all the service clients of a JVM. Rather than
+ * opening a connection per request (or per client), the clients lease
+ * keep-alive connections from a pool, which is bounded per route (i.e. per
+ * server) and in total. Connections that have been idle for too long, or that
+ * the server will have closed, are evicted by a background thread.
+ *
+ * There are pools for the two HTTP client libraries the clients use: the one
+ * of HttpClient 4, behind the RESTEasy proxies and getHttpClient4(), and the
+ * one of commons-httpclient 3, behind getHttpClient(). The pools are
+ * configured with the following system properties, read when they are first used:
+ *
+ * cspace.client.pool.maxTotal - the maximum number of connections (default 200)
+ * cspace.client.pool.maxPerRoute - the maximum number of connections per server (default 50)
+ * cspace.client.pool.keepAlive - the number of seconds a connection is kept alive
+ *     when the server doesn't say (default 60)
+ * cspace.client.pool.idleTimeout - the number of seconds after which an idle
+ *     connection is closed (default 30)
+ * cspace.client.pool.leaseTimeout - the number of seconds to wait for a
+ *     connection when all of them are in use (default 60)
+ * cspace.client.pool.asyncThreads - the number of threads that run the
+ *     asynchronous requests of the clients (default maxPerRoute)
+ *
+ * A connection is only returned to the pool once the response is closed (or
+ * its entity read), so callers must close the responses they get.
+ */
+public class ClientConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ClientConnectionPool.class);
+
+    public static final String MAX_TOTAL_PROPERTY = "cspace.client.pool.maxTotal";
+    public static final String MAX_PER_ROUTE_PROPERTY = "cspace.client.pool.maxPerRoute";
+    public static final String KEEP_ALIVE_PROPERTY = "cspace.client.pool.keepAlive";
+    public static final String IDLE_TIMEOUT_PROPERTY = "cspace.client.pool.idleTimeout";
+    public static final String LEASE_TIMEOUT_PROPERTY = "cspace.client.pool.leaseTimeout";
+    public static final String ASYNC_THREADS_PROPERTY = "cspace.client.pool.asyncThreads";
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 50;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_LEASE_TIMEOUT_SECONDS = 60;
+
+    private static volatile ClientConnectionPool instance = null;
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final long keepAliveMillis;
+    private final long idleTimeoutMillis;
+    private final int leaseTimeoutMillis;
+    private final int asyncThreads;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final HttpClientConnectionManager sharedConnectionManager;
+    private final MultiThreadedHttpConnectionManager connectionManager3;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+    private final CloseableHttpClient httpClient4;
+    private final ExecutorService asyncExecutor;
+    private final Thread idleConnectionEvictor;
+
+    /**
+     * @return the connection pool shared by the clients of this JVM
+     */
+    public static ClientConnectionPool getInstance() {
+        if (instance == null) {
+            synchronized (ClientConnectionPool.class) {
+                if (instance == null) {
+                    instance = new ClientConnectionPool();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes all the pooled connections, and stops the threads of the pool. The
+     * next client to use the pool gets a new one.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    private ClientConnectionPool() {
+        maxTotal = Integer.getInteger(MAX_TOTAL_PROPERTY, DEFAULT_MAX_TOTAL);
+        maxPerRoute = Math.min(maxTotal, Integer.getInteger(MAX_PER_ROUTE_PROPERTY, DEFAULT_MAX_PER_ROUTE));
+        keepAliveMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS));
+        idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS));
+        leaseTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(Integer.getInteger(LEASE_TIMEOUT_PROPERTY, DEFAULT_LEASE_TIMEOUT_SECONDS));
+        asyncThreads = Math.max(1, Integer.getInteger(ASYNC_THREADS_PROPERTY, maxPerRoute));
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        sharedConnectionManager = new SharedConnectionManager(connectionManager);
+
+        connectionManager3 = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager3.getParams();
+        params.setMaxTotalConnections(maxTotal);
+        params.setDefaultMaxConnectionsPerHost(maxPerRoute);
+
+        keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                // Use the server's Keep-Alive timeout if it sent one, and ours otherwise
+                long result = super.getKeepAliveDuration(response, context);
+                return result > 0 ? result : keepAliveMillis;
+            }
+        };
+        httpClient4 = newHttpClient4(null);
+
+        asyncExecutor = Executors.newFixedThreadPool(asyncThreads, new DaemonThreadFactory("cspace-client-async"));
+
+        idleConnectionEvictor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections();
+            }
+        }, "cspace-client-connection-evictor");
+        idleConnectionEvictor.setDaemon(true);
+        idleConnectionEvictor.start();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Created the client connection pool: maxTotal=%d maxPerRoute=%d keepAlive=%dms idleTimeout=%dms asyncThreads=%d",
+                    maxTotal, maxPerRoute, keepAliveMillis, idleTimeoutMillis, asyncThreads));
+        }
+    }
+
+    /**
+     * @return the HttpClient 4 client of the pool, without credentials, e.g. for
+     * the RESTEasy client engine. It must not be closed.
+     */
+    public CloseableHttpClient getHttpClient4() {
+        return httpClient4;
+    }
+
+    /**
+     * Creates an HttpClient 4 client that leases its connections from the pool.
+     * Closing it doesn't close the pool.
+     *
+     * @param credentialsProvider the credentials of the client, or null
+     * @return the client
+     */
+    public CloseableHttpClient newHttpClient4(CredentialsProvider credentialsProvider) {
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(sharedConnectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectionRequestTimeout(leaseTimeoutMillis).build());
+        if (credentialsProvider != null) {
+            builder.setDefaultCredentialsProvider(credentialsProvider);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a commons-httpclient 3 client that leases its connections from the pool.
+     *
+     * @return the client
+     */
+    public HttpClient newHttpClient() {
+        HttpClient result = new HttpClient(connectionManager3);
+        result.getParams().setConnectionManagerTimeout(leaseTimeoutMillis);
+        return result;
+    }
+
+    /**
+     * @return the bounded executor that runs the asynchronous requests of the
+     * clients. Its threads are daemon threads, so they don't keep the JVM running.
+     */
+    public ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /*
+     * Closes the expired connections, and those idle for longer than the idle timeout, until the pool is closed.
+     */
+    private void evictIdleConnections() {
+        long interval = Math.max(1000, idleTimeoutMillis / 2);
+        try {
+            while (Thread.currentThread().isInterrupted() == false) {
+                Thread.sleep(interval);
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                connectionManager3.closeIdleConnections(idleTimeoutMillis);
+                connectionManager3.deleteClosedConnections();
+            }
+        } catch (InterruptedException e) {
+            // The pool was closed
+        }
+    }
+
+    private void close() {
+        idleConnectionEvictor.interrupt();
+        asyncExecutor.shutdown();
+        connectionManager.shutdown();
+        connectionManager3.shutdown();
+    }
+
+    /*
+     * The pool's connection manager, as seen by its clients: closing a client shuts
+     * down its connection manager, which must not close the connections of the others.
+     */
+    private static class SharedConnectionManager implements HttpClientConnectionManager {
+        private final HttpClientConnectionManager delegate;
+
+        SharedConnectionManager(HttpClientConnectionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            return delegate.requestConnection(route, state);
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+            delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+        }
+
+        @Override
+        public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+                throws IOException {
+            delegate.connect(conn, route, connectTimeout, context);
+        }
+
+        @Override
+        public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            delegate.upgrade(conn, route, context);
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            delegate.routeComplete(conn, route, context);
+        }
+
+        @Override
+        public void closeIdleConnections(long idleTime, TimeUnit timeUnit) {
+            delegate.closeIdleConnections(idleTime, timeUnit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            delegate.closeExpiredConnections();
+        }
+
+        @Override
+        public void shutdown() {
+            // The pool is shut down by ClientConnectionPool.shutdown()
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
@@ -79,6 +79,9 @@ public interface CollectionSpaceClient<CLT, REQUEST_TYPE, RESPONSE_TYPE, P exten
     
     // JAX-RS path for getting service description meta information
 	public static final String SERVICE_DESCRIPTION_PATH = "description";
+    
+    // JAX-RS path for creating, updating and deleting several records in one request
+	public static final String BULK_PATH = "bulk";
 
     /**
      * Gets the proxy.
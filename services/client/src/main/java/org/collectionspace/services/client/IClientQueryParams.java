@@ -32,5 +32,10 @@ public interface IClientQueryParams {
     public static final String START_PAGE_PARAM = "pgNum";
     public static final String ORDER_BY_PARAM = "sortBy";
     public static final String IMPORT_TIMEOUT_PARAM = "impTimout";
+    public static final String BULK_CHUNK_SIZE_PARAM = "chunkSize";
+    /** The comma-separated names of the parts to return when reading a record -e.g., parts=collectionobjects_common */
+    public static final String PARTS_PARAM = "parts";
+    /** The comma-separated names of the list result fields to return in a list -e.g., fields=objectNumber,title */
+    public static final String FIELDS_PARAM = "fields";
     
 }
@@ -0,0 +1,203 @@
+package org.collectionspace.services.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.sun.xml.bind.api.impl.NameConverter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process-wide registry of JAXBContexts, keyed by context path (the Java package
+ * generated for a schema). Creating a JAXBContext is expensive, so each one is created
+ * once and shared; JAXBContexts are thread-safe.
+ *
+ * Marshallers and Unmarshallers are not thread-safe, but are cheap to reuse, so each
+ * context keeps a pool of them. A caller takes one with getMarshaller() or
+ * getUnmarshaller() and gives it back with releaseMarshaller() or releaseUnmarshaller()
+ * when it is done. A pool never holds more than the number of threads that used the
+ * context at once. Unlike thread locals, the pools don't tie the classes of a webapp to
+ * the server's threads, so they don't keep the webapp from being unloaded.
+ *
+ * Packages that are not JAXB packages (e.g., parts that have no generated classes) are
+ * remembered for a while too, so that the failed lookup is not repeated for every payload.
+ */
+public class JaxbContextRegistry {
+
+	protected static final Logger logger = LoggerFactory.getLogger(JaxbContextRegistry.class);
+
+	/** How long a package is remembered to have no context before the lookup is tried again */
+	static final long NO_CONTEXT_RETRY_MILLIS = 60 * 1000;
+
+	private static final JaxbContextRegistry instance = new JaxbContextRegistry();
+
+	/** context path -> Pool, or NoContext */
+	private final ConcurrentHashMap<String, Object> contexts = new ConcurrentHashMap<String, Object>();
+
+	/** A context, and its idle Marshallers and Unmarshallers. */
+	private static class Pool {
+		final JAXBContext context;
+		final ConcurrentLinkedQueue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+		final ConcurrentLinkedQueue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+
+		Pool(JAXBContext context) {
+			this.context = context;
+		}
+	}
+
+	/** Stands in for the context of a package that had none when it was last looked up. */
+	private static class NoContext {
+		final long retryAt = System.currentTimeMillis() + NO_CONTEXT_RETRY_MILLIS;
+	}
+
+	public static JaxbContextRegistry get() {
+		return instance;
+	}
+
+	protected JaxbContextRegistry() {
+		//empty
+	}
+
+	/**
+	 * Gets the Java package name that xjc generates for a namespace.
+	 *
+	 * @param namespaceURI the namespace URI
+	 * @return the Java package name
+	 */
+	public static String getContextPath(String namespaceURI) {
+		return NameConverter.standard.toPackageName(namespaceURI);
+	}
+
+	/**
+	 * Creates the JAXBContext for the package generated for a namespace, if it hasn't been
+	 * created already. This is meant to be called at startup, so that the cost of creating
+	 * contexts is not paid by the first requests.
+	 *
+	 * @param namespaceURI the namespace URI
+	 * @return true if a JAXBContext exists for the namespace
+	 */
+	public boolean register(String namespaceURI) {
+		return getContext(getContextPath(namespaceURI)) != null;
+	}
+
+	/**
+	 * Gets the shared JAXBContext for a context path.
+	 *
+	 * @param contextPath the context path (a Java package name)
+	 * @return the JAXBContext, or null if the package has no JAXB classes
+	 */
+	public JAXBContext getContext(String contextPath) {
+		Pool pool = getPool(contextPath);
+		return pool != null ? pool.context : null;
+	}
+
+	private Pool getPool(String contextPath) {
+		Object result = contexts.get(contextPath);
+		if (result instanceof Pool) {
+			return (Pool) result;
+		}
+		if (result != null && ((NoContext) result).retryAt > System.currentTimeMillis()) {
+			return null;
+		}
+
+		Object created;
+		try {
+			created = new Pool(JAXBContext.newInstance(contextPath));
+		} catch (JAXBException e) {
+			if (logger.isTraceEnabled() == true) {
+				logger.trace(String.format("No JAXB context for package '%s': %s", contextPath, e.getMessage()));
+			}
+			created = new NoContext();
+		}
+		Object existing = result == null ? contexts.putIfAbsent(contextPath, created)
+				: (contexts.replace(contextPath, result, created) ? null : contexts.get(contextPath));
+		if (existing instanceof Pool) {
+			// Another thread created the context at the same time
+			return (Pool) existing;
+		} else if (existing != null && created instanceof Pool) {
+			contexts.put(contextPath, created);
+		}
+		return created instanceof Pool ? (Pool) created : null;
+	}
+
+	/**
+	 * Takes an Unmarshaller for a context path from its pool, or creates one. The
+	 * Unmarshaller must only be used by the calling thread, and should be given back with
+	 * releaseUnmarshaller() when the caller is done with it.
+	 *
+	 * @param contextPath the context path
+	 * @return the Unmarshaller, or null if the package has no JAXB classes
+	 * @throws JAXBException
+	 */
+	public Unmarshaller getUnmarshaller(String contextPath) throws JAXBException {
+		Pool pool = getPool(contextPath);
+		if (pool == null) {
+			return null;
+		}
+		Unmarshaller result = pool.unmarshallers.poll();
+		if (result == null) {
+			result = pool.context.createUnmarshaller();
+		}
+		return result;
+	}
+
+	/**
+	 * Gives back an Unmarshaller that was taken with getUnmarshaller(), so that it can be
+	 * reused. The caller must not use it afterwards.
+	 *
+	 * @param contextPath the context path that the Unmarshaller was taken for
+	 * @param unmarshaller the Unmarshaller, or null
+	 */
+	public void releaseUnmarshaller(String contextPath, Unmarshaller unmarshaller) {
+		if (unmarshaller != null) {
+			Object pool = contexts.get(contextPath);
+			if (pool instanceof Pool) {
+				((Pool) pool).unmarshallers.offer(unmarshaller);
+			}
+		}
+	}
+
+	/**
+	 * Takes a Marshaller for a context path from its pool, or creates one. The Marshaller
+	 * does not format its output. It must only be used by the calling thread, and should be
+	 * given back with releaseMarshaller() when the caller is done with it.
+	 *
+	 * @param contextPath the context path
+	 * @return the Marshaller, or null if the package has no JAXB classes
+	 * @throws JAXBException
+	 */
+	public Marshaller getMarshaller(String contextPath) throws JAXBException {
+		Pool pool = getPool(contextPath);
+		if (pool == null) {
+			return null;
+		}
+		Marshaller result = pool.marshallers.poll();
+		if (result == null) {
+			result = pool.context.createMarshaller();
+			result.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+		}
+		return result;
+	}
+
+	/**
+	 * Gives back a Marshaller that was taken with getMarshaller(), so that it can be
+	 * reused. The caller must not use it afterwards.
+	 *
+	 * @param contextPath the context path that the Marshaller was taken for
+	 * @param marshaller the Marshaller, or null
+	 */
+	public void releaseMarshaller(String contextPath, Marshaller marshaller) {
+		if (marshaller != null) {
+			Object pool = contexts.get(contextPath);
+			if (pool instanceof Pool) {
+				((Pool) pool).marshallers.offer(marshaller);
+			}
+		}
+	}
+}
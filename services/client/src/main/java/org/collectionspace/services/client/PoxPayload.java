@@ -1,6 +1,5 @@
 package org.collectionspace.services.client;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
@@ -8,13 +7,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.transform.stream.StreamSource;
-
-import com.sun.xml.bind.api.impl.NameConverter;
+import javax.xml.bind.UnmarshallerHandler;
 
 import org.apache.commons.io.FileUtils;
 import org.dom4j.Document;
@@ -22,7 +18,9 @@ import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.Namespace;
+import org.dom4j.io.DocumentResult;
 import org.dom4j.io.SAXReader;
+import org.dom4j.io.SAXWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -122,8 +120,13 @@ public abstract class PoxPayload<PT extends PayloadPart> {
 	 */
 	protected PoxPayload(String xmlPayload) throws DocumentException {
 		this.xmlPayload = xmlPayload;
-		SAXReader reader = new SAXReader();
-		Document dom  = reader.read(new StringReader(xmlPayload));
+		SAXReader reader = XmlFactories.getPayloadReader();
+		Document dom;
+		try {
+			dom = reader.read(new StringReader(xmlPayload));
+		} finally {
+			XmlFactories.releasePayloadReader(reader);
+		}
 		setDomDocument(dom);
 	}
 	
@@ -136,8 +139,13 @@ public abstract class PoxPayload<PT extends PayloadPart> {
      */
     protected PoxPayload(File file) throws DocumentException, IOException {
     	this.xmlPayload = FileUtils.readFileToString(file);
-        SAXReader reader = new SAXReader();
-        Document dom = reader.read(file);
+        SAXReader reader = XmlFactories.getReader();
+        Document dom;
+        try {
+        	dom = reader.read(file);
+        } finally {
+        	XmlFactories.releaseReader(reader);
+        }
 		setDomDocument(dom);
     }	
 	
@@ -289,9 +297,7 @@ public abstract class PoxPayload<PT extends PayloadPart> {
      * @return the Java package name
      */
     private static String getPackage(Namespace namespace) {
-        NameConverter nc = NameConverter.standard;
-		String namespaceURI = namespace.getURI();
-        return nc.toPackageName(namespaceURI);
+        return JaxbContextRegistry.getContextPath(namespace.getURI());
     }
       
     /**
@@ -302,17 +308,28 @@ public abstract class PoxPayload<PT extends PayloadPart> {
      */
     public static Object toObject(Element elementInput) {
     	Object result = null;
+    	String thePackage = null;
+    	Unmarshaller um = null;
     	try {
     		Namespace namespace = elementInput.getNamespace();    		
-    		String thePackage = getPackage(namespace);
-	    	JAXBContext jc = JAXBContext.newInstance(thePackage);
-	    	Unmarshaller um = jc.createUnmarshaller();
-	    	result = um.unmarshal(
-	    			new StreamSource(new StringReader(elementInput.asXML())));	    			
+    		thePackage = getPackage(namespace);
+	    	um = JaxbContextRegistry.get().getUnmarshaller(thePackage);
+	    	if (um != null) {
+	    		//
+	    		// Feed the element to the unmarshaller as SAX events, rather than serializing it and parsing it again.
+	    		//
+	    		UnmarshallerHandler handler = um.getUnmarshallerHandler();
+	    		handler.startDocument();
+	    		new SAXWriter(handler).write(elementInput);
+	    		handler.endDocument();
+	    		result = handler.getResult();
+	    	}
     	} catch (Exception e) {
     		if (logger.isTraceEnabled() == true) {
     			logger.trace(e.getMessage());
     		}
+    	} finally {
+    		JaxbContextRegistry.get().releaseUnmarshaller(thePackage, um);
     	}
     	
     	return result;
@@ -326,26 +343,25 @@ public abstract class PoxPayload<PT extends PayloadPart> {
      */
     public static Element toElement(Object jaxbObject) {
     	Element result = null;
-    	String text = null;
-    	ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    	String thePackage = null;
+    	Marshaller m = null;
     	try {
-    		String thePackage = jaxbObject.getClass().getPackage().getName();
+    		thePackage = jaxbObject.getClass().getPackage().getName();
     		if (thePackage.equals(JAXBElement.class.getPackage().getName())) {
     			JAXBElement jaxbElement = (JAXBElement)jaxbObject;
     			thePackage = jaxbElement.getValue().getClass().getPackage().getName();
     		}
-	    	JAXBContext jc = JAXBContext.newInstance(thePackage);
-	    	//Create marshaller
-	    	Marshaller m = jc.createMarshaller();
-	    	m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
-	    	//Marshal object into file.
-	    	m.marshal(jaxbObject, outputStream);
-	    	text = outputStream.toString("UTF8");
+	    	m = JaxbContextRegistry.get().getMarshaller(thePackage);
+	    	//Marshal object straight into a DOM4j document.
+	    	DocumentResult documentResult = new DocumentResult();
+	    	m.marshal(jaxbObject, documentResult);
 
-    		Document doc = DocumentHelper.parseText(text);
+    		Document doc = documentResult.getDocument();
     		result = doc.getRootElement(); //FIXME: REM - call .detach() to free the element
     	} catch (Exception e) {
     		e.printStackTrace(); //FIXME: REM - Please use proper logger.isWarning() statement
+    	} finally {
+    		JaxbContextRegistry.get().releaseMarshaller(thePackage, m);
     	}
     	
     	return result;
@@ -359,8 +375,13 @@ public abstract class PoxPayload<PT extends PayloadPart> {
      */
     public static Element toElement(String xmlPayload) throws DocumentException {
     	Element result = null;
-		Document doc = DocumentHelper.parseText(xmlPayload);
-		result = doc.getRootElement(); //FIXME: REM - .detach();
+		SAXReader reader = XmlFactories.getPayloadReader();
+		try {
+			Document doc = reader.read(new StringReader(xmlPayload));
+			result = doc.getRootElement(); //FIXME: REM - .detach();
+		} finally {
+			XmlFactories.releasePayloadReader(reader);
+		}
     	return result;
     }	
     
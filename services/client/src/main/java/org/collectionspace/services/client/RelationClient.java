@@ -43,6 +43,8 @@ public class RelationClient extends AbstractPoxServiceClientImpl<RelationsCommon
 	public static final String SERVICE_PAYLOAD_NAME = SERVICE_NAME;
 	public static final String SERVICE_COMMON_LIST_NAME = "relations-common-list";
     public static final String SERVICE_COMMONPART_NAME = IRelationsManager.SERVICE_COMMONPART_NAME;
+    // JAX-RS path for the status of the soft deletion of the relations of a soft deleted record
+    public static final String CLEANUP_PATH = "cleanup";
     
 	public RelationClient() throws Exception {
 		super();
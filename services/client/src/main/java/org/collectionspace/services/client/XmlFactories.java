@@ -0,0 +1,426 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.client;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Shared XML parsing and serialization infrastructure for PoxPayload, DocumentUtils,
+ * CommonList, and the rest of the services layer.
+ *
+ * JAXP factories are expensive to look up, so each kind is created once. Factories
+ * that parse payloads are secure by default: they don't resolve external entities or
+ * DTDs, and they refuse documents with a DOCTYPE. Validating factories are cached per
+ * XML Schema file.
+ *
+ * DocumentBuilders, Transformers and dom4j SAXReaders are not thread-safe, but are
+ * cheap to reuse, so each kind is kept in a pool. A caller takes one with a get method,
+ * and gives it back with the matching release method when it is done; a DocumentBuilder
+ * is reset before it is handed out again. A pool never holds more than the number of
+ * threads that used it at once. Unlike thread locals, the pools don't tie the webapp's
+ * classes to the server's threads, so they don't keep the webapp from being unloaded.
+ */
+public class XmlFactories {
+	private static final Logger logger = LoggerFactory.getLogger(XmlFactories.class);
+
+	private static final String JAXP_SCHEMA_SOURCE = "http://java.sun.com/xml/jaxp/properties/schemaSource";
+	private static final String JAXP_SCHEMA_LANGUAGE = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
+	private static final String W3C_XML_SCHEMA = "http://www.w3.org/2001/XMLSchema";
+
+	private static final String DISALLOW_DOCTYPE_DECL = "http://apache.org/xml/features/disallow-doctype-decl";
+	private static final String EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+	private static final String EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+
+	/** Factory for building new documents, and for reading local files. */
+	private static final DocumentBuilderFactory documentFactory = createDocumentFactory();
+
+	/** Factory for parsing incoming payloads without validation. */
+	private static final DocumentBuilderFactory payloadFactory = createPayloadFactory(null);
+
+	/** Factories for parsing incoming payloads with validation, keyed by schema file path. */
+	private static final ConcurrentHashMap<String, DocumentBuilderFactory> validatingPayloadFactories =
+			new ConcurrentHashMap<String, DocumentBuilderFactory>();
+
+	private static final TransformerFactory transformerFactory = createTransformerFactory();
+
+	/** SAX factories backing the dom4j readers, for local files and for incoming payloads. */
+	private static final SAXParserFactory saxFactory = createSAXFactory(false);
+	private static final SAXParserFactory payloadSAXFactory = createSAXFactory(true);
+
+	/** Idle DocumentBuilders, by the factory that created them */
+	private static final ConcurrentHashMap<DocumentBuilderFactory, ConcurrentLinkedQueue<DocumentBuilder>> documentBuilders =
+			new ConcurrentHashMap<DocumentBuilderFactory, ConcurrentLinkedQueue<DocumentBuilder>>();
+
+	private static final ConcurrentLinkedQueue<Transformer> transformers = new ConcurrentLinkedQueue<Transformer>();
+	private static final ConcurrentLinkedQueue<Transformer> indentingTransformers = new ConcurrentLinkedQueue<Transformer>();
+
+	private static final ConcurrentLinkedQueue<SAXReader> readers = new ConcurrentLinkedQueue<SAXReader>();
+	private static final ConcurrentLinkedQueue<SAXReader> payloadReaders = new ConcurrentLinkedQueue<SAXReader>();
+
+	/** Resolves every external entity to nothing, so the dom4j readers never go to the network or disk. */
+	private static final EntityResolver noExternalEntities = new EntityResolver() {
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new StringReader(""));
+		}
+	};
+
+	private XmlFactories() {
+		//empty
+	}
+
+	/**
+	 * Creates a new, empty DOM document.
+	 *
+	 * @return the document
+	 * @throws ParserConfigurationException
+	 */
+	public static Document newDocument() throws ParserConfigurationException {
+		DocumentBuilder builder = getDocumentBuilder();
+		try {
+			return builder.newDocument();
+		} finally {
+			releaseDocumentBuilder(builder);
+		}
+	}
+
+	/**
+	 * Takes a DocumentBuilder for building new documents, and for reading local (trusted)
+	 * files. Give it back with releaseDocumentBuilder().
+	 *
+	 * @return the document builder
+	 * @throws ParserConfigurationException
+	 */
+	public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		return getDocumentBuilder(documentFactory);
+	}
+
+	/**
+	 * Gives back a DocumentBuilder that was taken with getDocumentBuilder().
+	 *
+	 * @param builder the document builder, or null
+	 */
+	public static void releaseDocumentBuilder(DocumentBuilder builder) {
+		releaseDocumentBuilder(documentFactory, builder);
+	}
+
+	/**
+	 * Takes a DocumentBuilder for parsing incoming payloads. Comments and ignorable
+	 * whitespace are dropped, and CDATA is merged into text. Give it back with
+	 * releasePayloadDocumentBuilder().
+	 *
+	 * @param schemaFile
+	 *            an XML Schema to validate payloads with, or null for no validation
+	 * @return the document builder
+	 * @throws ParserConfigurationException
+	 */
+	public static DocumentBuilder getPayloadDocumentBuilder(File schemaFile) throws ParserConfigurationException {
+		return getDocumentBuilder(getPayloadFactory(schemaFile));
+	}
+
+	/**
+	 * Gives back a DocumentBuilder that was taken with getPayloadDocumentBuilder().
+	 *
+	 * @param schemaFile the XML Schema that the builder was taken for, or null
+	 * @param builder the document builder, or null
+	 */
+	public static void releasePayloadDocumentBuilder(File schemaFile, DocumentBuilder builder) {
+		if (builder != null) {
+			releaseDocumentBuilder(getPayloadFactory(schemaFile), builder);
+		}
+	}
+
+	private static DocumentBuilderFactory getPayloadFactory(File schemaFile) {
+		DocumentBuilderFactory factory = payloadFactory;
+		if (schemaFile != null) {
+			String key = schemaFile.getAbsolutePath();
+			factory = validatingPayloadFactories.get(key);
+			if (factory == null) {
+				factory = createPayloadFactory(schemaFile);
+				DocumentBuilderFactory existing = validatingPayloadFactories.putIfAbsent(key, factory);
+				if (existing != null) {
+					factory = existing;
+				}
+			}
+		}
+		return factory;
+	}
+
+	/**
+	 * Takes an identity Transformer, which doesn't indent its output. Give it back with
+	 * releaseTransformer().
+	 *
+	 * @return the transformer
+	 * @throws TransformerConfigurationException
+	 */
+	public static Transformer getTransformer() throws TransformerConfigurationException {
+		return getTransformer(transformers, false);
+	}
+
+	/**
+	 * Gives back a Transformer that was taken with getTransformer().
+	 *
+	 * @param transformer the transformer, or null
+	 */
+	public static void releaseTransformer(Transformer transformer) {
+		release(transformers, transformer);
+	}
+
+	/**
+	 * Takes an identity Transformer that indents its output. Give it back with
+	 * releaseIndentingTransformer().
+	 *
+	 * @return the transformer
+	 * @throws TransformerConfigurationException
+	 */
+	public static Transformer getIndentingTransformer() throws TransformerConfigurationException {
+		return getTransformer(indentingTransformers, true);
+	}
+
+	/**
+	 * Gives back a Transformer that was taken with getIndentingTransformer().
+	 *
+	 * @param transformer the transformer, or null
+	 */
+	public static void releaseIndentingTransformer(Transformer transformer) {
+		release(indentingTransformers, transformer);
+	}
+
+	/**
+	 * Takes a dom4j SAXReader for reading local (trusted) files. Give it back with
+	 * releaseReader().
+	 *
+	 * @return the reader
+	 * @throws DocumentException
+	 */
+	public static SAXReader getReader() throws DocumentException {
+		return getReader(readers, saxFactory);
+	}
+
+	/**
+	 * Gives back a SAXReader that was taken with getReader().
+	 *
+	 * @param reader the reader, or null
+	 */
+	public static void releaseReader(SAXReader reader) {
+		release(readers, reader);
+	}
+
+	/**
+	 * Takes a dom4j SAXReader for parsing incoming payloads. Give it back with
+	 * releasePayloadReader().
+	 *
+	 * @return the reader
+	 * @throws DocumentException
+	 */
+	public static SAXReader getPayloadReader() throws DocumentException {
+		return getReader(payloadReaders, payloadSAXFactory);
+	}
+
+	/**
+	 * Gives back a SAXReader that was taken with getPayloadReader().
+	 *
+	 * @param reader the reader, or null
+	 */
+	public static void releasePayloadReader(SAXReader reader) {
+		release(payloadReaders, reader);
+	}
+
+	private static <T> void release(ConcurrentLinkedQueue<T> pool, T item) {
+		if (item != null) {
+			pool.offer(item);
+		}
+	}
+
+	private static SAXReader getReader(ConcurrentLinkedQueue<SAXReader> pool, SAXParserFactory factory)
+			throws DocumentException {
+		SAXReader result = pool.poll();
+		if (result == null) {
+			result = new SAXReader();
+			try {
+				synchronized (factory) {
+					result.setXMLReader(factory.newSAXParser().getXMLReader());
+				}
+			} catch (ParserConfigurationException e) {
+				throw new DocumentException("Could not create an XML reader: " + e.getMessage(), e);
+			} catch (SAXException e) {
+				throw new DocumentException("Could not create an XML reader: " + e.getMessage(), e);
+			}
+			result.setEntityResolver(noExternalEntities);
+		}
+		return result;
+	}
+
+	private static DocumentBuilder getDocumentBuilder(DocumentBuilderFactory factory) throws ParserConfigurationException {
+		ConcurrentLinkedQueue<DocumentBuilder> pool = documentBuilders.get(factory);
+		DocumentBuilder result = pool != null ? pool.poll() : null;
+		if (result == null) {
+			// Factories aren't guaranteed to be thread-safe
+			synchronized (factory) {
+				result = factory.newDocumentBuilder();
+			}
+		} else {
+			result.reset();
+		}
+		return result;
+	}
+
+	private static void releaseDocumentBuilder(DocumentBuilderFactory factory, DocumentBuilder builder) {
+		if (builder == null) {
+			return;
+		}
+		ConcurrentLinkedQueue<DocumentBuilder> pool = documentBuilders.get(factory);
+		if (pool == null) {
+			pool = new ConcurrentLinkedQueue<DocumentBuilder>();
+			ConcurrentLinkedQueue<DocumentBuilder> existing = documentBuilders.putIfAbsent(factory, pool);
+			if (existing != null) {
+				pool = existing;
+			}
+		}
+		pool.offer(builder);
+	}
+
+	private static Transformer getTransformer(ConcurrentLinkedQueue<Transformer> pool, boolean indent)
+			throws TransformerConfigurationException {
+		Transformer result = pool.poll();
+		if (result == null) {
+			synchronized (transformerFactory) {
+				result = transformerFactory.newTransformer();
+			}
+			if (indent == true) {
+				result.setOutputProperty(OutputKeys.INDENT, "yes");
+			}
+		}
+		// Identity transformers take no parameters, so there is nothing to clear
+		// between uses (and the JDK's fails if asked to).
+		return result;
+	}
+
+	private static DocumentBuilderFactory createDocumentFactory() {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		setFeature(factory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		setFeature(factory, EXTERNAL_GENERAL_ENTITIES, false);
+		setFeature(factory, EXTERNAL_PARAMETER_ENTITIES, false);
+		setFeature(factory, LOAD_EXTERNAL_DTD, false);
+		factory.setXIncludeAware(false);
+		return factory;
+	}
+
+	private static DocumentBuilderFactory createPayloadFactory(File schemaFile) {
+		DocumentBuilderFactory factory = createDocumentFactory();
+		setFeature(factory, DISALLOW_DOCTYPE_DECL, true);
+		//
+		// Lexical Control Settings that focus on content
+		//
+		factory.setCoalescing(true);
+		factory.setExpandEntityReferences(true);
+		factory.setIgnoringComments(true);
+		factory.setIgnoringElementContentWhitespace(true);
+		//
+		// Enable XML validation if we have an XML Schema for the payload
+		//
+		if (schemaFile != null) {
+			factory.setValidating(true);
+			factory.setNamespaceAware(true);
+			try {
+				factory.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
+				factory.setAttribute(JAXP_SCHEMA_SOURCE, schemaFile);
+			} catch (IllegalArgumentException e) {
+				String msg = "Error: JAXP DocumentBuilderFactory attribute not recognized: "
+						+ JAXP_SCHEMA_LANGUAGE
+						+ ". Check to see if parser conforms to JAXP 1.2 spec.";
+				if (logger.isWarnEnabled() == true) {
+					logger.warn(msg);
+				}
+				throw e;
+			}
+		}
+		return factory;
+	}
+
+	private static SAXParserFactory createSAXFactory(boolean payload) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setXIncludeAware(false);
+		setFeature(factory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		setFeature(factory, EXTERNAL_GENERAL_ENTITIES, false);
+		setFeature(factory, EXTERNAL_PARAMETER_ENTITIES, false);
+		setFeature(factory, LOAD_EXTERNAL_DTD, false);
+		if (payload == true) {
+			setFeature(factory, DISALLOW_DOCTYPE_DECL, true);
+		}
+		return factory;
+	}
+
+	private static TransformerFactory createTransformerFactory() {
+		TransformerFactory factory = TransformerFactory.newInstance();
+		try {
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		} catch (TransformerConfigurationException e) {
+			logger.warn("XML transformer factory does not support secure processing: " + e.getMessage());
+		}
+		return factory;
+	}
+
+	private static void setFeature(DocumentBuilderFactory factory, String feature, boolean value) {
+		try {
+			factory.setFeature(feature, value);
+		} catch (ParserConfigurationException e) {
+			logger.warn(String.format("XML parser factory does not support the feature '%s': %s", feature, e.getMessage()));
+		}
+	}
+
+	private static void setFeature(SAXParserFactory factory, String feature, boolean value) {
+		try {
+			factory.setFeature(feature, value);
+		} catch (ParserConfigurationException e) {
+			logger.warn(String.format("SAX parser factory does not support the feature '%s': %s", feature, e.getMessage()));
+		} catch (SAXException e) {
+			logger.warn(String.format("SAX parser factory does not support the feature '%s': %s", feature, e.getMessage()));
+		}
+	}
+}
@@ -0,0 +1,365 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.collectionspace.services.client.XmlFactories;
+import org.collectionspace.services.common.document.BadRequestException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * Reads the requests, and writes the results, of a bulk create/update/delete
+ * call to a service. A request lists the operations in the order they are to
+ * be applied, each with the POX payload it would have on its own:
+ *
+ * <pre>
+ * &lt;bulk&gt;
+ *     &lt;create&gt;&lt;document name="collectionobjects"&gt;...&lt;/document&gt;&lt;/create&gt;
+ *     &lt;update csid="..."&gt;&lt;document name="collectionobjects"&gt;...&lt;/document&gt;&lt;/update&gt;
+ *     &lt;delete csid="..."/&gt;
+ * &lt;/bulk&gt;
+ * </pre>
+ *
+ * A delete may, instead of a CSID, have a payload from which the service can identify the
+ * record to delete (e.g., the subject, predicate and object of a relation).
+ *
+ * The results list the outcome of each operation, in the same order:
+ *
+ * <pre>
+ * &lt;bulk-results&gt;
+ *     &lt;result index="0" action="create" status="201" csid="..."/&gt;
+ *     &lt;result index="1" action="update" status="400" csid="..."&gt;&lt;error&gt;...&lt;/error&gt;&lt;/result&gt;
+ *     &lt;result index="2" action="delete" status="200" csid="..."/&gt;
+ * &lt;/bulk-results&gt;
+ * </pre>
+ *
+ * The request is read into a DOM, and each payload is copied out of it as a String, so a request
+ * takes a few times its own size in memory. Requests are therefore limited in size and in their
+ * number of operations (see {@link #configure(int, int)}); larger ones are rejected with a 413.
+ */
+public class BulkPayload {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private static final String RESULTS_ELEMENT = "bulk-results";
+    private static final String RESULT_ELEMENT = "result";
+    private static final String ERROR_ELEMENT = "error";
+    private static final String CSID_ATTRIBUTE = "csid";
+
+    /** The default size, in MB, of the largest bulk request */
+    public static final int DEFAULT_MAX_PAYLOAD_MB = 16;
+    /** The default number of operations in the largest bulk request */
+    public static final int DEFAULT_MAX_OPERATIONS = 1000;
+
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private static volatile long maxPayloadBytes = DEFAULT_MAX_PAYLOAD_MB * 1024L * 1024L;
+    private static volatile int maxOperations = DEFAULT_MAX_OPERATIONS;
+
+    /**
+     * One operation of a bulk request.
+     */
+    public static class Operation {
+        private final String action;
+        private final String csid;
+        private final String payload;
+
+        public Operation(String action, String csid, String payload) {
+            this.action = action;
+            this.csid = csid;
+            this.payload = payload;
+        }
+
+        /** @return CREATE, UPDATE or DELETE */
+        public String getAction() {
+            return action;
+        }
+
+        /** @return the CSID of the record to update or delete, or null for a create */
+        public String getCsid() {
+            return csid;
+        }
+
+        /**
+         * @return the POX payload of a create or update, or of a delete that identifies its
+         * record by something other than a CSID; otherwise null
+         */
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * The outcome of one operation of a bulk request.
+     */
+    public static class Result {
+        private final String action;
+        private String csid;
+        private int status;
+        private String error;
+
+        public Result(String action, String csid) {
+            this.action = action;
+            this.csid = csid;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public String getCsid() {
+            return csid;
+        }
+
+        public void setCsid(String csid) {
+            this.csid = csid;
+        }
+
+        /** @return the HTTP status the operation would have had on its own */
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        /** @return the error message, or null if the operation succeeded */
+        public String getError() {
+            return error;
+        }
+
+        public void setError(int status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private BulkPayload() {
+        //empty
+    }
+
+    /**
+     * Sets the limits of the bulk requests that are read.
+     *
+     * @param maxPayloadMB the size, in MB, of the largest request
+     * @param maxOperations the number of operations in the largest request
+     */
+    public static void configure(int maxPayloadMB, int maxOperations) {
+        BulkPayload.maxPayloadBytes = Math.max(maxPayloadMB, 1) * 1024L * 1024L;
+        BulkPayload.maxOperations = Math.max(maxOperations, 1);
+    }
+
+    /**
+     * Reads the operations of a bulk request from a stream. No more of the stream is read than
+     * the largest request allowed.
+     *
+     * @param in the bulk request
+     * @return the operations, in order
+     * @throws BadRequestException if the request is malformed, or (with a 413 error code) too large
+     */
+    public static List<Operation> parse(InputStream in) throws BadRequestException {
+        SizeLimitedInputStream limitedIn = new SizeLimitedInputStream(in, maxPayloadBytes);
+        try {
+            return parse(new InputSource(limitedIn));
+        } catch (BadRequestException e) {
+            if (limitedIn.isLimitExceeded()) {
+                throw tooLarge(String.format("The bulk request is larger than %d bytes.", maxPayloadBytes));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the operations of a bulk request.
+     *
+     * @param xmlPayload the bulk request
+     * @return the operations, in order
+     * @throws BadRequestException if the request is malformed, or (with a 413 error code) has too many operations
+     */
+    public static List<Operation> parse(String xmlPayload) throws BadRequestException {
+        return parse(new InputSource(new StringReader(xmlPayload)));
+    }
+
+    private static List<Operation> parse(InputSource xmlPayload) throws BadRequestException {
+        Document document;
+        DocumentBuilder builder = null;
+        try {
+            builder = XmlFactories.getPayloadDocumentBuilder(null);
+            document = builder.parse(xmlPayload);
+        } catch (Exception e) {
+            throw new BadRequestException("Could not parse the bulk request: " + e.getMessage());
+        } finally {
+            XmlFactories.releasePayloadDocumentBuilder(null, builder);
+        }
+
+        List<Operation> result = new ArrayList<Operation>();
+        for (Node node = document.getDocumentElement().getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            if (result.size() == maxOperations) {
+                throw tooLarge(String.format("The bulk request has more than %d operations.", maxOperations));
+            }
+            Element element = (Element) node;
+            String action = element.getNodeName();
+            String csid = element.hasAttribute(CSID_ATTRIBUTE) ? element.getAttribute(CSID_ATTRIBUTE) : null;
+            Element payload = getFirstChildElement(element);
+
+            if (CREATE.equals(action) || UPDATE.equals(action)) {
+                if (payload == null) {
+                    throw new BadRequestException(String.format("Operation %d (%s) of the bulk request has no payload.",
+                            result.size(), action));
+                }
+                result.add(new Operation(action, csid, toString(payload)));
+            } else if (DELETE.equals(action)) {
+                result.add(new Operation(action, csid, payload != null ? toString(payload) : null));
+            } else {
+                throw new BadRequestException(String.format("Operation %d of the bulk request is not one of %s, %s or %s: %s",
+                        result.size(), CREATE, UPDATE, DELETE, action));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the results of a bulk request.
+     *
+     * @param results the results, in order
+     * @return the results, as UTF-8 encoded XML
+     * @throws XMLStreamException
+     */
+    public static byte[] write(List<Result> results) throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement(RESULTS_ELEMENT);
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            writer.writeStartElement(RESULT_ELEMENT);
+            writer.writeAttribute("index", Integer.toString(i));
+            writer.writeAttribute("action", result.getAction());
+            writer.writeAttribute("status", Integer.toString(result.getStatus()));
+            if (result.getCsid() != null) {
+                writer.writeAttribute(CSID_ATTRIBUTE, result.getCsid());
+            }
+            if (result.getError() != null) {
+                writer.writeStartElement(ERROR_ELEMENT);
+                writer.writeCharacters(result.getError());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+    private static BadRequestException tooLarge(String message) {
+        BadRequestException result = new BadRequestException(message);
+        result.setErrorCode(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
+        return result;
+    }
+
+    private static Element getFirstChildElement(Element element) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static String toString(Element element) throws BadRequestException {
+        StringWriter writer = new StringWriter();
+        Transformer transformer = null;
+        try {
+            transformer = XmlFactories.getTransformer();
+            transformer.transform(new DOMSource(element), new StreamResult(writer));
+        } catch (Exception e) {
+            throw new BadRequestException("Could not read a payload of the bulk request: " + e.getMessage());
+        } finally {
+            XmlFactories.releaseTransformer(transformer);
+        }
+        return writer.toString();
+    }
+
+    /*
+     * Fails a read once more than a given number of bytes have been read.
+     */
+    private static class SizeLimitedInputStream extends ProxyInputStream {
+        private final long maxBytes;
+        private long count = 0;
+        private boolean isLimitExceeded = false;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        boolean isLimitExceeded() {
+            return isLimitExceeded;
+        }
+
+        @Override
+        protected void afterRead(int n) throws IOException {
+            if (n > 0) {
+                count += n;
+                if (count > maxBytes) {
+                    isLimitExceeded = true;
+                    throw new IOException("The bulk request is larger than " + maxBytes + " bytes.");
+                }
+            }
+        }
+    }
+}
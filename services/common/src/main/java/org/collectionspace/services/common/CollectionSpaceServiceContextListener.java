@@ -24,16 +24,12 @@ public class CollectionSpaceServiceContextListener implements ServletContextList
             ServletContext servletContext = event.getServletContext();
             ServiceMain svcMain = ServiceMain.getInstance(servletContext);
             
-            svcMain.retrieveAllWorkspaceIds();
-            
-            // Create required indexes (aka indices) in tables not associated
-            // with any specific tenant.
-            svcMain.createRequiredIndices();
             //
-            // Invoke all post-initialization handlers, passing in a DataSource instance of the Nuxeo db.
-            // Typically, these handlers modify column types and add indexes to the Nuxeo db schema.
+            // Retrieve the workspace ids, create the required indexes, and invoke all post-initialization
+            // handlers.  Typically, these handlers modify column types and add indexes to the Nuxeo db schema.
+            // The services report themselves as ready (see ReadinessServlet) once this has completed.
             //
-            svcMain.firePostInitHandlers();
+            svcMain.initializeRepositories();
                         
         } catch (Throwable e) {
             e.printStackTrace();
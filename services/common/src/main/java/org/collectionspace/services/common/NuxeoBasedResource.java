@@ -23,15 +23,24 @@
  */
 package org.collectionspace.services.common;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
+import org.collectionspace.authentication.AuthN;
+import org.collectionspace.services.authorization.AuthZ;
+import org.collectionspace.services.authorization.URIResourceImpl;
+import org.collectionspace.services.client.CollectionSpaceClient;
 import org.collectionspace.services.client.IClientQueryParams;
+import org.collectionspace.services.client.IRelationsManager;
 import org.collectionspace.services.client.IQueryManager;
 import org.collectionspace.services.client.PoxPayloadIn;
 import org.collectionspace.services.client.PoxPayloadOut;
+import org.collectionspace.services.common.api.CommonAPI;
 import org.collectionspace.services.common.api.RefName;
 import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.common.authorityref.AuthorityRefList;
@@ -40,10 +49,15 @@ import org.collectionspace.services.common.context.RemoteServiceContext;
 import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.document.DocumentFilter;
 import org.collectionspace.services.common.document.DocumentHandler;
+import org.collectionspace.services.common.document.BadRequestException;
 import org.collectionspace.services.common.document.DocumentNotFoundException;
+import org.collectionspace.services.common.document.DocumentVersion;
+import org.collectionspace.services.common.document.UpdatePreconditions;
 import org.collectionspace.services.common.query.QueryManager;
+import org.collectionspace.services.common.security.SecurityUtils;
 import org.collectionspace.services.common.vocabulary.RefNameServiceUtils;
 import org.collectionspace.services.common.vocabulary.RefNameServiceUtils.AuthRefConfigInfo;
+import org.collectionspace.services.common.xmljson.RequestUtils;
 import org.collectionspace.services.config.ClientType;
 import org.collectionspace.services.config.service.DocHandlerParams;
 import org.collectionspace.services.config.service.ListResultField;
@@ -52,10 +66,15 @@ import org.collectionspace.services.jaxb.AbstractCommonList;
 import org.collectionspace.services.nuxeo.client.java.DocumentModelHandler;
 import org.collectionspace.services.nuxeo.util.NuxeoUtils;
 import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.client.java.RepositoryClientImpl;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.jboss.resteasy.util.DateUtil;
 import org.jboss.resteasy.util.HttpResponseCodes;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
  * $LastChangedRevision:  $
@@ -70,6 +89,8 @@ public abstract class NuxeoBasedResource
     public static final String UPDATE = "update";
     public static final String DELETE = "delete";
     public static final String LIST = "list";
+    /** The default number of bulk operations applied in each transaction */
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 100;
     //FIXME retrieve client type from configuration
     static ClientType CLIENT_TYPE;
 
@@ -266,11 +287,43 @@ public abstract class NuxeoBasedResource
         	ctx.setCurrentRepositorySession(parentCtx.getCurrentRepositorySession()); // Reuse the current repo session if one exists
         	ctx.setProperties(parentCtx.getProperties()); // transfer all the parent properties to the current context
         }            
+        setUpdatePreconditions(ctx, uriInfo, csid);
         result = update(csid, theUpdate, ctx); //==> CALL implementation method, which subclasses may override.
     	
     	return result;
     }
 
+    /*
+     * Gives clients optimistic concurrency: if a PUT request for the record has an If-Match or
+     * If-Unmodified-Since header, the repository client only updates the record if it hasn't
+     * changed since the client read it. The check is made against the document the repository
+     * client loads for the update, in the update's transaction.
+     */
+    private void setUpdatePreconditions(ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx, UriInfo uriInfo, String csid) {
+        Request request = ResteasyProviderFactory.getContextData(Request.class);
+        HttpHeaders headers = ResteasyProviderFactory.getContextData(HttpHeaders.class);
+        if (request == null || headers == null || HttpMethod.PUT.equals(request.getMethod()) == false
+                || uriInfo == null || csid.equals(uriInfo.getPathParameters().getFirst("csid")) == false) {
+            return;
+        }
+
+        Date ifUnmodifiedSince = null;
+        List<String> ifUnmodifiedSinceValues = headers.getRequestHeader(HttpHeaders.IF_UNMODIFIED_SINCE);
+        if (ifUnmodifiedSinceValues != null && ifUnmodifiedSinceValues.isEmpty() == false) {
+            try {
+                ifUnmodifiedSince = DateUtil.parseDate(ifUnmodifiedSinceValues.get(0));
+            } catch (DateUtil.DateParseException e) {
+                // An invalid date is ignored
+                logger.debug("Ignoring invalid If-Unmodified-Since header: " + ifUnmodifiedSinceValues.get(0));
+            }
+        }
+        UpdatePreconditions preconditions = new UpdatePreconditions(csid, ctx.getUserId(),
+                headers.getRequestHeader(HttpHeaders.IF_MATCH), ifUnmodifiedSince);
+        if (preconditions.isEmpty() == false) {
+            ctx.setProperty(UpdatePreconditions.CONTEXT_PROPERTY, preconditions);
+        }
+    }
+
     /** Subclasses may override this overload, which gets called from #udpate(String,MultipartInput)   */
     protected PoxPayloadOut update(String csid,
             PoxPayloadIn theUpdate, // not used in this method, but could be used by an overriding method
@@ -328,6 +381,163 @@ public abstract class NuxeoBasedResource
         }
     }    
 
+    //======================= BULK ====================================================
+    /**
+     * Creates, updates and deletes several records, as described in {@link BulkPayload}. The
+     * operations are applied in order, in chunks of "chunkSize" operations (or all at once if
+     * the size is 0), each with one repository session and transaction. Every operation still
+     * goes through this resource's create, update or delete, so its document handler and
+     * validators run as they would for a single record. A failed operation doesn't stop the
+     * others; its error is returned in its result. Requests larger than the configured limits
+     * (see {@link BulkPayload#configure(int, int)}) are rejected with a 413.
+     */
+    @POST
+    @Path(CollectionSpaceClient.BULK_PATH)
+    @Produces("application/xml")
+    public byte[] bulk(
+    		@Context ResourceMap resourceMap,
+    		@Context UriInfo uriInfo,
+    		InputStream xmlPayload) {
+    	uriInfo = new UriInfoWrapper(uriInfo);
+        List<BulkPayload.Result> results = new ArrayList<BulkPayload.Result>();
+
+        try {
+            List<BulkPayload.Operation> operations = BulkPayload.parse(xmlPayload);
+            int chunkSize = getBulkChunkSize(uriInfo);
+            if (chunkSize == 0) {
+                chunkSize = Math.max(operations.size(), 1);
+            }
+            String resEntity = SecurityUtils.getResourceEntity(SecurityUtils.getResourceName(uriInfo));
+            for (int start = 0; start < operations.size(); start += chunkSize) {
+                List<BulkPayload.Operation> chunk = operations.subList(start, Math.min(start + chunkSize, operations.size()));
+                results.addAll(bulk(resourceMap, uriInfo, resEntity, chunk));
+            }
+            return BulkPayload.write(results);
+        } catch (Exception e) {
+            throw bigReThrow(e, ServiceMessages.BULK_FAILED);
+        }
+    }
+
+    private int getBulkChunkSize(UriInfo uriInfo) throws BadRequestException {
+        String chunkSizeParam = uriInfo.getQueryParameters().getFirst(IClientQueryParams.BULK_CHUNK_SIZE_PARAM);
+        if (Tools.isBlank(chunkSizeParam)) {
+            return DEFAULT_BULK_CHUNK_SIZE;
+        }
+        try {
+            int result = Integer.parseInt(chunkSizeParam.trim());
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw new BadRequestException(String.format("The %s query parameter must be a number, 0 or greater: %s",
+                IClientQueryParams.BULK_CHUNK_SIZE_PARAM, chunkSizeParam));
+    }
+
+    /*
+     * Applies a chunk of bulk operations with one repository session, and so in one transaction.
+     */
+    private List<BulkPayload.Result> bulk(ResourceMap resourceMap, UriInfo uriInfo, String resEntity,
+    		List<BulkPayload.Operation> operations) throws Exception {
+        List<BulkPayload.Result> results = new ArrayList<BulkPayload.Result>();
+        ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx = createServiceContext(uriInfo);
+        ctx.setResourceMap(resourceMap);
+        RepositoryClientImpl repoClient = (RepositoryClientImpl) getRepositoryClient(ctx);
+        CoreSessionInterface repoSession = repoClient.getRepositorySession(ctx);
+        String chunkError = null;
+
+        try {
+            for (BulkPayload.Operation operation : operations) {
+                results.add(bulk(ctx, resourceMap, uriInfo, resEntity, operation));
+            }
+            if (TransactionHelper.isTransactionMarkedRollback() == true) {
+                chunkError = "The transaction was rolled back because another operation in it failed.";
+            }
+        } finally {
+            try {
+                repoClient.releaseRepositorySession(ctx, repoSession); // Commits (or rolls back) the chunk
+            } catch (Exception e) {
+                chunkError = "The transaction could not be committed: " + e.getMessage();
+            }
+        }
+
+        if (chunkError != null) {
+            for (BulkPayload.Result result : results) {
+                if (result.isSuccess() == true) {
+                    result.setError(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), chunkError);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private BulkPayload.Result bulk(ServiceContext<PoxPayloadIn, PoxPayloadOut> parentCtx, ResourceMap resourceMap,
+    		UriInfo uriInfo, String resEntity, BulkPayload.Operation operation) {
+        BulkPayload.Result result = new BulkPayload.Result(operation.getAction(), operation.getCsid());
+
+        try {
+            if (BulkPayload.CREATE.equals(operation.getAction())) {
+                // The permission to create was checked for the request as a whole
+                Response response = create(parentCtx, resourceMap, uriInfo, operation.getPayload());
+                Object location = response.getMetadata().getFirst(HttpHeaders.LOCATION);
+                if (location != null) {
+                    String path = location.toString();
+                    result.setCsid(path.substring(path.lastIndexOf('/') + 1));
+                }
+                result.setStatus(response.getStatus());
+            } else if (BulkPayload.UPDATE.equals(operation.getAction())) {
+                ensureBulkAccess(resEntity, HttpMethod.PUT);
+                update(parentCtx, resourceMap, uriInfo, operation.getCsid(), operation.getPayload());
+                result.setStatus(Response.Status.OK.getStatusCode());
+            } else {
+                ensureBulkAccess(resEntity, HttpMethod.DELETE);
+                String csid = getBulkDeleteCsid(parentCtx, uriInfo, operation);
+                result.setCsid(csid);
+                Response response = deleteWithParentCtx(parentCtx, csid);
+                result.setStatus(response.getStatus());
+            }
+        } catch (WebApplicationException e) {
+            Response response = e.getResponse();
+            result.setError(response.getStatus(), String.valueOf(response.getEntity()));
+        } catch (Exception e) {
+            Response response = bigReThrow(e, ServiceMessages.BULK_FAILED, operation.getCsid()).getResponse();
+            result.setError(response.getStatus(), String.valueOf(response.getEntity()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the CSID of the record to be deleted by a bulk delete operation. This is the CSID
+     * given in the operation; resources whose records can also be identified by a payload
+     * (see {@link BulkPayload}) override this to look the record up in the parent context.
+     *
+     * @param parentCtx the context of the chunk the operation is applied in
+     * @param uriInfo the URI info of the bulk request
+     * @param operation the delete operation
+     * @return the CSID of the record to delete
+     * @throws Exception if the record could not be identified
+     */
+    protected String getBulkDeleteCsid(ServiceContext<PoxPayloadIn, PoxPayloadOut> parentCtx, UriInfo uriInfo,
+    		BulkPayload.Operation operation) throws Exception {
+        return operation.getCsid();
+    }
+
+    /*
+     * The request as a whole is authorized as a POST (create), so check the permissions for
+     * the other operations one by one.
+     */
+    private void ensureBulkAccess(String resEntity, String httpMethod) throws CSWebApplicationException {
+        URIResourceImpl res = new URIResourceImpl(AuthN.get().getCurrentTenantId(), resEntity, httpMethod);
+        if (AuthZ.get().isAccessAllowed(res) == false) {
+            Response response = Response.status(Response.Status.FORBIDDEN).entity(
+                    resEntity + " " + httpMethod).type("text/plain").build();
+            throw new CSWebApplicationException(response);
+        }
+    }
+
     //======================= GET ====================================================
     @GET
     @Path("{csid}")
@@ -337,22 +547,118 @@ public abstract class NuxeoBasedResource
             @PathParam("csid") String csid) {
     	uriInfo = new UriInfoWrapper(uriInfo);
         PoxPayloadOut result = null;
+        Response notModified = null;
         ensureCSID(csid, READ);
         try {
             RemoteServiceContext<PoxPayloadIn, PoxPayloadOut> ctx = (RemoteServiceContext<PoxPayloadIn, PoxPayloadOut>) createServiceContext(uriInfo);
-            result = get(csid, ctx);// ==> CALL implementation method, which subclasses may override.
-            if (result == null) {
-                Response response = Response.status(Response.Status.NOT_FOUND).entity(
-                        ServiceMessages.READ_FAILED + ServiceMessages.resourceNotFoundMsg(csid)).type("text/plain").build();
-                throw new CSWebApplicationException(response);
+            boolean supportsConditionalGet = request != null && supportsConditionalGet(ctx);
+            if (supportsConditionalGet) {
+                //
+                // Answer the conditional requests of clients whose copy is current with a 304, using
+                // the record's version instead of building its payload.
+                //
+                HttpHeaders headers = ResteasyProviderFactory.getContextData(HttpHeaders.class);
+                if (hasRequestHeader(headers, HttpHeaders.IF_NONE_MATCH)
+                        || hasRequestHeader(headers, HttpHeaders.IF_MODIFIED_SINCE)) {
+                    DocumentVersion version = getRepositoryClient(ctx).getDocVersion(ctx, csid);
+                    notModified = evaluatePreconditions(request, ctx, version);
+                }
+            }
+            if (notModified == null) {
+                result = get(csid, ctx);// ==> CALL implementation method, which subclasses may override.
+                if (result == null) {
+                    Response response = Response.status(Response.Status.NOT_FOUND).entity(
+                            ServiceMessages.READ_FAILED + ServiceMessages.resourceNotFoundMsg(csid)).type("text/plain").build();
+                    throw new CSWebApplicationException(response);
+                }
+                if (supportsConditionalGet) {
+                    setValidators(ctx, (DocumentVersion) ctx.getProperty(DocumentVersion.CONTEXT_PROPERTY));
+                }
             }
         } catch (Exception e) {
             throw bigReThrow(e, ServiceMessages.READ_FAILED, csid);
         }
 
+        if (notModified != null) {
+            throw new WebApplicationException(notModified);
+        }
+
         return result.getBytes();
     }
 
+    /**
+     * Returns true if the payload of a record read with the given context depends only on
+     * the record and the user reading it, so that the record's version can be used to answer
+     * conditional requests. Payloads that list related records, and relations (whose payloads
+     * describe their subject and object), also depend on other records.
+     */
+    protected boolean supportsConditionalGet(ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx) {
+        String docType = ctx.getDocumentType();
+        if (docType == null || docType.startsWith(IRelationsManager.DOC_TYPE)) {
+            return false;
+        }
+        MultivaluedMap<String, String> queryParams = ctx.getQueryParams();
+        return Tools.isTrue(queryParams.getFirst(CommonAPI.showRelations_QP)) == false
+                && Tools.isTrue(queryParams.getFirst(CommonAPI.showSiblings_QP)) == false
+                && Tools.isTrue(queryParams.getFirst(CommonAPI.showAllRelations_QP)) == false;
+    }
+
+    /*
+     * The payload of a record lists the current user's permissions, so its entity tag
+     * depends on the user as well as on the record's version. Requests that prefer JSON
+     * get the payload converted to JSON (by XmlToJsonFilter), so the tag also depends on
+     * the Accept header.
+     */
+    private static EntityTag getEntityTag(ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx, DocumentVersion version) {
+        HttpHeaders headers = ResteasyProviderFactory.getContextData(HttpHeaders.class);
+        String representation = headers != null && RequestUtils.isJsonPreferred(headers)
+                ? DocumentVersion.REPRESENTATION_JSON : DocumentVersion.REPRESENTATION_XML;
+        return new EntityTag(version.getEntityTag(ctx.getUserId(), representation));
+    }
+
+    /*
+     * Evaluates the request's conditional headers against a record's version.
+     * 
+     * @return the response to send instead of processing the request -i.e., a 304 (Not Modified) or
+     * a 412 (Precondition Failed), or null if the request should be processed
+     */
+    private static Response evaluatePreconditions(Request request, ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx,
+            DocumentVersion version) {
+        Response result = null;
+
+        if (request != null && version != null && version.isKnown()) {
+            Response.ResponseBuilder builder = request.evaluatePreconditions(version.getLastModified(), getEntityTag(ctx, version));
+            if (builder != null) {
+                result = builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Sets the ETag and Last-Modified headers of a record's representation. Clients may keep the
+     * representation, but must check it's still current before using it again.
+     */
+    private static void setValidators(ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx, DocumentVersion version) {
+        HttpResponse response = ResteasyProviderFactory.getContextData(HttpResponse.class);
+        if (response != null && version != null && version.isKnown()) {
+            MultivaluedMap<String, Object> headers = response.getOutputHeaders();
+            headers.putSingle(HttpHeaders.ETAG, getEntityTag(ctx, version));
+            headers.putSingle(HttpHeaders.LAST_MODIFIED, version.getLastModified());
+            headers.putSingle(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            headers.putSingle(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    private static boolean hasRequestHeader(HttpHeaders headers, String name) {
+        if (headers == null) {
+            return false;
+        }
+        List<String> values = headers.getRequestHeader(name);
+        return values != null && values.isEmpty() == false;
+    }
+
     protected PoxPayloadOut get(@PathParam("csid") String csid,
             ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx) throws Exception {
         PoxPayloadOut result = null;
@@ -0,0 +1,33 @@
+package org.collectionspace.services.common;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reports whether the services are ready to handle requests: 200 (UP) once the
+ * services and their repositories have been initialized, and 503 (DOWN) before
+ * that or if the initialization failed. This doesn't require authentication, so
+ * that load balancers and deployment tools can poll it.
+ */
+public class ReadinessServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    public static final String STATUS_UP = "UP";
+    public static final String STATUS_DOWN = "DOWN";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        boolean ready = ServiceMain.isReady();
+        response.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setContentType("application/xml");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<readiness><status>" + (ready ? STATUS_UP : STATUS_DOWN) + "</status></readiness>");
+    }
+}
@@ -19,8 +19,13 @@ package org.collectionspace.services.common;
 
 import org.collectionspace.services.common.api.Tools;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** User: laramie
  *  $LastChangedRevision:  $
@@ -52,6 +57,85 @@ public class ReflectionMapper {
 
     public static enum STATUS {OK, NO_SUCH_METHOD, EXCEPTION};
                                                                            
+    /** The type all setter handles are adapted to: (target, arg) -> void */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * A setter of a class, looked up once and adapted to SETTER_TYPE, so that
+     * calling it does no reflective lookups and no argument array allocation.
+     * A setter that was not found is cached as a Setter with no handle.
+     */
+    private static final class Setter {
+        private final MethodHandle handle;
+
+        Setter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        boolean exists() {
+            return handle != null;
+        }
+
+        void invoke(Object target, Object arg) throws Exception {
+            try {
+                handle.invokeExact(target, arg);
+            } catch (Exception e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new Exception(t);
+            }
+        }
+    }
+
+    private static final Setter NO_SUCH_SETTER = new Setter(null);
+
+    /** class -> setter name -> setter, built on first use of each setter */
+    private static final ClassValue<ConcurrentMap<String, Setter>> setters =
+            new ClassValue<ConcurrentMap<String, Setter>>() {
+        @Override
+        protected ConcurrentMap<String, Setter> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, Setter>();
+        }
+    };
+
+    private static Setter getSetter(Class<?> aClass, String name) throws IllegalAccessException {
+        ConcurrentMap<String, Setter> classSetters = setters.get(aClass);
+        Setter setter = classSetters.get(name);
+        if (setter == null) {
+            setter = lookupSetter(aClass, name);
+            Setter existing = classSetters.putIfAbsent(name, setter);
+            if (existing != null) {
+                setter = existing;
+            }
+        }
+        return setter;
+    }
+
+    private static Setter lookupSetter(Class<?> aClass, String name) throws IllegalAccessException {
+        Method m;
+        try {
+            m = aClass.getMethod(name, String.class);
+        } catch (NoSuchMethodException nsm) {
+            try {
+                m = aClass.getMethod(name, Object.class);
+            } catch (NoSuchMethodException nsm2) {
+                return NO_SUCH_SETTER;
+            }
+        }
+        // A String setter called with another type fails with a ClassCastException,
+        // where Method.invoke() failed with an IllegalArgumentException.
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(m).asType(SETTER_TYPE);
+        return new Setter(handle);
+    }
+
+    /**
+     * Calls a setter that takes a String, or failing that, an Object. The setter
+     * is looked up once per class and name, and cached.
+     *
+     * @throws NoSuchMethodException if the class has no such setter
+     */
     public static STATUS callSetterUncaught(Object target, String name, Object arg) throws Exception {
         if (Tools.isEmpty(name)){
             return STATUS.NO_SUCH_METHOD;
@@ -59,21 +143,13 @@ public class ReflectionMapper {
         if (target==null){
             return STATUS.EXCEPTION;
         }
-        Class aClass = target.getClass();
-        Method m;
-
-        Class[] cls = new Class[1];
-        cls[0] = String.class;
-        try {
-            m = aClass.getMethod(name, cls);
-        } catch (NoSuchMethodException nsm){
-            m = null;
-        }
-        if (m==null){
-             m = aClass.getMethod(name, Object.class); //throws NoSuchMethodException if not found.
+        Class<?> aClass = target.getClass();
+        Setter setter = getSetter(aClass, name);
+        if (!setter.exists()){
+            //todo: call callSetterCaseInsensitive().
+            throw new NoSuchMethodException(aClass.getName() + "." + name + "(java.lang.Object)");
         }
-        //todo: if m==null, call callSetterCaseInsensitive().
-        fireSetMethod(m, target, arg);
+        setter.invoke(target, arg);
         return STATUS.OK;
     }
 
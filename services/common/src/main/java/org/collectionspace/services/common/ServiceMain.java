@@ -11,6 +11,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.naming.NamingException;
 import javax.servlet.ServletContext;
@@ -18,32 +19,42 @@ import javax.sql.DataSource;
 
 import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
 import org.collectionspace.authentication.AuthN;
+import org.collectionspace.services.client.JaxbContextRegistry;
 import org.collectionspace.services.client.XmlTools;
 import org.collectionspace.services.common.api.JEEServerDeployment;
 import org.collectionspace.services.common.api.FileTools;
 import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.common.authorization_mgt.AuthorizationCommon;
+import org.collectionspace.services.common.blob.RemoteBlobFetcher;
 import org.collectionspace.services.common.config.ConfigReader;
 import org.collectionspace.services.common.config.ConfigUtils;
 import org.collectionspace.services.common.config.ServicesConfigReaderImpl;
+import org.collectionspace.services.common.config.ServiceConfigUtils;
 import org.collectionspace.services.common.config.TenantBindingConfigReaderImpl;
 import org.collectionspace.services.common.context.ServiceBindingUtils;
+import org.collectionspace.services.common.document.DocumentUtils;
 import org.collectionspace.services.common.init.AddIndices;
 import org.collectionspace.services.config.service.InitHandler.Params.Field;
 import org.collectionspace.services.common.init.IInitHandler;
+import org.collectionspace.services.common.init.StartupOrchestrator;
+import org.collectionspace.services.common.metrics.MetricsRegistry;
 import org.collectionspace.services.common.storage.DatabaseProductType;
 import org.collectionspace.services.common.storage.JDBCTools;
+import org.collectionspace.services.common.xmljson.XmlElementInfoRegistry;
 import org.collectionspace.services.config.ClientType;
 import org.collectionspace.services.config.ServiceConfig;
+import org.collectionspace.services.config.service.ObjectPartType;
 import org.collectionspace.services.config.service.ServiceBindingType;
 import org.collectionspace.services.config.tenant.RepositoryDomainType;
 import org.collectionspace.services.config.tenant.TenantBindingType;
 import org.collectionspace.services.config.types.PropertyItemType;
 import org.collectionspace.services.config.types.PropertyType;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
 import org.collectionspace.services.nuxeo.client.java.NuxeoConnectorEmbedded;
 import org.collectionspace.services.nuxeo.client.java.TenantRepository;
 
 import org.apache.commons.io.FileUtils;
+import org.nuxeo.ecm.core.schema.types.Schema;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.dom4j.Document;
 import org.slf4j.Logger;
@@ -74,6 +85,7 @@ public class ServiceMain {
      */
     private static volatile ServiceMain instance = null;
     private static volatile boolean initFailed = false;
+    private static volatile boolean ready = false;
 
     private static final String SERVER_HOME_PROPERTY = "catalina.base";
 	private static final boolean USE_APP_GENERATED_CONFIG = true;
@@ -91,6 +103,45 @@ public class ServiceMain {
     private static final String DROP_USER_SQL_CMD = "DROP USER";
     private static final String DROP_USER_IF_EXISTS_SQL_CMD = DROP_USER_SQL_CMD + " IF EXISTS %s;";
     private static final String DROP_OBJECTS_SQL_COMMENT = "-- drop all the objects before dropping roles";
+    
+    // The system property that sets the number of threads the initialization steps run on
+    private static final String STARTUP_THREADS_PROPERTY = "org.collectionspace.services.startup.threads";
+    private static final int MAX_STARTUP_THREADS = 8;
+    
+    // The names of the initialization steps
+    private static final String STEP_NUXEO_DATASOURCE_CONFIG = "Nuxeo datasource config files";
+    private static final String STEP_NUXEO_REPOSITORY_CONFIG = "Nuxeo repository config files";
+    private static final String STEP_ELASTICSEARCH_CONFIG = "Elasticsearch config files";
+    private static final String STEP_NUXEO_DATABASES = "Nuxeo databases";
+    private static final String STEP_NUXEO = "Nuxeo platform";
+    private static final String STEP_XML_ELEMENT_INFO = "XML element info";
+    private static final String STEP_JAXB_CONTEXTS = "JAXB contexts";
+    private static final String STEP_HANDLER_FACTORIES = "Handler factories";
+    private static final String STEP_WORKFLOW_PERMISSIONS = "Workflow permissions";
+    private static final String STEP_DEFAULT_ACCOUNTS = "Default accounts";
+    private static final String STEP_WORKSPACE_IDS = "Workspace ids";
+    private static final String STEP_REQUIRED_INDICES = "Required indices";
+    private static final String STEP_POST_INIT_HANDLERS = "Post-init handlers";
+    
+    // The services config (repository client) property that sets whether metrics are recorded
+    public static final String METRICS_ENABLED_PROPERTY = "metricsEnabled";
+    // The services config (repository client) properties that set how long list and search results
+    // are cached (0, the default, turns the cache off), and how many of them
+    public static final String LIST_CACHE_TTL_PROPERTY = "listCacheTtlSeconds";
+    public static final String LIST_CACHE_MAX_ENTRIES_PROPERTY = "listCacheMaxEntries";
+    // The services config (repository client) properties that limit the downloads of blobs created from http(s) URIs:
+    // how many run at the same time, how long and how large each one can be, and the content types they may have (one
+    // item for each allowed type or prefix of a type, e.g. "image/")
+    public static final String REMOTE_BLOB_MAX_DOWNLOADS_PROPERTY = "remoteBlobMaxDownloads";
+    public static final String REMOTE_BLOB_TIMEOUT_PROPERTY = "remoteBlobTimeoutSeconds";
+    public static final String REMOTE_BLOB_MAX_SIZE_PROPERTY = "remoteBlobMaxSizeMB";
+    public static final String REMOTE_BLOB_CONTENT_TYPE_PROPERTY = "remoteBlobContentType";
+    // The services config (repository client) properties that limit the size, and the number of operations,
+    // of a bulk create/update/delete request
+    public static final String BULK_MAX_PAYLOAD_SIZE_PROPERTY = "bulkMaxPayloadMB";
+    public static final String BULK_MAX_OPERATIONS_PROPERTY = "bulkMaxOperations";
+    
+    private static final ConcurrentHashMap<String, Object> repositoryLocks = new ConcurrentHashMap<String, Object>();
 
     private ServiceMain() {
     	// Intentionally blank
@@ -163,6 +214,10 @@ public class ServiceMain {
     	
     	// read in and set our Services config
     	readAndSetServicesConfig();
+    	configureMetrics();
+    	configureListCache();
+    	configureRemoteBlobFetcher();
+    	configureBulkLimits();
     	
     	// Set our AuthN's datasource to for the cspaceDataSource
     	AuthN.setDataSource(JDBCTools.getDataSource(JDBCTools.CSPACE_DATASOURCE_NAME));
@@ -170,55 +225,129 @@ public class ServiceMain {
     	// In each tenant, set properties that don't already have values
     	// to their default values.
         propagateConfiguredProperties();
-                
+        
+        //
+        // Exit if we don't have the correct/known client type
+        //
+        if (getClientType().equals(ClientType.JAVA) == false) {
+        	throw new RuntimeException("Unknown CollectionSpace services client type: " + getClientType());
+        }
+        
+        //
+        // Run the rest of the initialization steps, each as soon as the steps it depends on have completed.
+        //
+        StartupOrchestrator orchestrator = new StartupOrchestrator("CollectionSpace services initialization",
+        		getStartupThreadCount());
+        
         // Create or update Nuxeo's per-repository configuration files.
-        createOrUpdateNuxeoDatasourceConfigFiles();
-        createOrUpdateNuxeoRepositoryConfigFiles();
-        createOrUpdateNuxeoElasticsearchConfigFiles();
+        orchestrator.addStep(STEP_NUXEO_DATASOURCE_CONFIG, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				createOrUpdateNuxeoDatasourceConfigFiles();
+			}
+        });
+        orchestrator.addStep(STEP_NUXEO_REPOSITORY_CONFIG, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				createOrUpdateNuxeoRepositoryConfigFiles();
+			}
+        });
+        orchestrator.addStep(STEP_ELASTICSEARCH_CONFIG, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				createOrUpdateNuxeoElasticsearchConfigFiles();
+			}
+        });
         
         // Create the Nuxeo-managed databases, along with the requisite
-        // access rights to each.
-    	HashSet<String> dbsCheckedOrCreated = createNuxeoDatabases();
-        
-        // Update the SQL script that drops databases and users,
+        // access rights to each.  Then update the SQL script that drops databases and users,
         // to include DROP statements for each of the Nuxeo-managed
         // database names and for each relevant datasource user.
-        String[] dataSourceNames = {JDBCTools.NUXEO_DATASOURCE_NAME, JDBCTools.NUXEO_READER_DATASOURCE_NAME};
-        updateInitializationScript(getNuxeoDatabasesInitScriptFilename(),
-                dbsCheckedOrCreated, dataSourceNames);
+        orchestrator.addStep(STEP_NUXEO_DATABASES, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+		    	HashSet<String> dbsCheckedOrCreated = createNuxeoDatabases();
+		        String[] dataSourceNames = {JDBCTools.NUXEO_DATASOURCE_NAME, JDBCTools.NUXEO_READER_DATASOURCE_NAME};
+		        updateInitializationScript(getNuxeoDatabasesInitScriptFilename(),
+		                dbsCheckedOrCreated, dataSourceNames);
+			}
+        });
 
         //
         // Start up and initialize our embedded Nuxeo instance.
         //
-        if (getClientType().equals(ClientType.JAVA)) {
-            nuxeoConnector = NuxeoConnectorEmbedded.getInstance();
-            mirrorToStdOut("\nStarting Nuxeo platform...");
-            nuxeoConnector.initialize(
-            		getServerRootDir(),
-            		getServicesConfigReader().getConfiguration().getRepositoryClient(),
-            		ServiceMain.servletContext);
-            mirrorToStdOut("Nuxeo platform started successfully.\n");
-        } else {
-        	//
-        	// Exit if we don't have the correct/known client type
-        	//
-        	throw new RuntimeException("Unknown CollectionSpace services client type: " + getClientType());
-        }
+        orchestrator.addStep(STEP_NUXEO, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+	            nuxeoConnector = NuxeoConnectorEmbedded.getInstance();
+	            mirrorToStdOut("\nStarting Nuxeo platform...");
+	            nuxeoConnector.initialize(
+	            		getServerRootDir(),
+	            		getServicesConfigReader().getConfiguration().getRepositoryClient(),
+	            		ServiceMain.servletContext);
+	            mirrorToStdOut("Nuxeo platform started successfully.\n");
+			}
+        }, STEP_NUXEO_DATASOURCE_CONFIG, STEP_NUXEO_REPOSITORY_CONFIG, STEP_ELASTICSEARCH_CONFIG, STEP_NUXEO_DATABASES);
+        
+        //
+        // Now that the Nuxeo schemas are available, describe the XML of each record part so that
+        // XML responses can be streamed as JSON.
+        //
+        orchestrator.addStep(STEP_XML_ELEMENT_INFO, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				registerXmlElementInfo();
+			}
+        }, STEP_NUXEO);
+        
+        //
+        // Create the JAXB contexts for the schemas of every record part, so that the first requests don't pay for it.
+        // These don't depend on Nuxeo, so they are created while it starts.
+        //
+        orchestrator.addStep(STEP_JAXB_CONTEXTS, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				registerJaxbContexts();
+			}
+        });
+        
+        //
+        // Resolve the document and validator handler classes of every service, so that creating a service context
+        // does no class loading or reflective lookups.
+        //
+        orchestrator.addStep(STEP_HANDLER_FACTORIES, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				ServiceConfigUtils.resolveHandlerFactories(tenantBindingConfigReader);
+			}
+        }, STEP_NUXEO);
                 
         //
         // Create all the default user accounts and permissions.  Since some of our "cspace" database config files
         // for Spring need to be created at build time, the "cspace" database already will be suffixed with the
         // correct 'cspaceInstanceId' so we don't need to pass it to the JDBCTools methods.
         //        
+        orchestrator.addStep(STEP_WORKFLOW_PERMISSIONS, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				AuthorizationCommon.createDefaultWorkflowPermissions(tenantBindingConfigReader);
+			}
+        }, STEP_HANDLER_FACTORIES);
+        orchestrator.addStep(STEP_DEFAULT_ACCOUNTS, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				String cspaceDatabaseName = getCspaceDatabaseName();
+				DatabaseProductType databaseProductType = JDBCTools.getDatabaseProductType(JDBCTools.CSPACE_DATASOURCE_NAME,
+						cspaceDatabaseName);
+				AuthorizationCommon.createDefaultAccounts(tenantBindingConfigReader, databaseProductType,
+						cspaceDatabaseName);
+			}
+        }, STEP_WORKFLOW_PERMISSIONS);
+        
 		try {
-			AuthorizationCommon.createDefaultWorkflowPermissions(tenantBindingConfigReader);
-			String cspaceDatabaseName = getCspaceDatabaseName();
-			DatabaseProductType databaseProductType = JDBCTools.getDatabaseProductType(JDBCTools.CSPACE_DATASOURCE_NAME,
-					cspaceDatabaseName);
-			AuthorizationCommon.createDefaultAccounts(tenantBindingConfigReader, databaseProductType,
-					cspaceDatabaseName);
+			orchestrator.run();
 		} catch (Exception e) {
-			logger.error("Default accounts and permissions setup failed with exception(s): " +
+			logger.error("The CollectionSpace services initialization failed with exception(s): " +
 					e.getLocalizedMessage(), e);
 			throw e;
 		}
@@ -234,6 +363,225 @@ public class ServiceMain {
 		showTenantStatus();
     }
     
+    /**
+     * Initializes the tenants' repositories once the services have been initialized: retrieves the workspace ids,
+     * creates the required indices, and fires the post-init handlers, with each tenant's indices and handlers
+     * processed at the same time as the others'. The services are ready once this has completed.
+     * 
+     * @throws Exception
+     */
+    public void initializeRepositories() throws Exception {
+        StartupOrchestrator orchestrator = new StartupOrchestrator("CollectionSpace repository initialization",
+        		getStartupThreadCount());
+        Collection<TenantBindingType> tenantBindings = tenantBindingConfigReader.getTenantBindings().values();
+        
+        orchestrator.addStep(STEP_WORKSPACE_IDS, new StartupOrchestrator.Task() {
+			@Override
+			public void run() throws Exception {
+				retrieveAllWorkspaceIds();
+			}
+        });
+        
+        // Create required indexes (aka indices) in tables not associated
+        // with any specific tenant.
+        orchestrator.addParallelStep(STEP_REQUIRED_INDICES, tenantBindings, new StartupOrchestrator.ItemTask<TenantBindingType>() {
+			@Override
+			public void run(TenantBindingType tenantBinding) throws Exception {
+				createRequiredIndices(tenantBinding);
+			}
+        }, STEP_WORKSPACE_IDS);
+        
+        //
+        // Invoke all post-initialization handlers, passing in a DataSource instance of the Nuxeo db.
+        // Typically, these handlers modify column types and add indexes to the Nuxeo db schema.
+        //
+        orchestrator.addParallelStep(STEP_POST_INIT_HANDLERS, tenantBindings, new StartupOrchestrator.ItemTask<TenantBindingType>() {
+			@Override
+			public void run(TenantBindingType tenantBinding) throws Exception {
+				firePostInitHandlers(tenantBinding);
+			}
+        }, STEP_REQUIRED_INDICES);
+        
+        orchestrator.run();
+        ready = true;
+        mirrorToStdOut("The CollectionSpace services are ready.");
+    }
+    
+    /**
+     * @return true once the services and their repositories have been initialized
+     */
+    public static boolean isReady() {
+    	return ready && initFailed == false;
+    }
+    
+    /*
+     * Sets whether metrics are recorded from the services config.
+     */
+    private void configureMetrics() {
+    	MetricsRegistry registry = MetricsRegistry.getInstance();
+    	registry.setEnabled(getBooleanServiceConfigProperty(METRICS_ENABLED_PROPERTY, true));
+    	logger.info(String.format("Metrics are %s.", registry.isEnabled() ? "enabled" : "disabled"));
+    }
+    
+    /*
+     * Sets how long, if at all, list and search results are cached, from the services config.
+     */
+    private void configureListCache() {
+    	ListResultCache listCache = ListResultCache.get();
+    	int ttlSeconds = getIntServiceConfigProperty(LIST_CACHE_TTL_PROPERTY, 0);
+    	listCache.configure(ttlSeconds,
+    			getIntServiceConfigProperty(LIST_CACHE_MAX_ENTRIES_PROPERTY, ListResultCache.DEFAULT_MAX_ENTRIES));
+    	logger.info(String.format("List and search results are %s.",
+    			listCache.isEnabled() ? "cached for " + ttlSeconds + " seconds" : "not cached"));
+    }
+    
+    /*
+     * Sets the limits of the downloads of blobs created from http(s) URIs, from the services config.
+     */
+    private void configureRemoteBlobFetcher() {
+    	int maxDownloads = getIntServiceConfigProperty(REMOTE_BLOB_MAX_DOWNLOADS_PROPERTY, RemoteBlobFetcher.DEFAULT_MAX_DOWNLOADS);
+    	int timeoutSeconds = getIntServiceConfigProperty(REMOTE_BLOB_TIMEOUT_PROPERTY, RemoteBlobFetcher.DEFAULT_TIMEOUT_SECONDS);
+    	int maxSizeMB = getIntServiceConfigProperty(REMOTE_BLOB_MAX_SIZE_PROPERTY, RemoteBlobFetcher.DEFAULT_MAX_SIZE_MB);
+    	List<String> contentTypes = ServiceConfigUtils.getPropertyValues(getServiceConfig(), REMOTE_BLOB_CONTENT_TYPE_PROPERTY);
+    	RemoteBlobFetcher.configure(maxDownloads, timeoutSeconds, maxSizeMB, contentTypes);
+    	logger.info(String.format("Blobs are downloaded from URIs %d at a time, in at most %d seconds and %d MB each, with %s.",
+    			maxDownloads, timeoutSeconds, maxSizeMB,
+    			contentTypes == null || contentTypes.isEmpty() ? "any content type" : "content types " + contentTypes));
+    }
+    
+    /*
+     * Sets the limits of bulk create/update/delete requests, from the services config.
+     */
+    private void configureBulkLimits() {
+    	int maxPayloadMB = getIntServiceConfigProperty(BULK_MAX_PAYLOAD_SIZE_PROPERTY, BulkPayload.DEFAULT_MAX_PAYLOAD_MB);
+    	int maxOperations = getIntServiceConfigProperty(BULK_MAX_OPERATIONS_PROPERTY, BulkPayload.DEFAULT_MAX_OPERATIONS);
+    	BulkPayload.configure(maxPayloadMB, maxOperations);
+    	logger.info(String.format("Bulk requests can be at most %d MB, with at most %d operations.",
+    			Math.max(maxPayloadMB, 1), Math.max(maxOperations, 1)));
+    }
+    
+    private int getIntServiceConfigProperty(String propName, int defaultValue) {
+    	int result = defaultValue;
+    	
+    	List<String> values = ServiceConfigUtils.getPropertyValues(getServiceConfig(), propName);
+    	if (values != null && values.isEmpty() == false && Tools.isBlank(values.get(0)) == false) {
+    		try {
+    			result = Integer.parseInt(values.get(0).trim());
+    		} catch (NumberFormatException e) {
+    			logger.warn(String.format("The services config property '%s' is not a number: %s", propName, values.get(0)));
+    		}
+    	}
+    	
+    	return result;
+    }
+    
+    private boolean getBooleanServiceConfigProperty(String propName, boolean defaultValue) {
+    	boolean result = defaultValue;
+    	
+    	List<String> values = ServiceConfigUtils.getPropertyValues(getServiceConfig(), propName);
+    	if (values != null && values.isEmpty() == false && Tools.isBlank(values.get(0)) == false) {
+    		result = Boolean.parseBoolean(values.get(0).trim());
+    	}
+    	
+    	return result;
+    }
+    
+    /*
+     * The number of threads the initialization steps run on.
+     */
+    private static int getStartupThreadCount() {
+    	int result = Math.min(MAX_STARTUP_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    	
+    	String prop = System.getProperty(STARTUP_THREADS_PROPERTY);
+    	if (Tools.isBlank(prop) == false) {
+    		try {
+    			result = Math.max(1, Integer.parseInt(prop.trim()));
+    		} catch (NumberFormatException e) {
+    			logger.warn(String.format("Ignoring the invalid value '%s' of the system property '%s'.", prop, STARTUP_THREADS_PROPERTY));
+    		}
+    	}
+    	
+    	return result;
+    }
+    
+    /*
+     * Gets the lock to hold while initializing a repository, so that tenants sharing a repository don't
+     * initialize it at the same time.
+     */
+    private static Object getRepositoryLock(String repositoryName) {
+    	String key = repositoryName != null ? repositoryName : "";
+    	Object result = repositoryLocks.get(key);
+    	if (result == null) {
+    		Object lock = new Object();
+    		result = repositoryLocks.putIfAbsent(key, lock);
+    		if (result == null) {
+    			result = lock;
+    		}
+    	}
+    	
+    	return result;
+    }
+    
+    /**
+     * Registers XML element info for the parts of every service's records, built from the
+     * Nuxeo schema of each part. Parts without a schema are converted without it.
+     */
+    private void registerXmlElementInfo() {
+    	XmlElementInfoRegistry registry = XmlElementInfoRegistry.get();
+    	Hashtable<String, TenantBindingType> tenantBindingTypeMap = tenantBindingConfigReader.getTenantBindings();
+    	for (TenantBindingType tbt : tenantBindingTypeMap.values()) {
+    		for (ServiceBindingType sbt : tbt.getServiceBindings()) {
+    			if (sbt.getObject() == null) {
+    				continue;
+    			}
+    			for (ObjectPartType objectPartType : sbt.getObject().getPart()) {
+    				String partLabel = objectPartType.getLabel();
+    				if (partLabel == null || registry.getPart(partLabel) != null) {
+    					continue;
+    				}
+    				try {
+    					Schema schema = DocumentUtils.getSchemaFromName(partLabel);
+    					if (schema != null) {
+    						registry.registerPart(partLabel, DocumentUtils.getXmlElementInfo(schema));
+    					}
+    				} catch (Exception e) {
+    					logger.warn(String.format("Could not register XML element info for part '%s' of service '%s': %s",
+    							partLabel, sbt.getName(), e.getMessage()));
+    				}
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Creates the shared JAXB context for the namespace of every service's record parts.
+     * Parts without generated JAXB classes are skipped.
+     */
+    private void registerJaxbContexts() {
+    	JaxbContextRegistry registry = JaxbContextRegistry.get();
+    	Set<String> namespaceURIs = new HashSet<String>();
+    	Hashtable<String, TenantBindingType> tenantBindingTypeMap = tenantBindingConfigReader.getTenantBindings();
+    	for (TenantBindingType tbt : tenantBindingTypeMap.values()) {
+    		for (ServiceBindingType sbt : tbt.getServiceBindings()) {
+    			if (sbt.getObject() == null) {
+    				continue;
+    			}
+    			for (ObjectPartType objectPartType : sbt.getObject().getPart()) {
+    				if (objectPartType.getContent() != null && objectPartType.getContent().getXmlContent() != null) {
+    					String namespaceURI = objectPartType.getContent().getXmlContent().getNamespaceURI();
+    					if (namespaceURI != null && namespaceURIs.add(namespaceURI)) {
+    						boolean found = registry.register(namespaceURI);
+    						if (logger.isDebugEnabled() == true) {
+    							logger.debug(String.format("JAXB context for namespace '%s' %s.", namespaceURI,
+    									found ? "created" : "not found"));
+    						}
+    					}
+    				}
+    			}
+    		}
+    	}
+    }
+    
     private void showTenantStatus() {
     	Hashtable<String,TenantBindingType> tenantBindingsList = tenantBindingConfigReader.getTenantBindings(true);
     	mirrorToStdOut("++++++++++++++++ Summary - CollectionSpace tenant status. ++++++++++++++++++++++++");
@@ -276,6 +624,7 @@ public class ServiceMain {
             if (nuxeoConnector != null) {
                 nuxeoConnector.release();
             }
+            ready = false;
             instance = null;
         } catch (Exception e) {
             e.printStackTrace();
@@ -319,49 +668,62 @@ public class ServiceMain {
         //
         //Loop through all tenants in tenant-bindings.xml
         //
-        String cspaceInstanceId = getCspaceInstanceId();
         for (TenantBindingType tbt : tenantBindingTypeMap.values()) {
-        	List<String> repositoryNameList = ConfigUtils.getRepositoryNameList(tbt);
-			if (repositoryNameList != null && repositoryNameList.isEmpty() == false) {
-				//
-				// Loop through each repo/DB defined in a tenant bindings file
-				//
-				for (String repositoryName : repositoryNameList) {
-					// Define a set of columns (fields) and their associated
-					// tables, on which database indexes should always be created
-					final String COLLECTIONSPACE_CORE_TABLE_NAME = "collectionspace_core";
-					final String NUXEO_FULLTEXT_TABLE_NAME = "fulltext";
-					final String NUXEO_HIERARCHY_TABLE_NAME = "hierarchy";
-			
-					Map<Integer, List<String>> fieldsToIndex = new HashMap<Integer, List<String>>();
-					fieldsToIndex.put(1, new ArrayList<String>(Arrays.asList(COLLECTIONSPACE_CORE_TABLE_NAME, "tenantid")));
-					fieldsToIndex.put(2, new ArrayList<String>(Arrays.asList(COLLECTIONSPACE_CORE_TABLE_NAME, "updatedat")));
-					fieldsToIndex.put(3, new ArrayList<String>(Arrays.asList(NUXEO_FULLTEXT_TABLE_NAME, "jobid")));
-					fieldsToIndex.put(4, new ArrayList<String>(Arrays.asList(NUXEO_HIERARCHY_TABLE_NAME, "name")));
-			
-					// Invoke existing post-init code to create these indexes,
-					// sending in the set of values above, in contrast to
-					// drawing these values from per-tenant configuration.
-//					DataSource dataSource = JDBCTools.getDataSource(JDBCTools.NUXEO_DATASOURCE_NAME);
-					AddIndices addindices = new AddIndices();
-					List<Field> fields = new ArrayList<Field>();
-					for (Map.Entry<Integer, List<String>> entry : fieldsToIndex.entrySet()) {
-						Field field = new Field();
-						field.setTable(entry.getValue().get(0)); // Table name from List
-																	// item 0
-						field.setCol(entry.getValue().get(1)); // Column name from List item
-																// 1
-						fields.add(field);
-					}
+        	createRequiredIndices(tbt);
+        }
+	}
+
+	/**
+	 * Create required indexes (aka indices) in the database tables of each repository/db
+	 * declared in a tenant's bindings.
+	 * 
+	 * @param tbt the tenant bindings
+	 * @throws Exception
+	 */
+	void createRequiredIndices(TenantBindingType tbt) throws Exception {
+        String cspaceInstanceId = getCspaceInstanceId();
+    	List<String> repositoryNameList = ConfigUtils.getRepositoryNameList(tbt);
+		if (repositoryNameList != null && repositoryNameList.isEmpty() == false) {
+			//
+			// Loop through each repo/DB defined in a tenant bindings file
+			//
+			for (String repositoryName : repositoryNameList) {
+				// Define a set of columns (fields) and their associated
+				// tables, on which database indexes should always be created
+				final String COLLECTIONSPACE_CORE_TABLE_NAME = "collectionspace_core";
+				final String NUXEO_FULLTEXT_TABLE_NAME = "fulltext";
+				final String NUXEO_HIERARCHY_TABLE_NAME = "hierarchy";
+		
+				Map<Integer, List<String>> fieldsToIndex = new HashMap<Integer, List<String>>();
+				fieldsToIndex.put(1, new ArrayList<String>(Arrays.asList(COLLECTIONSPACE_CORE_TABLE_NAME, "tenantid")));
+				fieldsToIndex.put(2, new ArrayList<String>(Arrays.asList(COLLECTIONSPACE_CORE_TABLE_NAME, "updatedat")));
+				fieldsToIndex.put(3, new ArrayList<String>(Arrays.asList(NUXEO_FULLTEXT_TABLE_NAME, "jobid")));
+				fieldsToIndex.put(4, new ArrayList<String>(Arrays.asList(NUXEO_HIERARCHY_TABLE_NAME, "name")));
+		
+				// Invoke existing post-init code to create these indexes,
+				// sending in the set of values above, in contrast to
+				// drawing these values from per-tenant configuration.
+//				DataSource dataSource = JDBCTools.getDataSource(JDBCTools.NUXEO_DATASOURCE_NAME);
+				AddIndices addindices = new AddIndices();
+				List<Field> fields = new ArrayList<Field>();
+				for (Map.Entry<Integer, List<String>> entry : fieldsToIndex.entrySet()) {
+					Field field = new Field();
+					field.setTable(entry.getValue().get(0)); // Table name from List
+																// item 0
+					field.setCol(entry.getValue().get(1)); // Column name from List item
+															// 1
+					fields.add(field);
+				}
+				synchronized (getRepositoryLock(repositoryName)) {
 					addindices.onRepositoryInitialized(JDBCTools.NUXEO_DATASOURCE_NAME, repositoryName, cspaceInstanceId,
 							null, fields, null);
 				}
-			} else {
-				String errMsg = "repositoryNameList was empty or null.";
-				logger.error(errMsg);
-				throw new Exception(errMsg);
 			}
-        }
+		} else {
+			String errMsg = "repositoryNameList was empty or null.";
+			logger.error(errMsg);
+			throw new Exception(errMsg);
+		}
 	}
 
     public void firePostInitHandlers() throws Exception {
@@ -369,45 +731,58 @@ public class ServiceMain {
         //
         //Loop through all tenants in tenant-bindings.xml
         //
-        String cspaceInstanceId = getCspaceInstanceId();
         for (TenantBindingType tbt : tenantBindingTypeMap.values()) {
-        	//
-        	//Loop through all the services in this tenant
-        	//
-            List<ServiceBindingType> sbtList = tbt.getServiceBindings();
-            for (ServiceBindingType sbt: sbtList) {
-            	String repositoryName = null;
-            	if (sbt.getType().equalsIgnoreCase(ServiceBindingUtils.SERVICE_TYPE_SECURITY) == false) {
-            		repositoryName = ConfigUtils.getRepositoryName(tbt, sbt.getRepositoryDomain()); // Each service can have a different repo domain
-            	}
-                //Get the list of InitHandler elements, extract the first one (only one supported right now) and fire it using reflection.
-                List<org.collectionspace.services.config.service.InitHandler> list = sbt.getInitHandler();
-                if (list != null && list.size() > 0) {
-                	org.collectionspace.services.config.service.InitHandler handlerType = list.get(0);  // REM - 12/2012: We might want to think about supporting multiple post-init handlers
-                    String initHandlerClassname = handlerType.getClassname();
-                    if (Tools.isEmpty(initHandlerClassname)) {
-                        continue;
-                    }
-                    if (ServiceMain.logger.isDebugEnabled()) {
-                    	ServiceMain.logger.debug(String.format("Firing post-init handler %s ...", initHandlerClassname));
-                    }
+        	firePostInitHandlers(tbt);
+        }
+    }
+
+    /**
+     * Fires the post-init handlers of a tenant's services.  Handlers for the same repository are
+     * not fired at the same time, even by different tenants.
+     * 
+     * @param tbt the tenant bindings
+     * @throws Exception
+     */
+    public void firePostInitHandlers(TenantBindingType tbt) throws Exception {
+        String cspaceInstanceId = getCspaceInstanceId();
+    	//
+    	//Loop through all the services in this tenant
+    	//
+        List<ServiceBindingType> sbtList = tbt.getServiceBindings();
+        for (ServiceBindingType sbt: sbtList) {
+        	String repositoryName = null;
+        	if (sbt.getType().equalsIgnoreCase(ServiceBindingUtils.SERVICE_TYPE_SECURITY) == false) {
+        		repositoryName = ConfigUtils.getRepositoryName(tbt, sbt.getRepositoryDomain()); // Each service can have a different repo domain
+        	}
+            //Get the list of InitHandler elements, extract the first one (only one supported right now) and fire it using reflection.
+            List<org.collectionspace.services.config.service.InitHandler> list = sbt.getInitHandler();
+            if (list != null && list.size() > 0) {
+            	org.collectionspace.services.config.service.InitHandler handlerType = list.get(0);  // REM - 12/2012: We might want to think about supporting multiple post-init handlers
+                String initHandlerClassname = handlerType.getClassname();
+                if (Tools.isEmpty(initHandlerClassname)) {
+                    continue;
+                }
+                if (ServiceMain.logger.isDebugEnabled()) {
+                	ServiceMain.logger.debug(String.format("Firing post-init handler %s ...", initHandlerClassname));
+                }
 
-                    List<org.collectionspace.services.config.service.InitHandler.Params.Field>
-                            fields = handlerType.getParams().getField();
+                List<org.collectionspace.services.config.service.InitHandler.Params.Field>
+                        fields = handlerType.getParams().getField();
 
-                    List<org.collectionspace.services.config.service.InitHandler.Params.Property>
-                            props = handlerType.getParams().getProperty();
+                List<org.collectionspace.services.config.service.InitHandler.Params.Property>
+                        props = handlerType.getParams().getProperty();
 
-                    //org.collectionspace.services.common.service.InitHandler.Fields ft = handlerType.getFields();
-                    //List<String> fields = ft.getField();
-                    Object o = instantiate(initHandlerClassname, IInitHandler.class);
-                    if (o != null && o instanceof IInitHandler){
-                        IInitHandler handler = (IInitHandler)o;
-                        handler.onRepositoryInitialized(JDBCTools.NUXEO_DATASOURCE_NAME, repositoryName, cspaceInstanceId,
-                        		sbt, fields, props);
-                        //The InitHandler may be the default one,
-                        //  or specialized classes which still implement this interface and are registered in tenant-bindings.xml.
+                //org.collectionspace.services.common.service.InitHandler.Fields ft = handlerType.getFields();
+                //List<String> fields = ft.getField();
+                Object o = instantiate(initHandlerClassname, IInitHandler.class);
+                if (o != null && o instanceof IInitHandler){
+                    IInitHandler handler = (IInitHandler)o;
+                    synchronized (getRepositoryLock(repositoryName)) {
+	                    handler.onRepositoryInitialized(JDBCTools.NUXEO_DATASOURCE_NAME, repositoryName, cspaceInstanceId,
+	                    		sbt, fields, props);
                     }
+                    //The InitHandler may be the default one,
+                    //  or specialized classes which still implement this interface and are registered in tenant-bindings.xml.
                 }
             }
         }
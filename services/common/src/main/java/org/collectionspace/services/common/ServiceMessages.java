@@ -44,6 +44,7 @@ public class ServiceMessages {
     public static final String READ_FAILED = "Read request " + FAILED;
     public static final String REINDEX_FAILED = "Reindex request " + FAILED;
     public static final String UPDATE_FAILED = "Update request " + FAILED;
+    public static final String BULK_FAILED = "Bulk request " + FAILED;
     
     public static final String POST_UNSUPPORTED = "POST " + UNSUPPORTED;
     public static final String GET_UNSUPPORTED = "GET " + UNSUPPORTED;
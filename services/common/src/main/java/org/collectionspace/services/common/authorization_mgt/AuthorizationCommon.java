@@ -11,11 +11,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.naming.NamingException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 
 import org.collectionspace.authentication.AuthN;
 import org.collectionspace.services.authorization.AuthZ;
@@ -32,13 +39,13 @@ import org.collectionspace.services.authorization.perms.ActionType;
 import org.collectionspace.services.authorization.perms.EffectType;
 import org.collectionspace.services.authorization.perms.Permission;
 import org.collectionspace.services.authorization.perms.PermissionAction;
-import org.collectionspace.services.client.Profiler;
 import org.collectionspace.services.client.RoleClient;
 import org.collectionspace.services.client.workflow.WorkflowClient;
 import org.collectionspace.services.common.config.ServiceConfigUtils;
 import org.collectionspace.services.common.config.TenantBindingConfigReaderImpl;
 import org.collectionspace.services.common.context.ServiceBindingUtils;
 import org.collectionspace.services.common.document.DocumentHandler;
+import org.collectionspace.services.common.document.JaxbUtils;
 import org.collectionspace.services.common.security.SecurityUtils;
 import org.collectionspace.services.common.storage.DatabaseProductType;
 import org.collectionspace.services.common.storage.JDBCTools;
@@ -58,6 +65,14 @@ import org.springframework.security.acls.model.AlreadyExistsException;
 public class AuthorizationCommon {
 	
 	final public static String REFRESH_AUTZ_PROP = "refreshAuthZOnStartup";
+	
+	// The maximum number of tenants whose workflow permissions are created/verified at the same time
+	final private static int MAX_WORKFLOW_PERMISSION_THREADS = 4;
+	// The number of workflow permission inserts sent to the database together
+	final private static int WORKFLOW_PERMISSION_FLUSH_SIZE = 50;
+	// Spring's JDBC ACL service creates the shared class and SID rows it needs on demand, so the ACL
+	// writes of tenants processed in parallel are serialized
+	final private static Object ACL_WRITE_LOCK = new Object();
     //
     // ActionGroup labels/constants
     //
@@ -1071,114 +1086,272 @@ public class AuthorizationCommon {
 		return result;
 	}
 	
+    /*
+     * A workflow permission that should exist, and the role it should be related to.
+     */
+    private static class WorkflowPermissionGrant {
+    	final Permission permission;
+    	final Role role;
+    	PermissionRole permRole; // Set if the permission and role need to be related
+    	
+    	WorkflowPermissionGrant(Permission permission, Role role) {
+    		this.permission = permission;
+    		this.role = role;
+    	}
+    	
+    	String getPermRoleRelKey() {
+    		return getPermRoleRelKey(permission.getCsid(), role.getCsid());
+    	}
+    	
+    	static String getPermRoleRelKey(String permissionId, String roleId) {
+    		return permissionId + "|" + roleId;
+    	}
+    }
+    
+    /**
+     * Creates the workflow permissions of every tenant's services, and relates them to the tenant's
+     * administrator and reader roles. Only the permissions, permission-role relationships, and Spring
+     * Security ACL entries that don't already exist are created, so this does little work on a restart.
+     * The tenants are processed in parallel.
+     */
     public static void createDefaultWorkflowPermissions(TenantBindingConfigReaderImpl tenantBindingConfigReader) throws Exception //FIXME: REM - 4/11/2012 - Rename to createWorkflowPermissions
     {
     	AuthZ.get().login(); //login to Spring Security manager
+    	long startTime = System.currentTimeMillis();
     	
-        EntityManagerFactory emf = JpaStorageUtils.getEntityManagerFactory(JpaStorageUtils.CS_PERSISTENCE_UNIT);
-        EntityManager em = null;
+        final EntityManagerFactory emf = JpaStorageUtils.getEntityManagerFactory(JpaStorageUtils.CS_PERSISTENCE_UNIT);
+        ExecutorService executor = null;
 
         try {
-            em = emf.createEntityManager();
-
 	        Hashtable<String, TenantBindingType> tenantBindings =
 	            	tenantBindingConfigReader.getTenantBindings();
-	        for (String tenantId : tenantBindings.keySet()) {
-	        	logger.info(String.format("Creating/verifying workflow permissions for tenant ID=%s.", tenantId));
-		        TenantBindingType tenantBinding = tenantBindings.get(tenantId);
-	    		Role adminRole = AuthorizationCommon.getRole(em, tenantBinding.getId(), ROLE_TENANT_ADMINISTRATOR);
-	    		Role readonlyRole = AuthorizationCommon.getRole(em, tenantBinding.getId(), ROLE_TENANT_READER);
-		        for (ServiceBindingType serviceBinding : tenantBinding.getServiceBindings()) {
-		        	String prop = ServiceBindingUtils.getPropertyValue(serviceBinding, REFRESH_AUTZ_PROP);
-		        	if (prop == null ? true : Boolean.parseBoolean(prop)) {
-			        		try {
-			        		em.getTransaction().begin();
-				        	TransitionDefList transitionDefList = getTransitionDefList(tenantBinding, serviceBinding);
-				        	HashSet<String> transitionVerbList = getTransitionVerbList(tenantBinding, serviceBinding);
-				        	for (String transitionVerb : transitionVerbList) {
-				        		//
-				        		// Create the permission for the admin role
-				        		Permission adminPerm = createWorkflowPermission(tenantBinding, serviceBinding, transitionVerb, ACTIONGROUP_CRUDL);
-				        		persist(em, adminPerm, adminRole, true, ACTIONGROUP_CRUDL);
-				        		//
-				        		// Create the permission for the read-only role
-				        		Permission readonlyPerm = createWorkflowPermission(tenantBinding, serviceBinding, transitionVerb, ACTIONGROUP_RL);				        		
-				        		persist(em, readonlyPerm, readonlyRole, true, ACTIONGROUP_RL); // Persist/store the permission and permrole records and related Spring Security info
-				        	}
-				        	em.getTransaction().commit();
-			        	} catch (IllegalStateException e) {
-			        		logger.debug(e.getLocalizedMessage(), e); //We end up here if there is no document handler for the service -this is ok for some of the services.
-			        	}
-		        	} else {
-		        		logger.warn("AuthZ refresh service binding property is set to FALSE so default permissions will NOT be refreshed for: "
-		        				+ serviceBinding.getName());
-		        	}
-		        }
+	        int threadCount = Math.max(1, Math.min(tenantBindings.size(), MAX_WORKFLOW_PERMISSION_THREADS));
+	        executor = Executors.newFixedThreadPool(threadCount);
+	        
+	        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+	        for (final TenantBindingType tenantBinding : tenantBindings.values()) {
+	        	futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						AuthZ.get().login(); // The Spring Security context is per thread
+						createWorkflowPermissions(emf, tenantBinding);
+						return null;
+					}
+	        	}));
 	        }
-            em.close();
+	        
+	        Exception failure = null;
+	        for (Future<Void> future : futures) {
+	        	try {
+	        		future.get();
+	        	} catch (ExecutionException e) {
+	        		if (failure == null) {
+	        			failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+	        		}
+	        	}
+	        }
+	        if (failure != null) {
+	        	throw failure;
+	        }
+	        
+	        logger.info(String.format("Created/verified the workflow permissions of %d tenant(s) in %d ms.",
+	        		tenantBindings.size(), System.currentTimeMillis() - startTime));
     	} catch (Exception e) {
-            if (em != null && em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
             if (logger.isDebugEnabled()) {
                 logger.debug("Caught exception and rolling back permission creation: ", e);
             }
             throw e;
         } finally {
-            if (em != null) {
-                JpaStorageUtils.releaseEntityManagerFactory(emf);
-            }
+        	if (executor != null) {
+        		executor.shutdownNow();
+        	}
+            JpaStorageUtils.releaseEntityManagerFactory(emf);
         }
     }
     
-    private static PermissionRoleRel findPermRoleRel(EntityManager em, String permissionId, String RoleId) {
-    	PermissionRoleRel result = null;
+    /*
+     * Creates the missing workflow permissions of a tenant in three phases: the permissions the tenant's services
+     * should have are computed in memory, then diffed with the existing permissions and permission-role relationships
+     * (read in bulk), and then only the missing ones are created, in one transaction.
+     */
+    private static void createWorkflowPermissions(EntityManagerFactory emf, TenantBindingType tenantBinding) throws Exception {
+    	String tenantId = tenantBinding.getId();
+    	logger.info(String.format("Creating/verifying workflow permissions for tenant ID=%s.", tenantId));
     	
+    	EntityManager em = null;
     	try {
-	        String whereClause = "where permissionId = :id and roleId = :roleId";
-	        HashMap<String, Object> params = new HashMap<String, Object>();
-	        params.put("id", permissionId);
-	        params.put("roleId", RoleId);        
-	
-	        result = (PermissionRoleRel) JpaStorageUtils.getEntity(em,
-	        		PermissionRoleRel.class.getCanonicalName(), whereClause, params);
+    		em = emf.createEntityManager();
+    		
+    		//
+    		// Compute the permissions
+    		//
+    		long phaseStartTime = System.currentTimeMillis();
+    		Role adminRole = AuthorizationCommon.getRole(em, tenantId, ROLE_TENANT_ADMINISTRATOR);
+    		Role readonlyRole = AuthorizationCommon.getRole(em, tenantId, ROLE_TENANT_READER);
+    		if (adminRole == null || readonlyRole == null) {
+    			throw new Exception(String.format("The %s and %s roles of tenant ID=%s must exist before its workflow permissions can be created.",
+    					ROLE_TENANT_ADMINISTRATOR, ROLE_TENANT_READER, tenantId));
+    		}
+    		List<WorkflowPermissionGrant> grants = getWorkflowPermissionGrants(tenantBinding, adminRole, readonlyRole);
+    		long computeTime = System.currentTimeMillis() - phaseStartTime;
+    		
+    		//
+    		// Diff them with the existing ones
+    		//
+    		phaseStartTime = System.currentTimeMillis();
+    		Set<String> existingPermissionIds = findPermissionIds(em, tenantId);
+    		Set<String> existingPermRoleRelKeys = findPermRoleRelKeys(em, adminRole.getCsid(), readonlyRole.getCsid());
+    		List<Permission> missingPermissions = new ArrayList<Permission>();
+    		List<WorkflowPermissionGrant> missingGrants = new ArrayList<WorkflowPermissionGrant>();
+    		for (WorkflowPermissionGrant grant : grants) {
+    			if (existingPermissionIds.add(grant.permission.getCsid()) == true) {
+    				missingPermissions.add(grant.permission);
+    			}
+    			if (existingPermRoleRelKeys.add(grant.getPermRoleRelKey()) == true) {
+    				grant.permRole = createPermissionRole(em, grant.permission, grant.role, true);
+    				missingGrants.add(grant);
+    			}
+    		}
+    		long diffTime = System.currentTimeMillis() - phaseStartTime;
+    		
+    		//
+    		// Create the missing ones
+    		//
+    		phaseStartTime = System.currentTimeMillis();
+    		if (missingPermissions.isEmpty() == false || missingGrants.isEmpty() == false) {
+	    		em.getTransaction().begin();
+	    		int pendingCount = 0;
+	    		for (Permission permission : missingPermissions) {
+	    			persistNew(em, permission);
+	    			pendingCount = flushIfFull(em, pendingCount + 1);
+	    		}
+	    		for (WorkflowPermissionGrant grant : missingGrants) {
+	    	        List<PermissionRoleRel> permRoleRels = new ArrayList<PermissionRoleRel>();
+	    	        PermissionRoleUtil.buildPermissionRoleRel(em, grant.permRole, SubjectType.ROLE, permRoleRels, false /*not for delete*/);
+	    	        for (PermissionRoleRel prr : permRoleRels) {
+	    	        	persistNew(em, prr);
+	    	        	pendingCount = flushIfFull(em, pendingCount + 1);
+	    	        }
+	    		}
+	    		//
+	    		// Add the corresponding entries in the Spring Security tables before committing, so if this fails the
+	    		// permission-role relationships are rolled back, and created again on the next startup.
+	    		//
+	    		synchronized (ACL_WRITE_LOCK) {
+		    		for (WorkflowPermissionGrant grant : missingGrants) {
+		    			addPermissionsForUri(grant.permission, grant.permRole);
+		    		}
+	    		}
+	    		em.getTransaction().commit();
+    		}
+    		long applyTime = System.currentTimeMillis() - phaseStartTime;
+    		
+    		logger.info(String.format("Workflow permissions for tenant ID=%s: computed %d in %d ms, diffed in %d ms,"
+    				+ " created %d permission(s) and %d permission-role relationship(s) in %d ms.",
+    				tenantId, grants.size(), computeTime, diffTime, missingPermissions.size(), missingGrants.size(), applyTime));
     	} catch (Exception e) {
-    		//Do nothing. Will return null;
+            if (em != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+    	} finally {
+    		if (em != null) {
+    			em.close();
+    		}
     	}
-    	    	
-    	return result;
     }
     
     /*
-     * Persists the Permission, PermissionRoleRel, and Spring Security table entries all in one transaction
+     * Gets the workflow permissions a tenant's services should have, for the tenant's admin and read-only roles.
      */
-    private static void persist(EntityManager em, Permission permission, Role role, boolean enforceTenancy, ActionGroup actionGroup) throws Exception {
-		AuthorizationStore authzStore = new AuthorizationStore();
-		// First persist the Permission record
-		authzStore.store(em, permission);
-		
-		// If the PermRoleRel doesn't already exists then relate the permission and the role in a new PermissionRole (the service payload)
-		// Create a PermissionRoleRel (the database relation table for the permission and role)
-		PermissionRoleRel permRoleRel = findPermRoleRel(em, permission.getCsid(), role.getCsid());
-		if (permRoleRel == null) {
-			PermissionRole permRole = createPermissionRole(em, permission, role, enforceTenancy);
-	        List<PermissionRoleRel> permRoleRels = new ArrayList<PermissionRoleRel>();
-	        PermissionRoleUtil.buildPermissionRoleRel(em, permRole, SubjectType.ROLE, permRoleRels, false /*not for delete*/);
-	        for (PermissionRoleRel prr : permRoleRels) {
-	            authzStore.store(em, prr);
-	        }
-			Profiler profiler = new Profiler(AuthorizationCommon.class, 2);
-			profiler.start();
-			// Add a corresponding entry in the Spring Security Tables
-			addPermissionsForUri(permission, permRole);
-			profiler.stop();
-			logger.debug("Finished full perm generation for "
-					+ ":" + permission.getTenantId()
-					+ ":" + permission.getResourceName()
-					+ ":" + actionGroup.getName()
-					+ ":" + profiler.getCumulativeTime());
-		}
+    private static List<WorkflowPermissionGrant> getWorkflowPermissionGrants(TenantBindingType tenantBinding,
+    		Role adminRole, Role readonlyRole) {
+    	List<WorkflowPermissionGrant> result = new ArrayList<WorkflowPermissionGrant>();
+    	
+        for (ServiceBindingType serviceBinding : tenantBinding.getServiceBindings()) {
+        	String prop = ServiceBindingUtils.getPropertyValue(serviceBinding, REFRESH_AUTZ_PROP);
+        	if (prop == null ? true : Boolean.parseBoolean(prop)) {
+        		try {
+		        	HashSet<String> transitionVerbList = getTransitionVerbList(tenantBinding, serviceBinding);
+		        	for (String transitionVerb : transitionVerbList) {
+		        		//
+		        		// The permission for the admin role
+		        		Permission adminPerm = createWorkflowPermission(tenantBinding, serviceBinding, transitionVerb, ACTIONGROUP_CRUDL);
+		        		result.add(new WorkflowPermissionGrant(adminPerm, adminRole));
+		        		//
+		        		// The permission for the read-only role
+		        		Permission readonlyPerm = createWorkflowPermission(tenantBinding, serviceBinding, transitionVerb, ACTIONGROUP_RL);
+		        		result.add(new WorkflowPermissionGrant(readonlyPerm, readonlyRole));
+		        	}
+	        	} catch (IllegalStateException e) {
+	        		logger.debug(e.getLocalizedMessage(), e); //We end up here if there is no document handler for the service -this is ok for some of the services.
+	        	}
+        	} else {
+        		logger.warn("AuthZ refresh service binding property is set to FALSE so default permissions will NOT be refreshed for: "
+        				+ serviceBinding.getName());
+        	}
+        }
         
+        return result;
+    }
+    
+    /*
+     * Gets the IDs of all the permissions of a tenant.
+     */
+    private static Set<String> findPermissionIds(EntityManager em, String tenantId) {
+    	Set<String> result = new HashSet<String>();
+    	
+    	Query q = em.createQuery("SELECT p.csid FROM " + Permission.class.getName() + " p WHERE p.tenantId = :tenantId");
+    	q.setParameter("tenantId", tenantId);
+    	for (Object csid : q.getResultList()) {
+    		result.add((String) csid);
+    	}
+    	
+    	return result;
+    }
+    
+    /*
+     * Gets the keys (see WorkflowPermissionGrant.getPermRoleRelKey) of all the permission-role relationships of two roles.
+     */
+    private static Set<String> findPermRoleRelKeys(EntityManager em, String adminRoleId, String readonlyRoleId) {
+    	Set<String> result = new HashSet<String>();
+    	
+    	Query q = em.createQuery("SELECT prr.permissionId, prr.roleId FROM " + PermissionRoleRel.class.getName()
+    			+ " prr WHERE prr.roleId = :adminRoleId OR prr.roleId = :readonlyRoleId");
+    	q.setParameter("adminRoleId", adminRoleId);
+    	q.setParameter("readonlyRoleId", readonlyRoleId);
+    	for (Object row : q.getResultList()) {
+    		Object[] columns = (Object[]) row;
+    		result.add(WorkflowPermissionGrant.getPermRoleRelKey((String) columns[0], (String) columns[1]));
+    	}
+    	
+    	return result;
+    }
+    
+    /*
+     * Persists an entity known not to exist yet.
+     */
+    private static void persistNew(EntityManager em, Object entity) throws Exception {
+        if (JaxbUtils.getValue(entity, "getCreatedAt") == null) {
+            JaxbUtils.setValue(entity, "setCreatedAtItem", Date.class, new Date());
+        }
+        em.persist(entity);
+    }
+    
+    /*
+     * Flushes the pending inserts to the database once there are WORKFLOW_PERMISSION_FLUSH_SIZE of them, so they
+     * are sent in JDBC batches and the persistence context doesn't grow with the number of services.
+     */
+    private static int flushIfFull(EntityManager em, int pendingCount) {
+    	int result = pendingCount;
+    	
+    	if (pendingCount >= WORKFLOW_PERMISSION_FLUSH_SIZE) {
+    		em.flush();
+    		em.clear();
+    		result = 0;
+    	}
+    	
+    	return result;
     }
 
 }
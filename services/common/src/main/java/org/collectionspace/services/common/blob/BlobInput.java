@@ -11,7 +11,6 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.HttpServletRequest;
 
 import org.collectionspace.services.nuxeo.client.java.CommonList;
-import org.collectionspace.services.common.Download;
 import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.imaging.nuxeo.NuxeoBlobUtils;
 
@@ -20,7 +19,6 @@ import org.apache.commons.io.FileUtils;
 public class BlobInput {
 	private final Logger logger = LoggerFactory.getLogger(BlobInput.class);
 	private final static String FILE_ACCESS_ERROR = "The following file is either missing or cannot be read: ";
-	private final static String URL_DOWNLOAD_FAILED = "Could not download file from the following URL: ";
 	
 	private String blobCsid = null;
 	private File blobFile = null;
@@ -195,24 +193,20 @@ public class BlobInput {
 		URL blobUrl = new URL(theBlobUri);
     	File theBlobFile = null;
 		if (isProtocolHttp(blobUrl) == true) {
-			Download fetchedFile = new Download(blobUrl);
 			if (logger.isDebugEnabled() == true) {
-				logger.debug("Starting blob download into temp file:" + fetchedFile.getFilePath());
+				logger.debug("Starting blob download from: " + blobUrl);
 			}
-			while (fetchedFile.getStatus() == Download.DOWNLOADING) {
-				// Do nothing while we wait for the file to download
+			RemoteBlobFetcher.FetchedFile fetchedFile = null;
+			try {
+				fetchedFile = RemoteBlobFetcher.get().fetch(blobUrl);
+			} catch (DocumentException e) {
+				logger.error(e.getMessage());
+				throw e;
 			}
+			theBlobFile = fetchedFile.getFile();
 			if (logger.isDebugEnabled() == true) {
-				logger.debug("Finished blob download into temp file: " + fetchedFile.getFilePath());
-			}
-			
-			int status = fetchedFile.getStatus();
-			if (status == Download.COMPLETE) {
-				theBlobFile = fetchedFile.getFile();
-			} else {
-				String msg = URL_DOWNLOAD_FAILED + theBlobUri;
-				logger.error(msg);
-				throw new DocumentException(msg);
+				logger.debug(String.format("Finished blob download into temp file: %s (%d bytes, digest %s)",
+						theBlobFile.getAbsolutePath(), fetchedFile.getSize(), fetchedFile.getDigest()));
 			}
 		} else if (blobUrl.getProtocol().equalsIgnoreCase("file")) {
 			theBlobFile = FileUtils.toFile(blobUrl);
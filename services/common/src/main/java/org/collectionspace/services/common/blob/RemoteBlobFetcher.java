@@ -0,0 +1,364 @@
+/**
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Copyright 2009 University of California at Berkeley
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.blob;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.collectionspace.services.common.document.DocumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the files of blobs created from http(s) URIs -e.g., by the media and blob services' "blobUri"
+ * query param. The files are downloaded by a small, bounded pool of threads, so that a batch of media
+ * records created from URLs can't tie up the server, and each download is limited in time and size.
+ *
+ * A download is retried, with a growing delay, when the remote server can't be reached or answers with
+ * a 5xx (or 429) status. Responses that are too large, or whose content type isn't allowed, fail right away.
+ * The file is streamed to a temp file, and its MD5 digest (the digest Nuxeo's binary store keys blobs by)
+ * is computed on the way.
+ */
+public class RemoteBlobFetcher {
+	private static final Logger logger = LoggerFactory.getLogger(RemoteBlobFetcher.class);
+
+	public static final int DEFAULT_MAX_DOWNLOADS = 4;
+	public static final int DEFAULT_TIMEOUT_SECONDS = 300;
+	public static final int DEFAULT_MAX_SIZE_MB = 1024;
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	private static final String URL_DOWNLOAD_FAILED = "Could not download file from the following URL: ";
+	private static final String DIGEST_ALGORITHM = "MD5";
+	private static final String DEFAULT_FILE_NAME = "blob";
+	private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+	private static final int READ_TIMEOUT_MILLIS = 60 * 1000;
+	private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** The number of downloads that can wait for a thread, for each thread */
+	private static final int QUEUED_DOWNLOADS_PER_THREAD = 4;
+
+	private static volatile RemoteBlobFetcher instance = new RemoteBlobFetcher(DEFAULT_MAX_DOWNLOADS,
+			DEFAULT_TIMEOUT_SECONDS * 1000L, DEFAULT_MAX_SIZE_MB * 1024L * 1024L, DEFAULT_MAX_ATTEMPTS, null);
+
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	private final long maxBytes;
+	private final int maxAttempts;
+	private final List<String> allowedContentTypes;
+
+	/**
+	 * @param maxDownloads the number of files downloaded at the same time
+	 * @param timeoutMillis how long a download may take, including its retries
+	 * @param maxBytes the size of the largest file that can be downloaded
+	 * @param maxAttempts how many times a download is tried
+	 * @param allowedContentTypes the content types (or prefixes of content types, e.g. "image/") of the files that
+	 *            can be downloaded. Null or empty to allow any content type.
+	 */
+	public RemoteBlobFetcher(int maxDownloads, long timeoutMillis, long maxBytes, int maxAttempts,
+			List<String> allowedContentTypes) {
+		maxDownloads = Math.max(maxDownloads, 1);
+		this.timeoutMillis = Math.max(timeoutMillis, 1);
+		this.maxBytes = maxBytes;
+		this.maxAttempts = Math.max(maxAttempts, 1);
+		this.allowedContentTypes = allowedContentTypes != null ?
+				Collections.unmodifiableList(new ArrayList<String>(allowedContentTypes)) : Collections.<String>emptyList();
+		this.executor = new ThreadPoolExecutor(maxDownloads, maxDownloads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxDownloads * QUEUED_DOWNLOADS_PER_THREAD), new DownloadThreadFactory());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static RemoteBlobFetcher get() {
+		return instance;
+	}
+
+	/**
+	 * Replaces the fetcher returned by get(). Downloads already started by the previous one are finished.
+	 */
+	public static synchronized void configure(int maxDownloads, int timeoutSeconds, int maxSizeMB,
+			List<String> allowedContentTypes) {
+		RemoteBlobFetcher previous = instance;
+		instance = new RemoteBlobFetcher(maxDownloads, timeoutSeconds * 1000L, maxSizeMB * 1024L * 1024L,
+				DEFAULT_MAX_ATTEMPTS, allowedContentTypes);
+		previous.shutdown();
+	}
+
+	/**
+	 * Stops the download threads once their downloads are finished.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Downloads the file at a http(s) URL into a new temp directory. The file keeps the name it has in the URL.
+	 *
+	 * @throws DocumentException if the file couldn't be downloaded, with the HTTP status to respond with
+	 */
+	public FetchedFile fetch(URL url) throws DocumentException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		Future<FetchedFile> future = null;
+		try {
+			future = executor.submit(new DownloadTask(url, deadline));
+		} catch (RejectedExecutionException e) {
+			throw new DocumentException(HttpURLConnection.HTTP_UNAVAILABLE,
+					"Too many files are being downloaded, try again later: " + url);
+		}
+
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new DocumentException(HttpURLConnection.HTTP_GATEWAY_TIMEOUT,
+					URL_DOWNLOAD_FAILED + url + " (timed out after " + timeoutMillis + " ms)");
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new DocumentException(URL_DOWNLOAD_FAILED + url + " (interrupted)");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof DocumentException) {
+				throw (DocumentException) e.getCause();
+			}
+			throw new DocumentException(URL_DOWNLOAD_FAILED + url, e.getCause());
+		}
+	}
+
+	/**
+	 * A downloaded file.
+	 */
+	public static class FetchedFile {
+		private final File file;
+		private final String contentType;
+		private final long size;
+		private final String digest;
+
+		FetchedFile(File file, String contentType, long size, String digest) {
+			this.file = file;
+			this.contentType = contentType;
+			this.size = size;
+			this.digest = digest;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/** @return the content type sent by the remote server, or null */
+		public String getContentType() {
+			return contentType;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		/** @return the hex-encoded MD5 digest of the file */
+		public String getDigest() {
+			return digest;
+		}
+	}
+
+	/*
+	 * Thrown by a download attempt that may succeed if it's tried again
+	 */
+	private static class RetryableException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		RetryableException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	private class DownloadTask implements Callable<FetchedFile> {
+		private final URL url;
+		private final long deadline;
+
+		DownloadTask(URL url, long deadline) {
+			this.url = url;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public FetchedFile call() throws Exception {
+			long retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+			for (int attempt = 1; ; attempt++) {
+				try {
+					return download(url, deadline);
+				} catch (RetryableException e) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (attempt >= maxAttempts || retryDelay >= remaining) {
+						throw new DocumentException(HttpURLConnection.HTTP_BAD_GATEWAY,
+								URL_DOWNLOAD_FAILED + url + " (" + e.getMessage() + ")");
+					}
+					logger.warn(String.format("Download attempt %d of %s failed (%s), retrying in %d ms.",
+							attempt, url, e.getMessage(), retryDelay));
+					Thread.sleep(retryDelay);
+					retryDelay *= 2;
+				}
+			}
+		}
+	}
+
+	private FetchedFile download(URL url, long deadline) throws RetryableException, DocumentException, InterruptedException {
+		File destDir = null;
+		boolean succeeded = false;
+		HttpURLConnection connection = null;
+		try {
+			int remaining = (int) Math.min(deadline - System.currentTimeMillis(), Integer.MAX_VALUE);
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setConnectTimeout(Math.max(Math.min(CONNECT_TIMEOUT_MILLIS, remaining), 1));
+			connection.setReadTimeout(Math.max(Math.min(READ_TIMEOUT_MILLIS, remaining), 1));
+
+			int status = connection.getResponseCode();
+			if (status >= 500 || status == 429) {
+				throw new RetryableException("HTTP status " + status, null);
+			} else if (status / 100 != 2) {
+				throw new DocumentException(HttpURLConnection.HTTP_BAD_REQUEST,
+						URL_DOWNLOAD_FAILED + url + " (HTTP status " + status + ")");
+			}
+
+			long contentLength = connection.getContentLengthLong();
+			if (contentLength > maxBytes) {
+				throw new DocumentException(HttpURLConnection.HTTP_BAD_REQUEST,
+						URL_DOWNLOAD_FAILED + url + " (the file is larger than " + maxBytes + " bytes)");
+			}
+			String contentType = connection.getContentType();
+			if (isAllowedContentType(contentType) == false) {
+				throw new DocumentException(HttpURLConnection.HTTP_BAD_REQUEST,
+						URL_DOWNLOAD_FAILED + url + " (content type " + contentType + " is not allowed)");
+			}
+
+			destDir = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+			if (destDir.mkdir() == false) {
+				throw new DocumentException("Could not create the directory to download files to: " + destDir);
+			}
+			File file = new File(destDir, getFileName(url));
+			MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			long size = 0;
+			InputStream in = connection.getInputStream();
+			try {
+				OutputStream out = new FileOutputStream(file);
+				try {
+					byte[] buffer = new byte[BUFFER_SIZE];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						size += read;
+						if (size > maxBytes) {
+							throw new DocumentException(HttpURLConnection.HTTP_BAD_REQUEST,
+									URL_DOWNLOAD_FAILED + url + " (the file is larger than " + maxBytes + " bytes)");
+						}
+						if (Thread.interrupted()) {
+							throw new InterruptedException("Download of " + url + " was cancelled");
+						}
+						digest.update(buffer, 0, read);
+						out.write(buffer, 0, read);
+					}
+				} finally {
+					out.close();
+				}
+			} finally {
+				in.close();
+			}
+			if (contentLength >= 0 && size != contentLength) {
+				throw new RetryableException(String.format("received %d of %d bytes", size, contentLength), null);
+			}
+
+			succeeded = true;
+			FetchedFile result = new FetchedFile(file, contentType, size, toHex(digest.digest()));
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("Downloaded %s into %s (%d bytes, %s digest %s)", url, file, size,
+						DIGEST_ALGORITHM, result.getDigest()));
+			}
+			return result;
+		} catch (IOException e) {
+			throw new RetryableException(e.toString(), e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new DocumentException(e);
+		} finally {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			if (succeeded == false && destDir != null) {
+				FileUtils.deleteQuietly(destDir);
+			}
+		}
+	}
+
+	private boolean isAllowedContentType(String contentType) {
+		if (allowedContentTypes.isEmpty()) {
+			return true;
+		}
+		if (contentType != null) {
+			String mimeType = contentType.toLowerCase();
+			for (String allowedContentType : allowedContentTypes) {
+				if (mimeType.startsWith(allowedContentType.trim().toLowerCase())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the last segment of the URL's path, as a plain file name
+	 */
+	public static String getFileName(URL url) {
+		String result = url.getPath();
+		result = result.substring(result.lastIndexOf('/') + 1).replace('\\', '_');
+		if (result.isEmpty() || result.equals(".") || result.equals("..")) {
+			result = DEFAULT_FILE_NAME;
+		}
+		return result;
+	}
+
+	private static String toHex(byte[] bytes) {
+		return String.format("%0" + (bytes.length * 2) + "x", new BigInteger(1, bytes));
+	}
+
+	private static class DownloadThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable, "blob-download-" + count.incrementAndGet());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
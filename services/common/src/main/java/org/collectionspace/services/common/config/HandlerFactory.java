@@ -0,0 +1,70 @@
+package org.collectionspace.services.common.config;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates instances of a handler class named in a service binding (e.g., a
+ * document handler or a validator handler). The class and its no-argument
+ * constructor are looked up once, when the factory is created, so creating
+ * an instance does no class loading or reflective lookups.
+ *
+ * @param <T> the handler type
+ */
+public class HandlerFactory<T> {
+	private final Constructor<? extends T> constructor;
+
+	private HandlerFactory(Constructor<? extends T> constructor) {
+		this.constructor = constructor;
+	}
+
+	/**
+	 * Creates a factory for a handler class.
+	 *
+	 * @param className the name of the handler class
+	 * @param type the type the handler class must implement
+	 * @param classLoader the class loader to load the handler class with
+	 * @return the factory
+	 * @throws ClassNotFoundException if the class could not be found
+	 * @throws NoSuchMethodException if the class has no no-argument constructor
+	 * @throws IllegalArgumentException if the class is not of the expected type
+	 */
+	public static <T> HandlerFactory<T> create(String className, Class<T> type, ClassLoader classLoader)
+			throws ClassNotFoundException, NoSuchMethodException {
+		Class<?> c = classLoader.loadClass(className);
+		if (type.isAssignableFrom(c) == false) {
+			throw new IllegalArgumentException("Not of type " + type.getCanonicalName());
+		}
+		Constructor<? extends T> constructor = c.asSubclass(type).getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return new HandlerFactory<T>(constructor);
+	}
+
+	/**
+	 * @return the handler class
+	 */
+	public Class<? extends T> getHandlerClass() {
+		return constructor.getDeclaringClass();
+	}
+
+	/**
+	 * Creates a new instance of the handler class.
+	 *
+	 * @return the new handler
+	 * @throws Exception the exception thrown by the handler's constructor, if any
+	 */
+	public T newInstance() throws Exception {
+		try {
+			return constructor.newInstance();
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package org.collectionspace.services.common.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.collectionspace.services.common.context.ServiceBindingUtils;
+import org.collectionspace.services.common.document.DocumentHandler;
+import org.collectionspace.services.common.document.ValidatorHandler;
+import org.collectionspace.services.common.vocabulary.RefNameServiceUtils.AuthRefConfigInfo;
+import org.collectionspace.services.config.service.ObjectPartType;
+import org.collectionspace.services.config.service.ServiceBindingType;
+import org.collectionspace.services.config.service.ServiceObjectType;
+import org.collectionspace.services.config.types.PropertyItemType;
+import org.collectionspace.services.config.types.PropertyType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The properties of a service binding, compiled into maps so that they can be
+ * looked up without walking the JAXB property lists. The compiled properties are
+ * immutable, and reflect the binding at the time it was compiled. The factories
+ * for the binding's handler classes are resolved once, by ServiceConfigUtils.
+ *
+ * The instances for the bindings of all tenants are compiled by
+ * TenantBindingConfigReaderImpl, which publishes them here, and looked up by
+ * ServiceBindingUtils. Bindings that were not compiled (or were compiled by
+ * another reader) have no instance, and callers fall back to the property lists.
+ */
+public class ServiceBindingInfo {
+	private static final Logger logger = LoggerFactory.getLogger(ServiceBindingInfo.class);
+
+	/** The compiled bindings, keyed by identity. Replaced, never modified. */
+	private static volatile Map<ServiceBindingType, ServiceBindingInfo> published =
+			Collections.<ServiceBindingType, ServiceBindingInfo>emptyMap();
+
+	/** The names of the properties whose values are compiled into AuthRefConfigInfos. */
+	private static final String[] REF_PROPS = {
+		ServiceBindingUtils.AUTH_REF_PROP,
+		ServiceBindingUtils.TERM_REF_PROP
+	};
+
+	private final ServiceBindingType serviceBinding;
+
+	/** service property name -> value of the first property with that name */
+	private final Map<String, String> properties = new HashMap<String, String>();
+
+	/** part label -> property name -> values */
+	private final Map<String, Map<String, List<String>>> partValues = new HashMap<String, Map<String, List<String>>>();
+
+	/** part label -> property name -> values, prefixed with the part label */
+	private final Map<String, Map<String, List<String>>> qualifiedPartValues = new HashMap<String, Map<String, List<String>>>();
+
+	/** property name -> values from all parts */
+	private final Map<String, List<String>> allPartsValues = new HashMap<String, List<String>>();
+
+	/** property name -> values from all parts, prefixed with their part labels */
+	private final Map<String, List<String>> qualifiedAllPartsValues = new HashMap<String, List<String>>();
+
+	/** authRef/termRef -> parsed field info */
+	private final Map<String, List<AuthRefConfigInfo>> authRefConfigInfos = new HashMap<String, List<AuthRefConfigInfo>>();
+
+	/** The factory for the document handler, once resolved */
+	private volatile HandlerFactory<DocumentHandler> documentHandlerFactory;
+
+	/** The factories for the validator handlers that could be loaded, once resolved */
+	private volatile List<HandlerFactory<ValidatorHandler>> validatorHandlerFactories;
+
+	/**
+	 * Compiles the properties of a service binding.
+	 *
+	 * @param serviceBinding the service binding
+	 */
+	public ServiceBindingInfo(ServiceBindingType serviceBinding) {
+		this.serviceBinding = serviceBinding;
+
+		List<PropertyType> propNodeList = serviceBinding.getProperties();
+		if (propNodeList.isEmpty() == false) {
+			for (PropertyItemType propItem : propNodeList.get(0).getItem()) {
+				if (propItem.getKey() != null && properties.containsKey(propItem.getKey()) == false) {
+					properties.put(propItem.getKey(), propItem.getValue());
+				}
+			}
+		}
+
+		ServiceObjectType objectType = serviceBinding.getObject();
+		if (objectType != null) {
+			for (ObjectPartType part : objectType.getPart()) {
+				Map<String, List<String>> values = new HashMap<String, List<String>>();
+				Map<String, List<String>> qualifiedValues = new HashMap<String, List<String>>();
+				String qualPrefix = part.getLabel() + ":";
+				List<PropertyType> partPropNodeList = part.getProperties();
+
+				if (partPropNodeList.isEmpty() == false) {
+					for (PropertyItemType propItem : partPropNodeList.get(0).getItem()) {
+						// Same as PropertyItemUtils.getPropertyValuesByName()
+						String value = propItem.getValue();
+						if (propItem.getKey() != null && value != null) {
+							addValue(values, propItem.getKey(), value.trim());
+							addValue(qualifiedValues, propItem.getKey(), qualPrefix + value);
+							addValue(allPartsValues, propItem.getKey(), value.trim());
+							addValue(qualifiedAllPartsValues, propItem.getKey(), qualPrefix + value);
+						}
+					}
+				}
+				if (partValues.containsKey(part.getLabel()) == false) {
+					partValues.put(part.getLabel(), values);
+					qualifiedPartValues.put(part.getLabel(), qualifiedValues);
+				}
+			}
+		}
+
+		for (String refProp : REF_PROPS) {
+			List<AuthRefConfigInfo> infos = new ArrayList<AuthRefConfigInfo>();
+			try {
+				for (String spec : getAllPartsPropertyValues(refProp, ServiceBindingUtils.QUALIFIED_PROP_NAMES)) {
+					infos.add(new AuthRefConfigInfo(spec));
+				}
+				authRefConfigInfos.put(refProp, Collections.unmodifiableList(infos));
+			} catch (Throwable t) {
+				// Leave it to the callers to report the bad configuration, as they did before.
+				logger.warn(String.format("Could not compile the '%s' fields of service '%s': %s",
+						refProp, serviceBinding.getName(), t.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Publishes the compiled bindings, replacing any that were published before.
+	 *
+	 * @param infos the compiled bindings
+	 */
+	static void publish(List<ServiceBindingInfo> infos) {
+		Map<ServiceBindingType, ServiceBindingInfo> map = new IdentityHashMap<ServiceBindingType, ServiceBindingInfo>();
+		for (ServiceBindingInfo info : infos) {
+			map.put(info.getServiceBinding(), info);
+		}
+		published = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Gets the published, compiled properties of a service binding.
+	 *
+	 * @param serviceBinding the service binding
+	 * @return the compiled properties, or null if the binding has not been compiled
+	 */
+	public static ServiceBindingInfo get(ServiceBindingType serviceBinding) {
+		return published.get(serviceBinding);
+	}
+
+	public ServiceBindingType getServiceBinding() {
+		return serviceBinding;
+	}
+
+	/**
+	 * @param propName the name of the property
+	 * @return the value of the first service property with the name, or null
+	 */
+	public String getPropertyValue(String propName) {
+		return properties.get(propName);
+	}
+
+	/**
+	 * @param partLabel the label of the part
+	 * @param propName the name of the property
+	 * @param qualify if true, the values are prefixed with the part label
+	 * @return the (unmodifiable) values of the property on the part
+	 * @throws RuntimeException if the binding has no such part
+	 */
+	public List<String> getPropertyValuesForPart(String partLabel, String propName, boolean qualify) {
+		Map<String, List<String>> values = (qualify ? qualifiedPartValues : partValues).get(partLabel);
+		if (values == null) {
+			throw new RuntimeException("No such part found: " + partLabel);
+		}
+		return getValues(values, propName);
+	}
+
+	/**
+	 * @param propName the name of the property
+	 * @param qualify if true, the values are prefixed with their part labels
+	 * @return the (unmodifiable) values of the property on all parts
+	 */
+	public List<String> getAllPartsPropertyValues(String propName, boolean qualify) {
+		return getValues(qualify ? qualifiedAllPartsValues : allPartsValues, propName);
+	}
+
+	/**
+	 * @param refPropName the authRef or termRef property name
+	 * @return the (unmodifiable) parsed ref fields, or null if they were not compiled
+	 */
+	public List<AuthRefConfigInfo> getAuthRefConfigInfos(String refPropName) {
+		return authRefConfigInfos.get(refPropName);
+	}
+
+	HandlerFactory<DocumentHandler> getDocumentHandlerFactory() {
+		return documentHandlerFactory;
+	}
+
+	void setDocumentHandlerFactory(HandlerFactory<DocumentHandler> documentHandlerFactory) {
+		this.documentHandlerFactory = documentHandlerFactory;
+	}
+
+	List<HandlerFactory<ValidatorHandler>> getValidatorHandlerFactories() {
+		return validatorHandlerFactories;
+	}
+
+	void setValidatorHandlerFactories(List<HandlerFactory<ValidatorHandler>> validatorHandlerFactories) {
+		this.validatorHandlerFactories = Collections.unmodifiableList(validatorHandlerFactories);
+	}
+
+	private static void addValue(Map<String, List<String>> map, String key, String value) {
+		List<String> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<String>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static List<String> getValues(Map<String, List<String>> map, String key) {
+		List<String> values = map.get(key);
+		return values != null ? Collections.unmodifiableList(values) : Collections.<String>emptyList();
+	}
+}
@@ -29,6 +29,7 @@ import java.util.List;
 import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentHandler;
+import org.collectionspace.services.common.document.ValidatorHandler;
 import org.collectionspace.services.config.RepositoryClientConfigType;
 import org.collectionspace.services.config.ServiceConfig;
 import org.collectionspace.services.config.service.DocHandlerParams;
@@ -70,21 +71,134 @@ public class ServiceConfigUtils {
      */
     public static DocumentHandler createDocumentHandlerInstance(TenantBindingType tenantBinding,
     		ServiceBindingType serviceBinding) throws Exception {
-    	DocumentHandler docHandler = null;
-    	
+    	HandlerFactory<DocumentHandler> factory = getDocumentHandlerFactory(tenantBinding, serviceBinding);
+    	DocumentHandler docHandler = factory.newInstance();
+        if (logger.isDebugEnabled()) {
+        	logger.debug("Created an instance of the DocumentHandler for: " + factory.getHandlerClass().getName());
+        }
+
+        return docHandler;
+    }
+
+    /**
+     * Gets the factory for the document handler of a service. The factory for a binding read by
+     * TenantBindingConfigReaderImpl is resolved once, and kept with the compiled binding.
+     * 
+     * @return the document handler factory
+     * 
+     * @throws Exception if the document handler class could not be resolved
+     */
+    private static HandlerFactory<DocumentHandler> getDocumentHandlerFactory(TenantBindingType tenantBinding,
+    		ServiceBindingType serviceBinding) throws Exception {
+    	ServiceBindingInfo info = ServiceBindingInfo.get(serviceBinding);
+    	HandlerFactory<DocumentHandler> result = (info != null ? info.getDocumentHandlerFactory() : null);
+
+    	if (result == null) {
+            ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+            result = HandlerFactory.create(getDocumentHandlerClass(tenantBinding, serviceBinding),
+            		DocumentHandler.class, tccl);
+            if (info != null) {
+            	info.setDocumentHandlerFactory(result);
+            }
+    	}
+
+    	return result;
+    }
+
+    /**
+     * Creates new instances of the validator handlers of a service. Validator handler classes that
+     * can't be found are skipped. The factories for a binding read by TenantBindingConfigReaderImpl
+     * are resolved once, and kept with the compiled binding.
+     * 
+     * @return the validator handlers
+     * 
+     * @throws Exception the exception
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <IT, OT> List<ValidatorHandler<IT, OT>> createValidatorHandlerInstances(
+    		ServiceBindingType serviceBinding) throws Exception {
+    	List<HandlerFactory<ValidatorHandler>> factories = getValidatorHandlerFactories(serviceBinding);
+        List<ValidatorHandler<IT, OT>> handlers = new ArrayList<ValidatorHandler<IT, OT>>(factories.size());
+        for (HandlerFactory<ValidatorHandler> factory : factories) {
+        	handlers.add(factory.newInstance());
+        }
+
+        return handlers;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static List<HandlerFactory<ValidatorHandler>> getValidatorHandlerFactories(
+    		ServiceBindingType serviceBinding) throws Exception {
+    	ServiceBindingInfo info = ServiceBindingInfo.get(serviceBinding);
+    	List<HandlerFactory<ValidatorHandler>> result = (info != null ? info.getValidatorHandlerFactories() : null);
+
+    	if (result == null) {
+    		result = createValidatorHandlerFactories(serviceBinding);
+    		if (info != null) {
+    			info.setValidatorHandlerFactories(result);
+    		}
+    	}
+
+    	return result;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static List<HandlerFactory<ValidatorHandler>> createValidatorHandlerFactories(
+    		ServiceBindingType serviceBinding) throws Exception {
+        List<String> handlerClazzes = serviceBinding.getValidatorHandler();
+        List<HandlerFactory<ValidatorHandler>> factories = new ArrayList<HandlerFactory<ValidatorHandler>>(handlerClazzes.size());
         ClassLoader tccl = Thread.currentThread().getContextClassLoader();
-        Class<?> c = tccl.loadClass(getDocumentHandlerClass(tenantBinding, serviceBinding));
-        if (DocumentHandler.class.isAssignableFrom(c)) {
-            docHandler = (DocumentHandler) c.newInstance();
-            if (logger.isDebugEnabled()) {
-            	logger.debug("Created an instance of the DocumentHandler for: " + getDocumentHandlerClass(tenantBinding, serviceBinding));
+        //
+        // If this element is set in the service binding then use it otherwise
+        // assume that asserts are NOT disabled.
+        //
+        Boolean disableAsserts = serviceBinding.isDisableAsserts();
+        for (String clazz : handlerClazzes) {
+            clazz = clazz.trim();
+            try {
+            	if (disableAsserts == null || disableAsserts == false) {
+                	// enable validation assertions, before the class is initialized
+            		tccl.setClassAssertionStatus(clazz, true);
+            	}
+            	factories.add(HandlerFactory.create(clazz, ValidatorHandler.class, tccl));
+            } catch (ClassNotFoundException e) {
+            	String msg = String.format("Missing document validation handler: '%s'.", clazz);
+            	logger.warn(msg);
+            	logger.trace(msg, e);
+            } catch (IllegalArgumentException e) {
+            	// Not a ValidatorHandler, so skipped, as before
+            	logger.warn(String.format("The document validation handler '%s' is not of type %s.",
+            			clazz, ValidatorHandler.class.getCanonicalName()));
             }
-        } else {
-            throw new IllegalArgumentException("Not of type "
-                    + DocumentHandler.class.getCanonicalName());
         }
 
-        return docHandler;
+        return factories;
+    }
+
+    /**
+     * Resolves the document handler and validator handler classes of all the services of all the
+     * tenants, so that creating a service context does no class loading. This is meant to be called
+     * at startup, once the tenant bindings have been read. Failures are logged, and left to be
+     * reported again when the service is used.
+     * 
+     * @param tenantBindingConfigReader the reader of the tenant bindings
+     */
+    public static void resolveHandlerFactories(TenantBindingConfigReaderImpl tenantBindingConfigReader) {
+    	for (TenantBindingType tenantBinding : tenantBindingConfigReader.getTenantBindings(
+    			TenantBindingConfigReaderImpl.INCLUDE_CREATE_DISABLED_TENANTS).values()) {
+    		for (ServiceBindingType serviceBinding : tenantBinding.getServiceBindings()) {
+    			if (ServiceBindingInfo.get(serviceBinding) == null) {
+    				continue;
+    			}
+    			try {
+    				getDocumentHandlerFactory(tenantBinding, serviceBinding);
+    				getValidatorHandlerFactories(serviceBinding);
+    			} catch (Throwable t) {
+    				logger.warn(String.format("Could not resolve the handlers of service '%s' for tenant id=%s: %s",
+    						serviceBinding.getName(), tenantBinding.getId(), t.getMessage()));
+    			}
+    		}
+    	}
     }
 
     /**
@@ -28,15 +28,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.collectionspace.services.common.api.JEEServerDeployment;
 import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.config.service.ServiceBindingType;
-import org.collectionspace.services.config.service.ServiceObjectType;
 import org.collectionspace.services.config.tenant.RepositoryDomainType;
 import org.collectionspace.services.config.tenant.TenantBindingConfig;
 import org.collectionspace.services.config.tenant.TenantBindingType;
@@ -70,13 +72,10 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	private Hashtable<String, TenantBindingType> enabledTenantBindings = new Hashtable<String, TenantBindingType>();
 	// tenant id, tenant binding
 	private Hashtable<String, TenantBindingType> allTenantBindings = new Hashtable<String, TenantBindingType>();
-	// repository domains
-	private Hashtable<String, RepositoryDomainType> domains = new Hashtable<String, RepositoryDomainType>();
-	// tenant-qualified servicename, service binding
-	private Hashtable<String, ServiceBindingType> serviceBindings = new Hashtable<String, ServiceBindingType>();
-
-	// tenant-qualified service object name to service name, service binding
-	private Hashtable<String, ServiceBindingType> docTypes = new Hashtable<String, ServiceBindingType>();
+	// tenant-qualified domain name, repository domain
+	private volatile Map<String, RepositoryDomainType> domains = Collections.emptyMap();
+	// tenant id, indexed service bindings; rebuilt by compileBindings() whenever the bindings change
+	private volatile Map<String, TenantBindingIndex> tenantIndexes = Collections.emptyMap();
 
 	public TenantBindingConfigReaderImpl(String serverRootDir) {
 		super(serverRootDir);
@@ -203,8 +202,6 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 				logger.warn(String.format("The tenant '%s':'%s' is marked as disabled in its bindings file.",
 						tenantBinding.getName(), tenantBinding.getId()));
 			}
-			readDomains(tenantBinding);
-			readServiceBindings(tenantBinding);
 			if (logger.isInfoEnabled()) {
 				logger.info("Finished reading tenant bindings for tenant id=" + tenantBinding.getId() + " name="
 						+ tenantBinding.getName());
@@ -219,6 +216,8 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 		if (enabledTenantBindings.isEmpty() == true) {
 			throw new Exception("All of the configured tenants are marked as disabled in their tenant bindings.  At least one tenant needs to be enabled.");
 		}
+		
+		compileBindings();
 	}
 
 	/*
@@ -330,34 +329,33 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 		return result;
 	}
 
-	private void readDomains(TenantBindingType tenantBinding) throws Exception {
-		for (RepositoryDomainType domain : tenantBinding.getRepositoryDomain()) {
-			String key = getTenantQualifiedIdentifier(tenantBinding.getId(), domain.getName());
-			domains.put(key, domain);
-		}
-	}
-
-	private void readServiceBindings(TenantBindingType tenantBinding) throws Exception {
-		for (ServiceBindingType serviceBinding : tenantBinding.getServiceBindings()) {
-			String key = getTenantQualifiedServiceName(tenantBinding.getId(), serviceBinding.getName());
-			if (key == null) {
-				continue;
-			}
-			serviceBindings.put(key, serviceBinding);
-
-			if (serviceBinding != null) {
-				ServiceObjectType objectType = serviceBinding.getObject();
-				if (objectType != null) {
-					String docType = objectType.getName();
-					String docTypeKey = getTenantQualifiedIdentifier(tenantBinding.getId(), docType);
-					docTypes.put(docTypeKey, serviceBinding);
-				}
+	/**
+	 * Compiles the tenant bindings into indexes that are looked up by the getters, and
+	 * publishes the compiled service binding properties used by ServiceBindingUtils.
+	 * This must be called again whenever the bindings are changed.
+	 */
+	private void compileBindings() {
+		Map<String, RepositoryDomainType> newDomains = new HashMap<String, RepositoryDomainType>();
+		Map<String, TenantBindingIndex> newTenantIndexes = new HashMap<String, TenantBindingIndex>();
+		List<ServiceBindingInfo> serviceBindingInfos = new ArrayList<ServiceBindingInfo>();
+
+		for (TenantBindingType tenantBinding : allTenantBindings.values()) {
+			for (RepositoryDomainType domain : tenantBinding.getRepositoryDomain()) {
+				String key = getTenantQualifiedIdentifier(tenantBinding.getId(), domain.getName());
+				newDomains.put(key, domain);
 			}
+			TenantBindingIndex index = new TenantBindingIndex(tenantBinding);
+			newTenantIndexes.put(tenantBinding.getId(), index);
+			serviceBindingInfos.addAll(index.getServiceBindingInfos());
 			if (logger.isTraceEnabled()) {
-				logger.trace("readServiceBindings() added service " + " name=" + key + " workspace="
-						+ serviceBinding.getName());
+				logger.trace("compileBindings() indexed " + tenantBinding.getServiceBindings().size()
+						+ " service bindings for tenant id=" + tenantBinding.getId());
 			}
 		}
+
+		domains = Collections.unmodifiableMap(newDomains);
+		tenantIndexes = Collections.unmodifiableMap(newTenantIndexes);
+		ServiceBindingInfo.publish(serviceBindingInfos);
 	}
 
 	@Override
@@ -390,7 +388,18 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	 * @return
 	 */
 	public TenantBindingType getTenantBinding(String tenantId) {
-		return allTenantBindings.get(tenantId);
+		TenantBindingIndex index = tenantIndexes.get(tenantId);
+		return index != null ? index.getTenantBinding() : null;
+	}
+
+	/**
+	 * getTenantBindingIndex gets the indexed service bindings for given tenant
+	 * 
+	 * @param tenantId
+	 * @return the index, or null if there is no such tenant
+	 */
+	public TenantBindingIndex getTenantBindingIndex(String tenantId) {
+		return tenantIndexes.get(tenantId);
 	}
 
 	/**
@@ -438,8 +447,8 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	 * @return
 	 */
 	public ServiceBindingType getServiceBinding(String tenantId, String serviceName) {
-		String key = getTenantQualifiedServiceName(tenantId, serviceName);
-		return serviceBindings.get(key);
+		TenantBindingIndex index = tenantIndexes.get(tenantId);
+		return index != null ? index.getServiceBinding(serviceName) : null;
 	}
 
 	/**
@@ -451,8 +460,8 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	 * @return
 	 */
 	public ServiceBindingType getServiceBindingForDocType(String tenantId, String docType) {
-		String key = getTenantQualifiedIdentifier(tenantId, docType);
-		return docTypes.get(key);
+		TenantBindingIndex index = tenantIndexes.get(tenantId);
+		return index != null ? index.getServiceBindingForDocType(docType) : null;
 	}
 
 	/**
@@ -464,9 +473,7 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	 * @return
 	 */
 	public List<ServiceBindingType> getServiceBindingsByType(String tenantId, String serviceType) {
-		List<String> serviceTypes = new ArrayList<String>(1);
-		serviceTypes.add(serviceType);
-		return getServiceBindingsByType(tenantId, serviceTypes);
+		return getServiceBindingsByType(tenantId, Collections.singletonList(serviceType));
 	}
 
 	/**
@@ -478,19 +485,8 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 	 * @return
 	 */
 	public List<ServiceBindingType> getServiceBindingsByType(String tenantId, List<String> serviceTypes) {
-		ArrayList<ServiceBindingType> list = null;
-		TenantBindingType tenant = allTenantBindings.get(tenantId);
-		if (tenant != null) {
-			for (ServiceBindingType sb : tenant.getServiceBindings()) {
-				if (serviceTypes.contains(sb.getType())) {
-					if (list == null) {
-						list = new ArrayList<ServiceBindingType>();
-					}
-					list.add(sb);
-				}
-			}
-		}
-		return list;
+		TenantBindingIndex index = tenantIndexes.get(tenantId);
+		return index != null ? index.getServiceBindingsByType(serviceTypes) : null;
 	}
 
 	/**
@@ -539,6 +535,7 @@ public class TenantBindingConfigReaderImpl extends AbstractConfigReaderImpl<List
 				TenantBindingUtils.propagatePropertiesToServices(tenant, TenantBindingUtils.SET_PROP_IF_MISSING);
 			}
 		}
+		compileBindings();
 	}
 
 	public String getResourcesDir() {
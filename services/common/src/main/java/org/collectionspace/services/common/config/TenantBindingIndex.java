@@ -0,0 +1,132 @@
+package org.collectionspace.services.common.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.collectionspace.services.config.service.ServiceBindingType;
+import org.collectionspace.services.config.service.ServiceObjectType;
+import org.collectionspace.services.config.tenant.TenantBindingType;
+
+/**
+ * The service bindings of a tenant, indexed by service name, by document type,
+ * and by service type, along with the compiled properties of each binding.
+ * An instance is immutable, and reflects the tenant binding at the time it was
+ * built by TenantBindingConfigReaderImpl.
+ */
+public class TenantBindingIndex {
+	private final TenantBindingType tenantBinding;
+
+	/** lower-case service name -> service binding */
+	private final Map<String, ServiceBindingType> serviceBindingsByName = new HashMap<String, ServiceBindingType>();
+
+	/** service object (document type) name -> service binding */
+	private final Map<String, ServiceBindingType> serviceBindingsByDocType = new HashMap<String, ServiceBindingType>();
+
+	/** service type (e.g., "object", "procedure", "authority") -> service bindings, in configuration order */
+	private final Map<String, List<ServiceBindingType>> serviceBindingsByType = new HashMap<String, List<ServiceBindingType>>();
+
+	/** service binding -> position in the configuration */
+	private final Map<ServiceBindingType, Integer> positions = new IdentityHashMap<ServiceBindingType, Integer>();
+
+	private final List<ServiceBindingInfo> serviceBindingInfos = new ArrayList<ServiceBindingInfo>();
+
+	/**
+	 * Builds the index for a tenant binding.
+	 *
+	 * @param tenantBinding the tenant binding
+	 */
+	public TenantBindingIndex(TenantBindingType tenantBinding) {
+		this.tenantBinding = tenantBinding;
+
+		for (ServiceBindingType serviceBinding : tenantBinding.getServiceBindings()) {
+			if (serviceBinding == null) {
+				continue;
+			}
+			if (serviceBinding.getName() != null) {
+				// Later bindings with the same name or document type replace earlier ones
+				serviceBindingsByName.put(serviceBinding.getName().toLowerCase(), serviceBinding);
+
+				ServiceObjectType objectType = serviceBinding.getObject();
+				if (objectType != null) {
+					serviceBindingsByDocType.put(objectType.getName(), serviceBinding);
+				}
+			}
+
+			List<ServiceBindingType> typeList = serviceBindingsByType.get(serviceBinding.getType());
+			if (typeList == null) {
+				typeList = new ArrayList<ServiceBindingType>();
+				serviceBindingsByType.put(serviceBinding.getType(), typeList);
+			}
+			typeList.add(serviceBinding);
+			positions.put(serviceBinding, positions.size());
+
+			serviceBindingInfos.add(new ServiceBindingInfo(serviceBinding));
+		}
+	}
+
+	public TenantBindingType getTenantBinding() {
+		return tenantBinding;
+	}
+
+	/**
+	 * @param serviceName the service name, in any case
+	 * @return the service binding, or null
+	 */
+	public ServiceBindingType getServiceBinding(String serviceName) {
+		return serviceName != null ? serviceBindingsByName.get(serviceName.toLowerCase()) : null;
+	}
+
+	/**
+	 * @param docType the document type (service object name)
+	 * @return the service binding, or null
+	 */
+	public ServiceBindingType getServiceBindingForDocType(String docType) {
+		return serviceBindingsByDocType.get(docType);
+	}
+
+	/**
+	 * Gets the service bindings of some service types, in configuration order.
+	 *
+	 * @param serviceTypes the service types
+	 * @return a new list of service bindings, or null if there are none
+	 */
+	public List<ServiceBindingType> getServiceBindingsByType(List<String> serviceTypes) {
+		ArrayList<ServiceBindingType> result = null;
+		int typesFound = 0;
+
+		for (String serviceType : new LinkedHashSet<String>(serviceTypes)) {
+			List<ServiceBindingType> typeList = serviceBindingsByType.get(serviceType);
+			if (typeList != null) {
+				if (result == null) {
+					result = new ArrayList<ServiceBindingType>();
+				}
+				result.addAll(typeList);
+				typesFound++;
+			}
+		}
+		if (typesFound > 1) {
+			// Keep the configuration order across types
+			Collections.sort(result, new Comparator<ServiceBindingType>() {
+				@Override
+				public int compare(ServiceBindingType sb1, ServiceBindingType sb2) {
+					return positions.get(sb1).compareTo(positions.get(sb2));
+				}
+			});
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the compiled properties of the tenant's service bindings
+	 */
+	public List<ServiceBindingInfo> getServiceBindingInfos() {
+		return Collections.unmodifiableList(serviceBindingInfos);
+	}
+}
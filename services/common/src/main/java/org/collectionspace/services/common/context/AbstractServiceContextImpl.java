@@ -601,17 +601,6 @@ public abstract class AbstractServiceContextImpl<IT, OT>
         return result;
     }
     
-    /*
-     * If this element is set in the service binding then use it otherwise
-     * assume that asserts are NOT disabled.
-     */
-    private boolean disableValidationAsserts() {
-    	boolean result;
-    	Boolean disableAsserts = getServiceBinding().isDisableAsserts();
-    	result = (disableAsserts != null) ? disableAsserts : false;
-    	return result;
-    }
-    
     /* (non-Javadoc)
      * @see org.collectionspace.services.common.context.ServiceContext#getValidatorHandlers()
      */
@@ -620,27 +609,7 @@ public abstract class AbstractServiceContextImpl<IT, OT>
         if (valHandlers != null) {
             return valHandlers;
         }
-        List<String> handlerClazzes = getServiceBinding().getValidatorHandler();
-        List<ValidatorHandler<IT, OT>> handlers = new ArrayList<ValidatorHandler<IT, OT>>(handlerClazzes.size());
-        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
-        for (String clazz : handlerClazzes) {
-            clazz = clazz.trim();
-            try {
-	            Class<?> c = tccl.loadClass(clazz);
-	            if (disableValidationAsserts() == false) {
-	            	// enable validation assertions
-	            	tccl.setClassAssertionStatus(clazz, true);
-	            }
-	            if (ValidatorHandler.class.isAssignableFrom(c)) {
-	                handlers.add((ValidatorHandler) c.newInstance());
-	            }
-            } catch (ClassNotFoundException e) {
-            	String msg = String.format("Missing document validation handler: '%s'.", clazz);
-            	logger.warn(msg);
-            	logger.trace(msg, e);
-            }
-        }
-        valHandlers = handlers;
+        valHandlers = ServiceConfigUtils.createValidatorHandlerInstances(getServiceBinding());
         return valHandlers;
     }
     
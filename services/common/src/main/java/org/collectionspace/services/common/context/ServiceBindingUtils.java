@@ -8,6 +8,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.collectionspace.services.common.config.PropertyItemUtils;
+import org.collectionspace.services.common.config.ServiceBindingInfo;
 import org.collectionspace.services.config.service.ObjectPartType;
 import org.collectionspace.services.config.service.ServiceBindingType;
 import org.collectionspace.services.config.service.ServiceObjectType;
@@ -65,10 +66,10 @@ public class ServiceBindingUtils {
     	return docType;
     }
     	
-	// TODO consider building up a hashTable of the properties for each
-	// service binding. There will be generic properties, as well as
-	// properties on each part. Could build up a key from tenant id, 
-	// servicename, (partname for those props), propName
+	// The properties of the bindings read by TenantBindingConfigReaderImpl are
+	// compiled into a ServiceBindingInfo for each binding. The getters below look
+	// them up there, and only walk the property lists of bindings that were not
+	// compiled.
 
     public static void getPartsMetadata(ServiceBindingType serviceBinding, 
     		Map<String, ObjectPartType> objectPartMap) {
@@ -94,6 +95,10 @@ public class ServiceBindingUtils {
 
     public static List<String> getPropertyValuesForPart(ServiceBindingType serviceBinding,
     		String partLabel, String propName, boolean qualify) {
+    	ServiceBindingInfo info = ServiceBindingInfo.get(serviceBinding);
+    	if (info != null) {
+    		return info.getPropertyValuesForPart(partLabel, propName, qualify);
+    	}
     	List<PropertyItemType> partProps = getPropertiesForPart(serviceBinding, partLabel);
     	return PropertyItemUtils.getPropertyValuesByName(partProps, propName, 
     													(qualify?(partLabel+":"):null));
@@ -103,10 +108,14 @@ public class ServiceBindingUtils {
 	 * @param serviceBinding the service to work from
 	 * @param propName the name of the property of interest
 	 * @param qualify if QUALIFIED_PROP_NAMES, will prefix all values with the part label
-	 * @return a list of (qualified)
+	 * @return a list of (qualified) values; the list may not be modifiable
 	 */
 	public static List<String> getAllPartsPropertyValues(ServiceBindingType serviceBinding,
     		String propName, boolean qualify) {
+    	ServiceBindingInfo info = ServiceBindingInfo.get(serviceBinding);
+    	if (info != null) {
+    		return info.getAllPartsPropertyValues(propName, qualify);
+    	}
     	List<String> values = new ArrayList<String>();
         ServiceObjectType objectType = serviceBinding.getObject();
         List<ObjectPartType> objectPartTypes = objectType.getPart();
@@ -127,6 +136,10 @@ public class ServiceBindingUtils {
     		String propName) {
     	if(propName==null) {
     		throw new IllegalArgumentException("ServiceBindingUtils.getPropertyValues: null property name!");
+    	}
+    	ServiceBindingInfo info = ServiceBindingInfo.get(service);
+    	if (info != null) {
+    		return info.getPropertyValue(propName);
     	}
 		List<PropertyType> servicePropList = service.getProperties();
 		return PropertyItemUtils.getPropertyValueByNameFromNodeList(servicePropList, propName );
@@ -155,6 +168,8 @@ public class ServiceBindingUtils {
      * @param value the new value to set
      * @param onlyIfNotSet if true, will not override an existing value
      * @return true if set, false if an existing value was left as is.
+     * Note that the compiled properties of the binding are not updated; the
+     * TenantBindingConfigReaderImpl that read the binding must recompile it.
      */
     public static boolean setPropertyValue(ServiceBindingType service,
     		String propName, String value,
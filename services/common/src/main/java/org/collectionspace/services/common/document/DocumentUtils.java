@@ -35,30 +35,33 @@ import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.Result;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 
+import org.collectionspace.services.client.XmlFactories;
 import org.collectionspace.services.common.ServiceMain;
 import org.collectionspace.services.common.api.GregorianCalendarDateTimeUtils;
 import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.datetime.DateTimeFormatUtils;
+import org.collectionspace.services.common.xmljson.XmlElementInfo;
 import org.collectionspace.services.config.service.ObjectPartContentType;
 import org.collectionspace.services.config.service.ObjectPartType;
 import org.collectionspace.services.config.service.XmlContentType;
@@ -111,6 +114,9 @@ public class DocumentUtils {
 	private static final Logger logger = LoggerFactory
 			.getLogger(DocumentUtils.class);
 
+	/** The XML Schema files found for payload parts, keyed by part label. */
+	private static final Map<String, File> xmlSchemaFiles = new ConcurrentHashMap<String, File>();
+
 	/** The name dateVal separator. */
 	private static String NAME_VALUE_SEPARATOR = "|";
 
@@ -213,7 +219,10 @@ public class DocumentUtils {
 		final String XML_SCHEMA_EXTENSION = ".xsd";
 		final String SCHEMAS_DIR = "schemas";
 
-		File schemaFile = null;
+		File schemaFile = xmlSchemaFiles.get(partMeta.getLabel());
+		if (schemaFile != null) {
+			return schemaFile;
+		}
 
 		//
 		// Look for an XML Schema (.xsd) file for the incoming part payload
@@ -234,6 +243,9 @@ public class DocumentUtils {
 						+ schemaName);
 			}
 		}
+		if (schemaFile != null) {
+			xmlSchemaFiles.put(partMeta.getLabel(), schemaFile);
+		}
 
 		return schemaFile;
 	}
@@ -252,10 +264,6 @@ public class DocumentUtils {
 	 */
 	public static Document parseDocument(InputStream payload,
 			ObjectPartType partMeta, Boolean validate) throws Exception {
-		final String JAXP_SCHEMA_SOURCE = "http://java.sun.com/xml/jaxp/properties/schemaSource";
-		final String JAXP_SCHEMA_LANGUAGE = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
-		final String W3C_XML_SCHEMA = "http://www.w3.org/2001/XMLSchema";
-
 		Document result = null;
 		// Log the incoming unprocessed payload
 		if (logger.isDebugEnabled() == true) {
@@ -270,42 +278,14 @@ public class DocumentUtils {
 		}
 
 		//
-		// Create and setup a DOMBuilder factory.
+		// Get a DOM builder, set up for validation if we found an XML Schema for the payload
 		//
+		DocumentBuilder db = null;
 		try {
-			// Create a builder factory
-			DocumentBuilderFactory factory = DocumentBuilderFactory
-					.newInstance();
-			//
-			// Lexical Control Settings that focus on content
-			//
-			factory.setCoalescing(true);
-			factory.setExpandEntityReferences(true);
-			factory.setIgnoringComments(true);
-			factory.setIgnoringElementContentWhitespace(true);
-			//
-			// Enable XML validation if we found an XML Schema for the payload
-			//
-			try {
-				if (schemaFile != null) {
-					factory.setValidating(true);
-					factory.setNamespaceAware(true);
-					factory.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
-					factory.setAttribute(JAXP_SCHEMA_SOURCE, schemaFile);
-				}
-			} catch (IllegalArgumentException e) {
-				String msg = "Error: JAXP DocumentBuilderFactory attribute not recognized: "
-						+ JAXP_SCHEMA_LANGUAGE
-						+ ". Check to see if parser conforms to JAXP 1.2 spec.";
-				if (logger.isWarnEnabled() == true) {
-					logger.warn(msg);
-				}
-				throw e;
-			}
 			//
-			// Create the builder and parse the file
+			// Parse the file
 			//
-			DocumentBuilder db = factory.newDocumentBuilder();
+			db = XmlFactories.getPayloadDocumentBuilder(schemaFile);
 			db.setErrorHandler(null);
 			result = db.parse(payload);
 
@@ -314,6 +294,7 @@ public class DocumentUtils {
 				logger.trace(xmlToString(result));
 			}
 		} finally {
+			XmlFactories.releasePayloadDocumentBuilder(schemaFile, db);
 			if (payload != null) {
 				payload.close();
 			}
@@ -529,9 +510,7 @@ public class DocumentUtils {
 
 		// FIXME: We support XML validation on the way in, so we should add it
 		// here (on the way out) as well.
-		DocumentBuilder builder = DocumentBuilderFactory.newInstance()
-				.newDocumentBuilder();
-		Document document = builder.newDocument();
+		Document document = XmlFactories.newDocument();
 		document.setXmlStandalone(true); // FIXME: REM - Can we set this to
 											// false since it is not really
 											// standalone?
@@ -565,7 +544,9 @@ public class DocumentUtils {
 		Schema schema = getSchemaFromName(partMeta.getLabel());
 
 		buildDocument(document, root, objectProps, schema);
-		String w3cDocumentStr = xmlToString(document);
+		if (logger.isTraceEnabled() == true) {
+			logger.trace(xmlToString(document));
+		}
 
 		DOMReader reader = new DOMReader();
 		org.dom4j.Document dom4jDoc = reader.read(document);
@@ -755,6 +736,50 @@ public class DocumentUtils {
 		}
 	}
 
+	/**
+	 * Describes the XML generated for a complex type (e.g., a schema), so that
+	 * it can be converted to JSON without first being read into memory.
+	 * Repeated elements are the items of list fields, as written by buildList().
+	 *
+	 * @param ctype
+	 *            the complex type
+	 * @return the XML element info.
+	 */
+	public static XmlElementInfo getXmlElementInfo(ComplexType ctype) {
+		Map<String, XmlElementInfo> children = new HashMap<String, XmlElementInfo>();
+		for (Field field : ctype.getFields()) {
+			children.put(field.getName().getLocalName(), getXmlElementInfo(field.getType()));
+		}
+		return new XmlElementInfo(children, Collections.<String>emptySet());
+	}
+
+	/*
+	 * Returns null for types whose XML is not known (e.g., blobs), so that their
+	 * elements are converted without schema information.
+	 */
+	private static XmlElementInfo getXmlElementInfo(Type type) {
+		XmlElementInfo result = null;
+
+		if (type.isSimpleType()) {
+			result = XmlElementInfo.TEXT;
+		} else if (type.isComplexType()) {
+			ComplexType ctype = (ComplexType) type;
+			if (ctype.getName().equals(TypeConstants.CONTENT) == false) {
+				result = getXmlElementInfo(ctype);
+			}
+		} else if (type.isListType()) {
+			Field itemField = ((ListType) type).getField();
+			String itemName = itemField.getName().getLocalName();
+			Map<String, XmlElementInfo> children = new HashMap<String, XmlElementInfo>();
+			children.put(itemName, getXmlElementInfo(itemField.getType()));
+			Set<String> repeatableChildren = new HashSet<String>();
+			repeatableChildren.add(itemName);
+			result = new XmlElementInfo(children, repeatableChildren);
+		}
+
+		return result;
+	}
+
 	/**
 	 * Returns a schema, given the name of a schema.
 	 *
@@ -1275,12 +1300,14 @@ public class DocumentUtils {
 	 */
 	public static void writeDocument(Document document, OutputStream os)
 			throws Exception {
-		TransformerFactory tFactory = TransformerFactory.newInstance();
-		Transformer transformer = tFactory.newTransformer();
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		DOMSource source = new DOMSource(document);
-		StreamResult result = new StreamResult(os);
-		transformer.transform(source, result);
+		Transformer transformer = XmlFactories.getIndentingTransformer();
+		try {
+			DOMSource source = new DOMSource(document);
+			StreamResult result = new StreamResult(os);
+			transformer.transform(source, result);
+		} finally {
+			XmlFactories.releaseIndentingTransformer(transformer);
+		}
 	}
 
 	/**
@@ -1297,9 +1324,12 @@ public class DocumentUtils {
 			Source source = new DOMSource(node);
 			StringWriter stringWriter = new StringWriter();
 			Result streamResult = new StreamResult(stringWriter);
-			TransformerFactory factory = TransformerFactory.newInstance();
-			Transformer transformer = factory.newTransformer();
-			transformer.transform(source, streamResult);
+			Transformer transformer = XmlFactories.getTransformer();
+			try {
+				transformer.transform(source, streamResult);
+			} finally {
+				XmlFactories.releaseTransformer(transformer);
+			}
 			result = stringWriter.getBuffer().toString();
 		} catch (TransformerConfigurationException e) {
 			e.printStackTrace();
@@ -1318,14 +1348,18 @@ public class DocumentUtils {
 	 * @throws Exception
 	 */
 	public static Document getXmlDocument(String fileName) throws Exception {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		File f = new File(fileName);
 		if (!f.exists()) {
 			throw new IllegalArgumentException("Test data file " + fileName
 					+ " not found!");
 		}
 		// Create the builder and parse the file
-		return factory.newDocumentBuilder().parse(f);
+		DocumentBuilder builder = XmlFactories.getDocumentBuilder();
+		try {
+			return builder.parse(f);
+		} finally {
+			XmlFactories.releaseDocumentBuilder(builder);
+		}
 	}
 
 	//
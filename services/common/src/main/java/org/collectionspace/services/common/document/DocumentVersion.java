@@ -0,0 +1,121 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.document;
+
+import java.util.Date;
+
+/**
+ * The version of a stored document: its change token and its workflow state. Nuxeo's change
+ * token is the document's dc:modified time, which Nuxeo sets on every save, whether or not
+ * the save is made through a document handler (e.g., by an event listener or a bulk update of
+ * refNames). The version is used to answer conditional requests (If-None-Match,
+ * If-Modified-Since, If-Match) without building the document's payload.
+ */
+public class DocumentVersion {
+
+    /**
+     * The service context property the repository client sets to the version of the
+     * document it read.
+     */
+    public static final String CONTEXT_PROPERTY = "DocumentVersion";
+
+    /**
+     * The representations of a document, which have different entity tags.
+     */
+    public static final String REPRESENTATION_XML = "xml";
+    public static final String REPRESENTATION_JSON = "json";
+    private static final String[] REPRESENTATIONS = { REPRESENTATION_XML, REPRESENTATION_JSON };
+
+    private final String changeToken;
+    private final Date lastModified;
+    private final String workflowState;
+
+    /**
+     * @param changeToken the document's change token, which changes whenever it is saved
+     * @param lastModified when the document was last saved
+     * @param workflowState the document's current workflow (lifecycle) state
+     */
+    public DocumentVersion(String changeToken, Date lastModified, String workflowState) {
+        this.changeToken = changeToken;
+        this.lastModified = lastModified;
+        this.workflowState = workflowState;
+    }
+
+    public String getChangeToken() {
+        return changeToken;
+    }
+
+    public String getWorkflowState() {
+        return workflowState;
+    }
+
+    /**
+     * @return false if the document has no change token, in which case it can't be versioned
+     */
+    public boolean isKnown() {
+        return changeToken != null && lastModified != null;
+    }
+
+    /**
+     * @return the save time to send as the Last-Modified header. HTTP dates have no
+     *         milliseconds, so they are dropped.
+     */
+    public Date getLastModified() {
+        return new Date(lastModified.getTime() / 1000 * 1000);
+    }
+
+    /**
+     * Returns the (unquoted) value of a strong entity tag for a representation of the document.
+     *
+     * @param user the user whose permissions are listed in the payload
+     * @param representation the representation -e.g., REPRESENTATION_XML or REPRESENTATION_JSON
+     */
+    public String getEntityTag(String user, String representation) {
+        StringBuilder result = new StringBuilder(32);
+        result.append(changeToken);
+        result.append('-').append(workflowState);
+        if (user != null) {
+            result.append('-').append(Integer.toHexString(user.hashCode()));
+        }
+        result.append('-').append(representation);
+        return result.toString();
+    }
+
+    /**
+     * Returns true if an (unquoted) entity tag is the current tag of any representation of
+     * the document. A client may update a record with one representation after reading it
+     * with another.
+     *
+     * @param user the user whose permissions are listed in the payload
+     */
+    public boolean hasEntityTag(String entityTag, String user) {
+        if (isKnown()) {
+            for (String representation : REPRESENTATIONS) {
+                if (getEntityTag(user, representation).equals(entityTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("changeToken=%s, lastModified=%s, workflowState=%s", changeToken, lastModified, workflowState);
+    }
+}
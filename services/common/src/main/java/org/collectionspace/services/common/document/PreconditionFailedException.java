@@ -0,0 +1,44 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.document;
+
+/**
+ * PreconditionFailedException is thrown when a document isn't updated because it
+ * has changed since the client read it.
+ */
+public class PreconditionFailedException extends DocumentException {
+
+    private static final long serialVersionUID = 1L;
+    final public static int HTTP_CODE = 412;
+
+    /**
+     * Creates a new instance of <code>PreconditionFailedException</code> without detail message.
+     */
+    public PreconditionFailedException() {
+        setErrorCode(HTTP_CODE);
+    }
+
+    /**
+     * Constructs an instance of <code>PreconditionFailedException</code> with the specified detail message.
+     * @param msg the detail message.
+     */
+    public PreconditionFailedException(String msg) {
+        super(msg);
+        setErrorCode(HTTP_CODE);
+    }
+}
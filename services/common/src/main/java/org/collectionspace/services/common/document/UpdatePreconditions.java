@@ -0,0 +1,124 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The conditions (from the If-Match and If-Unmodified-Since headers of a request) under
+ * which a document may be updated. The repository client checks them against the document
+ * it loads for the update, so that a client's update fails if the record has changed since
+ * the client read it.
+ */
+public class UpdatePreconditions {
+
+    /**
+     * The service context property the resource sets to the preconditions of an update.
+     */
+    public static final String CONTEXT_PROPERTY = "UpdatePreconditions";
+
+    private static final String ANY_ENTITY_TAG = "*";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+
+    private final String csid;
+    private final String user;
+    private final List<String> ifMatch;
+    private final Date ifUnmodifiedSince;
+
+    /**
+     * @param csid the CSID of the document the request updates
+     * @param user the user making the request
+     * @param ifMatch the values of the request's If-Match headers, or null if it has none
+     * @param ifUnmodifiedSince the date of the request's If-Unmodified-Since header, or null
+     *            if it has none
+     */
+    public UpdatePreconditions(String csid, String user, List<String> ifMatch, Date ifUnmodifiedSince) {
+        this.csid = csid;
+        this.user = user;
+        this.ifMatch = parseEntityTags(ifMatch);
+        this.ifUnmodifiedSince = ifUnmodifiedSince;
+    }
+
+    /**
+     * @return true if the request has no preconditions
+     */
+    public boolean isEmpty() {
+        return ifMatch == null && ifUnmodifiedSince == null;
+    }
+
+    /**
+     * Returns true if the preconditions are those of an update of the given document.
+     * Other documents may be updated with the same service context.
+     */
+    public boolean appliesTo(String csid) {
+        return this.csid.equals(csid);
+    }
+
+    /**
+     * Returns true if a document with the given version may be updated. If-Match takes
+     * precedence over If-Unmodified-Since, and uses the strong comparison of entity tags.
+     */
+    public boolean isMetBy(DocumentVersion version) {
+        if (ifMatch != null) {
+            for (String entityTag : ifMatch) {
+                if (ANY_ENTITY_TAG.equals(entityTag) || version.hasEntityTag(entityTag, user)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifUnmodifiedSince != null && version.isKnown()) {
+            return version.getLastModified().after(ifUnmodifiedSince) == false;
+        }
+        return true;
+    }
+
+    /*
+     * Splits If-Match header values into unquoted entity tags. Weak tags are left out,
+     * since they never match in a strong comparison.
+     */
+    private static List<String> parseEntityTags(List<String> headerValues) {
+        if (headerValues == null || headerValues.isEmpty()) {
+            return null;
+        }
+        List<String> result = new ArrayList<String>();
+        for (String headerValue : headerValues) {
+            for (String entityTag : headerValue.split(",")) {
+                entityTag = entityTag.trim();
+                if (entityTag.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+                    continue;
+                }
+                if (entityTag.length() >= 2 && entityTag.startsWith("\"") && entityTag.endsWith("\"")) {
+                    entityTag = entityTag.substring(1, entityTag.length() - 1);
+                }
+                if (entityTag.isEmpty() == false) {
+                    result.add(entityTag);
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("csid=%s, ifMatch=%s, ifUnmodifiedSince=%s", csid, ifMatch, ifUnmodifiedSince);
+    }
+}
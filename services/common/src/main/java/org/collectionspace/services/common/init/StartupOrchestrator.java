@@ -0,0 +1,275 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.init;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * StartupOrchestrator runs the steps of the services' initialization as a
+ * dependency graph: each step starts as soon as the steps it depends on have
+ * completed, so independent steps run at the same time. A parallel step is
+ * made of one task per item (e.g. per tenant), which also run at the same
+ * time. All the tasks run on a bounded pool of threads, and the time each step
+ * took is logged once they have all completed.
+ *
+ * The steps run in the order they were added when there are no more threads
+ * than steps ready to run, so a step should be added after the steps it depends on.
+ */
+public class StartupOrchestrator {
+    private static final Logger logger = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    /**
+     * The work of a step.
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * The work of a parallel step, for one of its items.
+     */
+    public interface ItemTask<T> {
+        void run(T item) throws Exception;
+    }
+
+    private static class Step {
+        final String name;
+        final Set<String> dependencies;
+        final List<Callable<Step>> tasks = new ArrayList<Callable<Step>>();
+        int pendingTaskCount;
+        long startTime;
+        long elapsedTime;
+
+        Step(String name, String[] dependencies) {
+            this.name = name;
+            this.dependencies = new LinkedHashSet<String>(Arrays.asList(dependencies));
+        }
+    }
+
+    private final String name;
+    private final int maxThreads;
+    private final Map<String, Step> steps = new LinkedHashMap<String, Step>();
+    private final Map<String, Long> stepTimes = new LinkedHashMap<String, Long>();
+
+    /**
+     * @param name the name of the initialization, for logging
+     * @param maxThreads the maximum number of tasks run at the same time
+     */
+    public StartupOrchestrator(String name, int maxThreads) {
+        this.name = name;
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Adds a step.
+     *
+     * @param stepName the name of the step
+     * @param task the work of the step
+     * @param dependencies the names of the steps that must complete before this one starts
+     * @return this orchestrator
+     */
+    public StartupOrchestrator addStep(String stepName, final Task task, String... dependencies) {
+        final Step step = newStep(stepName, dependencies);
+        step.tasks.add(new Callable<Step>() {
+            @Override
+            public Step call() throws Exception {
+                task.run();
+                return step;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Adds a step made of one task per item, which run at the same time.
+     *
+     * @param stepName the name of the step
+     * @param items the items
+     * @param task the work of the step for each item
+     * @param dependencies the names of the steps that must complete before this one starts
+     * @return this orchestrator
+     */
+    public <T> StartupOrchestrator addParallelStep(String stepName, Collection<T> items, final ItemTask<T> task,
+            String... dependencies) {
+        final Step step = newStep(stepName, dependencies);
+        for (final T item : items) {
+            step.tasks.add(new Callable<Step>() {
+                @Override
+                public Step call() throws Exception {
+                    task.run(item);
+                    return step;
+                }
+            });
+        }
+        return this;
+    }
+
+    private Step newStep(String stepName, String[] dependencies) {
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException(String.format("The startup step '%s' was already added.", stepName));
+        }
+        Step step = new Step(stepName, dependencies);
+        steps.put(stepName, step);
+        return step;
+    }
+
+    /**
+     * Runs all the steps, and logs the time each one took.
+     *
+     * @throws Exception the exception of the first task that failed; the
+     * tasks still running are then interrupted, and no more are started
+     */
+    public void run() throws Exception {
+        for (Step step : steps.values()) {
+            for (String dependency : step.dependencies) {
+                if (steps.containsKey(dependency) == false) {
+                    throw new IllegalArgumentException(String.format("The startup step '%s' depends on the unknown step '%s'.",
+                            step.name, dependency));
+                }
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+        CompletionService<Step> completionService = new ExecutorCompletionService<Step>(executor);
+        Set<String> startedSteps = new LinkedHashSet<String>();
+        Set<String> completedSteps = new LinkedHashSet<String>();
+        int runningTaskCount = 0;
+
+        try {
+            while (completedSteps.size() < steps.size()) {
+                runningTaskCount += startReadySteps(completionService, startedSteps, completedSteps);
+                if (completedSteps.size() == steps.size()) {
+                    break;
+                }
+                if (runningTaskCount == 0) {
+                    List<String> blockedSteps = new ArrayList<String>(steps.keySet());
+                    blockedSteps.removeAll(completedSteps);
+                    throw new IllegalStateException(String.format("The startup steps %s depend on each other.", blockedSteps));
+                }
+
+                Future<Step> future = completionService.take();
+                runningTaskCount--;
+                Step step;
+                try {
+                    step = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+                step.pendingTaskCount--;
+                if (step.pendingTaskCount == 0) {
+                    complete(step, completedSteps);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logStepTimes(System.currentTimeMillis() - startTime);
+    }
+
+    /*
+     * Starts the tasks of every step whose dependencies have completed, and returns the number of tasks started.
+     * Steps without tasks (e.g. a parallel step without items) are completed right away, which may make others ready.
+     */
+    private int startReadySteps(CompletionService<Step> completionService, Set<String> startedSteps,
+            Set<String> completedSteps) {
+        int result = 0;
+
+        boolean stepCompleted = true;
+        while (stepCompleted == true) {
+            stepCompleted = false;
+            for (final Step step : steps.values()) {
+                if (startedSteps.contains(step.name) || completedSteps.containsAll(step.dependencies) == false) {
+                    continue;
+                }
+                startedSteps.add(step.name);
+                step.startTime = System.currentTimeMillis();
+                step.pendingTaskCount = step.tasks.size();
+                if (step.tasks.isEmpty()) {
+                    complete(step, completedSteps);
+                    stepCompleted = true;
+                    continue;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Starting the '%s' startup step (%d task(s)).", step.name, step.tasks.size()));
+                }
+                for (final Callable<Step> task : step.tasks) {
+                    completionService.submit(new Callable<Step>() {
+                        @Override
+                        public Step call() throws Exception {
+                            try {
+                                return task.call();
+                            } catch (Exception e) {
+                                logger.error(String.format("The '%s' startup step failed: %s", step.name, e.getMessage()));
+                                throw e;
+                            }
+                        }
+                    });
+                    result++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void complete(Step step, Set<String> completedSteps) {
+        step.elapsedTime = System.currentTimeMillis() - step.startTime;
+        stepTimes.put(step.name, step.elapsedTime);
+        completedSteps.add(step.name);
+    }
+
+    private void logStepTimes(long elapsedTime) {
+        StringBuilder message = new StringBuilder(String.format("%s completed in %d ms:", name, elapsedTime));
+        for (Step step : steps.values()) {
+            message.append(String.format("%n    %-40s %8d ms%s", step.name, step.elapsedTime,
+                    step.tasks.size() > 1 ? String.format(" (%d tasks)", step.tasks.size()) : ""));
+        }
+        logger.info(message.toString());
+    }
+
+    /**
+     * @return the time each completed step took, in ms, in the order they completed
+     */
+    public Map<String, Long> getStepTimes() {
+        return Collections.unmodifiableMap(stepTimes);
+    }
+}
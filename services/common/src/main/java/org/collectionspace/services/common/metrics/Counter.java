@@ -0,0 +1,69 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, e.g. of requests or of cache hits.
+ */
+public class Counter {
+    private final AtomicLong value = new AtomicLong();
+
+    public void inc() {
+        value.incrementAndGet();
+    }
+
+    public void inc(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A counter can't be decremented.");
+        }
+        value.addAndGet(amount);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    /**
+     * A counter per combination of label values.
+     */
+    public static class Family extends MetricFamily<Counter> {
+        Family(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        @Override
+        protected String getType() {
+            return "counter";
+        }
+
+        @Override
+        protected Counter newChild() {
+            return new Counter();
+        }
+
+        @Override
+        protected void writeChild(Writer writer, List<String> labelValues, Counter child) throws IOException {
+            writeSample(writer, getName(), labelValues, null, null, Long.toString(child.get()));
+        }
+    }
+}
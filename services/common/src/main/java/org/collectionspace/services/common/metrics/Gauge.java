@@ -0,0 +1,88 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A value that goes up and down (e.g. the number of active connections of a
+ * pool), read from its source each time the metrics are scraped, so that
+ * nothing is recorded in between.
+ */
+public class Gauge {
+    private static final Logger logger = LoggerFactory.getLogger(Gauge.class);
+
+    /**
+     * The source of a gauge's values.
+     */
+    public interface Source {
+        /**
+         * @return the current values, by label values (in the order of the gauge's label names)
+         */
+        Map<List<String>, Number> getValues() throws Exception;
+    }
+
+    private Gauge() {
+        //empty
+    }
+
+    /**
+     * The values of a gauge, per combination of label values.
+     */
+    public static class Family extends MetricFamily<Number> {
+        private final Source source;
+
+        Family(String name, String help, Source source, String[] labelNames) {
+            super(name, help, labelNames);
+            this.source = source;
+        }
+
+        @Override
+        protected String getType() {
+            return "gauge";
+        }
+
+        @Override
+        protected Number newChild() {
+            throw new UnsupportedOperationException(String.format("The values of the gauge %s are read from its source.", getName()));
+        }
+
+        @Override
+        protected Map<List<String>, Number> getChildren() {
+            try {
+                Map<List<String>, Number> result = source.getValues();
+                return result != null ? result : Collections.<List<String>, Number>emptyMap();
+            } catch (Exception e) {
+                logger.debug(String.format("Could not read the values of the gauge %s: %s", getName(), e.getMessage()));
+                return Collections.emptyMap();
+            }
+        }
+
+        @Override
+        protected void writeChild(Writer writer, List<String> labelValues, Number child) throws IOException {
+            writeSample(writer, getName(), labelValues, null, null, formatValue(child.doubleValue()));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The distribution of observed values (e.g. request latencies) over fixed
+ * buckets, from which percentiles can be estimated. Observing a value is lock
+ * free: it increments the count of the value's bucket and adds the value to the sum.
+ */
+public class Histogram {
+    private final double[] upperBounds;
+    // The number of values in each bucket (not cumulative); the last bucket is +Inf
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong sumBits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds;
+        this.bucketCounts = new AtomicLongArray(upperBounds.length + 1);
+    }
+
+    public void observe(double value) {
+        int bucket = Arrays.binarySearch(upperBounds, value);
+        if (bucket < 0) {
+            // The first bucket whose upper bound is greater than the value
+            bucket = -bucket - 1;
+        }
+        bucketCounts.incrementAndGet(bucket);
+        while (true) {
+            long currentBits = sumBits.get();
+            long newBits = Double.doubleToLongBits(Double.longBitsToDouble(currentBits) + value);
+            if (sumBits.compareAndSet(currentBits, newBits)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of values observed
+     */
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < bucketCounts.length(); i++) {
+            result += bucketCounts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the sum of the values observed
+     */
+    public double getSum() {
+        return Double.longBitsToDouble(sumBits.get());
+    }
+
+    /**
+     * @return the cumulative count of each bucket, i.e. the number of values
+     * less than or equal to its upper bound; the last one is the count of all values
+     */
+    public long[] getCumulativeCounts() {
+        long[] result = new long[bucketCounts.length()];
+        long count = 0;
+        for (int i = 0; i < result.length; i++) {
+            count += bucketCounts.get(i);
+            result[i] = count;
+        }
+        return result;
+    }
+
+    /**
+     * A histogram per combination of label values, all with the same buckets.
+     */
+    public static class Family extends MetricFamily<Histogram> {
+        private final double[] upperBounds;
+
+        Family(String name, String help, double[] upperBounds, String[] labelNames) {
+            super(name, help, labelNames);
+            double[] bounds = upperBounds.clone();
+            Arrays.sort(bounds);
+            if (bounds.length > 0 && bounds[bounds.length - 1] == Double.POSITIVE_INFINITY) {
+                bounds = Arrays.copyOf(bounds, bounds.length - 1);
+            }
+            this.upperBounds = bounds;
+        }
+
+        @Override
+        protected String getType() {
+            return "histogram";
+        }
+
+        @Override
+        protected Histogram newChild() {
+            return new Histogram(upperBounds);
+        }
+
+        @Override
+        protected void writeChild(Writer writer, List<String> labelValues, Histogram child) throws IOException {
+            long[] cumulativeCounts = child.getCumulativeCounts();
+            for (int i = 0; i < upperBounds.length; i++) {
+                writeSample(writer, getName() + "_bucket", labelValues, "le", formatValue(upperBounds[i]),
+                        Long.toString(cumulativeCounts[i]));
+            }
+            long count = cumulativeCounts[cumulativeCounts.length - 1];
+            writeSample(writer, getName() + "_bucket", labelValues, "le", "+Inf", Long.toString(count));
+            writeSample(writer, getName() + "_sum", labelValues, null, null, formatValue(child.getSum()));
+            writeSample(writer, getName() + "_count", labelValues, null, null, Long.toString(count));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named metric, with one child (e.g. one counter) per combination of label
+ * values. The number of children is capped, so that unexpected label values
+ * (e.g. from request paths) can't grow the registry without bounds: once the
+ * cap is reached, new combinations are all recorded under the OVERFLOW_LABEL_VALUE.
+ *
+ * @param <T> the type of the children
+ */
+public abstract class MetricFamily<T> {
+    public static final int MAX_CHILDREN = 1000;
+    public static final String OVERFLOW_LABEL_VALUE = "other";
+
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+    private final ConcurrentHashMap<List<String>, T> children = new ConcurrentHashMap<List<String>, T>();
+
+    protected MetricFamily(String name, String help, String[] labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = Collections.unmodifiableList(Arrays.asList(labelNames.clone()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    /**
+     * @param labelValues the values of the labels, in the order of the label names
+     * @return the child for the label values, created if needed
+     */
+    public T labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException(String.format("The metric %s has %d label(s), but %d value(s) were given.",
+                    name, labelNames.size(), labelValues.length));
+        }
+        List<String> key = Arrays.asList(labelValues);
+        T result = children.get(key);
+        if (result == null) {
+            if (children.size() >= MAX_CHILDREN) {
+                String[] overflowValues = new String[labelValues.length];
+                Arrays.fill(overflowValues, OVERFLOW_LABEL_VALUE);
+                key = Arrays.asList(overflowValues);
+            } else {
+                key = new ArrayList<String>(key);
+            }
+            T child = newChild();
+            result = children.putIfAbsent(key, child);
+            if (result == null) {
+                result = child;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the children to write, by label values
+     */
+    protected Map<List<String>, T> getChildren() {
+        return children;
+    }
+
+    /**
+     * @return the Prometheus type of this metric
+     */
+    protected abstract String getType();
+
+    protected abstract T newChild();
+
+    /**
+     * Writes the samples of a child.
+     *
+     * @param writer the writer
+     * @param labelValues the values of the child's labels
+     * @param child the child
+     */
+    protected abstract void writeChild(Writer writer, List<String> labelValues, T child) throws IOException;
+
+    /**
+     * Writes this metric in the Prometheus text format (version 0.0.4).
+     */
+    void write(Writer writer) throws IOException {
+        writer.write("# HELP ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(help.replace("\\", "\\\\").replace("\n", "\\n"));
+        writer.write('\n');
+        writer.write("# TYPE ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(getType());
+        writer.write('\n');
+        for (Map.Entry<List<String>, T> entry : getChildren().entrySet()) {
+            writeChild(writer, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a sample line.
+     *
+     * @param writer the writer
+     * @param sampleName the name of the sample, e.g. the name of this metric with a suffix
+     * @param labelValues the values of the labels of this metric
+     * @param extraLabelName the name of an additional label (e.g. a histogram's "le"), or null
+     * @param extraLabelValue the value of the additional label
+     * @param value the value
+     */
+    protected void writeSample(Writer writer, String sampleName, List<String> labelValues,
+            String extraLabelName, String extraLabelValue, String value) throws IOException {
+        writer.write(sampleName);
+        if (labelValues.isEmpty() == false || extraLabelName != null) {
+            writer.write('{');
+            boolean first = true;
+            for (int i = 0; i < labelValues.size(); i++) {
+                if (first == false) {
+                    writer.write(',');
+                }
+                writeLabel(writer, labelNames.get(i), labelValues.get(i));
+                first = false;
+            }
+            if (extraLabelName != null) {
+                if (first == false) {
+                    writer.write(',');
+                }
+                writeLabel(writer, extraLabelName, extraLabelValue);
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private static void writeLabel(Writer writer, String labelName, String labelValue) throws IOException {
+        writer.write(labelName);
+        writer.write("=\"");
+        String value = labelValue == null ? "" : labelValue;
+        writer.write(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+        writer.write('"');
+    }
+
+    protected static String formatValue(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        } else if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A filter that records the latency of each request by service, operation and
+ * status, and the number of repository queries it made. Unlike CSpaceFilter's
+ * CSV profiling, this doesn't log or copy anything per request, so it can be
+ * left on in production.
+ *
+ * The service is the first segment of the request's path (e.g. "collectionobjects"),
+ * and the operation is derived from the method and the depth of the path: GET
+ * of a service's path is a "list", GET of anything below it a "read", and POST,
+ * PUT and DELETE are "create", "update" and "delete".
+ */
+public class MetricsFilter implements Filter {
+    private static final String ROOT_SERVICE = "root";
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // Nothing to initialize
+    }
+
+    @Override
+    public void destroy() {
+        // Empty method.
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (ServiceMetrics.isEnabled() == false || (request instanceof HttpServletRequest) == false
+                || (response instanceof HttpServletResponse) == false) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        StatusResponseWrapper responseWrapper = new StatusResponseWrapper((HttpServletResponse) response);
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        ServiceMetrics.startRequest();
+        try {
+            chain.doFilter(request, responseWrapper);
+            failed = false;
+        } finally {
+            int queryCount = ServiceMetrics.endRequest();
+            double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+            int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : responseWrapper.getRecordedStatus();
+
+            String[] path = getPathSegments(httpRequest);
+            String service = path.length > 0 ? path[0] : ROOT_SERVICE;
+            ServiceMetrics.REQUEST_DURATION.labels(service, getOperation(httpRequest.getMethod(), path),
+                    Integer.toString(status)).observe(elapsedSeconds);
+            ServiceMetrics.REPOSITORY_QUERIES_PER_REQUEST.labels(service).observe(queryCount);
+        }
+    }
+
+    private static String[] getPathSegments(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (path == null) {
+            return new String[0];
+        }
+        if (contextPath != null && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.isEmpty() ? new String[0] : path.split("/+");
+    }
+
+    static String getOperation(String method, String[] path) {
+        if ("GET".equals(method)) {
+            return path.length > 1 ? "read" : "list";
+        } else if ("POST".equals(method)) {
+            return "create";
+        } else if ("PUT".equals(method)) {
+            return "update";
+        } else if ("DELETE".equals(method)) {
+            return "delete";
+        }
+        return method != null ? method.toLowerCase() : "unknown";
+    }
+
+    /*
+     * Remembers the status of the response, which the Servlet 2.5 API doesn't expose.
+     */
+    private static class StatusResponseWrapper extends HttpServletResponseWrapper {
+        private int status = HttpServletResponse.SC_OK;
+
+        StatusResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        int getRecordedStatus() {
+            return status;
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+            super.setStatus(sc);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setStatus(int sc, String sm) {
+            status = sc;
+            super.setStatus(sc, sm);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            status = sc;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            status = sc;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            status = HttpServletResponse.SC_MOVED_TEMPORARILY;
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * The in-process registry of the services' metrics: counters, histograms and
+ * gauges, each with a name, a help text and optional labels. Recording a value
+ * is lock free, so the metrics are cheap enough to be kept on in production;
+ * they are written out in the Prometheus text format by MetricsServlet.
+ *
+ * Whether metrics are recorded is set from the services config (see ServiceMain).
+ */
+public class MetricsRegistry {
+    /** The content type of the Prometheus text format */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Pattern METRIC_NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern LABEL_NAME_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    // Sorted by name, so that the metrics are always written in the same order
+    private final ConcurrentSkipListMap<String, MetricFamily<?>> families = new ConcurrentSkipListMap<String, MetricFamily<?>>();
+
+    private volatile boolean enabled = true;
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    MetricsRegistry() {
+        //empty
+    }
+
+    /**
+     * @return true if metrics are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets or creates a counter.
+     *
+     * @param name the name of the counter, which by convention ends with "_total"
+     * @param help what the counter counts
+     * @param labelNames the names of its labels
+     * @return the counter
+     */
+    public Counter.Family counter(String name, String help, String... labelNames) {
+        return register(new Counter.Family(name, help, labelNames), Counter.Family.class);
+    }
+
+    /**
+     * Gets or creates a histogram.
+     *
+     * @param name the name of the histogram, which by convention ends with its unit
+     * @param help what the histogram measures
+     * @param upperBounds the upper bounds of its buckets; a +Inf bucket is always added
+     * @param labelNames the names of its labels
+     * @return the histogram
+     */
+    public Histogram.Family histogram(String name, String help, double[] upperBounds, String... labelNames) {
+        return register(new Histogram.Family(name, help, upperBounds, labelNames), Histogram.Family.class);
+    }
+
+    /**
+     * Gets or creates a gauge, whose values are read from a source when the metrics are written.
+     *
+     * @param name the name of the gauge
+     * @param help what the gauge measures
+     * @param source the source of its values
+     * @param labelNames the names of its labels
+     * @return the gauge
+     */
+    public Gauge.Family gauge(String name, String help, Gauge.Source source, String... labelNames) {
+        return register(new Gauge.Family(name, help, source, labelNames), Gauge.Family.class);
+    }
+
+    private <F extends MetricFamily<?>> F register(F family, Class<F> familyClass) {
+        if (METRIC_NAME_PATTERN.matcher(family.getName()).matches() == false) {
+            throw new IllegalArgumentException(String.format("'%s' is not a valid metric name.", family.getName()));
+        }
+        for (String labelName : family.getLabelNames()) {
+            if (LABEL_NAME_PATTERN.matcher(labelName).matches() == false || labelName.startsWith("__") || labelName.equals("le")) {
+                throw new IllegalArgumentException(String.format("'%s' is not a valid label name for the metric %s.",
+                        labelName, family.getName()));
+            }
+        }
+
+        MetricFamily<?> result = families.putIfAbsent(family.getName(), family);
+        if (result == null) {
+            return family;
+        }
+        if (familyClass.isInstance(result) == false || result.getLabelNames().equals(family.getLabelNames()) == false) {
+            throw new IllegalArgumentException(String.format("The metric %s is already registered with another type or other labels.",
+                    family.getName()));
+        }
+        return familyClass.cast(result);
+    }
+
+    /**
+     * Writes all the metrics in the Prometheus text format (version 0.0.4).
+     *
+     * @param writer the writer
+     */
+    public void write(Writer writer) throws IOException {
+        for (MetricFamily<?> family : families.values()) {
+            family.write(writer);
+        }
+        writer.flush();
+    }
+}
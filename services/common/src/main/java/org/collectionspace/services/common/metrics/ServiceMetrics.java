@@ -0,0 +1,137 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
+import org.collectionspace.services.common.storage.JDBCTools;
+
+/**
+ * The metrics of the services:
+ *
+ * cspace_http_request_duration_seconds - the latency of requests, by service, operation and status
+ * cspace_repository_queries_per_request - the number of repository (NXQL) queries made by each request, by service
+ * cspace_repository_queries_total - the number of repository queries, including those made outside of requests
+ * cspace_cache_requests_total - the lookups of the services' caches, by cache and result (hit or miss)
+ * cspace_jdbc_pool_connections - the connections of the JDBC pools, by datasource and state (active, idle or max)
+ */
+public class ServiceMetrics {
+    public static final String CACHE_HIT = "hit";
+    public static final String CACHE_MISS = "miss";
+
+    private static final double[] LATENCY_BUCKETS = {
+        0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+    private static final double[] QUERY_COUNT_BUCKETS = {
+        0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000
+    };
+
+    private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    public static final Histogram.Family REQUEST_DURATION = registry.histogram("cspace_http_request_duration_seconds",
+            "The latency of the requests to the services, in seconds.", LATENCY_BUCKETS, "service", "operation", "status");
+
+    public static final Histogram.Family REPOSITORY_QUERIES_PER_REQUEST = registry.histogram("cspace_repository_queries_per_request",
+            "The number of repository queries made by each request to the services.", QUERY_COUNT_BUCKETS, "service");
+
+    public static final Counter.Family REPOSITORY_QUERIES = registry.counter("cspace_repository_queries_total",
+            "The number of repository queries.");
+
+    public static final Counter.Family CACHE_REQUESTS = registry.counter("cspace_cache_requests_total",
+            "The number of lookups of the services' caches, by result.", "cache", "result");
+
+    public static final Gauge.Family JDBC_POOL_CONNECTIONS = registry.gauge("cspace_jdbc_pool_connections",
+            "The number of connections of the JDBC connection pools, by state.", new Gauge.Source() {
+                @Override
+                public Map<List<String>, Number> getValues() {
+                    Map<List<String>, Number> result = new LinkedHashMap<List<String>, Number>();
+                    for (Map.Entry<String, DataSource> entry : JDBCTools.cachedDataSources.entrySet()) {
+                        if (entry.getValue() instanceof BasicDataSource) {
+                            BasicDataSource dataSource = (BasicDataSource) entry.getValue();
+                            result.put(Arrays.asList(entry.getKey(), "active"), dataSource.getNumActive());
+                            result.put(Arrays.asList(entry.getKey(), "idle"), dataSource.getNumIdle());
+                            result.put(Arrays.asList(entry.getKey(), "max"), dataSource.getMaxActive());
+                        }
+                    }
+                    return result;
+                }
+            }, "datasource", "state");
+
+    // The number of repository queries made by the current request, or null outside of requests
+    private static final ThreadLocal<int[]> requestQueryCount = new ThreadLocal<int[]>();
+
+    private ServiceMetrics() {
+        //empty
+    }
+
+    /**
+     * @return true if metrics are recorded
+     */
+    public static boolean isEnabled() {
+        return registry.isEnabled();
+    }
+
+    /**
+     * Starts counting the repository queries made by the current thread's request.
+     */
+    static void startRequest() {
+        requestQueryCount.set(new int[1]);
+    }
+
+    /**
+     * Stops counting the repository queries made by the current thread's request.
+     *
+     * @return the number of queries the request made
+     */
+    static int endRequest() {
+        int[] count = requestQueryCount.get();
+        requestQueryCount.remove();
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * Records a repository query.
+     */
+    public static void repositoryQuery() {
+        if (registry.isEnabled()) {
+            REPOSITORY_QUERIES.labels().inc();
+            int[] count = requestQueryCount.get();
+            if (count != null) {
+                count[0]++;
+            }
+        }
+    }
+
+    /**
+     * Records a cache lookup.
+     *
+     * @param cache the name of the cache
+     * @param hit true if the lookup found a value
+     */
+    public static void cacheLookup(String cache, boolean hit) {
+        if (registry.isEnabled()) {
+            CACHE_REQUESTS.labels(cache, hit ? CACHE_HIT : CACHE_MISS).inc();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.query;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * The names a client asked for in a query parameter, to limit what a response includes
+ * -e.g., the parts of a record (parts=collectionobjects_common,collectionspace_core) or
+ * the fields of a list (fields=objectNumber,title). The names are separated by commas,
+ * and the parameter may be repeated.
+ */
+public class Projection {
+
+    /** The projection of requests that don't limit the response */
+    public static final Projection ALL = new Projection(null);
+
+    private final Set<String> names;
+
+    private Projection(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * @param queryParams the request's query parameters, or null
+     * @param paramName the parameter that lists the names
+     * @return the projection, or ALL if the parameter isn't set or lists no names
+     */
+    public static Projection fromQueryParams(MultivaluedMap<String, String> queryParams, String paramName) {
+        List<String> values = queryParams != null ? queryParams.get(paramName) : null;
+        if (values == null) {
+            return ALL;
+        }
+
+        Set<String> names = new LinkedHashSet<String>();
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            for (String name : value.split(",")) {
+                name = name.trim();
+                if (name.isEmpty() == false) {
+                    names.add(name);
+                }
+            }
+        }
+
+        return names.isEmpty() ? ALL : new Projection(Collections.unmodifiableSet(names));
+    }
+
+    /**
+     * @return true if the response isn't limited
+     */
+    public boolean isAll() {
+        return names == null;
+    }
+
+    /**
+     * @return true if the named part or field should be included in the response
+     */
+    public boolean includes(String name) {
+        return names == null || names.contains(name);
+    }
+
+    /**
+     * @return the requested names, in the order they were given, or null if the response isn't limited
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return names == null ? "*" : names.toString();
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Copyright 2009 University of California at Berkeley
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.common.query.nuxeo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.collectionspace.services.common.metrics.ServiceMetrics;
+
+/**
+ * An NXQL where clause, kept as a normalized shape with '?' placeholders and
+ * the string values bound to them, e.g. "dc:title ILIKE ?" and ["%abc%"].
+ *
+ * This is not a prepared statement, and nothing is bound or reused by Nuxeo
+ * or the database because of it: Nuxeo's CoreSession only accepts NXQL as a
+ * single string, so the clause is rendered back to inline literals, quoting
+ * each value and escaping its unescaped single quotes. What it saves is the
+ * work of building the clause: the rendered NXQL is computed once and kept
+ * with the clause, and a Cache memoizes clauses by the raw search input they
+ * were built from.
+ */
+public final class NXQLClause {
+
+	public static final char PLACEHOLDER = '?';
+
+	/** An empty clause, for input that doesn't restrict the query */
+	public static final NXQLClause EMPTY = new NXQLClause("");
+
+	private static final Pattern unescapedSingleQuote = Pattern.compile("(?<!\\\\)'");
+
+	private final String shape;
+	private final List<String> parameters;
+	private final String nxql;
+
+	/**
+	 * @param shape the clause, with a PLACEHOLDER for each parameter. Field names
+	 *            and operators in the shape must not contain the PLACEHOLDER.
+	 * @param parameters the values of the placeholders, in order
+	 */
+	public NXQLClause(String shape, String... parameters) {
+		this.shape = shape;
+		this.parameters = Collections.unmodifiableList(Arrays.asList(parameters.clone()));
+		this.nxql = render(shape, this.parameters);
+	}
+
+	/**
+	 * @return the clause with a placeholder for each parameter. Clauses built from
+	 *         different values of the same kind of search share the same shape.
+	 */
+	public String getShape() {
+		return shape;
+	}
+
+	public List<String> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return the clause with its parameters rendered as quoted NXQL literals
+	 */
+	public String toNXQL() {
+		return nxql;
+	}
+
+	public boolean isEmpty() {
+		return nxql.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return nxql;
+	}
+
+	/**
+	 * Quotes a value as an NXQL string literal. Single quotes that aren't already
+	 * escaped with a backslash are escaped.
+	 */
+	public static String toLiteral(String value) {
+		return "'" + unescapedSingleQuote.matcher(value).replaceAll("\\\\'") + "'";
+	}
+
+	private static String render(String shape, List<String> parameters) {
+		if (parameters.isEmpty()) {
+			return shape;
+		}
+		StringBuilder result = new StringBuilder(shape.length() + 32);
+		int start = 0;
+		for (String parameter : parameters) {
+			int placeholder = shape.indexOf(PLACEHOLDER, start);
+			if (placeholder < 0) {
+				throw new IllegalArgumentException("More parameters than placeholders in NXQL clause: " + shape);
+			}
+			result.append(shape, start, placeholder);
+			result.append(toLiteral(parameter));
+			start = placeholder + 1;
+		}
+		if (shape.indexOf(PLACEHOLDER, start) >= 0) {
+			throw new IllegalArgumentException("More placeholders than parameters in NXQL clause: " + shape);
+		}
+		result.append(shape, start, shape.length());
+		return result.toString();
+	}
+
+	/**
+	 * A bounded, least-recently-used cache of the clauses built from search
+	 * input, so that repeated searches (e.g. the partial term searches of an
+	 * autocomplete field) don't tokenize and escape the same input again.
+	 */
+	static class Cache {
+		/** The name of the clause caches in the services' metrics */
+		static final String CACHE_NAME = "nxqlclauses";
+
+		private final Map<String, NXQLClause> clauses;
+
+		Cache(final int maxSize) {
+			clauses = new LinkedHashMap<String, NXQLClause>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, NXQLClause> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		NXQLClause get(String key) {
+			NXQLClause result;
+			synchronized (clauses) {
+				result = clauses.get(key);
+			}
+			ServiceMetrics.cacheLookup(CACHE_NAME, result != null);
+			return result;
+		}
+
+		void put(String key, NXQLClause clause) {
+			synchronized (clauses) {
+				clauses.put(key, clause);
+			}
+		}
+
+		int size() {
+			synchronized (clauses) {
+				return clauses.size();
+			}
+		}
+
+		void clear() {
+			synchronized (clauses) {
+				clauses.clear();
+			}
+		}
+	}
+}
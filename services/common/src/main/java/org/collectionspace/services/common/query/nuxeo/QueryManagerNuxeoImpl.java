@@ -46,25 +46,31 @@ import org.collectionspace.services.common.storage.JDBCTools;
 
 public class QueryManagerNuxeoImpl implements IQueryManager {
 
-	private static String ECM_FULLTEXT_LIKE = "ecm:fulltext"
+	private static final String ECM_FULLTEXT_LIKE = "ecm:fulltext"
 			+ SEARCH_TERM_SEPARATOR + IQueryManager.SEARCH_LIKE;
+	private static final String ECM_FULLTEXT_SHAPE = SEARCH_GROUP_OPEN + ECM_FULLTEXT_LIKE
+			+ NXQLClause.PLACEHOLDER + SEARCH_GROUP_CLOSE;
 	private static String SEARCH_LIKE_FORM = null;
 
+	// Memoizes the clauses built from recent keyword and partial term searches, keyed by their raw input
+	private static final int CLAUSE_CACHE_SIZE = 1000;
+	private static final NXQLClause.Cache keywordClauses = new NXQLClause.Cache(CLAUSE_CACHE_SIZE);
+	private static final NXQLClause.Cache partialMatchClauses = new NXQLClause.Cache(CLAUSE_CACHE_SIZE);
+
 	private final Logger logger = LoggerFactory
 			.getLogger(QueryManagerNuxeoImpl.class);
 
 	// Consider that letters, letter-markers, numbers, '_' and apostrophe are
 	// words
-	private static Pattern nonWordChars = Pattern
+	private static final Pattern nonWordChars = Pattern
 			.compile("[^\\p{L}\\p{M}\\p{N}_']");
-	private static Pattern kwdTokenizer = Pattern.compile("(?:(['\"])(.*?)(?<!\\\\)(?>\\\\\\\\)*\\1|([^ ]+))");
-	private static Pattern unescapedDblQuotes = Pattern.compile("(?<!\\\\)\"");
-	private static Pattern unescapedSingleQuote = Pattern.compile("(?<!\\\\)'");
-	//private static Pattern kwdSearchProblemChars = Pattern.compile("[\\:\\(\\)\\*\\%]");
+	private static final Pattern kwdTokenizer = Pattern.compile("(?:(['\"])(.*?)(?<!\\\\)(?>\\\\\\\\)*\\1|([^ ]+))");
+	private static final Pattern unescapedDblQuotes = Pattern.compile("(?<!\\\\)\"");
+	//private static final Pattern kwdSearchProblemChars = Pattern.compile("[\\:\\(\\)\\*\\%]");
 	// HACK to work around Nuxeo regression that tokenizes on '.'. 
-	private static Pattern kwdSearchProblemChars = Pattern.compile("[\\:\\(\\)\\*\\%\\.]");
-	private static Pattern kwdSearchHyphen = Pattern.compile(" - ");
-	private static Pattern advSearchSqlWildcard = Pattern.compile(".*?[I]*LIKE\\s*\\\"\\%\\\".*?");
+	private static final Pattern kwdSearchProblemChars = Pattern.compile("[\\:\\(\\)\\*\\%\\.]");
+	private static final Pattern kwdSearchHyphen = Pattern.compile(" - ");
+	private static final Pattern advSearchSqlWildcard = Pattern.compile(".*?[I]*LIKE\\s*\\\"\\%\\\".*?");
 	// Base Nuxeo document type for all CollectionSpace documents/resources
 	public static String COLLECTIONSPACE_DOCUMENT_TYPE = "CollectionSpaceDocument";
 	public static final String NUXEO_DOCUMENT_TYPE = "Document";
@@ -107,6 +113,12 @@ public class QueryManagerNuxeoImpl implements IQueryManager {
 		// Intentionally left blank
 	}
 
+	/*
+	 * Unlike keyword and partial term searches, an advanced search is not built as an
+	 * NXQLClause: it is an NXQL where clause written by the client, passed through as is.
+	 * Its literals could only be split out of it by parsing the NXQL, and since building
+	 * it costs nothing, there is nothing to memoize either.
+	 */
 	@Override
 	public String createWhereClauseFromAdvancedSearch(String advancedSearch) {
 		String result = null;
@@ -143,12 +155,36 @@ public class QueryManagerNuxeoImpl implements IQueryManager {
 	// in NXQL
 	@Override
 	public String createWhereClauseFromKeywords(String keywords) {
-		String result = null;
-		StringBuffer fullTextWhereClause = new StringBuffer();
+		String result = getKeywordClause(keywords).toNXQL();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Final built WHERE clause is: " + result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Builds the full text clause for a keyword search, or gets it from the cache.
+	 * The clause's shape is always the same, with the filtered terms as its only
+	 * parameter.
+	 *
+	 * @param keywords the keywords, as entered by the user
+	 * @return the clause, or NXQLClause.EMPTY if there are no usable keywords
+	 */
+	public NXQLClause getKeywordClause(String keywords) {
+		NXQLClause result = keywordClauses.get(keywords);
+		if (result == null) {
+			result = buildKeywordClause(keywords);
+			keywordClauses.put(keywords, result);
+		}
+		return result;
+	}
+
+	private NXQLClause buildKeywordClause(String keywords) {
+		StringBuilder fullTextTerms = new StringBuilder();
 		// Split on unescaped double quotes to handle phrases
 		Matcher regexMatcher = kwdTokenizer.matcher(keywords.trim());
 		boolean addNOT = false;
-		boolean newWordSet = true;
 		while (regexMatcher.find()) {
 			String phrase = regexMatcher.group();
 			// Not needed - already trimmed by split: 
@@ -168,62 +204,48 @@ public class QueryManagerNuxeoImpl implements IQueryManager {
 			// ignore the special chars except single quote here - can't hurt
 			// TODO this should become a special function that strips things the
 			// fulltext will ignore, including non-word chars and too-short
-			// words,
-			// and escaping single quotes. Can return a boolean for anything
-			// stripped,
+			// words. Can return a boolean for anything stripped,
 			// which triggers the back-up search. We can think about whether
 			// stripping
 			// short words not in a quoted phrase should trigger the backup.
-			String escapedAndTrimmed = unescapedSingleQuote.matcher(phrase).replaceAll("\\\\'");
+			// Single quotes are escaped when the clause is rendered.
 			// If there are non-word chars in the phrase, we need to match the
 			// phrase exactly against the fulltext table for this object
 			// if(nonWordChars.matcher(trimmed).matches()) {
 			// }
 			// Replace problem chars with spaces. Patches CSPACE-4147,
 			// CSPACE-4106
-			escapedAndTrimmed = kwdSearchProblemChars.matcher(escapedAndTrimmed).replaceAll(" ").trim();
-			escapedAndTrimmed = kwdSearchHyphen.matcher(escapedAndTrimmed).replaceAll(" ").trim();
-			if(escapedAndTrimmed.isEmpty()) {
+			String trimmed = kwdSearchProblemChars.matcher(phrase).replaceAll(" ").trim();
+			trimmed = kwdSearchHyphen.matcher(trimmed).replaceAll(" ").trim();
+			if(trimmed.isEmpty()) {
 				if (logger.isDebugEnabled() == true) {
 					logger.debug("Phrase reduced to empty after replacements: " + phrase);
 				}
 				continue;
 			}
 
-			if (fullTextWhereClause.length()==0) {
-				fullTextWhereClause.append(SEARCH_GROUP_OPEN);
-			}
-			if (newWordSet) {
-				fullTextWhereClause.append(ECM_FULLTEXT_LIKE + "'");
-				newWordSet = false;
-			} else {
-				fullTextWhereClause.append(SEARCH_TERM_SEPARATOR);
+			if (fullTextTerms.length() > 0) {
+				fullTextTerms.append(SEARCH_TERM_SEPARATOR);
 			}
 			if(addNOT) {
-				fullTextWhereClause.append("-");	// Negate the next term
+				fullTextTerms.append("-");	// Negate the next term
 				addNOT = false;
 			}
-			fullTextWhereClause.append(escapedAndTrimmed);
+			fullTextTerms.append(trimmed);
 			
 			if (logger.isTraceEnabled() == true) {
-				logger.trace("Current built whereClause is: "
-						+ fullTextWhereClause.toString());
+				logger.trace("Current built full text terms are: "
+						+ fullTextTerms.toString());
 			}
 		}
-		if (fullTextWhereClause.length()==0) {
+		if (fullTextTerms.length()==0) {
 			if (logger.isDebugEnabled() == true) {
 				logger.debug("No usable keywords specified in string:[" + keywords + "]");
 			}
-		} else {
-			fullTextWhereClause.append("'" + SEARCH_GROUP_CLOSE);
+			return NXQLClause.EMPTY;
 		}
 
-		result = fullTextWhereClause.toString();
-		if (logger.isDebugEnabled()) {
-			logger.debug("Final built WHERE clause is: " + result);
-		}
-
-		return result;
+		return new NXQLClause(ECM_FULLTEXT_SHAPE, fullTextTerms.toString());
 	}
 
 	/*
@@ -261,14 +283,16 @@ public class QueryManagerNuxeoImpl implements IQueryManager {
 		if (field == null || field.isEmpty()) {
 			throw new RuntimeException("No match field specified.");
 		}
-			
-		StringBuilder ptClause = new StringBuilder(trimmed.length()+field.length()+20);
-		ptClause.append(field);
-		ptClause.append(getLikeForm(dataSourceName, repositoryName, cspaceInstanceId));
-		ptClause.append(startingWildcard?"'%":"'");
-		ptClause.append(unescapedSingleQuote.matcher(trimmed).replaceAll("\\\\'"));
-		ptClause.append("%'");
-		return ptClause.toString();
+
+		String likeForm = getLikeForm(dataSourceName, repositoryName, cspaceInstanceId);
+		String key = field + likeForm + (startingWildcard ? "%" : "") + NXQLClause.PLACEHOLDER + trimmed;
+		NXQLClause ptClause = partialMatchClauses.get(key);
+		if (ptClause == null) {
+			ptClause = new NXQLClause(field + likeForm + NXQLClause.PLACEHOLDER,
+					(startingWildcard ? "%" : "") + trimmed + "%");
+			partialMatchClauses.put(key, ptClause);
+		}
+		return ptClause.toNXQL();
 	}
 
 	/**
@@ -27,24 +27,40 @@
 package org.collectionspace.services.common.relation;
 
 import org.collectionspace.services.client.IQueryManager;
+import org.collectionspace.services.client.PayloadInputPart;
 import org.collectionspace.services.client.PoxPayloadIn;
 import org.collectionspace.services.client.PoxPayloadOut;
+import org.collectionspace.services.client.RelationClient;
+import org.collectionspace.services.client.workflow.WorkflowClient;
+import org.collectionspace.services.common.BulkPayload;
 import org.collectionspace.services.common.CSWebApplicationException;
 import org.collectionspace.services.common.NuxeoBasedResource;
 import org.collectionspace.services.common.ServiceMessages;
 import org.collectionspace.services.common.context.ServiceContext;
+import org.collectionspace.services.common.api.Tools;
+import org.collectionspace.services.common.document.BadRequestException;
 import org.collectionspace.services.common.document.DocumentHandler;
+import org.collectionspace.services.common.document.DocumentNotFoundException;
 import org.collectionspace.services.common.query.QueryManager;
 import org.collectionspace.services.client.IRelationsManager;
 import org.collectionspace.services.common.relation.nuxeo.RelationsUtils;
+import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.client.java.RepositoryClientImpl;
+import org.collectionspace.services.nuxeo.listener.ListenerDeadLetters;
 import org.collectionspace.services.relation.RelationsCommon;
 import org.collectionspace.services.relation.RelationsCommonList;
+import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
@@ -57,6 +73,9 @@ import javax.ws.rs.core.UriInfo;
 public class RelationResource extends NuxeoBasedResource {
 	public final static String serviceName = "relations";
 	final Logger logger = LoggerFactory.getLogger(RelationResource.class);
+
+	// CSIDs are UUIDs; anything else can't name a record
+	private static final Pattern CSID_PATTERN = Pattern.compile("[0-9A-Za-z-]+");
 	
 	@Override
 	protected String getVersionString() {
@@ -126,6 +145,90 @@ public class RelationResource extends NuxeoBasedResource {
         }
     }
 
+	/**
+	 * Reports the progress of the soft deletion of the relations of a soft deleted record.
+	 * The relations are soft deleted in the background, after the record is (see the
+	 * UpdateRelationsOnDelete listener); until they all have been, they are pending, or
+	 * failed if the background soft deletion gave up on them. See RelationsCleanupStatus.
+	 */
+	@GET
+	@Path(RelationClient.CLEANUP_PATH + "/{csid}")
+	@Produces("application/xml")
+	public byte[] getCleanupStatus(
+			@Context UriInfo uriInfo,
+			@PathParam("csid") String csid) {
+		ensureCSID(csid, READ);
+		try {
+			if (CSID_PATTERN.matcher(csid).matches() == false) {
+				throw new BadRequestException("Invalid CSID: " + csid);
+			}
+			ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx = createServiceContext(uriInfo);
+			RepositoryClientImpl repoClient = (RepositoryClientImpl) getRepositoryClient(ctx);
+			CoreSessionInterface repoSession = repoClient.getRepositorySession(ctx);
+			String lifeCycleState;
+			long pending = 0;
+			try {
+				DocumentModelList docModelList = repoSession.query(RelationsUtils.buildRecordQuery(csid, ctx.getTenantId()));
+				if (docModelList.isEmpty()) {
+					throw new DocumentNotFoundException("Could not find a record with CSID=" + csid);
+				}
+				lifeCycleState = docModelList.get(0).getCurrentLifeCycleState();
+				if (lifeCycleState != null && lifeCycleState.contains(WorkflowClient.WORKFLOWSTATE_DELETED)) {
+					pending = repoSession.query(RelationsUtils.buildCascadeDeleteQuery(csid), null, 1, 0, true).totalSize();
+				}
+			} finally {
+				repoClient.releaseRepositorySession(ctx, repoSession);
+			}
+			String deadLetterError = null;
+			if (pending > 0) {
+				try {
+					deadLetterError = ListenerDeadLetters.getLastError(RelationsUtils.CASCADE_DELETE_WORKER, csid);
+				} catch (SQLException e) {
+					logger.warn("Could not read the dead letters of the relations of record " + csid, e);
+				}
+			}
+			return RelationsCleanupStatus.get(csid, lifeCycleState, pending, deadLetterError).toXml();
+		} catch (Exception e) {
+			throw bigReThrow(e, ServiceMessages.GET_FAILED, csid);
+		}
+	}
+
+	/*
+	 * A bulk delete of a relation may identify it by its subject, predicate and object, in
+	 * a relations_common payload, rather than by its CSID.
+	 */
+	@Override
+	protected String getBulkDeleteCsid(ServiceContext<PoxPayloadIn, PoxPayloadOut> parentCtx, UriInfo uriInfo,
+			BulkPayload.Operation operation) throws Exception {
+		if (Tools.notBlank(operation.getCsid()) || operation.getPayload() == null) {
+			return operation.getCsid();
+		}
+
+		PayloadInputPart part = new PoxPayloadIn(operation.getPayload()).getPart(RelationClient.SERVICE_COMMONPART_NAME);
+		if (part == null || !(part.getBody() instanceof RelationsCommon)) {
+			throw new BadRequestException("A relation to delete must be identified by a CSID, or by a "
+					+ RelationClient.SERVICE_COMMONPART_NAME + " part.");
+		}
+		RelationsCommon relation = (RelationsCommon) part.getBody();
+		String predicate = Tools.notBlank(relation.getPredicate()) ? relation.getPredicate() : relation.getRelationshipType();
+		if (Tools.isBlank(relation.getSubjectCsid()) || Tools.isBlank(predicate) || Tools.isBlank(relation.getObjectCsid())) {
+			throw new BadRequestException("A relation to delete must be identified by its subjectCsid, predicate and objectCsid.");
+		}
+
+		RelationsCommonList relations = getRelationList(parentCtx, uriInfo,
+				relation.getSubjectCsid(), null, predicate, relation.getObjectCsid(), null);
+		List<RelationsCommonList.RelationListItem> items = relations.getRelationListItem();
+		if (items.isEmpty()) {
+			throw new DocumentNotFoundException(String.format("No relation found with subject %s, predicate %s and object %s.",
+					relation.getSubjectCsid(), predicate, relation.getObjectCsid()));
+		}
+		if (items.size() > 1) {
+			throw new BadRequestException(String.format("%d relations found with subject %s, predicate %s and object %s; delete them by CSID.",
+					items.size(), relation.getSubjectCsid(), predicate, relation.getObjectCsid()));
+		}
+		return items.get(0).getCsid();
+	}
+
 
 }
 
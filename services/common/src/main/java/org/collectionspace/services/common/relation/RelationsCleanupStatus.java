@@ -0,0 +1,143 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.common.relation;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.collectionspace.services.client.workflow.WorkflowClient;
+
+/**
+ * The progress of the soft deletion of the relations of a record, as reported by
+ * the relations service's cleanup status resource:
+ *
+ * <pre>
+ * &lt;relations-cleanup csid="..." status="pending" pending="1234"/&gt;
+ * &lt;relations-cleanup csid="..." status="failed" pending="12"&gt;&lt;error&gt;...&lt;/error&gt;&lt;/relations-cleanup&gt;
+ * </pre>
+ *
+ * The status is one of:
+ * <ul>
+ * <li>not-deleted: the record is not soft deleted, so its relations aren't either</li>
+ * <li>pending: some relations are still to be soft deleted in the background</li>
+ * <li>failed: some relations are still to be soft deleted, and the background soft
+ * deletion gave up on them; the error is that of its last attempt</li>
+ * <li>complete: all relations have been soft deleted</li>
+ * </ul>
+ */
+public class RelationsCleanupStatus {
+    public static final String NOT_DELETED = "not-deleted";
+    public static final String PENDING = "pending";
+    public static final String FAILED = "failed";
+    public static final String COMPLETE = "complete";
+
+    private static final String ELEMENT = "relations-cleanup";
+    private static final String ERROR_ELEMENT = "error";
+
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private final String csid;
+    private final String status;
+    private final long pending;
+    private final String error;
+
+    private RelationsCleanupStatus(String csid, String status, long pending, String error) {
+        this.csid = csid;
+        this.status = status;
+        this.pending = pending;
+        this.error = error;
+    }
+
+    /**
+     * Gets the cleanup status of a record.
+     *
+     * @param csid the CSID of the record
+     * @param lifeCycleState the record's workflow state
+     * @param pending the number of its relations still to be soft deleted
+     * @param deadLetterError the error recorded when the background soft deletion of its relations
+     * last gave up, or null if it never has
+     * @return the status
+     */
+    public static RelationsCleanupStatus get(String csid, String lifeCycleState, long pending, String deadLetterError) {
+        if (lifeCycleState == null || lifeCycleState.contains(WorkflowClient.WORKFLOWSTATE_DELETED) == false) {
+            return new RelationsCleanupStatus(csid, NOT_DELETED, 0, null);
+        }
+        if (pending == 0) {
+            return new RelationsCleanupStatus(csid, COMPLETE, 0, null);
+        }
+        if (deadLetterError != null) {
+            return new RelationsCleanupStatus(csid, FAILED, pending, deadLetterError);
+        }
+        return new RelationsCleanupStatus(csid, PENDING, pending, null);
+    }
+
+    public String getCsid() {
+        return csid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    /** @return the error of a failed cleanup, or null */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Writes the status as XML.
+     *
+     * @return the status, as UTF-8 encoded XML
+     * @throws XMLStreamException
+     */
+    public byte[] toXml() throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement(ELEMENT);
+        writer.writeAttribute("csid", csid);
+        writer.writeAttribute("status", status);
+        if (status.equals(NOT_DELETED) == false) {
+            writer.writeAttribute("pending", Long.toString(pending));
+        }
+        if (error != null) {
+            writer.writeStartElement(ERROR_ELEMENT);
+            writer.writeCharacters(error);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+
+        return out.toByteArray();
+    }
+}
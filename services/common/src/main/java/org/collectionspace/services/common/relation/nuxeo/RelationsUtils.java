@@ -25,7 +25,10 @@ package org.collectionspace.services.common.relation.nuxeo;
 
 import java.lang.StringBuilder;
 
+import org.collectionspace.services.client.CollectionSpaceClient;
 import org.collectionspace.services.client.IQueryManager;
+import org.collectionspace.services.client.workflow.WorkflowClient;
+import org.collectionspace.services.common.query.nuxeo.NXQLClause;
 import org.collectionspace.services.common.relation.RelationJAXBSchema;
 
 import org.slf4j.Logger;
@@ -101,5 +104,66 @@ public class RelationsUtils {
     	
     	return result;
     }
-}
 
+    /**
+     * The name under which the listener that soft deletes the relations of soft deleted
+     * records in the background (UpdateRelationsOnDeleteWorker) records its dead letters.
+     */
+    public static final String CASCADE_DELETE_WORKER = "org.collectionspace.services.listener.UpdateRelationsOnDeleteWorker";
+
+    /**
+     * The workflow states of the relations that are not soft deleted along with
+     * the records they refer to: those already (soft) deleted, and those locked.
+     */
+    private static final String[] CASCADE_DELETE_EXCLUDED_STATES = {
+    	WorkflowClient.WORKFLOWSTATE_DELETED,
+    	WorkflowClient.WORKFLOWSTATE_LOCKED,
+    	WorkflowClient.WORKFLOWSTATE_LOCKED_DELETED,
+    	WorkflowClient.WORKFLOWSTATE_REPLICATED_DELETED,
+    	WorkflowClient.WORKFLOWSTATE_DEPRECATED_DELETED,
+    	WorkflowClient.WORKFLOWSTATE_REPLICATED_DEPRECATED_DELETED
+    };
+
+    /**
+     * Builds an NXQL query for the relations that are still to be soft deleted
+     * along with a soft deleted record: those that have the record as their
+     * subject or object, and are in none of the states above. The query selects
+     * fewer relations as they are soft deleted, so it can be run repeatedly to
+     * soft delete them in chunks.
+     *
+     * @param csid the CSID of the soft deleted record
+     * @return the query
+     */
+    public static String buildCascadeDeleteQuery(String csid) {
+    	StringBuilder stringBuilder = new StringBuilder();
+    	stringBuilder.append("SELECT * FROM " + RelationConstants.NUXEO_DOCTYPE + " WHERE ecm:isProxy = 0 AND (");
+    	stringBuilder.append(RelationConstants.NUXEO_SCHEMA_NAME + ":" + RelationJAXBSchema.SUBJECT_CSID + " = " + NXQLClause.toLiteral(csid));
+    	stringBuilder.append(" OR ");
+    	stringBuilder.append(RelationConstants.NUXEO_SCHEMA_NAME + ":" + RelationJAXBSchema.OBJECT_CSID + " = " + NXQLClause.toLiteral(csid));
+    	stringBuilder.append(") AND ecm:currentLifeCycleState NOT IN (");
+    	for (int i = 0; i < CASCADE_DELETE_EXCLUDED_STATES.length; i++) {
+    		if (i > 0) {
+    			stringBuilder.append(", ");
+    		}
+    		stringBuilder.append("'" + CASCADE_DELETE_EXCLUDED_STATES[i] + "'");
+    	}
+    	stringBuilder.append(")");
+
+    	return stringBuilder.toString();
+    }
+
+    /**
+     * Builds an NXQL query for the current (neither proxy nor version) document of
+     * a record of any type, in a tenant.
+     *
+     * @param csid the CSID of the record
+     * @param tenantId the tenant ID
+     * @return the query
+     */
+    public static String buildRecordQuery(String csid, String tenantId) {
+    	return "SELECT * FROM Document WHERE ecm:name = " + NXQLClause.toLiteral(csid)
+    			+ IQueryManager.SEARCH_QUALIFIER_AND + CollectionSpaceClient.CORE_TENANTID + " = " + NXQLClause.toLiteral(tenantId)
+    			+ IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.NUXEO_IS_PROXY_FILTER
+    			+ IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.NUXEO_IS_VERSION_FILTER;
+    }
+}
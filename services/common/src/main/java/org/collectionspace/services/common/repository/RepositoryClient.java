@@ -30,6 +30,7 @@ import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentHandler;
 import org.collectionspace.services.common.document.DocumentNotFoundException;
+import org.collectionspace.services.common.document.DocumentVersion;
 import org.collectionspace.services.common.document.DocumentWrapper;
 import org.collectionspace.services.common.storage.StorageClient;
 import org.collectionspace.services.config.tenant.RepositoryDomainType;
@@ -114,6 +115,17 @@ public interface RepositoryClient<IT, OT> extends StorageClient {
 
     public String getDocURI(DocumentWrapper<DocumentModel> wrappedDoc) throws ClientException;
 
+    /**
+     * Get the version of a document -i.e., its change token and its workflow state,
+     * without running a document handler or building the document's payload.
+     * @param ctx service context under which this method is invoked
+     * @param csid of the document
+     * @throws DocumentNotFoundException if the document cannot be found in the repository
+     * @throws DocumentException
+     */
+    public DocumentVersion getDocVersion(ServiceContext<IT, OT> ctx, String csid)
+            throws DocumentNotFoundException, DocumentException;
+
     /**
      * Find wrapped documentModel from the Nuxeo repository
      * @param ctx service context under which this method is invoked
@@ -33,6 +33,7 @@ import org.collectionspace.services.authorization.AuthZ;
 import org.collectionspace.services.authorization.CSpaceResource;
 import org.collectionspace.services.authorization.URIResourceImpl;
 import org.collectionspace.services.client.CollectionSpaceClient;
+import org.collectionspace.services.client.RelationClient;
 import org.collectionspace.services.client.index.IndexClient;
 import org.collectionspace.services.client.workflow.WorkflowClient;
 import org.collectionspace.services.config.service.ServiceBindingType;
@@ -239,7 +240,9 @@ public class SecurityUtils {
 	    while (strTok.hasMoreTokens() == true) {
 	    	pathSegment = strTok.nextToken();
 	    	if (pathSegment.equals("*") || 
-	    			pathSegment.equals("index") || pathSegment.equals(CollectionSpaceClient.SERVICE_DESCRIPTION_PATH)) {  // Strip off subresource paths since they inherit their parent's permissions
+	    			pathSegment.equals("index") || pathSegment.equals(CollectionSpaceClient.SERVICE_DESCRIPTION_PATH) ||
+	    			(pathSegment.equals(CollectionSpaceClient.BULK_PATH) && result.length() > 0) ||
+	    			(pathSegment.equals(RelationClient.CLEANUP_PATH) && result.equals(RelationClient.SERVICE_NAME))) {  // Strip off subresource paths since they inherit their parent's permissions
 	    		//
 	    		// leave the loop if we hit a wildcard character or the "index" subresource
 	    		//
@@ -36,8 +36,9 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sql.rowset.CachedRowSet;
 import javax.sql.rowset.RowSetFactory;
@@ -51,7 +52,7 @@ import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
  * $LastChangedDate:  $
  */
 public class JDBCTools {
-    public static HashMap<String, DataSource> cachedDataSources = new HashMap<String, DataSource>();
+    public static Map<String, DataSource> cachedDataSources = new ConcurrentHashMap<String, DataSource>();
     public static String CSPACE_DATASOURCE_NAME = "CspaceDS";
     public static String NUXEO_DATASOURCE_NAME = "NuxeoDS_CS"; // Starting with v4.2 release we renamed this from NuxeoDS to NuxeoDS_CS to void namespace conflict with Nuxeo EP
     // Default database names
@@ -239,9 +240,8 @@ public class JDBCTools {
             RowSetFactory rowSetFactory = RowSetProvider.newFactory();
             CachedRowSet crs = rowSetFactory.createCachedRowSet();
             ps = builder.build(conn);
-            // FIXME: transition this log statement to DEBUG level when appropriate
-            if (logger.isInfoEnabled()) {
-                logger.info("prepared statement=" + ps.toString());
+            if (logger.isDebugEnabled()) {
+                logger.debug("prepared statement=" + ps.toString());
             }
             try (ResultSet resultSet = ps.executeQuery()) {
                 crs.populate(resultSet);
@@ -286,10 +286,9 @@ public class JDBCTools {
             int statementCount = 0;
             for (PreparedStatementBuilder builder : builders) {
                 ps = builder.build(conn);
-                // FIXME: transition this log statement to DEBUG level when appropriate
-                if (logger.isInfoEnabled()) {
-                    statementCount++;
-                    logger.info("prepared statement " + statementCount + "=" + ps.toString());
+                statementCount++;
+                if (logger.isDebugEnabled()) {
+                    logger.debug("prepared statement " + statementCount + "=" + ps.toString());
                 }
                 // Try executing each statement, first as a query, then as an update
                 try {
@@ -303,6 +302,10 @@ public class JDBCTools {
                 	logger.debug(String.format("Row count for builder %s is %d", ps.toString(), rowcount));
                     // Throw uncaught exception here if update attempt also fails
                 }
+                // Close each statement before building the next, so that a pooled
+                // statement is returned to the connection's statement pool
+                ps.close();
+                ps = null;
             }
             return results;
         } catch (SQLException sqle) {
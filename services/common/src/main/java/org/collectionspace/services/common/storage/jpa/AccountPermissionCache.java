@@ -0,0 +1,294 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2010 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at:
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License
+ */
+package org.collectionspace.services.common.storage.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.collectionspace.services.authorization.AccountPermission;
+import org.collectionspace.services.authorization.AccountRoleRel;
+import org.collectionspace.services.authorization.AccountValue;
+import org.collectionspace.services.authorization.PermissionValue;
+import org.collectionspace.services.authorization.PermissionRoleRel;
+import org.collectionspace.services.authorization.Role;
+import org.collectionspace.services.authorization.perms.Permission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-tenant cache of effective account permissions used to answer the
+ * /accounts/{csid}/accountperms request (and the account_permission part of
+ * record reads) without re-running the account/role/permission join.
+ *
+ * Snapshots are dropped whenever roles, permissions, permission-role or
+ * account-role relationships change. The authorization tables are not
+ * tenant-scoped for accounts, so a snapshot remembers the tenants its roles
+ * come from and is also dropped when any of those tenants change.
+ */
+public class AccountPermissionCache {
+
+    final private static Logger logger = LoggerFactory.getLogger(AccountPermissionCache.class);
+
+    /** The name of this cache in the services' metrics */
+    public static final String CACHE_NAME = "accountpermissions";
+
+    private static final AccountPermissionCache instance = new AccountPermissionCache();
+
+    //can't reference the class here as this runs from the common jar which cannot
+    //depend upon the account service
+    private static final String ACCOUNTS_COMMON_CLASSNAME = "org.collectionspace.services.account.AccountsCommon";
+
+    /** tenantId -> (userId -> snapshot) */
+    private final ConcurrentHashMap<String, ConcurrentMap<String, Snapshot>> snapshotsByTenant =
+    		new ConcurrentHashMap<String, ConcurrentMap<String, Snapshot>>();
+    /** tenantId -> (account csid -> userId) */
+    private final ConcurrentHashMap<String, ConcurrentMap<String, String>> userIdsByTenant =
+    		new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+    /** Bumped on every invalidation so that snapshots built concurrently are not cached stale. */
+    private final AtomicLong generation = new AtomicLong();
+
+    public static AccountPermissionCache get() {
+    	return instance;
+    }
+
+    AccountPermissionCache() {
+    	//empty
+    }
+
+    /**
+     * An immutable, precomputed view of the permissions granted to an account
+     * through its roles.
+     */
+    public static class Snapshot {
+    	private final String accountId;
+    	private final String screenName;
+    	private final String userId;
+    	private final Set<String> tenantIds;
+    	private final List<PermissionValue> permissions;
+    	private final Map<String, List<PermissionValue>> permissionsByResource;
+
+    	public Snapshot(AccountValue account, Set<String> tenantIds, List<PermissionValue> permissions) {
+    		this.accountId = account.getAccountId();
+    		this.screenName = account.getScreenName();
+    		this.userId = account.getUserId();
+    		this.tenantIds = Collections.unmodifiableSet(new HashSet<String>(tenantIds));
+    		this.permissions = Collections.unmodifiableList(new ArrayList<PermissionValue>(permissions));
+
+    		Map<String, List<PermissionValue>> byResource = new HashMap<String, List<PermissionValue>>();
+    		for (PermissionValue pv : permissions) {
+    			List<PermissionValue> resourcePerms = byResource.get(pv.getResourceName());
+    			if (resourcePerms == null) {
+    				resourcePerms = new ArrayList<PermissionValue>();
+    				byResource.put(pv.getResourceName(), resourcePerms);
+    			}
+    			resourcePerms.add(pv);
+    		}
+    		this.permissionsByResource = byResource;
+    	}
+
+    	public String getAccountId() {
+    		return accountId;
+    	}
+
+    	public String getUserId() {
+    		return userId;
+    	}
+
+    	public Set<String> getTenantIds() {
+    		return tenantIds;
+    	}
+
+    	public List<PermissionValue> getPermissions() {
+    		return permissions;
+    	}
+
+    	/**
+    	 * Builds a new AccountPermission response from this snapshot. If both resource names are
+    	 * given, only permissions on either of those resources are included.
+    	 *
+    	 * The PermissionValue instances are shared between responses and must be treated as read-only.
+    	 */
+    	public AccountPermission toAccountPermission(String tenantId, String currentResource, String permissionResource) {
+    		AccountPermission result = new AccountPermission();
+
+    		AccountValue av = new AccountValue();
+    		av.setAccountId(accountId);
+    		av.setScreenName(screenName);
+    		av.setUserId(userId);
+    		av.setTenantId(tenantId);
+    		List<AccountValue> accountValues = new ArrayList<AccountValue>();
+    		accountValues.add(av);
+    		result.setAccount(accountValues);
+
+    		List<PermissionValue> permissionValues;
+    		if (permissionResource != null && currentResource != null) {
+    			permissionValues = new ArrayList<PermissionValue>();
+    			addResourcePermissions(permissionValues, currentResource);
+    			if (!permissionResource.equals(currentResource)) {
+    				addResourcePermissions(permissionValues, permissionResource);
+    			}
+    		} else {
+    			permissionValues = new ArrayList<PermissionValue>(permissions);
+    		}
+    		if (permissionValues.isEmpty() == false) {
+    			result.setPermission(permissionValues);
+    		}
+
+    		return result;
+    	}
+
+    	private void addResourcePermissions(List<PermissionValue> target, String resourceName) {
+    		List<PermissionValue> resourcePerms = permissionsByResource.get(resourceName);
+    		if (resourcePerms != null) {
+    			target.addAll(resourcePerms);
+    		}
+    	}
+    }
+
+    /**
+     * Returns the current invalidation generation. Callers building a snapshot should read this
+     * before querying storage and pass it to put().
+     */
+    public long getGeneration() {
+    	return generation.get();
+    }
+
+    public Snapshot getByUserId(String tenantId, String userId) {
+    	if (tenantId == null || userId == null) {
+    		return null;
+    	}
+    	Map<String, Snapshot> snapshots = snapshotsByTenant.get(tenantId);
+    	return snapshots != null ? snapshots.get(userId) : null;
+    }
+
+    public Snapshot getByAccountId(String tenantId, String accountId) {
+    	if (tenantId == null || accountId == null) {
+    		return null;
+    	}
+    	Map<String, String> userIds = userIdsByTenant.get(tenantId);
+    	String userId = userIds != null ? userIds.get(accountId) : null;
+    	return getByUserId(tenantId, userId);
+    }
+
+    /**
+     * Caches the snapshot for the given tenant unless an invalidation happened since
+     * the given generation was read.
+     */
+    public void put(String tenantId, Snapshot snapshot, long builtAtGeneration) {
+    	if (tenantId == null || snapshot == null || snapshot.getUserId() == null) {
+    		return;
+    	}
+    	if (generation.get() != builtAtGeneration) {
+    		return;
+    	}
+    	getTenantMap(snapshotsByTenant, tenantId).put(snapshot.getUserId(), snapshot);
+    	if (snapshot.getAccountId() != null) {
+    		getTenantMap(userIdsByTenant, tenantId).put(snapshot.getAccountId(), snapshot.getUserId());
+    	}
+    	//
+    	// An invalidation may have raced with the put above, in which case the snapshot could be stale.
+    	//
+    	if (generation.get() != builtAtGeneration) {
+    		ConcurrentMap<String, Snapshot> snapshots = snapshotsByTenant.get(tenantId);
+    		if (snapshots != null) {
+    			snapshots.remove(snapshot.getUserId(), snapshot);
+    		}
+    	}
+    }
+
+    /**
+     * Drops all snapshots cached for the tenant, along with any snapshot in another tenant
+     * that includes roles from it.
+     */
+    public void invalidate(String tenantId) {
+    	if (tenantId == null) {
+    		invalidateAll();
+    		return;
+    	}
+    	generation.incrementAndGet();
+    	snapshotsByTenant.remove(tenantId);
+    	userIdsByTenant.remove(tenantId);
+    	for (ConcurrentMap<String, Snapshot> snapshots : snapshotsByTenant.values()) {
+    		Iterator<Snapshot> iter = snapshots.values().iterator();
+    		while (iter.hasNext()) {
+    			if (iter.next().getTenantIds().contains(tenantId)) {
+    				iter.remove();
+    			}
+    		}
+    	}
+    	if (logger.isDebugEnabled()) {
+    		logger.debug("Invalidated cached account permissions for tenant=" + tenantId);
+    	}
+    }
+
+    public void invalidateAll() {
+    	generation.incrementAndGet();
+    	snapshotsByTenant.clear();
+    	userIdsByTenant.clear();
+    	if (logger.isDebugEnabled()) {
+    		logger.debug("Invalidated all cached account permissions.");
+    	}
+    }
+
+    /**
+     * Invalidates whatever the change of a persisted entity of the given class could affect.
+     * Changes to roles, permissions and permission-role relationships are confined to the
+     * tenant; changes to account-role relationships or accounts may move an account between
+     * tenants, so they drop everything.
+     */
+    public void invalidate(String tenantId, Class<?> entityClazz) {
+    	if (entityClazz == null) {
+    		return;
+    	}
+    	if (Role.class.isAssignableFrom(entityClazz)
+    			|| Permission.class.isAssignableFrom(entityClazz)
+    			|| PermissionRoleRel.class.isAssignableFrom(entityClazz)) {
+    		invalidate(tenantId);
+    	} else if (AccountRoleRel.class.isAssignableFrom(entityClazz)
+    			|| entityClazz.getName().equals(ACCOUNTS_COMMON_CLASSNAME)) {
+    		invalidateAll();
+    	}
+    }
+
+    private static <V> ConcurrentMap<String, V> getTenantMap(ConcurrentHashMap<String, ConcurrentMap<String, V>> maps, String tenantId) {
+    	ConcurrentMap<String, V> result = maps.get(tenantId);
+    	if (result == null) {
+    		result = new ConcurrentHashMap<String, V>();
+    		ConcurrentMap<String, V> existing = maps.putIfAbsent(tenantId, result);
+    		if (existing != null) {
+    			result = existing;
+    		}
+    	}
+    	return result;
+    }
+}
@@ -128,6 +128,7 @@ public class JpaRelationshipStorageClient<T> extends JpaStorageClientImpl {
                 em.persist(r);
             }
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, (Class<?>) ctx.getProperty(ServiceContextProperties.ENTITY_CLASS));
             handler.complete(Action.CREATE, wrapDoc);
             return UUID.randomUUID().toString(); //filler, not useful
         } catch (BadRequestException bre) {
@@ -356,6 +357,7 @@ public class JpaRelationshipStorageClient<T> extends JpaStorageClientImpl {
                         + " with objectId=" + objectId);
             }
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, (Class<?>) ctx.getProperty(ServiceContextProperties.ENTITY_CLASS));
 
         } catch (Exception e) {
             if (logger.isDebugEnabled()) {
@@ -413,6 +415,7 @@ public class JpaRelationshipStorageClient<T> extends JpaStorageClientImpl {
             	em.remove(getRelationship(em, r));
             }
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, (Class<?>) ctx.getProperty(ServiceContextProperties.ENTITY_CLASS));
             handler.complete(Action.DELETE, wrapDoc);
         } catch (DocumentException de) {
             if (em != null && em.getTransaction().isActive()) {
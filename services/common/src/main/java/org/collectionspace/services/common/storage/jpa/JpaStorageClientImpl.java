@@ -128,6 +128,7 @@ public class JpaStorageClientImpl implements StorageClient {
             	em.persist(entity);
             }
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, entity.getClass());
             handler.complete(Action.CREATE, wrapDoc);
             return (String) JaxbUtils.getValue(entity, "getCsid");
         } catch (BadRequestException bre) {
@@ -304,6 +305,7 @@ public class JpaStorageClientImpl implements StorageClient {
             handler.handle(Action.UPDATE, wrapDoc);
             JaxbUtils.setValue(entityFound, "setUpdatedAtItem", Date.class, new Date());
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, entityFound.getClass());
             handler.complete(Action.UPDATE, wrapDoc);
         } catch (BadRequestException bre) {
             if (em != null && em.getTransaction().isActive()) {
@@ -364,6 +366,7 @@ public class JpaStorageClientImpl implements StorageClient {
             }
             em.remove(entityFound);
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, entityFound.getClass());
 
         } catch (DocumentException de) {
             if (em != null && em.getTransaction().isActive()) {
@@ -431,6 +434,7 @@ public class JpaStorageClientImpl implements StorageClient {
                 throw new DocumentNotFoundException(msg);
             }
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, (Class<?>) ctx.getProperty(ServiceContextProperties.ENTITY_CLASS));
 
         } catch (DocumentException de) {
             if (em != null && em.getTransaction().isActive()) {
@@ -493,6 +497,7 @@ public class JpaStorageClientImpl implements StorageClient {
             handler.handle(Action.DELETE, wrapDoc);
             em.remove(entityFound);
             em.getTransaction().commit();
+            invalidateAccountPermissions(ctx, entityFound.getClass());
 
             handler.complete(Action.DELETE, wrapDoc);
         } catch (DocumentException de) {
@@ -517,6 +522,17 @@ public class JpaStorageClientImpl implements StorageClient {
         return result;
     }
 
+    /**
+     * Drops any cached account permissions that a committed change to an entity
+     * of the given class could affect.
+     * 
+     * @param ctx the ctx
+     * @param entityClazz the class of the changed entity
+     */
+    protected void invalidateAccountPermissions(ServiceContext ctx, Class<?> entityClazz) {
+        AccountPermissionCache.get().invalidate(ctx.getTenantId(), entityClazz);
+    }
+
     /**
      * Gets the entityReceived name.
      * 
@@ -26,8 +26,9 @@ package org.collectionspace.services.common.storage.jpa;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.PersistenceException;
 import javax.persistence.EntityManager;
@@ -44,11 +45,13 @@ import org.collectionspace.services.authorization.AuthZ;
 import org.collectionspace.services.authorization.CSpaceResource;
 import org.collectionspace.services.authorization.PermissionRoleRel;
 import org.collectionspace.services.authorization.PermissionValue;
+import org.collectionspace.services.authorization.Role;
 import org.collectionspace.services.authorization.URIResourceImpl;
 import org.collectionspace.services.common.authorization_mgt.AuthorizationRoleRel;
 import org.collectionspace.services.common.document.DocumentNotFoundException;
 import org.collectionspace.services.common.security.UnauthorizedException;
 import org.collectionspace.services.common.document.JaxbUtils;
+import org.collectionspace.services.common.metrics.ServiceMetrics;
 import org.collectionspace.services.common.security.SecurityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -223,16 +226,40 @@ public class JpaStorageUtils {
     //FIXME: REM - This method should probably be moved to the AccountPermissionDocumemntHandler    
     /*
      * This is a prototype for the /accounts/{csid}/permissions GET service call.
+     * 
+     * The effective permissions of an account are served from a per-tenant snapshot -see AccountPermissionCache.
      */
     public static AccountPermission getAccountPermissions(String csid, String currentResource, String permissionResource)
     	throws UnauthorizedException, DocumentNotFoundException {
+    	String tenantId = AuthN.get().getCurrentTenantId();
+    	AccountPermissionCache cache = AccountPermissionCache.get();
+    	//
+    	// Read the generation before anything that we may cache is read, so that an invalidation
+    	// racing with the account or permission lookup below keeps a stale snapshot out of the cache.
+    	//
+    	long generation = cache.getGeneration();
+    	AccountPermissionCache.Snapshot snapshot = null;
+    	if (csid.equals(CS_CURRENT_USER) == true) {
+    		snapshot = cache.getByUserId(tenantId, AuthN.get().getUserId());
+    	} else {
+    		snapshot = cache.getByAccountId(tenantId, csid);
+    	}
+    	ServiceMetrics.cacheLookup(AccountPermissionCache.CACHE_NAME, snapshot != null);
+    	
+    	AccountValue account = null;
+    	String userId = null;
+    	if (snapshot != null) {
+    		userId = snapshot.getUserId();
+    	} else {
+    		account = getAccountValue(csid);
+    		userId = account.getUserId();
+    	}
+    	
         //
         // Make sure the user asking for this list has the correct
         // permission -that is, the csid's userId match the currently logged in userId or
     	// that they have read access to the "accounts" resource.
         //
-    	AccountValue account = getAccountValue(csid);
-    	String userId = account.getUserId();
     	String currentUserId = AuthN.get().getUserId(); 
         if (currentUserId.equalsIgnoreCase(userId) == false) {
 			CSpaceResource res = new URIResourceImpl(AuthN.get().getCurrentTenantId(), "accounts", "GET");
@@ -246,41 +273,58 @@ public class JpaStorageUtils {
 			}
         }
         
-        AccountPermission result = new AccountPermission();
+        if (snapshot == null) {
+        	snapshot = buildAccountPermissionSnapshot(account);
+        	if (snapshot == null) {
+        		//
+        		// We couldn't read the permissions, so just return the account info like we always have.
+        		//
+        		AccountPermission result = new AccountPermission();
+            	List<AccountValue> accountValues = new ArrayList<AccountValue>();
+            	accountValues.add(account);
+                result.setAccount(accountValues);
+                return result;
+        	}
+        	cache.put(tenantId, snapshot, generation);
+        }
+        
+        return snapshot.toAccountPermission(tenantId, currentResource, permissionResource);
+    }
+    
+    /*
+     * Reads the permissions granted to the account through its roles, along with the tenants of those roles.
+     * Returns null if the permissions could not be read.
+     */
+    private static AccountPermissionCache.Snapshot buildAccountPermissionSnapshot(AccountValue account) {
+    	AccountPermissionCache.Snapshot result = null;
+    	String userId = account.getUserId();
     	EntityManagerFactory emf = null;
         EntityManager em = null;
-        Iterator<Object> resultList = null;
         try {
-        	List<AccountValue> accountValues = new ArrayList<AccountValue>();
-        	accountValues.add(account);
-            result.setAccount(accountValues);
-
             emf = getEntityManagerFactory();
             em = emf.createEntityManager();
+            
+            String tenantQueryStr = "SELECT DISTINCT r.tenantId FROM " + AccountRoleRel.class.getName() + " ar, "
+            		+ Role.class.getName() + " r"
+            		+ " WHERE ar.roleId = r.csid and ar.userId = :userId";
+            Query tenantQuery = em.createQuery(tenantQueryStr);
+            tenantQuery.setParameter("userId", userId);
+            Set<String> tenantIds = new HashSet<String>();
+            for (Object tenantId : tenantQuery.getResultList()) {
+            	tenantIds.add((String)tenantId);
+            }
            
-            StringBuilder permQueryStrBldr = new StringBuilder(
-            		"SELECT DISTINCT pr FROM " + AccountRoleRel.class.getName() + " ar, " 
+            String permQueryStr = "SELECT DISTINCT pr FROM " + AccountRoleRel.class.getName() + " ar, " 
             		+ PermissionRoleRel.class.getName() + " pr"
-            		+ " WHERE ar.roleId = pr.roleId and ar.userId=" + "'" + userId + "'");
-            //
-            // Filter by the permissionResource param if it is set to something
-            //
-            if (permissionResource != null && currentResource != null) {
-            	permQueryStrBldr.append(" and (pr.permissionResource = " + "'" + currentResource + "'" +
-            			" or pr.permissionResource = " + "'" + permissionResource + "'" + ")");
-            }
-            String queryStr = permQueryStrBldr.toString(); //for debugging
-            Query q = em.createQuery(queryStr);            
-            resultList = q.getResultList().iterator();
-
-            if (resultList.hasNext()) {
-            	List<PermissionValue> permissionValues = new ArrayList<PermissionValue>();
-	            while (resultList.hasNext()) {
-	            	PermissionRoleRel permRolRel = (PermissionRoleRel)resultList.next();
-	            	permissionValues.add(AuthorizationRoleRel.buildPermissionValue(permRolRel));
-	            }
-	            result.setPermission(permissionValues);
+            		+ " WHERE ar.roleId = pr.roleId and ar.userId = :userId";
+            Query permQuery = em.createQuery(permQueryStr);
+            permQuery.setParameter("userId", userId);
+            List<PermissionValue> permissionValues = new ArrayList<PermissionValue>();
+            for (Object permRoleRel : permQuery.getResultList()) {
+            	permissionValues.add(AuthorizationRoleRel.buildPermissionValue((PermissionRoleRel)permRoleRel));
             }
+            
+            result = new AccountPermissionCache.Snapshot(account, tenantIds, permissionValues);
         } catch (NoResultException nre) {
             if (em != null && em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
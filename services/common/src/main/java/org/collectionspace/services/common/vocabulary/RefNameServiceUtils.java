@@ -51,12 +51,12 @@ import org.collectionspace.services.common.UriTemplateFactory;
 import org.collectionspace.services.common.UriTemplateRegistry;
 import org.collectionspace.services.common.UriTemplateRegistryKey;
 import org.collectionspace.services.common.context.ServiceContext;
-import org.collectionspace.services.common.context.AbstractServiceContextImpl;
 import org.collectionspace.services.common.api.RefNameUtils;
 import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.common.api.RefNameUtils.AuthorityTermInfo;
 import org.collectionspace.services.common.authorityref.AuthorityRefDocList;
 import org.collectionspace.services.common.config.TenantBindingConfigReaderImpl;
+import org.collectionspace.services.common.config.ServiceBindingInfo;
 import org.collectionspace.services.common.context.ServiceBindingUtils;
 import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentFilter;
@@ -375,8 +375,30 @@ public class RefNameServiceUtils {
     }
     
 	public static List<AuthRefConfigInfo> getConfiguredAuthorityRefs(ServiceContext<PoxPayloadIn, PoxPayloadOut> ctx) {
-		List<String> authRefFields = ((AbstractServiceContextImpl) ctx).getAllPartsPropertyValues(
-				ServiceBindingUtils.AUTH_REF_PROP, ServiceBindingUtils.QUALIFIED_PROP_NAMES);
+		return getConfiguredRefs(ctx.getServiceBinding(), ServiceBindingUtils.AUTH_REF_PROP);
+	}
+
+	/**
+	 * Gets the authRef or termRef fields configured for a service. The fields of bindings
+	 * compiled by TenantBindingConfigReaderImpl are copied from the compiled ServiceBindingInfo,
+	 * so that the configuration is not parsed again.
+	 * 
+	 * @param sb the service binding
+	 * @param refPropName authRef or termRef
+	 * @return a new list of the configured fields
+	 */
+	public static List<AuthRefConfigInfo> getConfiguredRefs(ServiceBindingType sb, String refPropName) {
+		ServiceBindingInfo info = ServiceBindingInfo.get(sb);
+		List<AuthRefConfigInfo> compiledInfos = (info != null ? info.getAuthRefConfigInfos(refPropName) : null);
+		if (compiledInfos != null) {
+			ArrayList<AuthRefConfigInfo> authRefsInfo = new ArrayList<AuthRefConfigInfo>(compiledInfos.size());
+			for (AuthRefConfigInfo arci : compiledInfos) {
+				authRefsInfo.add(new AuthRefConfigInfo(arci));
+			}
+			return authRefsInfo;
+		}
+		List<String> authRefFields = ServiceBindingUtils.getAllPartsPropertyValues(sb,
+				refPropName, ServiceBindingUtils.QUALIFIED_PROP_NAMES);
 		ArrayList<AuthRefConfigInfo> authRefsInfo = new ArrayList<AuthRefConfigInfo>(authRefFields.size());
 		for (String spec : authRefFields) {
 			AuthRefConfigInfo arci = new AuthRefConfigInfo(spec);
@@ -693,21 +715,13 @@ public class RefNameServiceUtils {
             Map<String, List<AuthRefConfigInfo>> authRefFieldsByService) {
 
         boolean fFirst = true;
-        List<String> authRefFieldPaths;
         for (ServiceBindingType sb : servicebindings) {
             // Gets the property names for each part, qualified with the part label (which
             // is also the table name, the way that the repository works).
-            authRefFieldPaths =
-                    ServiceBindingUtils.getAllPartsPropertyValues(sb,
-                    refPropName, ServiceBindingUtils.QUALIFIED_PROP_NAMES);
-            if (authRefFieldPaths.isEmpty()) {
+            List<AuthRefConfigInfo> authRefsInfo = getConfiguredRefs(sb, refPropName);
+            if (authRefsInfo.isEmpty()) {
                 continue;
             }
-            ArrayList<AuthRefConfigInfo> authRefsInfo = new ArrayList<AuthRefConfigInfo>();
-            for (String spec : authRefFieldPaths) {
-                AuthRefConfigInfo arci = new AuthRefConfigInfo(spec);
-                authRefsInfo.add(arci);
-            }
 
             String docType = sb.getObject().getName();
             queriedServiceBindings.put(docType, sb);
@@ -27,6 +27,11 @@ import org.apache.commons.io.output.ByteArrayOutputStream;
  * <p>The request wrapper changes the Content-type header to XML, and provides an
  * input stream containing an XML translation of the original JSON request
  * content.</p>
+ * 
+ * <p>The translation is done on the request thread, into a buffer. It is not
+ * streamed to the resource through a pipe, because resources bind the request
+ * content to a String, and build a DOM from it, so the whole payload is held in
+ * memory in any case.</p>
  */
 public class JsonToXmlFilter implements Filter {
 
@@ -63,6 +68,8 @@ public class JsonToXmlFilter implements Filter {
      * wrapped input stream with an XML translation.
      */
     public class RequestWrapper extends HttpServletRequestWrapper {
+        private ServletInputStream inputStream;
+        
         public RequestWrapper(HttpServletRequest request) {
             super(request);
         }
@@ -73,17 +80,28 @@ public class JsonToXmlFilter implements Filter {
         }
 
         @Override
-        public ServletInputStream getInputStream() throws IOException {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+        public int getContentLength() {
+            // The length of the XML translation is not known until it has been read.
             
-            try {
-                JsonToXmlStreamConverter converter = new JsonToXmlStreamConverter(super.getInputStream(), out);
-                converter.convert();
-            } catch (XMLStreamException e) {
-                throw new IOException("error converting JSON stream to XML", e);
+            return -1;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                
+                try {
+                    JsonToXmlStreamConverter converter = new JsonToXmlStreamConverter(super.getInputStream(), out);
+                    converter.convert();
+                } catch (XMLStreamException e) {
+                    throw new IOException("error converting JSON stream to XML", e);
+                }
+                
+                inputStream = new InputStreamWrapper(out.toInputStream());
             }
             
-            return new InputStreamWrapper(out.toInputStream());
+            return inputStream;
         }
     }
     
@@ -110,5 +128,20 @@ public class JsonToXmlFilter implements Filter {
         public int read() throws IOException {
             return in.read();
         }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
     }
 }
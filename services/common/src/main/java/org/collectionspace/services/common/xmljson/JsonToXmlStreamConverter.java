@@ -122,9 +122,20 @@ import com.fasterxml.jackson.core.JsonToken;
  * 
  * <p>This implementation uses a streaming JSON parser and a streaming
  * XML writer to do a direct stream-to-stream conversion, without
- * building a complete in-memory representation of the document.</p>
+ * building a complete in-memory representation of the document.
+ * The JSON and StAX factories are thread-safe, and are shared by all
+ * instances.</p>
  */
 public class JsonToXmlStreamConverter {
+    /**
+     * The shared JSON factory.
+     */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    
+    /**
+     * The shared StAX output factory.
+     */
+    private static final XMLOutputFactory xmlFactory = XMLOutputFactory.newInstance();
     
     /**
      * The JSON parser used to parse the input stream.
@@ -157,9 +168,6 @@ public class JsonToXmlStreamConverter {
      * @throws XMLStreamException
      */
     public JsonToXmlStreamConverter(InputStream in, OutputStream out) throws JsonParseException, IOException, XMLStreamException {
-        JsonFactory jsonFactory = new JsonFactory();
-        XMLOutputFactory xmlFactory = XMLOutputFactory.newInstance();
-
         jsonParser = jsonFactory.createParser(in);
         xmlWriter = xmlFactory.createXMLStreamWriter(out);
     }
@@ -219,6 +227,7 @@ public class JsonToXmlStreamConverter {
         }
         
         xmlWriter.writeEndDocument();
+        xmlWriter.flush();
     }
 
     /**
@@ -72,6 +72,23 @@ public class RequestUtils {
         return MediaTypeHelper.equivalent(mediaTypes.get(0), MediaType.APPLICATION_JSON_TYPE);
     }
     
+    /**
+     * Determines if a request's preferred response content
+     * type is JSON, given the request's headers.
+     * 
+     * @param headers the request headers
+     * @return true if JSON is preferred, false otherwise
+     */
+    public static boolean isJsonPreferred(HttpHeaders headers) {
+        List<String> accept = headers.getRequestHeader(HttpHeaders.ACCEPT);
+        
+        if (accept == null) {
+            return false;
+        }
+        
+        return isJsonPreferred(StringUtils.join(accept, ","));
+    }
+    
     /**
      * Constructs an Accept header value from the Accept header
      * value in the given request, ensuring that XML will be
@@ -0,0 +1,126 @@
+package org.collectionspace.services.common.xmljson;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A bounded pool of threads that run stream conversions for the XML/JSON
+ * filters. A conversion runs on a converter thread while the request thread
+ * reads or writes the other end of a pipe, so that neither payload needs to
+ * be held in memory.</p>
+ *
+ * <p>Conversions are never queued. If all converter threads are busy,
+ * trySubmit() returns null, and the caller is expected to convert in
+ * memory instead.</p>
+ */
+public class StreamConverterExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(StreamConverterExecutor.class);
+
+    /**
+     * The name of the filter init parameter that sets the maximum number of
+     * converter threads.
+     */
+    public static final String MAX_CONVERTER_THREADS_STR = "maxConverterThreads";
+
+    /**
+     * The default maximum number of converter threads.
+     */
+    public static final int MAX_CONVERTER_THREADS = 50;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Creates a StreamConverterExecutor.
+     *
+     * @param name the name of the converter threads
+     * @param maxThreads the maximum number of converter threads
+     */
+    public StreamConverterExecutor(String name, int maxThreads) {
+        executor = new ThreadPoolExecutor(0, Math.max(maxThreads, 1), 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ConverterThreadFactory(name));
+    }
+
+    /**
+     * Creates a StreamConverterExecutor whose maximum number of threads is
+     * set by the maxConverterThreads init parameter of a filter.
+     *
+     * @param name the name of the converter threads
+     * @param filterConfig the filter configuration
+     */
+    public StreamConverterExecutor(String name, FilterConfig filterConfig) {
+        this(name, getMaxThreads(filterConfig));
+    }
+
+    /**
+     * Runs a conversion on a converter thread, if one is available.
+     *
+     * @param task the conversion
+     * @return the pending result of the conversion, or null if no converter
+     *         thread is available
+     */
+    public <T> Future<T> trySubmit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        }
+        catch (RejectedExecutionException e) {
+            logger.debug("No stream converter thread is available.");
+
+            return null;
+        }
+    }
+
+    /**
+     * Stops accepting conversions.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static int getMaxThreads(FilterConfig filterConfig) {
+        int maxThreads = MAX_CONVERTER_THREADS;
+        String paramValue = (filterConfig != null ? filterConfig.getInitParameter(MAX_CONVERTER_THREADS_STR) : null);
+
+        if (paramValue != null) {
+            try {
+                maxThreads = Integer.parseInt(paramValue);
+            } catch (NumberFormatException e) {
+                logger.warn(String.format("The init parameter '%s' with value '%s' of the servlet filter '%s' could not be parsed to an int value.  The default value of '%d' will be used instead.",
+                        MAX_CONVERTER_THREADS_STR, paramValue, filterConfig.getFilterName(), maxThreads));
+            }
+        }
+
+        return maxThreads;
+    }
+
+    /**
+     * A factory for converter threads. Converter threads are daemon
+     * threads, so that they do not prevent shutdown.
+     */
+    private static class ConverterThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public ConverterThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
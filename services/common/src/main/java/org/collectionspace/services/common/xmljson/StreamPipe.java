@@ -0,0 +1,213 @@
+package org.collectionspace.services.common.xmljson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A bounded pipe between a thread that writes bytes and a thread that
+ * reads them, used to run a stream conversion while the response is still
+ * being written.</p>
+ *
+ * <p>This is used instead of PipedInputStream and PipedOutputStream, which
+ * wake a waiting reader or writer by polling once a second, and so can stall
+ * a conversion for up to a second at a time. Here, bytes are passed in
+ * chunks through a blocking queue, which wakes the other side as soon as a
+ * chunk is added or removed.</p>
+ *
+ * <p>Closing the output stream marks the end of the input. Closing the input
+ * stream discards anything not yet read, and makes further writes fail, so
+ * that a writer is never left blocked on a reader that has stopped.</p>
+ */
+public class StreamPipe {
+    /*
+     * The chunk that marks the end of the input.
+     */
+    private static final byte[] END = new byte[0];
+
+    /*
+     * How long a blocked writer waits before checking again that the reader is still open.
+     */
+    private static final long WRITE_WAIT_MILLIS = 100;
+
+    private final BlockingQueue<byte[]> chunks;
+    private final int chunkSize;
+    private final PipeInputStream inputStream;
+    private final PipeOutputStream outputStream;
+
+    private volatile boolean isInputClosed = false;
+
+    /**
+     * Creates a StreamPipe.
+     *
+     * @param chunkSize the size of the chunks that bytes are passed in
+     * @param maxChunks the number of chunks that may be waiting to be read
+     */
+    public StreamPipe(int chunkSize, int maxChunks) {
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<byte[]>(maxChunks);
+        this.inputStream = new PipeInputStream();
+        this.outputStream = new PipeOutputStream();
+    }
+
+    /**
+     * Returns the end of the pipe that bytes are read from.
+     *
+     * @return the input stream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Returns the end of the pipe that bytes are written to.
+     *
+     * @return the output stream
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    private class PipeInputStream extends InputStream {
+        private byte[] chunk;
+        private int position;
+        private boolean isEnd = false;
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+
+            return (chunk[position++] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!nextChunk()) {
+                return -1;
+            }
+
+            int count = Math.min(len, chunk.length - position);
+
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {
+            isInputClosed = true;
+            chunks.clear();
+        }
+
+        /*
+         * Makes sure there are unread bytes in the current chunk, waiting for
+         * the next chunk if necessary. Returns false at the end of the input.
+         */
+        private boolean nextChunk() throws IOException {
+            if (isInputClosed) {
+                throw new IOException("Pipe closed");
+            }
+
+            while (!isEnd && (chunk == null || position == chunk.length)) {
+                try {
+                    chunk = chunks.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException("Interrupted while reading from pipe");
+                }
+
+                position = 0;
+                isEnd = (chunk == END);
+            }
+
+            return !isEnd;
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        private byte[] buffer = new byte[chunkSize];
+        private int count = 0;
+        private boolean isClosed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flush();
+                }
+
+                int n = Math.min(len, buffer.length - count);
+
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                byte[] chunk = new byte[count];
+
+                System.arraycopy(buffer, 0, chunk, 0, count);
+                count = 0;
+
+                send(chunk);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!isClosed) {
+                isClosed = true;
+
+                flush();
+                send(END);
+            }
+        }
+
+        private void send(byte[] chunk) throws IOException {
+            try {
+                while (!chunks.offer(chunk, WRITE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (isInputClosed) {
+                        throw new IOException("Pipe closed");
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("Interrupted while writing to pipe");
+            }
+
+            if (isInputClosed) {
+                chunks.clear();
+
+                throw new IOException("Pipe closed");
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.collectionspace.services.common.xmljson;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Schema metadata about the content of an XML element, used by
+ * XmlToJsonStreamConverter to write an element's children to JSON as they
+ * are read, instead of reading the whole element into memory first.</p>
+ *
+ * <p>An XmlElementInfo describes the children that may appear in an
+ * element, keyed by local name. Each child is either repeatable (it may
+ * occur more than once, in which case it is converted to a JSON array) or not.
+ * A child may have its own XmlElementInfo describing its content, or
+ * none, if its content is not known.</p>
+ *
+ * <p>Instances are immutable once built, and may be shared between threads.</p>
+ */
+public class XmlElementInfo {
+    /**
+     * Info for an element that contains only text.
+     */
+    public static final XmlElementInfo TEXT = new XmlElementInfo();
+
+    /**
+     * Info for the children of this element, keyed by local name.
+     * A null value indicates that the child's content is not known.
+     */
+    private Map<String, XmlElementInfo> children;
+
+    /**
+     * The local names of children that may occur more than once.
+     */
+    private Set<String> repeatableChildren;
+
+    /**
+     * Creates an XmlElementInfo for an element that has no children.
+     */
+    public XmlElementInfo() {
+        this(Collections.<String, XmlElementInfo>emptyMap(), Collections.<String>emptySet());
+    }
+
+    /**
+     * Creates an XmlElementInfo.
+     *
+     * @param children info for the children of the element, keyed by local name;
+     *                 a null value indicates a child whose content is not known
+     * @param repeatableChildren the local names of children that may occur more than once
+     */
+    public XmlElementInfo(Map<String, XmlElementInfo> children, Set<String> repeatableChildren) {
+        this.children = Collections.unmodifiableMap(new HashMap<String, XmlElementInfo>(children));
+        this.repeatableChildren = Collections.unmodifiableSet(new HashSet<String>(repeatableChildren));
+    }
+
+    /**
+     * Returns info for a child element.
+     *
+     * @param localName the local name of the child
+     * @return the child's info, or null if the child's content is not known
+     */
+    public XmlElementInfo getChild(String localName) {
+        return children.get(localName);
+    }
+
+    /**
+     * Determines if a child element may occur more than once.
+     *
+     * @param localName the local name of the child
+     * @return true if the child is repeatable, false otherwise
+     */
+    public boolean isRepeatable(String localName) {
+        return repeatableChildren.contains(localName);
+    }
+
+    /**
+     * Returns info for the children of this element.
+     *
+     * @return a map of child info, keyed by local name
+     */
+    public Map<String, XmlElementInfo> getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns the local names of children that may occur more than once.
+     *
+     * @return the repeatable child names
+     */
+    public Set<String> getRepeatableChildren() {
+        return repeatableChildren;
+    }
+}
@@ -0,0 +1,132 @@
+package org.collectionspace.services.common.xmljson;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A registry of XmlElementInfo for the root elements of CSpace XML
+ * payloads, used by XmlToJsonStreamConverter to stream JSON without
+ * first reading entire elements into memory.</p>
+ *
+ * <p>Two root elements are known by default:</p>
+ *
+ * <ul>
+ * <li><code>document</code>, whose children are the parts of a record. Info
+ *     about the content of each part is registered by part name (which is
+ *     the same as the Nuxeo schema name) using registerPart(). This is done
+ *     at startup, once the schemas are available.</li>
+ * <li><code>abstract-common-list</code>, the root of list results. Its
+ *     <code>list-item</code> children are repeatable. The content of each list
+ *     item depends on the service, so list items are buffered one at a time.</li>
+ * </ul>
+ *
+ * <p>Elements for which no info is available are converted by reading them
+ * into memory before they are written, as in a schema-unaware conversion.</p>
+ */
+public class XmlElementInfoRegistry {
+    /**
+     * The local name of the root element of a record payload.
+     */
+    public static final String DOCUMENT_ELEMENT = "document";
+
+    /**
+     * The local name of the root element of a list payload.
+     */
+    public static final String LIST_ELEMENT = "abstract-common-list";
+
+    /**
+     * The local name of the repeated item element in a list payload.
+     */
+    public static final String LIST_ITEM_ELEMENT = "list-item";
+
+    private static final XmlElementInfoRegistry instance = new XmlElementInfoRegistry();
+
+    /**
+     * Info for the registered parts, keyed by part name.
+     */
+    private Map<String, XmlElementInfo> parts = new ConcurrentHashMap<String, XmlElementInfo>();
+
+    /**
+     * Info for the known root elements, keyed by local name.
+     */
+    private Map<String, XmlElementInfo> roots = new HashMap<String, XmlElementInfo>();
+
+    /**
+     * Returns the shared registry.
+     *
+     * @return the registry
+     */
+    public static XmlElementInfoRegistry get() {
+        return instance;
+    }
+
+    /**
+     * Creates an XmlElementInfoRegistry containing only the default
+     * root elements.
+     */
+    public XmlElementInfoRegistry() {
+        roots.put(DOCUMENT_ELEMENT, new DocumentElementInfo());
+        roots.put(LIST_ELEMENT, createListElementInfo());
+    }
+
+    /**
+     * Registers info about the content of a record part.
+     *
+     * @param partName the name of the part (the local name of its XML element)
+     * @param info info about the content of the part
+     */
+    public void registerPart(String partName, XmlElementInfo info) {
+        parts.put(partName, info);
+    }
+
+    /**
+     * Returns info about the content of a registered record part.
+     *
+     * @param partName the name of the part
+     * @return the part's info, or null if the part has not been registered
+     */
+    public XmlElementInfo getPart(String partName) {
+        return parts.get(partName);
+    }
+
+    /**
+     * Returns info about the content of a root element.
+     *
+     * @param localName the local name of the root element
+     * @return the root element's info, or null if the root element is not known
+     */
+    public XmlElementInfo getRootInfo(String localName) {
+        return roots.get(localName);
+    }
+
+    private static XmlElementInfo createListElementInfo() {
+        Map<String, XmlElementInfo> children = new HashMap<String, XmlElementInfo>();
+
+        children.put("pageNum", XmlElementInfo.TEXT);
+        children.put("pageSize", XmlElementInfo.TEXT);
+        children.put("itemsInPage", XmlElementInfo.TEXT);
+        children.put("totalItems", XmlElementInfo.TEXT);
+        children.put("fieldsReturned", XmlElementInfo.TEXT);
+        children.put(LIST_ITEM_ELEMENT, null);
+
+        return new XmlElementInfo(children, Collections.singleton(LIST_ITEM_ELEMENT));
+    }
+
+    /**
+     * Info for the document element. Its children are the parts
+     * registered at the time the child is looked up.
+     */
+    private class DocumentElementInfo extends XmlElementInfo {
+        @Override
+        public XmlElementInfo getChild(String localName) {
+            return parts.get(localName);
+        }
+
+        @Override
+        public Map<String, XmlElementInfo> getChildren() {
+            return Collections.unmodifiableMap(parts);
+        }
+    }
+}
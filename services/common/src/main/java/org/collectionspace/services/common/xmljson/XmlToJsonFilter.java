@@ -7,6 +7,9 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -26,7 +29,10 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>A filter that translates XML responses to JSON.</p>
@@ -41,19 +47,34 @@ import org.apache.commons.lang3.StringUtils;
  * also be accepted, so that the XML response may be translated to JSON on the
  * way back.</p>
  * 
- * <p>The response wrapper provides a buffered output stream, so that XML output
- * is captured before being sent over the network. If the content type of the
- * response is XML, the content type is changed to JSON, the content of the
- * buffer is translated to JSON, and the JSON is written to the original output
- * stream. If the content type of the response is not XML, the content type is
- * not changed, and the content of the buffer is written to the original
- * output stream unchanged.</p>
+ * <p>The response wrapper provides an output stream that decides what to do
+ * with the response body when it is first written to. If the content type of
+ * the response is XML, the content type is changed to JSON, and the XML is
+ * piped to an XmlToJsonStreamConverter running on a converter thread, which
+ * writes JSON to the original output stream while the XML is still being
+ * generated. If the content type of the response is not XML, the content type
+ * is not changed, and the body is written to the original output stream
+ * unchanged.</p>
+ * 
+ * <p>The number of converter threads is limited by the maxConverterThreads
+ * init parameter. If all converter threads are busy, the XML is captured in
+ * a buffer, and translated to JSON once the response is complete.</p>
  */
 public class XmlToJsonFilter implements Filter {
-
+    private static final Logger logger = LoggerFactory.getLogger(XmlToJsonFilter.class);
+    
+    /*
+     * The size of the chunks passed through the pipe between the XML writer and
+     * the converter, and the number of chunks the pipe holds.
+     */
+    private static final int PIPE_CHUNK_SIZE = 8 * 1024;
+    private static final int PIPE_CHUNKS = 8;
+    
+    private StreamConverterExecutor converterExecutor;
+    
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
-
+        converterExecutor = new StreamConverterExecutor("XmlToJsonConverter", filterConfig);
     }
     
     @Override
@@ -64,34 +85,22 @@ public class XmlToJsonFilter implements Filter {
             RequestWrapper requestWrapper = new RequestWrapper((HttpServletRequest) request);
             ResponseWrapper responseWrapper = new ResponseWrapper((HttpServletResponse) response);
 
-            chain.doFilter(requestWrapper, responseWrapper);
+            boolean isChainComplete = false;
             
-            if (StringUtils.equals(responseWrapper.getContentType(), MediaType.APPLICATION_XML)) {
-                // Got an XML response. Translate it to JSON.
+            try {
+                chain.doFilter(requestWrapper, responseWrapper);
                 
-                response.setContentType(MediaType.APPLICATION_JSON);
-                
-                try {
-                    InputStream xmlInputStream = responseWrapper.getBuffer().toInputStream();
-                    
-                    if (xmlInputStream != null) {
-                        OutputStream jsonOutputStream = response.getOutputStream();
-                        XmlToJsonStreamConverter converter = new XmlToJsonStreamConverter(xmlInputStream, jsonOutputStream);
-                        
-                        converter.convert();
-                    }
-                }
-                catch (XMLStreamException e) {
-                    throw new WebApplicationException("Error generating JSON", e);
-                }
+                isChainComplete = true;
             }
-            else {
-                // Didn't get an XML response. Just pass it along.
-                
-                if (responseWrapper.getBuffer() != null) {
-                    InputStream inputStream = responseWrapper.getBuffer().toInputStream();
-                
-                    IOUtils.copy(inputStream, response.getOutputStream());
+            finally {
+                if (isChainComplete) {
+                    responseWrapper.finish();
+                }
+                else {
+                    // Don't let an error from the incomplete conversion replace
+                    // the exception thrown by the chain.
+                    
+                    responseWrapper.abort();
                 }
             }
         }
@@ -104,7 +113,46 @@ public class XmlToJsonFilter implements Filter {
 
     @Override
     public void destroy() {
-
+        if (converterExecutor != null) {
+            converterExecutor.shutdown();
+        }
+    }
+    
+    /**
+     * Starts converting XML read from a pipe to JSON written to an output stream,
+     * on a converter thread.
+     * 
+     * @param xmlInputStream the XML input stream
+     * @param jsonOutputStream the JSON output stream
+     * @return the pending result of the conversion, or null if no converter thread is available
+     */
+    private Future<Void> startConversion(final InputStream xmlInputStream, final OutputStream jsonOutputStream) {
+        if (converterExecutor == null) {
+            return null;
+        }
+        
+        return converterExecutor.trySubmit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    XmlToJsonStreamConverter converter = new XmlToJsonStreamConverter(xmlInputStream, jsonOutputStream);
+                    
+                    converter.convert();
+                    
+                    // The converter stops at the end of the root element. Read anything
+                    // written after it, so that the writer doesn't find the pipe closed.
+                    
+                    IOUtils.copy(xmlInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
+                }
+                finally {
+                    // Closing the pipe unblocks the writer, if the conversion stopped early.
+                    
+                    xmlInputStream.close();
+                }
+                
+                return null;
+            }
+        });
     }
     
     /**
@@ -131,13 +179,35 @@ public class XmlToJsonFilter implements Filter {
     }
     
     /**
-     * A response wrapper that replaces the wrapped output stream with a buffered
-     * stream so that output is captured.
+     * A response wrapper that replaces the wrapped output stream with one that
+     * sends XML output to be converted to JSON, and passes other output through.
      */
     public class ResponseWrapper extends HttpServletResponseWrapper {
-        private BufferedServletOutputStream outputStream;
+        private ResponseOutputStream outputStream;
         private PrintWriter writer;
         
+        /*
+         * The stream that output is sent to. This is null until output is first
+         * written, at which point it is known whether the response is XML.
+         */
+        private OutputStream target;
+        
+        /*
+         * The buffer that XML output is captured in, if no converter thread was available.
+         */
+        private ByteArrayOutputStream buffer;
+        
+        /*
+         * The pipe to the converter thread, and the pending result of the conversion.
+         */
+        private OutputStream pipe;
+        private Future<Void> conversion;
+        
+        /*
+         * The content length, held back until it is known whether the response is converted.
+         */
+        private int contentLength = -1;
+        
         public ResponseWrapper(HttpServletResponse response) {
             super(response);
         }
@@ -149,7 +219,7 @@ public class XmlToJsonFilter implements Filter {
             }
             
             if (outputStream == null) {
-                outputStream = new BufferedServletOutputStream();
+                outputStream = new ResponseOutputStream();
             }
             
             return outputStream;
@@ -162,7 +232,7 @@ public class XmlToJsonFilter implements Filter {
             }
             
             if (outputStream == null) {
-                outputStream = new BufferedServletOutputStream();
+                outputStream = new ResponseOutputStream();
             }
             
             if (writer == null) {
@@ -172,46 +242,194 @@ public class XmlToJsonFilter implements Filter {
             return writer;
         }
         
+        @Override
+        public void setContentLength(int len) {
+            // The length of converted output isn't known, so only pass the
+            // content length through if the output is not converted.
+            
+            if (target == null) {
+                contentLength = len;
+            }
+            else if (!isConverting()) {
+                super.setContentLength(len);
+            }
+        }
+        
         /**
-         * Returns the internal buffer stream.
+         * Determines if the response content type is XML.
          * 
-         * @return the buffer stream
+         * @return true if the response is XML, false otherwise
          */
-        public ByteArrayOutputStream getBuffer() {
-            if (outputStream == null) {
-                return null;
+        public boolean isXml() {
+            return StringUtils.equals(getContentType(), MediaType.APPLICATION_XML);
+        }
+        
+        /**
+         * Determines if output is being converted to JSON.
+         * 
+         * @return true if output is being converted, false otherwise
+         */
+        public boolean isConverting() {
+            return (conversion != null || buffer != null);
+        }
+        
+        /**
+         * Returns the stream that output should be sent to, choosing it
+         * the first time this is called.
+         * 
+         * @return the target stream
+         * @throws IOException
+         */
+        protected OutputStream getTarget() throws IOException {
+            if (target == null) {
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                
+                if (isXml()) {
+                    // Got an XML response. Translate it to JSON, on a converter
+                    // thread if one is available.
+                    
+                    response.setContentType(MediaType.APPLICATION_JSON);
+                    
+                    StreamPipe xmlPipe = new StreamPipe(PIPE_CHUNK_SIZE, PIPE_CHUNKS);
+                    
+                    conversion = startConversion(xmlPipe.getInputStream(), response.getOutputStream());
+                    
+                    if (conversion != null) {
+                        pipe = xmlPipe.getOutputStream();
+                        target = pipe;
+                    }
+                    else {
+                        buffer = new ByteArrayOutputStream();
+                        target = buffer;
+                    }
+                }
+                else {
+                    // Didn't get an XML response. Just pass it along.
+                    
+                    if (contentLength >= 0) {
+                        response.setContentLength(contentLength);
+                    }
+                    
+                    target = response.getOutputStream();
+                }
             }
             
-            return outputStream.getBuffer();
+            return target;
         }
-    }
-    
-    /**
-     * A ServletOutputStream that wraps a ByteArrayOutputStream.
-     * Any bytes written are sent to the ByteArrayOutputStream,
-     * which acts as a buffer.
-     */
-    public class BufferedServletOutputStream extends ServletOutputStream {
-        /*
-         * The buffer.
+        
+        /**
+         * Completes the response, once the wrapped chain has returned. This waits
+         * for any conversion in progress to finish.
          * 
-         * ByteArrayOutputStream from commons-io provides better
-         * performance than the one from java.io.
+         * @throws IOException
          */
-        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        public void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+
+            if (target == null) {
+                // Nothing was written.
+                
+                if (isXml()) {
+                    getResponse().setContentType(MediaType.APPLICATION_JSON);
+                }
+                else if (contentLength >= 0) {
+                    getResponse().setContentLength(contentLength);
+                }
+            }
+            else if (conversion != null) {
+                IOException closeException = null;
+                
+                try {
+                    pipe.close();
+                }
+                catch (IOException e) {
+                    // The converter stopped reading early. Its own error is more useful.
+                    
+                    closeException = e;
+                }
+                
+                try {
+                    conversion.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    
+                    throw new WebApplicationException("Error generating JSON", e);
+                }
+                catch (ExecutionException e) {
+                    throw new WebApplicationException("Error generating JSON", e.getCause());
+                }
+                
+                if (closeException != null) {
+                    throw closeException;
+                }
+            }
+            else if (buffer != null) {
+                try {
+                    InputStream xmlInputStream = buffer.toInputStream();
+                    OutputStream jsonOutputStream = getResponse().getOutputStream();
+                    XmlToJsonStreamConverter converter = new XmlToJsonStreamConverter(xmlInputStream, jsonOutputStream);
+                    
+                    converter.convert();
+                }
+                catch (XMLStreamException e) {
+                    throw new WebApplicationException("Error generating JSON", e);
+                }
+            }
+        }
         
-        @Override
-        public void write(int b) throws IOException {
-            buffer.write(b);
+        /**
+         * Cleans up after the wrapped chain has failed. Any conversion in progress
+         * is stopped, and waited for, so that the converter thread no longer uses
+         * the response. Errors from the conversion are logged rather than thrown,
+         * since they are most likely caused by the chain's failure.
+         */
+        public void abort() {
+            if (conversion == null) {
+                return;
+            }
+            
+            try {
+                pipe.close();
+            }
+            catch (IOException e) {
+                // The converter has already stopped.
+            }
+            
+            try {
+                conversion.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                logger.warn("Error generating JSON for a failed response", e.getCause());
+            }
         }
         
         /**
-         * Returns the buffer stream.
-         * 
-         * @return the buffer stream
+         * A ServletOutputStream that sends any bytes written to the
+         * target stream of the response wrapper.
          */
-        public ByteArrayOutputStream getBuffer() {
-            return buffer;
+        public class ResponseOutputStream extends ServletOutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                getTarget().write(b);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                getTarget().write(b, off, len);
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                if (target != null && buffer == null) {
+                    target.flush();
+                }
+            }
         }
     }
 }
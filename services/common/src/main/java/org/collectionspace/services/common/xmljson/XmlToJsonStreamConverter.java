@@ -3,23 +3,24 @@ package org.collectionspace.services.common.xmljson;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
-import java.util.Stack;
+import java.util.HashSet;
+import java.util.Set;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Namespace;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+
 /**
  * <p>Converts a CSpace XML payload to a JSON payload.</p>
  *
@@ -40,24 +41,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * </p>
  *
  * <p>
- * This implementation is schema-unaware. It operates by examining only the input
- * document, without utilizing any XML schema information. This allows for speed
- * and simplicity, but has some consequences:
+ * The conversion is schema-unaware as far as its output is concerned. This has
+ * some consequences:
  *
  * <ul>
- * <li>Since type information is not available, all text content is converted to
+ * <li>Since type information is not used, all text content is converted to
  *     JSON strings.</li>
  * <li>Lists are inferred by the presence of multiple child elements with
  *     the same name. If an element contains only one child with a given name, it
  *     will not be converted to a JSON array, even if multiples are allowed by
  *     the XML schema.</li>
- * <li>Lists are not known ahead of time, and must be inferred by the presence of
- *     multiple identically-named children. This means that all children of an element
- *     must be known before JSON for that element can be generated. This makes it
- *     necessary to read the entire XML document into memory first, instead of
- *     doing a direct stream-to-stream conversion.</li>
  * </ul>
  * </p>
+ *
+ * <p>
+ * Lists are not known ahead of time, so in general all children of an element
+ * must be known before JSON for that element can be generated. Schema metadata
+ * from an XmlElementInfoRegistry is used to avoid this where possible: an element
+ * described by the metadata is written as it is read, because the metadata tells
+ * which of its children may repeat, and the schema keeps the repeats of a child
+ * together. Only the first occurrence of a repeatable child is held in memory,
+ * until the next sibling shows whether it is a single value or the first item of
+ * an array. Elements for which no metadata is available are read into memory
+ * before they are written. Either way, the JSON is the same.
+ * </p>
  * 
  * <p>Example:</p>
  * 
@@ -195,25 +202,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *     All of the <code>item</code> children of parent are converted into a single
  *     list, so the placement of the <code>other</code> element is not retained in
  *     JSON.
+ *     
+ *     If schema metadata is available for <code>parent</code>, the list has
+ *     already been written by the time <code>other</code> is read. Rather than
+ *     writing the <code>item</code> field twice, the conversion fails with an
+ *     XMLStreamException. The same happens if an element that the metadata
+ *     says may not repeat occurs more than once.
  * </li>
  * </ul>
  * </p>
  * 
- * <p>This implementation uses a StAX parser to generate a lightweight 
- * representation of the input XML document in memory, performs the
- * necessary transformations, and outputs a JSON rendering of the
- * transformed document. A direct stream-to-stream conversion is
- * not possible because of the need to collect identically-named
- * XML elements for output as a JSON array; for any element, all children
- * must be known before JSON for that element may be written to the
- * output stream.</p>
+ * <p>This implementation uses a StAX stream reader, and writes JSON with a
+ * Jackson JsonGenerator. Elements that are read into memory use a lightweight
+ * representation (see XmlNode). The StAX and Jackson factories are thread-safe,
+ * and are shared by all instances.</p>
  */
 public class XmlToJsonStreamConverter {
     /**
-     * The StAX event reader used to parse the XML input stream.
+     * The shared StAX input factory.
      */
-    protected XMLEventReader xmlEventReader;
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
     
+    /**
+     * The shared object mapper, used to write elements that have been
+     * read into memory.
+     */
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /**
+     * The shared JSON factory. The generators it creates leave the
+     * output stream open when they are closed.
+     */
+    private static final JsonFactory jsonFactory = objectMapper.getFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    
+    /**
+     * The StAX stream reader used to parse the XML input stream.
+     */
+    protected XMLStreamReader xmlReader;
     
     /**
      * The JSON output stream.
@@ -221,30 +247,42 @@ public class XmlToJsonStreamConverter {
     protected OutputStream jsonStream;
     
     /**
-     * A stack used to track the current state of XML parsing.
-     * XmlNode instances are pushed onto the stack as elements
-     * are entered, and popped off as elements are exited.
+     * The schema metadata used to decide which elements are
+     * converted to JSON arrays.
      */
-    protected Stack<XmlNode> stack = new Stack<XmlNode>();
+    protected XmlElementInfoRegistry registry;
     
     /**
-     * The result of parsing the XML.
+     * The generator used to write JSON to the output stream.
      */
-    protected XmlNode parseResult = null;
+    protected JsonGenerator generator;
     
     /**
      * Creates an XmlToJsonStreamConverter that reads XML from an input stream,
-     * and writes JSON to an output stream.
+     * and writes JSON to an output stream, using the shared XmlElementInfoRegistry.
      * 
      * @param in the XML input stream
      * @param out the JSON output stream
      * @throws XMLStreamException
      */
     public XmlToJsonStreamConverter(InputStream in, OutputStream out) throws XMLStreamException {
-        XMLInputFactory factory = XMLInputFactory.newInstance();
-        
-        xmlEventReader = factory.createXMLEventReader(in);
+        this(in, out, XmlElementInfoRegistry.get());
+    }
+    
+    /**
+     * Creates an XmlToJsonStreamConverter that reads XML from an input stream,
+     * and writes JSON to an output stream, using the given XmlElementInfoRegistry.
+     * 
+     * @param in the XML input stream
+     * @param out the JSON output stream
+     * @param registry the schema metadata to use
+     * @throws XMLStreamException
+     */
+    public XmlToJsonStreamConverter(InputStream in, OutputStream out, XmlElementInfoRegistry registry) throws XMLStreamException {
+        xmlReader = xmlInputFactory.createXMLStreamReader(in);
         jsonStream = out;
+        
+        this.registry = registry;
     }
     
     /**
@@ -256,139 +294,301 @@ public class XmlToJsonStreamConverter {
      * @throws IOException
      */
     public void convert() throws XMLStreamException, JsonGenerationException, JsonMappingException, IOException {
-        // Read in the XML stream.
+        generator = jsonFactory.createGenerator(jsonStream, JsonEncoding.UTF8);
         
-        while(xmlEventReader.hasNext()) {
-            XMLEvent event = xmlEventReader.nextEvent();
+        try {
+            // Skip to the root element.
+            
+            while (xmlReader.hasNext() && xmlReader.next() != XMLStreamConstants.START_ELEMENT);
             
-            switch(event.getEventType()) {
+            if (xmlReader.isStartElement()) {
+                // The document is represented by an object containing
+                // a single field for the root element.
+                
+                generator.writeStartObject();
+                generator.writeFieldName(ConversionUtils.jsonFieldNameFromXMLQName(xmlReader.getName()));
+                
+                writeElement(registry.getRootInfo(xmlReader.getLocalName()));
+                
+                generator.writeEndObject();
+            }
+            else {
+                // There was no root element.
+                
+                generator.writeNull();
+            }
+        }
+        finally {
+            generator.close();
+            xmlReader.close();
+        }
+        
+        jsonStream.flush();
+    }
+    
+    /**
+     * Writes the value of the element at the current position of the
+     * XML reader, which must be the start of the element. When this method
+     * returns, the reader is positioned at the end of the element.
+     * 
+     * @param info schema metadata for the element, or null if none is available
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    protected void writeElement(XmlElementInfo info) throws XMLStreamException, IOException {
+        if (info == null) {
+            // Without schema metadata, the element must be read into memory
+            // to find out which children should be written as arrays.
+            
+            generator.writeObject(readNode());
+            
+            return;
+        }
+
+        // Whether the element is written as text or as an object isn't known
+        // until the first child element or the end of the element is reached.
+        // Until then, buffer any text, and hold on to the start element's
+        // namespaces and attributes, which are only written for objects.
+        
+        String[] namespaces = getNamespaces();
+        String[] attributes = getAttributes();
+        
+        StringBuilder text = new StringBuilder();
+        boolean isObject = false;
+        
+        // The field being written, the first occurrence of it if it may repeat
+        // and it isn't yet known whether it does, and whether its array is open.
+        
+        String fieldName = null;
+        XmlNode heldNode = null;
+        boolean isArray = false;
+        
+        // The names of the fields that have been started, which may not be
+        // started again.
+        
+        Set<String> fieldNames = new HashSet<String>();
+
+        while (true) {
+            int eventType = xmlReader.next();
+            
+            switch (eventType) {
                 case XMLStreamConstants.CHARACTERS:
-                    onCharacters(event);
+                    if (!isObject) {
+                        text.append(xmlReader.getText());
+                    }
+                    
                     break;
                 case XMLStreamConstants.START_ELEMENT:
-                    onStartElement(event);
+                    if (!isObject) {
+                        // Assume mixed content is not allowed. Once a child element
+                        // is found, this element is an object, and any text is discarded.
+                        
+                        isObject = true;
+                        text = null;
+                        
+                        generator.writeStartObject();
+                        writeFields(namespaces);
+                        writeFields(attributes);
+                    }
+                    
+                    String localName = xmlReader.getLocalName();
+                    String childFieldName = ConversionUtils.jsonFieldNameFromXMLQName(xmlReader.getName());
+                    
+                    if (childFieldName.equals(fieldName)) {
+                        // Another occurrence of the current field, which makes it an array.
+                        
+                        if (heldNode != null) {
+                            generator.writeStartArray();
+                            generator.writeObject(heldNode);
+                            
+                            heldNode = null;
+                            isArray = true;
+                        }
+                        else if (!isArray) {
+                            throw new XMLStreamException("Element " + childFieldName + " occurs more than once, "
+                                    + "but the schema does not allow it to repeat", xmlReader.getLocation());
+                        }
+                        
+                        writeElement(info.getChild(localName));
+                    }
+                    else {
+                        endField(heldNode, isArray);
+                        
+                        heldNode = null;
+                        isArray = false;
+                        
+                        if (!fieldNames.add(childFieldName)) {
+                            throw new XMLStreamException("Elements named " + childFieldName + " are not adjacent, "
+                                    + "as the schema requires", xmlReader.getLocation());
+                        }
+                        
+                        fieldName = childFieldName;
+                        generator.writeFieldName(fieldName);
+                        
+                        if (mayRepeat(info, localName)) {
+                            heldNode = readNode();
+                        }
+                        else {
+                            writeElement(info.getChild(localName));
+                        }
+                    }
+                    
                     break;
                 case XMLStreamConstants.END_ELEMENT:
-                    onEndElement(event);
-                    break;
-                case XMLStreamConstants.START_DOCUMENT:
-                    onStartDocument(event);
-                    break;
-                case XMLStreamConstants.END_DOCUMENT:
-                    onEndDocument(event);
-                    break;
+                    if (isObject) {
+                        endField(heldNode, isArray);
+                        
+                        generator.writeEndObject();
+                    }
+                    else if (StringUtils.isNotEmpty(text)) {
+                        generator.writeString(text.toString());
+                    }
+                    else {
+                        generator.writeNull();
+                    }
+                    
+                    return;
             }
         }
-        
-        // The XML has been parsed into parseResult.
-        // Write it out as JSON.
-        
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.writeValue(jsonStream, parseResult);
-        
-        jsonStream.flush();
     }
     
     /**
-     * Event handler executed when the start of the XML document is
-     * encountered in the input stream.
+     * Determines if a child of an element may occur more than once. Children
+     * that are not described by the element's metadata may.
      * 
-     * @param event the event
+     * @param info the element's metadata
+     * @param localName the local name of the child
+     * @return true if the child may repeat, false otherwise
      */
-    protected void onStartDocument(XMLEvent event) {
-        // Push an unnamed node on the stack to represent the
-        // document.
-        
-        stack.push(new XmlNode());
+    private boolean mayRepeat(XmlElementInfo info, String localName) {
+        return (info.isRepeatable(localName) || !info.getChildren().containsKey(localName));
     }
-
+    
     /**
-     * Event handler executed when the end of the XML document is
-     * encountered in the input stream.
+     * Finishes writing the value of a field, once the next sibling or the
+     * end of the parent is reached.
      * 
-     * @param event the event
+     * @param heldNode the only occurrence of the field, if it has been held back
+     * @param isArray true if the field's array is open
+     * @throws IOException
      */
-    protected void onEndDocument(XMLEvent event) {
-        // The last remaining node on the stack should be
-        // the one representing the document. Pop it and
-        // store it in parseResult.
-        
-        parseResult = stack.pop();
+    private void endField(XmlNode heldNode, boolean isArray) throws IOException {
+        if (heldNode != null) {
+            generator.writeObject(heldNode);
+        }
+        else if (isArray) {
+            generator.writeEndArray();
+        }
     }
     
     /**
-     * Event handler executed when the start of an XML element is
-     * encountered in the input stream.
+     * Reads the element at the current position of the XML reader into
+     * an XmlNode. The reader must be positioned at the start of the element.
+     * When this method returns, the reader is positioned at the end of the
+     * element.
      * 
-     * @param event the event
+     * @return the node
+     * @throws XMLStreamException
      */
-    @SuppressWarnings("unchecked")
-    protected void onStartElement(XMLEvent event) {
-        // Create a node to represent the element.
+    protected XmlNode readNode() throws XMLStreamException {
+        XmlNode node = new XmlNode(ConversionUtils.jsonFieldNameFromXMLQName(xmlReader.getName()));
         
-        StartElement element = event.asStartElement();
-        QName name = element.getName();
-
-        XmlNode node = new XmlNode(ConversionUtils.jsonFieldNameFromXMLQName(name));
-
         // Add namespace declarations, if any.
         
-        Iterator<Namespace> nsIter = element.getNamespaces();
-        
-        while(nsIter.hasNext()) {
-            Namespace ns = nsIter.next();
-            
-            node.addNamespace(ns.getPrefix(), ns.getNamespaceURI());
+        for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+            node.addNamespace(getNamespacePrefix(i), xmlReader.getNamespaceURI(i));
         }
 
         // Add attributes, if any.
         
-        Iterator<Attribute> attrIter = element.getAttributes();
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            node.addAttribute(xmlReader.getAttributeName(i).toString(), xmlReader.getAttributeValue(i));
+        }
         
-        while(attrIter.hasNext()) {
-            Attribute attr = attrIter.next();
+        while (true) {
+            int eventType = xmlReader.next();
             
-            node.addAttribute(attr.getName().toString(), attr.getValue());
+            switch (eventType) {
+                case XMLStreamConstants.CHARACTERS:
+                    node.addText(xmlReader.getText());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    // Add the child once its entire contents are known.
+                    
+                    node.addChild(readNode());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return node;
+            }
         }
+    }
+    
+    /**
+     * Returns the namespace declarations of the start element at the current
+     * position of the XML reader, as alternating JSON field names and values.
+     * 
+     * @return the namespace declarations
+     */
+    private String[] getNamespaces() {
+        String[] fields = new String[xmlReader.getNamespaceCount() * 2];
         
-        // Push the node onto the stack.
+        for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+            fields[i * 2] = ConversionUtils.xmlNamespacePrefixToJsonFieldName(getNamespacePrefix(i));
+            fields[i * 2 + 1] = xmlReader.getNamespaceURI(i);
+        }
         
-        stack.push(node);
+        return fields;
     }
-
+    
     /**
-     * Event handler executed when the end of an XML element is
-     * encountered in the input stream.
+     * Returns the attributes of the start element at the current position
+     * of the XML reader, as alternating JSON field names and values.
      * 
-     * @param event the event
+     * @return the attributes
      */
-    protected void onEndElement(XMLEvent event) {
-        // Pop the node corresponding to this element off the stack.
+    private String[] getAttributes() {
+        String[] fields = new String[xmlReader.getAttributeCount() * 2];
         
-        XmlNode node = stack.pop();
-        XmlNode parent = stack.peek();
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            fields[i * 2] = ConversionUtils.xmlAttributeNameToJsonFieldName(xmlReader.getAttributeName(i).toString());
+            fields[i * 2 + 1] = xmlReader.getAttributeValue(i);
+        }
         
-        // Add the node to its parent. This is done here instead of
-        // in onStartElement(), because we now know the entire contents
-        // of the element. This gives us the possibility to prevent
-        // adding elements that are empty. In onStartElement(), we don't
-        // yet know if the element is going to be empty.
+        return fields;
+    }
+    
+    /**
+     * Returns the prefix of a namespace declared on the start element at the
+     * current position of the XML reader. The default namespace has an empty
+     * prefix.
+     * 
+     * @param index the index of the namespace declaration
+     * @return the prefix
+     */
+    private String getNamespacePrefix(int index) {
+        String prefix = xmlReader.getNamespacePrefix(index);
         
-        parent.addChild(node);
+        return (prefix == null ? "" : prefix);
     }
-
+    
     /**
-     * Event handler executed when character content is
-     * encountered in the input stream.
+     * Writes alternating JSON field names and values.
      * 
-     * @param event the event
+     * @param fields the field names and values
+     * @throws IOException
      */
-    protected void onCharacters(XMLEvent event) {
-        // Add the text to the parent element.
+    private void writeFields(String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i += 2) {
+            generator.writeStringField(fields[i], fields[i + 1]);
+        }
+    }
+    
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
         
-        String text = event.asCharacters().getData();
-        XmlNode parent = stack.peek();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
         
-        parent.addText(text);
+        return factory;
     }
 }
@@ -24,17 +24,20 @@
 package org.collectionspace.services.nuxeo.client.java;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.xml.bind.Marshaller;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.collectionspace.services.client.XmlFactories;
 import org.collectionspace.services.common.api.Tools;
 import org.collectionspace.services.jaxb.AbstractCommonList;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.jvnet.jaxb2_commons.lang.ToString;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +61,11 @@ import org.slf4j.LoggerFactory;
  * A array of itemInfo objects define the results-specific info, where
  * each itemInfo is a map of Strings that represent the fields returned for
  * each item.
+ * 
+ * Items are kept as arrays of field values, in the order of the fieldKeys,
+ * and are only converted to DOM list items if the list items are asked for
+ * (or the list is marshalled by JAXB). CommonListWriter writes the arrays
+ * directly to the response.
  *
  * @author pschmitz
  * $LastChangedRevision:  $
@@ -71,20 +79,15 @@ public class CommonList extends AbstractCommonList {
 	/** The logger. */
 	private final Logger logger = LoggerFactory.getLogger(CommonList.class);
 	@XmlTransient
-	private DocumentBuilderFactory factory;
-	@XmlTransient
-	private DocumentBuilder parser;
-	@XmlTransient
 	private Document doc;
+	
+	/** Items that have not been converted to list items yet. */
+	@XmlTransient
+	private List<Object[]> itemValues = new ArrayList<Object[]>();
     
     public CommonList()
     	throws javax.xml.parsers.ParserConfigurationException {
     	super();
-    	factory = DocumentBuilderFactory.newInstance();
-        //Get the DocumentBuilder
-        parser = factory.newDocumentBuilder();
-        //Create blank DOM Document
-        doc = parser.newDocument();
     }
         
 	@XmlTransient
@@ -149,17 +152,135 @@ public class CommonList extends AbstractCommonList {
 			throw new RuntimeException(
 					"CommonList.addItem: Cannot add items before fieldKeys are set.");
 		}
-		List<AbstractCommonList.ListItem> itemsList = getListItem();
-		AbstractCommonList.ListItem listItem = new AbstractCommonList.ListItem();
-		itemsList.add(listItem);
-		
-		List<Element> anyList = listItem.getAny();
-		for (String key : fieldKeys) {
-			Object value = itemInfo.get(key);
-			addItem(anyList, key, value);
+		Object[] values = new Object[fieldKeys.length];
+		for (int i = 0; i < fieldKeys.length; i++) {
+			values[i] = itemInfo.get(fieldKeys[i]);
 		}
+		itemValues.add(values);
 	}
 
-}
+	/**
+	 * Gets the list items, first converting any items added with addItem().
+	 */
+	@Override
+	public List<AbstractCommonList.ListItem> getListItem() {
+		List<AbstractCommonList.ListItem> itemsList = super.getListItem();
+		if (itemValues.isEmpty() == false) {
+			try {
+				if (doc == null) {
+					doc = XmlFactories.newDocument();
+				}
+			} catch (ParserConfigurationException e) {
+				throw new RuntimeException("CommonList.getListItem: Could not create a DOM document.", e);
+			}
+			for (Object[] values : itemValues) {
+				AbstractCommonList.ListItem listItem = new AbstractCommonList.ListItem();
+				itemsList.add(listItem);
+				List<Element> anyList = listItem.getAny();
+				for (int i = 0; i < fieldKeys.length; i++) {
+					addItem(anyList, fieldKeys[i], values[i]);
+				}
+			}
+			itemValues.clear();
+		}
+		return itemsList;
+	}
+
+	/**
+	 * The list items that have already been converted to DOM elements. These
+	 * come before the items in getItemValues().
+	 */
+	List<AbstractCommonList.ListItem> getConvertedListItems() {
+		return super.getListItem();
+	}
+
+	/**
+	 * The items that have not been converted to DOM elements. Each item is an
+	 * array of field values, in the order of getFieldKeys(). A value is a
+	 * String, a List of Strings, or null.
+	 */
+	List<Object[]> getItemValues() {
+		return itemValues;
+	}
+
+	/**
+	 * Returns a copy of this list, which can be changed (e.g., have its items
+	 * converted by getListItem()) without changing this list. The copy's items
+	 * are all kept as field values, so it shares no DOM nodes with this list,
+	 * and copying a list whose items are all field values only reads it.
+	 * 
+	 * @return the copy, or null if an item that was converted to a DOM list
+	 * item has an element that isn't a field value
+	 */
+	CommonList copy() {
+		CommonList result;
+		try {
+			result = new CommonList();
+		} catch (ParserConfigurationException e) {
+			throw new RuntimeException("CommonList.copy: Could not create a list.", e);
+		}
+		result.setPageNum(getPageNum());
+		result.setPageSize(getPageSize());
+		result.setItemsInPage(getItemsInPage());
+		result.setTotalItems(getTotalItems());
+		result.setFieldsReturned(getFieldsReturned());
+		result.fieldKeys = fieldKeys;
+		for (AbstractCommonList.ListItem listItem : getConvertedListItems()) {
+			Object[] values = toItemValues(listItem);
+			if (values == null) {
+				return null;
+			}
+			result.itemValues.add(values);
+		}
+		for (Object[] values : itemValues) {
+			Object[] valuesCopy = values.clone();
+			for (int i = 0; i < valuesCopy.length; i++) {
+				if (valuesCopy[i] instanceof List<?>) {
+					valuesCopy[i] = new ArrayList<Object>((List<?>) valuesCopy[i]);
+				}
+			}
+			result.itemValues.add(valuesCopy);
+		}
+		// Creates the copy's (empty) list of converted items now, so that
+		// copying the copy never has to
+		result.getConvertedListItems();
+		return result;
+	}
 
+	/*
+	 * Turns a converted list item back into field values, in the order of the
+	 * fieldKeys. Returns null if the item has an element that isn't a field.
+	 */
+	private Object[] toItemValues(AbstractCommonList.ListItem listItem) {
+		if (fieldKeys == null) {
+			return null;
+		}
+		Object[] values = new Object[fieldKeys.length];
+		for (Element element : listItem.getAny()) {
+			int i = Arrays.asList(fieldKeys).indexOf(element.getNodeName());
+			if (i < 0 || element.getElementsByTagName("*").getLength() > 0) {
+				return null;
+			}
+			String text = element.getTextContent();
+			if (values[i] == null) {
+				values[i] = text;
+			} else if (values[i] instanceof String) {
+				values[i] = new ArrayList<String>(Arrays.asList((String) values[i], text));
+			} else {
+				@SuppressWarnings("unchecked")
+				List<String> valueList = (List<String>) values[i];
+				valueList.add(text);
+			}
+		}
+		return values;
+	}
 
+	/**
+	 * Called by JAXB before this list is marshalled, so that the list items
+	 * are in place.
+	 */
+	void beforeMarshal(Marshaller marshaller) {
+		getListItem();
+	}
+
+}
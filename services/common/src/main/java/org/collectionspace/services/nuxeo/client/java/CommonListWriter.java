@@ -0,0 +1,185 @@
+/**
+ *  This document is a part of the source code and related artifacts
+ *  for CollectionSpace, an open source collections management system
+ *  for museums and related institutions:
+
+ *  http://www.collectionspace.org
+ *  http://wiki.collectionspace.org
+
+ *  Copyright 2009 University of California at Berkeley
+
+ *  Licensed under the Educational Community License (ECL), Version 2.0.
+ *  You may not use this file except in compliance with this License.
+
+ *  You may obtain a copy of the ECL 2.0 License at
+
+ *  https://source.collectionspace.org/collection-space/LICENSE.txt
+
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.collectionspace.services.nuxeo.client.java;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.collectionspace.services.jaxb.AbstractCommonList;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Writes a CommonList as abstract-common-list XML, directly to the response.
+ * The list header is written first, followed by each item, so the list is
+ * never built as a DOM or marshalled by JAXB. The output is the same as JAXB
+ * would produce for the list.
+ *
+ * When the client asks for JSON, the XmlToJsonFilter converts this output as
+ * it is written.
+ */
+@Provider
+@Produces({MediaType.APPLICATION_XML, MediaType.TEXT_XML})
+public class CommonListWriter implements MessageBodyWriter<CommonList> {
+	/** The namespace of the abstract-common-list element. */
+	public static final String LIST_NAMESPACE = "http://collectionspace.org/services/jaxb";
+
+	private static final String LIST_NAMESPACE_PREFIX = "ns2";
+	private static final String LIST_ELEMENT = "abstract-common-list";
+	private static final String LIST_ITEM_ELEMENT = "list-item";
+
+	/*
+	 * The XML declaration that JAXB writes. XMLStreamWriter has no way to write the
+	 * standalone pseudo-attribute, so the declaration is written to the stream directly.
+	 */
+	private static final byte[] XML_DECLARATION =
+			"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>".getBytes(StandardCharsets.UTF_8);
+
+	private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return CommonList.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public long getSize(CommonList list, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(CommonList list, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+			throws IOException, WebApplicationException {
+		try {
+			write(list, entityStream);
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not write the list results.", e);
+		}
+	}
+
+	/**
+	 * Writes a list as abstract-common-list XML. The stream is flushed, but not closed.
+	 *
+	 * @param list the list
+	 * @param out the stream to write to
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void write(CommonList list, OutputStream out) throws IOException, XMLStreamException {
+		out.write(XML_DECLARATION);
+
+		XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+
+		writer.writeStartElement(LIST_NAMESPACE_PREFIX, LIST_ELEMENT, LIST_NAMESPACE);
+		writer.writeNamespace(LIST_NAMESPACE_PREFIX, LIST_NAMESPACE);
+
+		writeTextElement(writer, "pageNum", Long.toString(list.getPageNum()));
+		writeTextElement(writer, "pageSize", Long.toString(list.getPageSize()));
+		writeTextElement(writer, "itemsInPage", Long.toString(list.getItemsInPage()));
+		writeTextElement(writer, "totalItems", Long.toString(list.getTotalItems()));
+		if (list.getFieldsReturned() != null) {
+			writeTextElement(writer, "fieldsReturned", list.getFieldsReturned());
+		}
+
+		for (AbstractCommonList.ListItem listItem : list.getConvertedListItems()) {
+			writer.writeStartElement(LIST_ITEM_ELEMENT);
+			for (Element element : listItem.getAny()) {
+				writeNode(writer, element);
+			}
+			writer.writeEndElement();
+		}
+
+		String[] fieldKeys = list.getFieldKeys();
+		for (Object[] values : list.getItemValues()) {
+			writer.writeStartElement(LIST_ITEM_ELEMENT);
+			for (int i = 0; i < fieldKeys.length; i++) {
+				writeValue(writer, fieldKeys[i], values[i]);
+			}
+			writer.writeEndElement();
+		}
+
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+		writer.close();
+	}
+
+	private static void writeValue(XMLStreamWriter writer, String key, Object value) throws XMLStreamException {
+		if (value instanceof String) {
+			writeTextElement(writer, key, (String) value);
+		} else if (value instanceof List<?>) {
+			for (Object val : (List<?>) value) {
+				writeValue(writer, key, val);
+			}
+		}
+		// Null values are omitted. Values of unknown types were never written
+		// by CommonList either.
+	}
+
+	private static void writeTextElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+		writer.writeStartElement(name);
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+	}
+
+	private static void writeNode(XMLStreamWriter writer, Node node) throws XMLStreamException {
+		switch (node.getNodeType()) {
+		case Node.ELEMENT_NODE:
+			writer.writeStartElement(node.getLocalName() != null ? node.getLocalName() : node.getNodeName());
+			NamedNodeMap attributes = node.getAttributes();
+			for (int i = 0; i < attributes.getLength(); i++) {
+				Node attribute = attributes.item(i);
+				writer.writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
+			}
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				writeNode(writer, child);
+			}
+			writer.writeEndElement();
+			break;
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE:
+			writer.writeCharacters(node.getNodeValue());
+			break;
+		default:
+			break;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import org.nuxeo.ecm.core.api.Filter;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
 import org.nuxeo.ecm.core.api.impl.LifeCycleFilter;
+import org.nuxeo.ecm.core.opencmis.impl.server.NuxeoCmisService;
 
 public interface CoreSessionInterface {
 
@@ -103,6 +104,24 @@ public interface CoreSessionInterface {
      */
     public DocumentModel getDocument(DocumentRef docRef) throws ClientException;
 
+    /**
+     * Gets several documents in one round trip to the repository. Documents
+     * that do not exist, or that the principal cannot read, are left out.
+     *
+     * @param docRefs the document references
+     * @return the documents
+     * @throws ClientException
+     */
+    public DocumentModelList getDocuments(DocumentRef[] docRefs) throws ClientException;
+
+    /**
+     * Gets the CMIS service used to make CMISQL queries with this session. The
+     * service is created on first use, and reused for the life of the session.
+     *
+     * @return the CMIS service
+     */
+    public NuxeoCmisService getCmisService();
+
     public DocumentModel saveDocument(DocumentModel docModel) throws ClientException;
 
     public void save() throws ClientException;
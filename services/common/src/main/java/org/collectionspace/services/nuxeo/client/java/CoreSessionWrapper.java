@@ -2,6 +2,7 @@ package org.collectionspace.services.nuxeo.client.java;
 
 import java.security.Principal;
 
+import org.collectionspace.services.common.metrics.ServiceMetrics;
 import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
@@ -11,6 +12,7 @@ import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
 import org.nuxeo.ecm.core.api.impl.LifeCycleFilter;
 import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.opencmis.impl.server.NuxeoCmisService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
 import org.slf4j.Logger;
@@ -20,6 +22,7 @@ public class CoreSessionWrapper implements CoreSessionInterface {
 
 	private CoreSession repoSession;
 	private boolean transactionSetForRollback = false;
+	private NuxeoCmisService cmisService = null;
 	
     /** The logger. */
     private static Logger logger = LoggerFactory.getLogger(CoreSessionWrapper.class);
@@ -116,6 +119,7 @@ public class CoreSessionWrapper implements CoreSessionInterface {
 	public IterableQueryResult queryAndFetch(String query, String queryType,
             Object... params) throws ClientException {
 		logQuery(query, queryType);
+		ServiceMetrics.repositoryQuery();
 		return repoSession.queryAndFetch(query, queryType, params);
 	}
 
@@ -123,23 +127,27 @@ public class CoreSessionWrapper implements CoreSessionInterface {
 	public DocumentModelList query(String query, Filter filter, long limit,
             long offset, boolean countTotal) throws ClientException {
 		logQuery(query, filter, limit, offset, countTotal);
+		ServiceMetrics.repositoryQuery();
 		return repoSession.query(query, filter, limit, offset, countTotal);
 	}
 
 	@Override
     public DocumentModelList query(String query, int max) throws ClientException {
 		logQuery(query);
+		ServiceMetrics.repositoryQuery();
     	return repoSession.query(query, max);
     }
     
 	@Override
 	public DocumentModelList query(String query) throws ClientException {
 		logQuery(query);
+		ServiceMetrics.repositoryQuery();
 		return repoSession.query(query);
 	}
 	
 	@Override
 	public DocumentModelList query(String query, LifeCycleFilter workflowStateFilter) {
+		ServiceMetrics.repositoryQuery();
 		return repoSession.query(query, workflowStateFilter);
 	}
 
@@ -162,6 +170,22 @@ public class CoreSessionWrapper implements CoreSessionInterface {
 	    return repoSession.getDocument(docRef);
     }
 
+    @Override
+    public DocumentModelList getDocuments(DocumentRef[] docRefs) throws ClientException {
+    	return repoSession.getDocuments(docRefs);
+    }
+
+    /*
+     * The service does not own the session, so it is not closed with it.
+     */
+    @Override
+    public NuxeoCmisService getCmisService() {
+    	if (cmisService == null) {
+    		cmisService = new NuxeoCmisService(repoSession);
+    	}
+    	return cmisService;
+    }
+
     @Override
     public DocumentModel saveDocument(DocumentModel docModel) throws ClientException {
     	DocumentModel result = null;
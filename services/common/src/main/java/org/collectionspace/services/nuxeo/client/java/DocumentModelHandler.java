@@ -25,6 +25,8 @@ package org.collectionspace.services.nuxeo.client.java;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.core.MultivaluedMap;
 
@@ -83,6 +85,15 @@ public abstract class DocumentModelHandler<T, TL>
     private final Logger logger = LoggerFactory.getLogger(DocumentModelHandler.class);
     private CoreSessionInterface repositorySession;
 
+    /*
+     * CMIS queries, with a placeholder for the CSID of the related record, keyed by the
+     * rest of the query's inputs (the "shape" of the query). The number of entries is
+     * bounded, since sort orders come from the request.
+     */
+    private static final ConcurrentMap<String, String> cmisQueryTemplates = new ConcurrentHashMap<String, String>();
+    private static final int MAX_CMIS_QUERY_TEMPLATES = 1000;
+    private static final String CMIS_RELATED_CSID_PLACEHOLDER = "{relatedCsid}";
+
     protected String oldRefNameOnUpdate = null;  // FIXME: REM - We should have setters and getters for these
     protected String newRefNameOnUpdate = null;  // FIXME: two fields.
     
@@ -443,8 +454,6 @@ public abstract class DocumentModelHandler<T, TL>
 	    	//
 	    	// Build up the query arguments
 	    	//
-	    	String theOnClause = "";
-	    	String theWhereClause = "";
 	    	MultivaluedMap<String, String> queryParams = getServiceContext().getQueryParams();
 	    	String asSubjectCsid = (String)queryParams.getFirst(IQueryManager.SEARCH_RELATED_TO_CSID_AS_SUBJECT);
 	    	String asObjectCsid = (String)queryParams.getFirst(IQueryManager.SEARCH_RELATED_TO_CSID_AS_OBJECT);
@@ -456,77 +465,39 @@ public abstract class DocumentModelHandler<T, TL>
 	    	if (selectDocType != null && !selectDocType.isEmpty()) {
 	    		docType = selectDocType;
 	    	}
-	    	String selectFields = IQueryManager.CMIS_TARGET_CSID + ", "
-	    			+ IQueryManager.CMIS_TARGET_TITLE + ", "
-	    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_TITLE + ", "
-	    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_ID + ", "
-	    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_SUBJECT_ID;
-	    	String targetTable = docType + " " + IQueryManager.CMIS_TARGET_PREFIX;
-	    	String relTable = IRelationsManager.DOC_TYPE + " " + IQueryManager.CMIS_RELATIONS_PREFIX;
-	    	String relObjectCsidCol = IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_ID;
-	    	String relSubjectCsidCol = IRelationsManager.CMIS_CSPACE_RELATIONS_SUBJECT_ID;
-	    	String targetCsidCol = IQueryManager.CMIS_TARGET_CSID;
 	    	String tenantID = this.getServiceContext().getTenantId();
 
-	    	//
-	    	// Create the "ON" and "WHERE" query clauses based on the params passed into the HTTP request.  
 	    	//
 	    	// First come, first serve -the first match determines the "ON" and "WHERE" query clauses.
 	    	//
-	    	if (asSubjectCsid != null && !asSubjectCsid.isEmpty()) {  
-	    		// Since our query param is the "subject" value, join the tables where the CSID of the document is the other side (the "object") of the relationship.
-	    		theOnClause = relObjectCsidCol + " = " + targetCsidCol;
-	    		theWhereClause = relSubjectCsidCol + " = " + "'" + asSubjectCsid + "'";
+	    	String relatedAs = null;
+	    	String relatedCsid = null;
+	    	if (asSubjectCsid != null && !asSubjectCsid.isEmpty()) {
+	    		relatedAs = IQueryManager.SEARCH_RELATED_TO_CSID_AS_SUBJECT;
+	    		relatedCsid = asSubjectCsid;
 	    	} else if (asObjectCsid != null && !asObjectCsid.isEmpty()) {
-	    		// Since our query param is the "object" value, join the tables where the CSID of the document is the other side (the "subject") of the relationship.
-	    		theOnClause = relSubjectCsidCol + " = " + targetCsidCol; 
-	    		theWhereClause = relObjectCsidCol + " = " + "'" + asObjectCsid + "'";
+	    		relatedAs = IQueryManager.SEARCH_RELATED_TO_CSID_AS_OBJECT;
+	    		relatedCsid = asObjectCsid;
 	    	} else if (asEitherCsid != null && !asEitherCsid.isEmpty()) {
-	    		theOnClause = relObjectCsidCol + " = " + targetCsidCol
-	    				+ " OR " + relSubjectCsidCol + " = " + targetCsidCol;
-	    		theWhereClause = relSubjectCsidCol + " = " + "'" + asEitherCsid + "'"
-	    				+ " OR " + relObjectCsidCol + " = " + "'" + asEitherCsid + "'";
-	    	} else {
-	    		//Since the call to isCMISQuery() return true, we should never get here.
-	    		logger.error("Attempt to make CMIS query failed because the HTTP request was missing valid query parameters.");
+	    		relatedAs = IQueryManager.SEARCH_RELATED_TO_CSID_AS_EITHER;
+	    		relatedCsid = asEitherCsid;
 	    	}
-	    	
-	    	// Now consider a constraint on the object doc types (for search by service group)
-	    	if (matchObjDocTypes != null && !matchObjDocTypes.isEmpty()) {  
-	    		// Since our query param is the "subject" value, join the tables where the CSID of the document is the other side (the "object") of the relationship.
-	    		theWhereClause += " AND (" + IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_TYPE 
-	    							+ " IN " + matchObjDocTypes + ")";
+
+	    	//
+	    	// The query text only depends on the related CSID through its WHERE clause, so the
+	    	// rest of it is built once for each combination of the other inputs.
+	    	//
+	    	String key = relatedAs + "|" + docType + "|" + tenantID + "|" + matchObjDocTypes
+	    			+ "|" + queryContext.getOrderByClause();
+	    	String template = cmisQueryTemplates.get(key);
+	    	if (template == null) {
+	    		template = buildCMISQueryTemplate(queryContext, relatedAs, docType, tenantID, matchObjDocTypes);
+	    		if (relatedAs != null && cmisQueryTemplates.size() < MAX_CMIS_QUERY_TEMPLATES) {
+	    			cmisQueryTemplates.putIfAbsent(key, template);
+	    		}
 	    	}
-	    	
-	    	// Qualify the query with the current tenant ID.
-    		theWhereClause += IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.CMIS_JOIN_TENANT_ID_FILTER + " = '" + tenantID + "'";
-    		
-	    	// This could later be in control of a queryParam, to omit if we want to see versions, or to
-	    	// only see old versions.
-    		theWhereClause += IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.CMIS_JOIN_NUXEO_IS_VERSION_FILTER;
-	    	
-	    	StringBuilder query = new StringBuilder();
-	    	// assemble the query from the string arguments
-	    	query.append("SELECT ");
-	    	query.append(selectFields);
-	    	query.append(" FROM " + targetTable + " JOIN " + relTable);
-	    	query.append(" ON " + theOnClause);
-	    	query.append(" WHERE " + theWhereClause);
-	    	
-	        try {
-				NuxeoUtils.appendCMISOrderBy(query, queryContext);
-			} catch (Exception e) {
-				logger.error("Could not append ORDER BY clause to CMIS query", e);
-			}
-	        
-	    	// An example:
-	        // SELECT D.cmis:name, D.dc:title, R.dc:title, R.relations_common:subjectCsid
-	        // FROM Dimension D JOIN Relation R
-	        // ON R.relations_common:objectCsid = D.cmis:name
-	        // WHERE R.relations_common:subjectCsid = '737527ec-a560-4776-99de'
-	        // ORDER BY D.collectionspace_core:updatedAt DESC
-	        
-	        result = query.toString();
+	    	result = relatedCsid != null ? template.replace(CMIS_RELATED_CSID_PLACEHOLDER, relatedCsid) : template;
+
 	        if (logger.isDebugEnabled() == true && result != null) {
 	        	logger.debug("The CMIS query is: " + result);
 	        }
@@ -535,4 +506,83 @@ public abstract class DocumentModelHandler<T, TL>
         return result;
     }
     
+    /*
+     * Builds a CMIS query, with a placeholder for the CSID of the related record.
+     */
+    private String buildCMISQueryTemplate(QueryContext queryContext, String relatedAs,
+    		String docType, String tenantID, String matchObjDocTypes) {
+    	String theOnClause = "";
+    	String theWhereClause = "";
+    	String relatedCsid = "'" + CMIS_RELATED_CSID_PLACEHOLDER + "'";
+
+    	String selectFields = IQueryManager.CMIS_TARGET_CSID + ", "
+    			+ IQueryManager.CMIS_TARGET_TITLE + ", "
+    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_TITLE + ", "
+    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_ID + ", "
+    			+ IRelationsManager.CMIS_CSPACE_RELATIONS_SUBJECT_ID;
+    	String targetTable = docType + " " + IQueryManager.CMIS_TARGET_PREFIX;
+    	String relTable = IRelationsManager.DOC_TYPE + " " + IQueryManager.CMIS_RELATIONS_PREFIX;
+    	String relObjectCsidCol = IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_ID;
+    	String relSubjectCsidCol = IRelationsManager.CMIS_CSPACE_RELATIONS_SUBJECT_ID;
+    	String targetCsidCol = IQueryManager.CMIS_TARGET_CSID;
+
+    	//
+    	// Create the "ON" and "WHERE" query clauses based on the params passed into the HTTP request.  
+    	//
+    	if (IQueryManager.SEARCH_RELATED_TO_CSID_AS_SUBJECT.equals(relatedAs)) {
+    		// Since our query param is the "subject" value, join the tables where the CSID of the document is the other side (the "object") of the relationship.
+    		theOnClause = relObjectCsidCol + " = " + targetCsidCol;
+    		theWhereClause = relSubjectCsidCol + " = " + relatedCsid;
+    	} else if (IQueryManager.SEARCH_RELATED_TO_CSID_AS_OBJECT.equals(relatedAs)) {
+    		// Since our query param is the "object" value, join the tables where the CSID of the document is the other side (the "subject") of the relationship.
+    		theOnClause = relSubjectCsidCol + " = " + targetCsidCol; 
+    		theWhereClause = relObjectCsidCol + " = " + relatedCsid;
+    	} else if (IQueryManager.SEARCH_RELATED_TO_CSID_AS_EITHER.equals(relatedAs)) {
+    		theOnClause = relObjectCsidCol + " = " + targetCsidCol
+    				+ " OR " + relSubjectCsidCol + " = " + targetCsidCol;
+    		theWhereClause = relSubjectCsidCol + " = " + relatedCsid
+    				+ " OR " + relObjectCsidCol + " = " + relatedCsid;
+    	} else {
+    		//Since the call to isCMISQuery() return true, we should never get here.
+    		logger.error("Attempt to make CMIS query failed because the HTTP request was missing valid query parameters.");
+    	}
+    	
+    	// Now consider a constraint on the object doc types (for search by service group)
+    	if (matchObjDocTypes != null && !matchObjDocTypes.isEmpty()) {  
+    		// Since our query param is the "subject" value, join the tables where the CSID of the document is the other side (the "object") of the relationship.
+    		theWhereClause += " AND (" + IRelationsManager.CMIS_CSPACE_RELATIONS_OBJECT_TYPE 
+    							+ " IN " + matchObjDocTypes + ")";
+    	}
+    	
+    	// Qualify the query with the current tenant ID.
+		theWhereClause += IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.CMIS_JOIN_TENANT_ID_FILTER + " = '" + tenantID + "'";
+		
+    	// This could later be in control of a queryParam, to omit if we want to see versions, or to
+    	// only see old versions.
+		theWhereClause += IQueryManager.SEARCH_QUALIFIER_AND + IQueryManager.CMIS_JOIN_NUXEO_IS_VERSION_FILTER;
+    	
+    	StringBuilder query = new StringBuilder();
+    	// assemble the query from the string arguments
+    	query.append("SELECT ");
+    	query.append(selectFields);
+    	query.append(" FROM " + targetTable + " JOIN " + relTable);
+    	query.append(" ON " + theOnClause);
+    	query.append(" WHERE " + theWhereClause);
+    	
+        try {
+			NuxeoUtils.appendCMISOrderBy(query, queryContext);
+		} catch (Exception e) {
+			logger.error("Could not append ORDER BY clause to CMIS query", e);
+		}
+        
+    	// An example:
+        // SELECT D.cmis:name, D.dc:title, R.dc:title, R.relations_common:subjectCsid
+        // FROM Dimension D JOIN Relation R
+        // ON R.relations_common:objectCsid = D.cmis:name
+        // WHERE R.relations_common:subjectCsid = '737527ec-a560-4776-99de'
+        // ORDER BY D.collectionspace_core:updatedAt DESC
+        
+        return query.toString();
+    }
+    
 }
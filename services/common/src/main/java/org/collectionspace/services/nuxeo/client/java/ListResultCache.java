@@ -0,0 +1,375 @@
+/**
+ * This document is a part of the source code and related artifacts for
+ * CollectionSpace, an open source collections management system for museums and
+ * related institutions:
+ *
+ * http://www.collectionspace.org http://wiki.collectionspace.org
+ *
+ * Copyright 2009 University of California at Berkeley
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0. You may
+ * not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ *
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+package org.collectionspace.services.nuxeo.client.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.collectionspace.services.client.IRelationsManager;
+import org.collectionspace.services.common.metrics.ServiceMetrics;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A short-lived cache of the lists built by RepositoryClientImpl.getFiltered() for
+ * NXQL list and search queries, so that the lists a UI requests over and over
+ * (dashboards, "recently updated" panes, term lists for dropdowns) aren't queried,
+ * counted and built again for every request.
+ *
+ * The cache is off unless the 'listCacheTtlSeconds' property of the services config
+ * is set (see ServiceMain). Entries are keyed by the tenant, the repository, the
+ * document handler, the NXQL query (which holds the document type, the where clause
+ * and the sort order), the page and the request's query parameters. They expire
+ * after the TTL, and the least recently used entries are dropped beyond the maximum
+ * number of entries. Lists with more items than MAX_CACHED_ITEMS aren't cached.
+ *
+ * Repository queries run as the system principal, so a list doesn't depend on the
+ * user who asked for it. Each request is still authorized before its resource is
+ * invoked, so a cached list is only returned to users who may list its records.
+ *
+ * The repository client reports each write with writeStarted(), and each release of
+ * a repository session with writesEnded(). The entries of the written document types
+ * are dropped once the writing transaction is over, and lists whose query was running
+ * while a write was in progress aren't cached. Writes to relations drop all of the
+ * tenant's entries, since lists can mark the records related to another one.
+ *
+ * Event listeners, which write documents without the repository client, report their
+ * writes with invalidateOnCommit(). Documents written any other way (e.g. by SQL scripts
+ * or by other Nuxeo listeners) may be listed as they were before for up to the TTL.
+ *
+ * Only CommonLists are cached. The cache keeps its own copy of each list, whose items are
+ * all field values, and hands every request a copy of that, so that requests may convert
+ * or change the lists they get (e.g. with CommonList.getListItem()) without affecting
+ * each other.
+ */
+public class ListResultCache {
+
+    final private static Logger logger = LoggerFactory.getLogger(ListResultCache.class);
+
+    /** The name of this cache in the services' metrics */
+    public static final String CACHE_NAME = "lists";
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    /** Lists with more items than this aren't cached */
+    public static final int MAX_CACHED_ITEMS = 1000;
+
+    private static final String KEY_SEPARATOR = "\u0000";
+    private static final String ALL_DOCTYPES = "*";
+
+    private static final ListResultCache instance = new ListResultCache();
+
+    private volatile long ttlMillis = 0;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /** key -> entry, in access order */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ListResultCache.Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    /** tenantId + docType (or ALL_DOCTYPES) -> generation, bumped on every write */
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+    /** The tenantId + docType of the writes made by the current thread's transaction */
+    private final ThreadLocal<Set<String>> pendingWrites = new ThreadLocal<Set<String>>();
+
+    public static ListResultCache get() {
+        return instance;
+    }
+
+    ListResultCache() {
+        //empty
+    }
+
+    private static class Entry {
+        private final String tenantId;
+        private final String docType;
+        /** A copy of the cached list, which is never handed out or changed */
+        private final CommonList list;
+        private final long expiresAt;
+
+        Entry(String tenantId, String docType, CommonList list, long expiresAt) {
+            this.tenantId = tenantId;
+            this.docType = docType;
+            this.list = list;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @return true if lists are cached
+     */
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    /**
+     * Sets how long lists are cached. A TTL of 0 turns the cache off, and drops its entries.
+     *
+     * @param ttlSeconds the time to live of the cached lists, in seconds
+     * @param maxEntries the maximum number of cached lists
+     */
+    public void configure(int ttlSeconds, int maxEntries) {
+        this.ttlMillis = Math.max(ttlSeconds, 0) * 1000L;
+        this.maxEntries = Math.max(maxEntries, 1);
+        synchronized (entries) {
+            if (isEnabled() == false) {
+                entries.clear();
+            } else {
+                // Drop the least recently used entries beyond the new maximum
+                Iterator<String> iter = entries.keySet().iterator();
+                for (int excess = entries.size() - this.maxEntries; excess > 0; excess--) {
+                    iter.next();
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the key of a list query. The query parameters are sorted, so that their
+     * order in the request doesn't matter.
+     */
+    public static String createKey(String tenantId, String repositoryName, String handlerClassName,
+            String query, int pageSize, int offset, MultivaluedMap<String, String> queryParams) {
+        StringBuilder result = new StringBuilder(256);
+        result.append(tenantId).append(KEY_SEPARATOR);
+        result.append(repositoryName).append(KEY_SEPARATOR);
+        result.append(handlerClassName).append(KEY_SEPARATOR);
+        result.append(query).append(KEY_SEPARATOR);
+        result.append(pageSize).append(KEY_SEPARATOR).append(offset);
+        if (queryParams != null) {
+            List<String> paramNames = new ArrayList<String>(queryParams.keySet());
+            Collections.sort(paramNames);
+            for (String paramName : paramNames) {
+                List<String> values = new ArrayList<String>(queryParams.get(paramName));
+                Collections.sort(values);
+                for (String value : values) {
+                    result.append(KEY_SEPARATOR).append(paramName).append('=').append(value);
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the current generation of a document type's lists. Callers building a
+     * list should read this before querying the repository and pass it to put().
+     */
+    public long getGeneration(String tenantId, String docType) {
+        return getGenerationCounter(tenantId, docType).get()
+                + getGenerationCounter(tenantId, ALL_DOCTYPES).get();
+    }
+
+    /**
+     * Gets a cached list.
+     *
+     * @return a copy of the list, which the caller may change, or null if it isn't cached
+     *         or has expired
+     */
+    public CommonList get(String key) {
+        CommonList cached = null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    cached = entry.list;
+                } else {
+                    entries.remove(key);
+                }
+            }
+        }
+        ServiceMetrics.cacheLookup(CACHE_NAME, cached != null);
+        // The cached copy is only read, so it can be copied outside of the lock
+        return cached != null ? cached.copy() : null;
+    }
+
+    /**
+     * Caches a copy of a list, unless its document type was written since the given generation
+     * was read. Only CommonLists are cached, since they can be copied without sharing DOM nodes.
+     *
+     * @param itemCount the number of items in the list; large lists aren't cached
+     */
+    public void put(String key, String tenantId, String docType, Object list, long itemCount, long builtAtGeneration) {
+        if (isEnabled() == false || list instanceof CommonList == false || itemCount > MAX_CACHED_ITEMS) {
+            return;
+        }
+        CommonList copy = ((CommonList) list).copy();
+        if (copy == null) {
+            return;
+        }
+        Entry entry = new Entry(tenantId, docType, copy, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            // Checked while holding the lock, since invalidate() drops entries while holding it
+            if (getGeneration(tenantId, docType) == builtAtGeneration) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Records that the current thread's transaction writes documents of the given type. Lists
+     * of that type that are being built aren't cached, and the cached ones are dropped when
+     * writesEnded() is called.
+     */
+    public void writeStarted(String tenantId, String docType) {
+        if (isEnabled() == false) {
+            return;
+        }
+        String typeKey = getTypeKey(tenantId, docType);
+        getGenerationCounter(tenantId, docType).incrementAndGet();
+        Set<String> pending = pendingWrites.get();
+        if (pending == null) {
+            pending = new LinkedHashSet<String>();
+            pendingWrites.set(pending);
+        }
+        pending.add(typeKey);
+    }
+
+    /**
+     * Drops the cached lists of the document types the current thread's transaction wrote.
+     * Called when the transaction is committed or rolled back.
+     */
+    public void writesEnded() {
+        Set<String> pending = pendingWrites.get();
+        if (pending == null) {
+            return;
+        }
+        pendingWrites.remove();
+        for (String typeKey : pending) {
+            int separator = typeKey.indexOf(KEY_SEPARATOR);
+            invalidate(typeKey.substring(0, separator), typeKey.substring(separator + KEY_SEPARATOR.length()));
+        }
+    }
+
+    /**
+     * Drops the cached lists of a tenant's document type, or all of the tenant's lists if
+     * the type is a relation.
+     */
+    public void invalidate(String tenantId, String docType) {
+        String invalidatedType = isRelationType(docType) ? ALL_DOCTYPES : docType;
+        getGenerationCounter(tenantId, invalidatedType).incrementAndGet();
+        synchronized (entries) {
+            Iterator<Entry> iter = entries.values().iterator();
+            while (iter.hasNext()) {
+                Entry entry = iter.next();
+                if (equals(entry.tenantId, tenantId)
+                        && (ALL_DOCTYPES.equals(invalidatedType) || equals(entry.docType, docType))) {
+                    iter.remove();
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Invalidated cached lists of document type %s for tenant=%s", invalidatedType, tenantId));
+        }
+    }
+
+    /**
+     * Drops the cached lists of a tenant's document type (or all of the tenant's lists, if
+     * the type is a relation) once the current transaction is over, for writes that aren't
+     * made through the repository client, such as those of event listeners. Lists whose
+     * query runs before then aren't cached. Without a transaction, the lists are dropped
+     * right away.
+     *
+     * @param tenantId the tenant ID of the written documents; if null, nothing is dropped,
+     * since only the documents of a tenant are listed
+     * @param docType the document type of the written documents, without a tenant qualifier
+     */
+    public void invalidateOnCommit(final String tenantId, final String docType) {
+        if (isEnabled() == false || tenantId == null) {
+            return;
+        }
+        getGenerationCounter(tenantId, docType).incrementAndGet();
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            try {
+                TransactionHelper.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                        //empty
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            invalidate(tenantId, docType);
+                        }
+                    }
+                });
+                return;
+            } catch (RuntimeException e) {
+                logger.warn(String.format("Could not defer the invalidation of cached lists of document type %s for tenant=%s to the end of the transaction: %s",
+                        docType, tenantId, e.getMessage()));
+            }
+        }
+        invalidate(tenantId, docType);
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            for (AtomicLong generation : generations.values()) {
+                generation.incrementAndGet();
+            }
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private AtomicLong getGenerationCounter(String tenantId, String docType) {
+        String typeKey = getTypeKey(tenantId, docType);
+        AtomicLong result = generations.get(typeKey);
+        if (result == null) {
+            result = new AtomicLong();
+            AtomicLong existing = generations.putIfAbsent(typeKey, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    private static String getTypeKey(String tenantId, String docType) {
+        return tenantId + KEY_SEPARATOR + (isRelationType(docType) ? ALL_DOCTYPES : docType);
+    }
+
+    private static boolean isRelationType(String docType) {
+        return docType != null && docType.startsWith(IRelationsManager.DOC_TYPE);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -33,6 +33,7 @@ import java.util.List;
 import javax.ws.rs.core.MultivaluedMap;
 
 import org.collectionspace.services.client.CollectionSpaceClient;
+import org.collectionspace.services.client.IClientQueryParams;
 import org.collectionspace.services.client.IQueryManager;
 import org.collectionspace.services.client.IRelationsManager;
 import org.collectionspace.services.client.PoxPayload;
@@ -48,6 +49,7 @@ import org.collectionspace.services.common.context.AbstractServiceContextImpl;
 import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentWrapper;
+import org.collectionspace.services.common.query.Projection;
 import org.collectionspace.services.common.query.QueryContext;
 import org.collectionspace.services.common.relation.nuxeo.RelationsUtils;
 import org.collectionspace.services.config.service.DocHandlerParams;
@@ -215,6 +217,26 @@ public abstract class NuxeoDocumentModelHandler<T> extends RemoteDocumentModelHa
 		return updatedAt;
 	}
 
+	/**
+	 * Returns the configured list result fields a client asked for (e.g., fields=objectNumber,title),
+	 * or all of them. The standard fields (csid, uri, refName, updatedAt, workflowState) are always
+	 * returned, and fields that aren't configured for the list are ignored.
+	 */
+	protected List<ListResultField> getRequestedListItems(MultivaluedMap<String, String> queryParams) throws DocumentException {
+		List<ListResultField> result = getListItemsArray();
+		Projection fields = Projection.fromQueryParams(queryParams, IClientQueryParams.FIELDS_PARAM);
+		if (fields.isAll() == false) {
+			List<ListResultField> requested = new ArrayList<ListResultField>(result.size());
+			for (ListResultField field : result) {
+				if (fields.includes(field.getElement())) {
+					requested.add(field);
+				}
+			}
+			result = requested;
+		}
+		return result;
+	}
+
 	@Override
 	public AbstractCommonList extractCommonPartList(DocumentWrapper<DocumentModelList> wrapDoc) throws Exception {
 		CommonList commonList = new CommonList();
@@ -242,7 +264,7 @@ public abstract class NuxeoDocumentModelHandler<T> extends RemoteDocumentModelHa
 
 			String commonSchema = getServiceContext().getCommonPartLabel();
 			extractPagingInfo(commonList, wrapDoc);
-			List<ListResultField> resultsFields = getListItemsArray();
+			List<ListResultField> resultsFields = getRequestedListItems(queryParams);
 			int nFields = resultsFields.size() + NUM_STANDARD_LIST_RESULT_FIELDS;
 			int baseFields = NUM_STANDARD_LIST_RESULT_FIELDS;
 			if (markRtSbj != null) {
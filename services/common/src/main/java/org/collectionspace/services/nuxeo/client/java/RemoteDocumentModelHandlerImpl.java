@@ -41,6 +41,7 @@ import org.collectionspace.services.authorization.AccountPermission;
 import org.collectionspace.services.jaxb.AbstractCommonList;
 import org.collectionspace.services.lifecycle.TransitionDef;
 import org.collectionspace.services.client.CollectionSpaceClient;
+import org.collectionspace.services.client.IClientQueryParams;
 import org.collectionspace.services.client.PayloadInputPart;
 import org.collectionspace.services.client.PayloadOutputPart;
 import org.collectionspace.services.client.PoxPayloadIn;
@@ -61,6 +62,7 @@ import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentUtils;
 import org.collectionspace.services.common.document.DocumentWrapper;
 import org.collectionspace.services.common.document.DocumentFilter;
+import org.collectionspace.services.common.query.Projection;
 import org.collectionspace.services.client.IRelationsManager;
 import org.collectionspace.services.common.relation.RelationResource;
 import org.collectionspace.services.common.repository.RepositoryClient;
@@ -101,6 +103,8 @@ public abstract class   RemoteDocumentModelHandlerImpl<T, TL>
     private final Logger logger = LoggerFactory.getLogger(RemoteDocumentModelHandlerImpl.class);
     private final static String CR = "\r\n";
     private final static String EMPTYSTR = "";
+    /** The label of the payload part that lists the current user's permissions */
+    public final static String ACCOUNT_PERMISSION_PART = "account_permission";
     
     /* (non-Javadoc)
      * @see org.collectionspace.services.common.document.AbstractDocumentHandlerImpl#setServiceContext(org.collectionspace.services.common.context.ServiceContext)
@@ -307,11 +311,19 @@ public abstract class   RemoteDocumentModelHandlerImpl<T, TL>
         DocumentModel docModel = wrapDoc.getWrappedObject();
         String[] schemas = docModel.getDeclaredSchemas();
         Map<String, ObjectPartType> partsMetaMap = getServiceContext().getPartsMetadata();
+        //
+        // Clients may ask for only some of the parts (e.g., parts=collectionobjects_common), in which case
+        // the other schemas are never read from the repository.
+        //
+        Projection parts = Projection.fromQueryParams(getServiceContext().getQueryParams(), IClientQueryParams.PARTS_PARAM);
         for (String schema : schemas) {
             ObjectPartType partMeta = partsMetaMap.get(schema);
             if (partMeta == null) {
                 continue; // unknown part, ignore
             }
+            if (parts.includes(schema) == false) {
+                continue; // part not requested
+            }
             Map<String, Object> unQObjectProperties = extractPart(docModel, schema, partMeta);
             if(CollectionSpaceClient.COLLECTIONSPACE_CORE_SCHEMA.equals(schema)) {
             	addExtraCoreValues(docModel, unQObjectProperties);
@@ -342,7 +354,7 @@ public abstract class   RemoteDocumentModelHandlerImpl<T, TL>
         }
         
         String currentUser = ctx.getUserId();
-        if (currentUser.equalsIgnoreCase(AuthNContext.ANONYMOUS_USER) == false) {
+        if (currentUser.equalsIgnoreCase(AuthNContext.ANONYMOUS_USER) == false && parts.includes(ACCOUNT_PERMISSION_PART)) {
         	addAccountPermissionsPart();
         }
     }
@@ -371,7 +383,7 @@ public abstract class   RemoteDocumentModelHandlerImpl<T, TL>
         org.collectionspace.services.authorization.ObjectFactory objectFactory =
         	new org.collectionspace.services.authorization.ObjectFactory();
         JAXBElement<AccountPermission> ap = objectFactory.createAccountPermission(accountPermission);
-        PayloadOutputPart accountPermissionPart = new PayloadOutputPart("account_permission", ap); // REM - "account_permission" should be using a constant and not a literal
+        PayloadOutputPart accountPermissionPart = new PayloadOutputPart(ACCOUNT_PERMISSION_PART, ap);
         ctx.addOutputPart(accountPermissionPart);
         
         profiler.stop();
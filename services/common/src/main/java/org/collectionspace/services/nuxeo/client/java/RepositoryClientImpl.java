@@ -19,8 +19,10 @@ package org.collectionspace.services.nuxeo.client.java;
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -41,6 +43,7 @@ import org.collectionspace.services.client.PoxPayloadIn;
 import org.collectionspace.services.client.PoxPayloadOut;
 import org.collectionspace.services.client.Profiler;
 import org.collectionspace.services.client.workflow.WorkflowClient;
+import org.collectionspace.services.common.context.ServiceBindingUtils;
 import org.collectionspace.services.common.context.ServiceContext;
 import org.collectionspace.services.common.query.QueryContext;
 import org.collectionspace.services.common.repository.RepositoryClient;
@@ -51,6 +54,9 @@ import org.collectionspace.services.common.document.DocumentException;
 import org.collectionspace.services.common.document.DocumentFilter;
 import org.collectionspace.services.common.document.DocumentHandler;
 import org.collectionspace.services.common.document.DocumentNotFoundException;
+import org.collectionspace.services.common.document.DocumentVersion;
+import org.collectionspace.services.common.document.PreconditionFailedException;
+import org.collectionspace.services.common.document.UpdatePreconditions;
 import org.collectionspace.services.common.document.DocumentHandler.Action;
 import org.collectionspace.services.common.document.DocumentWrapper;
 import org.collectionspace.services.common.document.DocumentWrapperImpl;
@@ -66,13 +72,6 @@ import org.collectionspace.services.common.vocabulary.RefNameServiceUtils.Author
 import org.collectionspace.services.config.tenant.TenantBindingType;
 import org.collectionspace.services.config.tenant.RepositoryDomainType;
 
-//
-// CSPACE-5036 - How to make CMISQL queries from Nuxeo
-//
-import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
-import org.apache.chemistry.opencmis.commons.server.CallContext;
-import org.apache.chemistry.opencmis.server.impl.CallContextImpl;
-import org.apache.chemistry.opencmis.server.shared.ThresholdOutputStreamFactory;
 import org.nuxeo.common.utils.IdUtils;
 import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.DocumentModel;
@@ -84,8 +83,6 @@ import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.PathRef;
 import org.nuxeo.runtime.transaction.TransactionRuntimeException;
-import org.nuxeo.ecm.core.opencmis.bindings.NuxeoCmisServiceFactory;
-import org.nuxeo.ecm.core.opencmis.impl.server.NuxeoCmisService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -115,6 +112,8 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
     public static final String USER_SUPPLIED_ANCHOR_CHAR_REGEX = BACKSLASH + USER_SUPPLIED_ANCHOR_CHAR;
     public static final String ENDING_ANCHOR_CHAR = "$";
     public static final String ENDING_ANCHOR_CHAR_REGEX = BACKSLASH + ENDING_ANCHOR_CHAR;
+    private static final String DUBLINCORE_SCHEMA = "dublincore";
+    private static final String DUBLINCORE_MODIFIED_PROPERTY = "dc:modified";
 
     
     /**
@@ -184,6 +183,7 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         try {
             handler.prepare(Action.CREATE);
             repoSession = getRepositorySession(ctx);
+            listCacheWriteStarted(ctx, docType);
             DocumentRef nuxeoWspace = new IdRef(nuxeoWspaceId);
             DocumentModel wspaceDoc = repoSession.getDocument(nuxeoWspace);
             String wspacePath = wspaceDoc.getPathAsString();
@@ -273,6 +273,7 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         try {
             handler.prepare(Action.SYNC);
             repoSession = getRepositorySession(ctx);
+            listCacheWriteStarted(ctx, ctx.getDocumentType());
             ((DocumentModelHandler) handler).setRepositorySession(repoSession);
             DocumentWrapper<Object> wrapDoc = new DocumentWrapperImpl<Object>(specifier);
             result = handler.handle(Action.SYNC, wrapDoc);
@@ -309,6 +310,7 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         try {
             handler.prepare(Action.SYNC);
             repoSession = getRepositorySession(ctx);
+            listCacheWriteStarted(ctx, ctx.getDocumentType());
             ((DocumentModelHandler) handler).setRepositorySession(repoSession);
             DocumentWrapper<AuthorityItemSpecifier> wrapDoc = new DocumentWrapperImpl<AuthorityItemSpecifier>(itemSpecifier);
             result = handler.handle(Action.SYNC, wrapDoc);
@@ -373,6 +375,10 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             DocumentWrapper<DocumentModel> wrapDoc = new DocumentWrapperImpl<DocumentModel>(docModel);
             handler.handle(Action.GET, wrapDoc);
             handler.complete(Action.GET, wrapDoc);
+            //
+            // Set after the handler is done, in case it read other documents with the same context
+            //
+            ctx.setProperty(DocumentVersion.CONTEXT_PROPERTY, getDocVersion(docModel));
         } catch (IllegalArgumentException iae) {
             throw iae;
         } catch (DocumentException de) {
@@ -389,6 +395,62 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         }
     }
 
+    /**
+     * Get the version of a document from the Nuxeo repository. Only the document's
+     * change token and workflow state are read, and no document handler is run.
+     *
+     * @param ctx service context under which this method is invoked
+     * @param csid of the document
+     * @throws DocumentNotFoundException if the document cannot be found in the
+     * repository
+     * @throws DocumentException
+     */
+    @Override
+    public DocumentVersion getDocVersion(ServiceContext ctx, String csid)
+            throws DocumentNotFoundException, DocumentException {
+        DocumentVersion result = null;
+
+        CoreSessionInterface repoSession = null;
+        try {
+            repoSession = getRepositorySession(ctx);
+            DocumentRef docRef = NuxeoUtils.createPathRef(ctx, csid);
+            DocumentModel docModel = null;
+            try {
+                docModel = repoSession.getDocument(docRef);
+                assertWorkflowState(ctx, docModel);
+            } catch (org.nuxeo.ecm.core.api.DocumentNotFoundException ce) {
+                String msg = logException(ce,
+                		String.format("Could not find %s resource/record with CSID=%s", ctx.getDocumentType(), csid));
+                throw new DocumentNotFoundException(msg, ce);
+            }
+            result = getDocVersion(docModel);
+        } catch (DocumentException de) {
+            throw de;
+        } catch (Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Caught exception ", e);
+            }
+            throw new NuxeoDocumentException(e);
+        } finally {
+            if (repoSession != null) {
+                releaseRepositorySession(ctx, repoSession);
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * The change token is the document's dc:modified time, which Nuxeo sets on every save.
+     * collectionspace_core:updatedAt is only set when a document handler saves the document.
+     */
+    private static DocumentVersion getDocVersion(DocumentModel docModel) throws ClientException {
+        Calendar modified = docModel.hasSchema(DUBLINCORE_SCHEMA)
+                ? (Calendar) docModel.getPropertyValue(DUBLINCORE_MODIFIED_PROPERTY) : null;
+        return new DocumentVersion(docModel.getChangeToken(), modified != null ? modified.getTime() : null,
+                docModel.getCurrentLifeCycleState());
+    }
+
     /**
      * get a document from the Nuxeo repository, using the docFilter params.
      *
@@ -946,28 +1008,13 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
      */
     private IterableQueryResult makeCMISQLQuery(CoreSessionInterface repoSession, String query, QueryContext queryContext) throws DocumentException {
         IterableQueryResult result = null;
-        /** Threshold over which temporary files are not kept in memory. */
-        final int THRESHOLD = 1024 * 1024;
         
         try {
             logger.debug(String.format("Performing a CMIS query on Nuxeo repository named %s",
             		repoSession.getRepositoryName()));
 
-            ThresholdOutputStreamFactory streamFactory = ThresholdOutputStreamFactory.newInstance(
-                    null, THRESHOLD, -1, false);
-            CallContextImpl callContext = new CallContextImpl(
-                    CallContext.BINDING_LOCAL,
-                    CmisVersion.CMIS_1_1,
-                    repoSession.getRepositoryName(),
-                    null, // ServletContext
-                    null, // HttpServletRequest
-                    null, // HttpServletResponse
-                    new NuxeoCmisServiceFactory(),
-                    streamFactory);
-            callContext.put(CallContext.USERNAME, repoSession.getPrincipal().getName());
-            
-            NuxeoCmisService cmisService = new NuxeoCmisService(repoSession.getCoreSession());
-            result = repoSession.queryAndFetch(query, "CMISQL", cmisService);
+            // The CMIS service is created once per repository session, and reused by its queries
+            result = repoSession.queryAndFetch(query, "CMISQL", repoSession.getCmisService());
         } catch (ClientException e) {
             // TODO Auto-generated catch block
             logger.error("Encounter trouble making the following CMIS query: " + query, e);
@@ -1000,8 +1047,30 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         QueryContext queryContext = new QueryContext(ctx, handler);
 
         CoreSessionInterface repoSession = null;
+        ListResultCache listCache = ListResultCache.get();
+        String listCacheKey = null;
+        long listCacheGeneration = 0;
         try {
             handler.prepare(Action.GET_ALL);
+            //
+            // NXQL lists and searches may be answered from the list cache, if it's enabled. Lists
+            // made within another operation's transaction aren't, so that they see its writes.
+            //
+            String query = null;
+            if (handler.isJDBCQuery() == false && handler.isCMISQuery() == false) {
+                query = NuxeoUtils.buildNXQLQuery(ctx, queryContext);
+                if (listCache.isEnabled() && ctx.getCurrentRepositorySession() == null) {
+                    listCacheGeneration = listCache.getGeneration(ctx.getTenantId(), queryContext.getDocType());
+                    listCacheKey = ListResultCache.createKey(ctx.getTenantId(), ctx.getRepositoryName(),
+                            handler.getClass().getName(), query, queryContext.getDocFilter().getPageSize(),
+                            queryContext.getDocFilter().getOffset(), ctx.getQueryParams());
+                    CommonList cachedList = listCache.get(listCacheKey);
+                    if (cachedList != null) {
+                        handler.setCommonPartList(cachedList);
+                        return;
+                    }
+                }
+            }
             repoSession = getRepositorySession(ctx); //Keeps a refcount here for the repository session so you need to release this when finished
 
             DocumentModelList docList = null;
@@ -1013,7 +1082,6 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
                 docList = getFilteredCMIS(repoSession, ctx, handler, queryContext); //FIXME: REM - Need to deal with paging info in CMIS query
             // NXQL query
             } else {
-                String query = NuxeoUtils.buildNXQLQuery(ctx, queryContext);
                 if (logger.isDebugEnabled()) {
                     logger.debug("Executing NXQL query: " + query.toString());
                 }
@@ -1037,6 +1105,10 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             DocumentWrapper<DocumentModelList> wrapDoc = new DocumentWrapperImpl<DocumentModelList>(docList);
             handler.handle(Action.GET_ALL, wrapDoc);
             handler.complete(Action.GET_ALL, wrapDoc);
+            if (listCacheKey != null) {
+                listCache.put(listCacheKey, ctx.getTenantId(), queryContext.getDocType(), handler.getCommonPartList(),
+                        docList.size(), listCacheGeneration);
+            }
         } catch (DocumentException de) {
             throw de;
         } catch (Exception e) {
@@ -1366,21 +1438,19 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
                 if (offset > 0) {
                     queryResult.skipTo(offset);
                 }
-                int nRows = 0;
+                List<String> nuxeoIds = new ArrayList<String>();
                 for (Map<String, Serializable> row : queryResult) {
                     if (logger.isTraceEnabled()) {
                         logger.trace(" Hierarchy Table ID is:" + row.get(IQueryManager.CMIS_TARGET_NUXEO_ID)
                                 + " nuxeo:pathSegment is: " + row.get(IQueryManager.CMIS_TARGET_NAME));
                     }
-                    String nuxeoId = (String) row.get(IQueryManager.CMIS_TARGET_NUXEO_ID);
-                    DocumentModel docModel = NuxeoUtils.getDocumentModel(repoSession, nuxeoId);
-                    result.add(docModel);
-                    nRows++;
-                    if (nRows >= pageSize && pageSize != 0) { // A page size of zero means that they want all of them
+                    nuxeoIds.add((String) row.get(IQueryManager.CMIS_TARGET_NUXEO_ID));
+                    if (nuxeoIds.size() >= pageSize && pageSize != 0) { // A page size of zero means that they want all of them
                         logger.debug("Got page full of items - quitting");
                         break;
                     }
                 }
+                addDocumentModels(repoSession, nuxeoIds, result);
             } finally {
                 queryResult.close();
             }
@@ -1411,6 +1481,35 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         return result;
     }
 
+    /**
+     * Fetches the documents for a page of query results in one call to the
+     * repository, rather than one call per document, and adds them to a
+     * list in the order of the results.
+     */
+    private void addDocumentModels(CoreSessionInterface repoSession, List<String> nuxeoIds,
+    		DocumentModelList docList) throws ClientException {
+        if (nuxeoIds.isEmpty()) {
+            return;
+        }
+        DocumentRef[] docRefs = new DocumentRef[nuxeoIds.size()];
+        for (int i = 0; i < docRefs.length; i++) {
+            docRefs[i] = new IdRef(nuxeoIds.get(i));
+        }
+        Map<String, DocumentModel> docModels = new HashMap<String, DocumentModel>();
+        for (DocumentModel docModel : repoSession.getDocuments(docRefs)) {
+            docModels.put(docModel.getId(), docModel);
+        }
+        for (String nuxeoId : nuxeoIds) {
+            DocumentModel docModel = docModels.get(nuxeoId);
+            if (docModel != null) {
+                docList.add(docModel);
+            } else {
+                logger.warn(String.format("The document with Nuxeo ID '%s' was found by a CMIS query but could not be read.",
+                        nuxeoId));
+            }
+        }
+    }
+
     private String logException(Exception e, String msg) {
         String result = null;
 
@@ -1462,6 +1561,15 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
                 		String.format("Could not find %s resource/record to update with CSID=%s", ctx.getDocumentType(), csid));
                 throw new DocumentNotFoundException(msg, ce);
             }
+            // Check the client's preconditions against the document as it is in this transaction
+            UpdatePreconditions preconditions = (UpdatePreconditions) ctx.getProperty(UpdatePreconditions.CONTEXT_PROPERTY);
+            if (preconditions != null && preconditions.appliesTo(csid)
+                    && preconditions.isMetBy(getDocVersion(doc)) == false) {
+                throw new PreconditionFailedException(
+                        String.format("The %s resource/record with CSID=%s has changed since it was read", ctx.getDocumentType(), csid));
+            }
+            // A workflow transition is an update in a workflow context, so use the type of the document itself
+            listCacheWriteStarted(ctx, doc.getType());
             // Check for a versioned document, and check In and Out before we proceed.
             if (((DocumentModelHandler) handler).supportsVersioning()) {
                 /* Once we advance to 5.5 or later, we can add this. 
@@ -1526,6 +1634,7 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             throws ClientException, DocumentException {
 
         try {
+            listCacheWriteStarted(ctx, docModel.getType());
             repoSession.saveDocument(docModel);
             if (fSaveSession) {
                 repoSession.save();
@@ -1558,6 +1667,9 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             boolean fSaveSession)
             throws ClientException, DocumentException {
         try {
+            for (DocumentModel docModel : docList) {
+                listCacheWriteStarted(ctx, docModel.getType());
+            }
             DocumentModel[] docModelArray = new DocumentModel[docList.size()];
             repoSession.saveDocuments(docList.toArray(docModelArray));
             if (fSaveSession) {
@@ -1622,6 +1734,7 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             try {
                 DocumentRef docRef = NuxeoUtils.createPathRef(ctx, id);
                 wrapDoc = new DocumentWrapperImpl<DocumentModel>(repoSession.getDocument(docRef));
+                listCacheWriteStarted(ctx, wrapDoc.getWrappedObject().getType());
                 ((DocumentModelHandler) handler).setRepositorySession(repoSession);
                 if (handler.handle(Action.DELETE, wrapDoc)) {
                 	repoSession.removeDocument(docRef);
@@ -1942,10 +2055,10 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
             if (ctx != null) {
                 ctx.clearCurrentRepositorySession(); //clear the current context of the now closed repo session
                 if (ctx.getCurrentRepositorySession() == null) {
-                    client.releaseRepository(repoSession); //release the repo session if the service context's ref count is zeo.
+                    releaseRepository(client, repoSession); //release the repo session if the service context's ref count is zeo.
                 }
             } else {
-                client.releaseRepository(repoSession); //repo session was acquired without a service context
+                releaseRepository(client, repoSession); //repo session was acquired without a service context
             }
         } catch (TransactionRuntimeException tre) {
         	String causeMsg = null;
@@ -1969,6 +2082,30 @@ public class RepositoryClientImpl implements RepositoryClient<PoxPayloadIn, PoxP
         }
     }
 
+    /*
+     * Releases a repository session, which commits (or rolls back) its transaction, and then
+     * drops the cached lists of the document types the transaction wrote.
+     */
+    private void releaseRepository(NuxeoClientEmbedded client, CoreSessionInterface repoSession) throws Exception {
+        try {
+            client.releaseRepository(repoSession);
+        } finally {
+            ListResultCache.get().writesEnded();
+        }
+    }
+
+    /*
+     * Records that the current transaction writes documents of the given type, so that its
+     * cached lists are dropped when the transaction ends. Lists are cached by the document
+     * type of their query, which isn't tenant qualified.
+     */
+    private void listCacheWriteStarted(ServiceContext ctx, String docType) {
+        ListResultCache listCache = ListResultCache.get();
+        if (listCache.isEnabled() && docType != null) {
+            listCache.writeStarted(ctx.getTenantId(), ServiceBindingUtils.getUnqualifiedTenantDocType(docType));
+        }
+    }
+
     @Override
     public void doWorkflowTransition(ServiceContext ctx, String id,
             DocumentHandler handler, TransitionDef transitionDef)
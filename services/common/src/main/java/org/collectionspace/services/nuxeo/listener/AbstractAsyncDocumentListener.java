@@ -0,0 +1,211 @@
+package org.collectionspace.services.nuxeo.listener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.client.java.CoreSessionWrapper;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.EventContext;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A base class for listeners whose work can be done after, and outside of, the
+ * transaction that raised their events. Subclasses are registered with
+ * async="true" postCommit="true", so that Nuxeo runs them on its bounded queue
+ * of asynchronous event workers once the transaction has been committed; their
+ * cost isn't added to the user's save, and their failures can't roll it back.
+ *
+ * On top of that, this class:
+ * - coalesces the events of a transaction by document, so that a document that
+ *   was the source of several events is processed once, for the last of them;
+ * - processes each document in its own transaction, so that one failure doesn't
+ *   undo the work done for the others;
+ * - retries a document that fails, with exponential backoff; and
+ * - records the documents that still fail in the dead letter table (see
+ *   ListenerDeadLetters).
+ *
+ * The backoff is slept on the asynchronous worker, which other listeners'
+ * events wait for: a document that fails every attempt holds it for 750 ms
+ * (250 + 500) on top of the attempts themselves. So that a transaction with
+ * many failing documents can't hold a worker for long, the backoff is bounded
+ * by MAX_BACKOFF_MILLIS_PER_BUNDLE for all the events of a transaction; once
+ * that is spent, failing documents are recorded as dead letters without
+ * further retries.
+ */
+public abstract class AbstractAsyncDocumentListener implements PostCommitEventListener {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The number of times a document is processed before it is given up on */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /** The delay before the first retry, doubled before each further retry */
+    public static final long INITIAL_BACKOFF_MILLIS = 250;
+
+    /** The total delay before retries for the events of a transaction */
+    public static final long MAX_BACKOFF_MILLIS_PER_BUNDLE = 2000;
+
+    /**
+     * @param event an event of a committed transaction
+     * @return true if this listener processes the event
+     */
+    protected abstract boolean accepts(Event event);
+
+    /**
+     * Processes an event. The work is committed when this returns, or rolled
+     * back (and retried) if this throws.
+     *
+     * @param event an event accepted by this listener
+     * @param session a repository session
+     * @throws Exception
+     */
+    protected abstract void handleDocumentEvent(Event event, CoreSessionInterface session) throws Exception;
+
+    @Override
+    public void handleEvent(EventBundle events) throws ClientException {
+        long backoffBudget = getMaxBackoffMillisPerBundle();
+        for (Event event : coalesce(events)) {
+            backoffBudget -= process(event, backoffBudget);
+        }
+    }
+
+    /**
+     * Gets the events a listener processes from the events of a transaction,
+     * keeping only the last of those with the same coalescing key.
+     *
+     * @param events the events of a transaction
+     * @return the events to process, in order of the first event for each key
+     */
+    protected List<Event> coalesce(Iterable<Event> events) {
+        Map<Object, Event> coalesced = new LinkedHashMap<Object, Event>();
+        for (Event event : events) {
+            if (accepts(event) == false) {
+                continue;
+            }
+            Object key = getCoalescingKey(event);
+            coalesced.put(key != null ? key : new Object(), event);
+        }
+        return new ArrayList<Event>(coalesced.values());
+    }
+
+    /**
+     * Gets the key by which events are coalesced. By default, the events of
+     * the same source document are coalesced.
+     *
+     * @param event an event accepted by this listener
+     * @return the key, or null if the event is not to be coalesced with others
+     */
+    protected Object getCoalescingKey(Event event) {
+        EventContext eventContext = event.getContext();
+        if (eventContext instanceof DocumentEventContext) {
+            DocumentModel docModel = ((DocumentEventContext) eventContext).getSourceDocument();
+            if (docModel != null && docModel.getId() != null) {
+                return eventContext.getRepositoryName() + ":" + docModel.getId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Processes an event, in its own transaction, retrying it if it fails, and
+     * recording it as a dead letter if it still fails after MAX_ATTEMPTS, or
+     * if the backoff before the next attempt would be more than allowed.
+     *
+     * @param event an event accepted by this listener
+     * @param maxBackoffMillis the most time that may be spent backing off
+     * @return the time spent backing off
+     */
+    protected long process(Event event, long maxBackoffMillis) {
+        long totalBackoff = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handleDocumentEvent(event, getSession(event));
+                commitAndStartTransaction();
+                return totalBackoff;
+            } catch (Exception e) {
+                rollbackAndStartTransaction();
+                long backoff = getBackoffMillis(attempt);
+                if (attempt >= MAX_ATTEMPTS || totalBackoff + backoff > maxBackoffMillis) {
+                    logger.error(String.format("%s could not process a(n) '%s' event after %d attempts.",
+                            getClass().getName(), event.getName(), attempt), e);
+                    deadLetter(event, attempt, e);
+                    return totalBackoff;
+                }
+                logger.warn(String.format("%s could not process a(n) '%s' event (attempt %d of %d); retrying in %d ms: %s",
+                        getClass().getName(), event.getName(), attempt, MAX_ATTEMPTS, backoff, e.getMessage()));
+                totalBackoff += backoff;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param attempt the number of the attempt that failed, from 1
+     * @return the delay before the next attempt
+     */
+    protected long getBackoffMillis(int attempt) {
+        return INITIAL_BACKOFF_MILLIS << (attempt - 1);
+    }
+
+    /**
+     * @return the total delay before retries for the events of a transaction
+     */
+    protected long getMaxBackoffMillisPerBundle() {
+        return MAX_BACKOFF_MILLIS_PER_BUNDLE;
+    }
+
+    /**
+     * @param event an event accepted by this listener
+     * @return the repository session of the event
+     */
+    protected CoreSessionInterface getSession(Event event) {
+        // All Nuxeo sessions that get passed around to CollectionSpace code need to be
+        // wrapped inside of a CoreSessionWrapper
+        return new CoreSessionWrapper(event.getContext().getCoreSession());
+    }
+
+    /**
+     * Records an event that could not be processed.
+     *
+     * @param event the event
+     * @param attempts the number of attempts made
+     * @param error the error of the last attempt
+     */
+    protected void deadLetter(Event event, int attempts, Throwable error) {
+        ListenerDeadLetters.record(getClass().getName(), event, attempts, error);
+    }
+
+    /**
+     * Commits the work done so far and starts a new transaction. Subclasses
+     * that process many documents per event can use this to bound the size of
+     * their transactions.
+     */
+    protected static void commitAndStartTransaction() {
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    private static void rollbackAndStartTransaction() {
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            TransactionHelper.setTransactionRollbackOnly();
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+}
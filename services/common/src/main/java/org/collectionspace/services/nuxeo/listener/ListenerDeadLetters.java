@@ -0,0 +1,156 @@
+package org.collectionspace.services.nuxeo.listener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.collectionspace.services.common.storage.JDBCTools;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventContext;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dead letter table of the asynchronous listeners: the events that a
+ * listener could not process, after retrying them, so that they can be looked
+ * into (and their documents fixed up) later. The table is kept in the
+ * CollectionSpace database, and created by the db/postgresql/listener_dead_letters.sql
+ * script (see the create_cspace_db build target).
+ */
+public class ListenerDeadLetters {
+    private static final Logger logger = LoggerFactory.getLogger(ListenerDeadLetters.class);
+
+    public static final String TABLE_NAME = "listener_dead_letters";
+
+    // The size of the error column
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME
+            + " (id, listener, event_name, repository_name, doc_id, doc_name, attempts, error, failed_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_LAST_ERROR_SQL = "SELECT error FROM " + TABLE_NAME
+            + " WHERE listener = ? AND doc_name = ? ORDER BY failed_at DESC";
+
+    private ListenerDeadLetters() {
+        //empty
+    }
+
+    /**
+     * Records an event that a listener could not process. This never throws:
+     * if the dead letter can't be recorded, it is logged instead.
+     *
+     * @param listener the name of the listener
+     * @param event the event
+     * @param attempts the number of attempts made
+     * @param error the error of the last attempt
+     */
+    public static void record(String listener, Event event, int attempts, Throwable error) {
+        String repositoryName = null;
+        String docId = null;
+        String docName = null;
+        EventContext eventContext = event.getContext();
+        if (eventContext != null) {
+            repositoryName = eventContext.getRepositoryName();
+            if (eventContext instanceof DocumentEventContext) {
+                DocumentModel docModel = ((DocumentEventContext) eventContext).getSourceDocument();
+                if (docModel != null) {
+                    docId = docModel.getId();
+                    docName = docModel.getName();
+                }
+            }
+        }
+        String errorMessage = String.valueOf(error);
+        if (errorMessage.length() > MAX_ERROR_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        Connection conn = null;
+        try {
+            DataSource dataSource = JDBCTools.getDataSource(JDBCTools.CSPACE_DATASOURCE_NAME);
+            conn = dataSource.getConnection();
+            PreparedStatement ps = conn.prepareStatement(INSERT_SQL);
+            try {
+                ps.setString(1, UUID.randomUUID().toString());
+                ps.setString(2, listener);
+                ps.setString(3, event.getName());
+                ps.setString(4, repositoryName);
+                ps.setString(5, docId);
+                ps.setString(6, docName);
+                ps.setInt(7, attempts);
+                ps.setString(8, errorMessage);
+                ps.setTimestamp(9, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch (Exception e) {
+            logger.error(String.format("Could not record a dead letter for listener %s: event '%s' of document %s (CSID %s) in repository %s failed after %d attempts: %s",
+                    listener, event.getName(), docId, docName, repositoryName, attempts, errorMessage), e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.debug("SQL Exception closing connection in ListenerDeadLetters.record: " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the error of the last event of a document that a listener could not process.
+     *
+     * @param listener the name of the listener
+     * @param docName the name (CSID) of the document
+     * @return the error, or null if the listener has no dead letter for the document
+     * @throws SQLException
+     */
+    public static String getLastError(String listener, String docName) throws SQLException {
+        String result = null;
+
+        Connection conn = null;
+        try {
+            DataSource dataSource = JDBCTools.getDataSource(JDBCTools.CSPACE_DATASOURCE_NAME);
+            conn = dataSource.getConnection();
+            PreparedStatement ps = conn.prepareStatement(SELECT_LAST_ERROR_SQL);
+            try {
+                ps.setString(1, listener);
+                ps.setString(2, docName);
+                ps.setMaxRows(1);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    result = rs.getString(1);
+                    if (result == null) {
+                        result = "";
+                    }
+                }
+                rs.close();
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Could not read the dead letters of listener " + listener, e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.debug("SQL Exception closing connection in ListenerDeadLetters.getLastError: " + e.getLocalizedMessage());
+                }
+            }
+        }
+
+        return result;
+    }
+}
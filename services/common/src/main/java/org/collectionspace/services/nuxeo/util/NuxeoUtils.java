@@ -841,6 +841,18 @@ public class NuxeoUtils {
     public static String getCsid(DocumentModel docModel) {
     	return docModel.getName();
     }
+
+    /**
+     * Returns the tenant ID of a CollectionSpace document, or null if the document
+     * isn't one (e.g. a Nuxeo document without the collectionspace_core schema).
+     */
+    public static String getTenantId(DocumentModel docModel) {
+        if (docModel.hasSchema(CollectionSpaceClient.COLLECTIONSPACE_CORE_SCHEMA) == false) {
+            return null;
+        }
+        return (String) docModel.getProperty(CollectionSpaceClient.COLLECTIONSPACE_CORE_SCHEMA,
+                CollectionSpaceClient.COLLECTIONSPACE_CORE_TENANTID);
+    }
     
     /**
      * extractId extracts id from given path string
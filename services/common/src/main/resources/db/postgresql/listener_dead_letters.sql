@@ -0,0 +1,40 @@
+/*
+ * This document is a part of the source code and related artifacts
+ * for CollectionSpace, an open source collections management system
+ * for museums and related institutions:
+ *
+ * http://www.collectionspace.org
+ * http://wiki.collectionspace.org
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0.
+ * You may not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ */
+
+/*
+ * listener_dead_letters.sql
+ *
+ * Creates the "listener_dead_letters" table in the cspace database: the events
+ * that an asynchronous listener could not process, after retrying them
+ * (see org.collectionspace.services.nuxeo.listener.ListenerDeadLetters).
+ */
+
+-- Temporarily suppress messages of NOTICE level and below
+SET SESSION client_min_messages=WARNING;
+
+-- 'CREATE TABLE ... IF NOT EXISTS' requires PostgreSQL 9.1 or later.
+CREATE TABLE IF NOT EXISTS listener_dead_letters
+(
+  id character varying(36) NOT NULL,
+  listener character varying(255) NOT NULL,
+  event_name character varying(255),
+  repository_name character varying(255),
+  doc_id character varying(255),
+  doc_name character varying(255),
+  attempts integer NOT NULL,
+  error character varying(4000),
+  failed_at timestamp without time zone NOT NULL,
+  CONSTRAINT listener_dead_letters_pkey PRIMARY KEY (id)
+);
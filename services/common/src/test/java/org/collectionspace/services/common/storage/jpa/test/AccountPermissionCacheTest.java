@@ -0,0 +1,128 @@
+/**
+ * This document is a part of the source code and related artifacts for
+ * CollectionSpace, an open source collections management system for museums and
+ * related institutions:
+ *
+ * http://www.collectionspace.org http://wiki.collectionspace.org
+ *
+ * Copyright (c) 2012 Regents of the University of California
+ *
+ * Licensed under the Educational Community License (ECL), Version 2.0. You may
+ * not use this file except in compliance with this License.
+ *
+ * You may obtain a copy of the ECL 2.0 License at
+ * https://source.collectionspace.org/collection-space/LICENSE.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.collectionspace.services.common.storage.jpa.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.collectionspace.services.authorization.AccountPermission;
+import org.collectionspace.services.authorization.AccountRoleRel;
+import org.collectionspace.services.authorization.AccountValue;
+import org.collectionspace.services.authorization.PermissionRoleRel;
+import org.collectionspace.services.authorization.PermissionValue;
+import org.collectionspace.services.common.storage.jpa.AccountPermissionCache;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AccountPermissionCacheTest {
+
+    private AccountPermissionCache cache = AccountPermissionCache.get();
+
+    @BeforeMethod
+    public void clearCache() {
+        cache.invalidateAll();
+    }
+
+    private AccountPermissionCache.Snapshot createSnapshot(String userId, String accountId, String... tenantIds) {
+        AccountValue av = new AccountValue();
+        av.setUserId(userId);
+        av.setAccountId(accountId);
+        av.setScreenName(userId);
+
+        List<PermissionValue> perms = new ArrayList<PermissionValue>();
+        perms.add(createPermissionValue("collectionobjects", "CRUDL"));
+        perms.add(createPermissionValue("/collectionobjects/*/workflow/delete", "RL"));
+        perms.add(createPermissionValue("intakes", "RL"));
+
+        return new AccountPermissionCache.Snapshot(av, new HashSet<String>(Arrays.asList(tenantIds)), perms);
+    }
+
+    private PermissionValue createPermissionValue(String resourceName, String actionGroup) {
+        PermissionValue pv = new PermissionValue();
+        pv.setResourceName(resourceName);
+        pv.setActionGroup(actionGroup);
+        return pv;
+    }
+
+    @Test
+    public void lookupByUserAndAccount() {
+        cache.put("1", createSnapshot("admin@core", "acct-1", "1"), cache.getGeneration());
+        Assert.assertNotNull(cache.getByUserId("1", "admin@core"));
+        Assert.assertNotNull(cache.getByAccountId("1", "acct-1"));
+        Assert.assertNull(cache.getByUserId("2", "admin@core"));
+    }
+
+    @Test
+    public void filterByResource() {
+        AccountPermissionCache.Snapshot snapshot = createSnapshot("admin@core", "acct-1", "1");
+        AccountPermission all = snapshot.toAccountPermission("1", null, null);
+        Assert.assertEquals(all.getPermission().size(), 3);
+        Assert.assertEquals(all.getAccount().get(0).getTenantId(), "1");
+
+        AccountPermission filtered = snapshot.toAccountPermission("1", "collectionobjects",
+                "/collectionobjects/*/workflow/delete");
+        Assert.assertEquals(filtered.getPermission().size(), 2);
+
+        AccountPermission none = snapshot.toAccountPermission("1", "loansin", "/loansin/*/workflow/delete");
+        Assert.assertTrue(none.getPermission().isEmpty());
+    }
+
+    @Test
+    public void staleSnapshotIsNotCached() {
+        long generation = cache.getGeneration();
+        cache.invalidate("1");
+        cache.put("1", createSnapshot("admin@core", "acct-1", "1"), generation);
+        Assert.assertNull(cache.getByUserId("1", "admin@core"));
+    }
+
+    @Test
+    public void invalidateTenant() {
+        cache.put("1", createSnapshot("admin@core", "acct-1", "1"), cache.getGeneration());
+        cache.put("2", createSnapshot("admin@lifesci", "acct-2", "2"), cache.getGeneration());
+        cache.put("2", createSnapshot("shared@core", "acct-3", "1", "2"), cache.getGeneration());
+
+        cache.invalidate("1", PermissionRoleRel.class);
+        Assert.assertNull(cache.getByUserId("1", "admin@core"));
+        Assert.assertNull(cache.getByUserId("2", "shared@core"), "Snapshots holding roles from the tenant should be dropped.");
+        Assert.assertNotNull(cache.getByUserId("2", "admin@lifesci"));
+    }
+
+    @Test
+    public void invalidateAccountRoles() {
+        cache.put("1", createSnapshot("admin@core", "acct-1", "1"), cache.getGeneration());
+        cache.put("2", createSnapshot("admin@lifesci", "acct-2", "2"), cache.getGeneration());
+
+        cache.invalidate("1", AccountRoleRel.class);
+        Assert.assertNull(cache.getByUserId("1", "admin@core"));
+        Assert.assertNull(cache.getByUserId("2", "admin@lifesci"));
+    }
+
+    @Test
+    public void unrelatedEntityLeavesCache() {
+        cache.put("1", createSnapshot("admin@core", "acct-1", "1"), cache.getGeneration());
+        cache.invalidate("1", String.class);
+        Assert.assertNotNull(cache.getByUserId("1", "admin@core"));
+    }
+}
@@ -0,0 +1,134 @@
+package org.collectionspace.services.common.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.collectionspace.services.common.BulkPayload;
+import org.collectionspace.services.common.document.BadRequestException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class BulkPayloadTest {
+
+    private static final String REQUEST =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<bulk>\n"
+            + "  <create><document name=\"collectionobjects\"><ns2:collectionobjects_common xmlns:ns2=\"http://collectionspace.org/services/collectionobject\">"
+            + "<objectNumber>1</objectNumber></ns2:collectionobjects_common></document></create>\n"
+            + "  <!-- a comment -->\n"
+            + "  <update csid=\"1234\"><document name=\"collectionobjects\"/></update>\n"
+            + "  <delete csid=\"5678\"/>\n"
+            + "</bulk>";
+
+    @Test
+    public void testParse() throws Exception {
+        List<BulkPayload.Operation> operations = BulkPayload.parse(REQUEST);
+
+        assertEquals(operations.size(), 3);
+
+        assertEquals(operations.get(0).getAction(), BulkPayload.CREATE);
+        assertNull(operations.get(0).getCsid());
+        assertTrue(operations.get(0).getPayload().contains("<document name=\"collectionobjects\">"));
+        assertTrue(operations.get(0).getPayload().contains("<objectNumber>1</objectNumber>"));
+        assertTrue(operations.get(0).getPayload().contains("xmlns:ns2=\"http://collectionspace.org/services/collectionobject\""));
+
+        assertEquals(operations.get(1).getAction(), BulkPayload.UPDATE);
+        assertEquals(operations.get(1).getCsid(), "1234");
+        assertNotNull(operations.get(1).getPayload());
+
+        assertEquals(operations.get(2).getAction(), BulkPayload.DELETE);
+        assertEquals(operations.get(2).getCsid(), "5678");
+        assertNull(operations.get(2).getPayload());
+    }
+
+    @Test
+    public void testParseDeleteByPayload() throws Exception {
+        List<BulkPayload.Operation> operations = BulkPayload.parse(
+                "<bulk><delete><document name=\"relations\"><ns2:relations_common xmlns:ns2=\"http://collectionspace.org/services/relation\">"
+                + "<subjectCsid>1234</subjectCsid><predicate>affects</predicate><objectCsid>5678</objectCsid>"
+                + "</ns2:relations_common></document></delete></bulk>");
+
+        assertEquals(operations.size(), 1);
+        assertEquals(operations.get(0).getAction(), BulkPayload.DELETE);
+        assertNull(operations.get(0).getCsid());
+        assertTrue(operations.get(0).getPayload().contains("<subjectCsid>1234</subjectCsid>"));
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testUnknownAction() throws Exception {
+        BulkPayload.parse("<bulk><replace csid=\"1234\"/></bulk>");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testMissingPayload() throws Exception {
+        BulkPayload.parse("<bulk><create/></bulk>");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testMalformedRequest() throws Exception {
+        BulkPayload.parse("<bulk><create>");
+    }
+
+    @Test
+    public void testParseStream() throws Exception {
+        List<BulkPayload.Operation> operations = BulkPayload.parse(new ByteArrayInputStream(REQUEST.getBytes("UTF-8")));
+
+        assertEquals(operations.size(), 3);
+        assertEquals(operations.get(2).getCsid(), "5678");
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        BulkPayload.configure(1, 2);
+        try {
+            assertEquals(getErrorCode(REQUEST), 413);
+            assertEquals(BulkPayload.parse("<bulk><delete csid=\"1\"/><delete csid=\"2\"/></bulk>").size(), 2);
+
+            StringBuilder largeRequest = new StringBuilder("<bulk>");
+            while (largeRequest.length() <= 1024 * 1024) {
+                largeRequest.append("<!-- padding -->");
+            }
+            largeRequest.append("<delete csid=\"1\"/></bulk>");
+
+            assertEquals(getErrorCode(largeRequest.toString()), 413);
+        } finally {
+            BulkPayload.configure(BulkPayload.DEFAULT_MAX_PAYLOAD_MB, BulkPayload.DEFAULT_MAX_OPERATIONS);
+        }
+    }
+
+    private static int getErrorCode(String request) throws Exception {
+        try {
+            BulkPayload.parse(new ByteArrayInputStream(request.getBytes("UTF-8")));
+        } catch (BadRequestException e) {
+            return e.getErrorCode();
+        }
+        fail("Parsed a request over the limits");
+        return 0;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        List<BulkPayload.Result> results = new ArrayList<BulkPayload.Result>();
+
+        BulkPayload.Result created = new BulkPayload.Result(BulkPayload.CREATE, null);
+        created.setCsid("1234");
+        created.setStatus(201);
+        results.add(created);
+
+        BulkPayload.Result failed = new BulkPayload.Result(BulkPayload.UPDATE, "5678");
+        failed.setError(400, "Validation failure <objectNumber>");
+        results.add(failed);
+
+        String xml = new String(BulkPayload.write(results), "UTF-8");
+
+        assertTrue(created.isSuccess());
+        assertFalse(failed.isSuccess());
+        assertTrue(xml.contains("<bulk-results>"));
+        assertTrue(xml.contains("<result index=\"0\" action=\"create\" status=\"201\" csid=\"1234\"></result>")
+                || xml.contains("<result index=\"0\" action=\"create\" status=\"201\" csid=\"1234\"/>"));
+        assertTrue(xml.contains("<result index=\"1\" action=\"update\" status=\"400\" csid=\"5678\">"
+                + "<error>Validation failure &lt;objectNumber&gt;</error></result>"));
+    }
+}
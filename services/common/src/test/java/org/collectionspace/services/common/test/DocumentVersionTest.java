@@ -0,0 +1,58 @@
+package org.collectionspace.services.common.test;
+
+import java.util.Date;
+
+import org.collectionspace.services.common.document.DocumentVersion;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class DocumentVersionTest {
+    private static final Date MODIFIED = new Date(1500000000123L);
+    private static final String CHANGE_TOKEN = Long.toString(MODIFIED.getTime());
+    private static final String USER = "admin@core.collectionspace.org";
+
+    @Test
+    public void testEntityTagIsStable() {
+        DocumentVersion version = new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project");
+        DocumentVersion same = new DocumentVersion(CHANGE_TOKEN, new Date(MODIFIED.getTime()), "project");
+
+        assertEquals(version.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML),
+                same.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML));
+        assertTrue(version.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML).matches("[0-9]+-project-[0-9a-f]+-xml"));
+    }
+
+    @Test
+    public void testEntityTagChangesWithVersion() {
+        String tag = new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project").getEntityTag(USER, DocumentVersion.REPRESENTATION_XML);
+
+        assertNotEquals(new DocumentVersion("1500000000124", MODIFIED, "project").getEntityTag(USER, DocumentVersion.REPRESENTATION_XML), tag);
+        assertNotEquals(new DocumentVersion(CHANGE_TOKEN, MODIFIED, "deleted").getEntityTag(USER, DocumentVersion.REPRESENTATION_XML), tag);
+        assertNotEquals(new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project").getEntityTag("reader@core.collectionspace.org", DocumentVersion.REPRESENTATION_XML), tag);
+        assertNotEquals(new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project").getEntityTag(USER, DocumentVersion.REPRESENTATION_JSON), tag);
+    }
+
+    @Test
+    public void testHasEntityTag() {
+        DocumentVersion version = new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project");
+
+        assertTrue(version.hasEntityTag(version.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML), USER));
+        assertTrue(version.hasEntityTag(version.getEntityTag(USER, DocumentVersion.REPRESENTATION_JSON), USER));
+        assertFalse(version.hasEntityTag(version.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML), "reader@core.collectionspace.org"));
+        assertFalse(new DocumentVersion(null, null, "project").hasEntityTag("null-project", null));
+    }
+
+    @Test
+    public void testLastModifiedHasNoMilliseconds() {
+        DocumentVersion version = new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project");
+
+        assertEquals(version.getLastModified(), new Date(1500000000000L));
+        assertEquals(version.getChangeToken(), CHANGE_TOKEN);
+    }
+
+    @Test
+    public void testUnknownVersion() {
+        assertFalse(new DocumentVersion(null, null, "project").isKnown());
+        assertTrue(new DocumentVersion(CHANGE_TOKEN, MODIFIED, "project").isKnown());
+    }
+}
@@ -0,0 +1,59 @@
+package org.collectionspace.services.common.test;
+
+import java.io.IOException;
+
+import org.collectionspace.services.common.config.HandlerFactory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class HandlerFactoryTest {
+
+    public static class TestHandler implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    public static class FailingHandler implements Runnable {
+        public FailingHandler() throws IOException {
+            throw new IOException("failed");
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private ClassLoader getClassLoader() {
+        return HandlerFactoryTest.class.getClassLoader();
+    }
+
+    @Test
+    public void testNewInstance() throws Exception {
+        HandlerFactory<Runnable> factory = HandlerFactory.create(TestHandler.class.getName(), Runnable.class, getClassLoader());
+
+        assertEquals(factory.getHandlerClass(), TestHandler.class);
+
+        Runnable handler1 = factory.newInstance();
+        Runnable handler2 = factory.newInstance();
+
+        assertTrue(handler1 instanceof TestHandler);
+        assertNotSame(handler1, handler2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongType() throws Exception {
+        HandlerFactory.create(String.class.getName(), Runnable.class, getClassLoader());
+    }
+
+    @Test(expectedExceptions = ClassNotFoundException.class)
+    public void testMissingClass() throws Exception {
+        HandlerFactory.create("org.collectionspace.services.NoSuchHandler", Runnable.class, getClassLoader());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testConstructorException() throws Exception {
+        HandlerFactory.create(FailingHandler.class.getName(), Runnable.class, getClassLoader()).newInstance();
+    }
+}
@@ -0,0 +1,267 @@
+package org.collectionspace.services.common.test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.collectionspace.services.jaxb.AbstractCommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonListWriter;
+import org.collectionspace.services.nuxeo.client.java.ListResultCache;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ListResultCacheTest {
+    private static final String TENANT = "1";
+    private static final String OTHER_TENANT = "2";
+    private static final String DOCTYPE = "CollectionObject";
+    private static final String OTHER_DOCTYPE = "Media";
+
+    private final ListResultCache cache = ListResultCache.get();
+
+    @BeforeMethod
+    public void setUp() {
+        cache.configure(60, 3);
+        cache.invalidateAll();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        cache.writesEnded();
+        cache.configure(0, ListResultCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    private static String key(String tenantId, String docType, MultivaluedMap<String, String> queryParams) {
+        return ListResultCache.createKey(tenantId, "default", "Handler", "SELECT * FROM " + docType, 40, 0, queryParams);
+    }
+
+    private void put(String tenantId, String docType, Object list) {
+        cache.put(key(tenantId, docType, null), tenantId, docType, list, 1, cache.getGeneration(tenantId, docType));
+    }
+
+    private static CommonList newList() throws Exception {
+        CommonList list = new CommonList();
+        list.setPageNum(0);
+        list.setPageSize(40);
+        list.setItemsInPage(2);
+        list.setTotalItems(2);
+        list.setFieldsReturned(new String[] {"csid", "objectName"});
+
+        HashMap<String, Object> item = new HashMap<String, Object>();
+        item.put("csid", "1");
+        item.put("objectName", new ArrayList<String>(Arrays.asList("chair", "seat")));
+        list.addItem(item);
+        item.clear();
+        item.put("csid", "2");
+        list.addItem(item);
+        return list;
+    }
+
+    private static String write(CommonList list) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommonListWriter.write(list, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        CommonList list = newList();
+        String xml = write(list);
+        put(TENANT, DOCTYPE, list);
+
+        CommonList cached = cache.get(key(TENANT, DOCTYPE, null));
+
+        assertNotNull(cached);
+        assertNotSame(cached, list);
+        assertEquals(write(cached), xml);
+        assertNull(cache.get(key(OTHER_TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testEachGetReturnsItsOwnCopy() throws Exception {
+        CommonList list = newList();
+        String xml = write(list);
+        put(TENANT, DOCTYPE, list);
+
+        // Changing the list that was cached, or a copy of it, doesn't change the cached list
+        list.getListItem().clear();
+        CommonList cached = cache.get(key(TENANT, DOCTYPE, null));
+        List<AbstractCommonList.ListItem> listItems = cached.getListItem();
+        assertEquals(listItems.size(), 2);
+        listItems.get(0).getAny().clear();
+
+        CommonList other = cache.get(key(TENANT, DOCTYPE, null));
+
+        assertNotSame(other, cached);
+        assertEquals(write(other), xml);
+        assertEquals(other.getListItem().get(0).getAny().size(), 3);
+    }
+
+    @Test
+    public void testConvertedListIsCopied() throws Exception {
+        CommonList list = newList();
+        String xml = write(list);
+        list.getListItem();
+        put(TENANT, DOCTYPE, list);
+
+        assertEquals(write(cache.get(key(TENANT, DOCTYPE, null))), xml);
+    }
+
+    @Test
+    public void testOnlyCommonListsAreCached() {
+        put(TENANT, DOCTYPE, new Object());
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testConcurrentWriteAndGetListItem() throws Exception {
+        final String xml = write(newList());
+        put(TENANT, DOCTYPE, newList());
+        final String key = key(TENANT, DOCTYPE, null);
+
+        // Half of the requests write their list while the others convert theirs
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 400; i++) {
+                final boolean convert = i % 2 == 0;
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        CommonList list = cache.get(key);
+                        if (convert) {
+                            assertEquals(list.getListItem().size(), 2);
+                        }
+                        return write(list);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(result.get(), xml);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testKeyIgnoresParameterOrder() {
+        MultivaluedMap<String, String> params = new MultivaluedMapImpl<String, String>();
+        params.add("kw", "vase");
+        params.add("wf_deleted", "false");
+        MultivaluedMap<String, String> reordered = new MultivaluedMapImpl<String, String>();
+        reordered.add("wf_deleted", "false");
+        reordered.add("kw", "vase");
+        MultivaluedMap<String, String> different = new MultivaluedMapImpl<String, String>();
+        different.add("kw", "bowl");
+
+        assertEquals(key(TENANT, DOCTYPE, params), key(TENANT, DOCTYPE, reordered));
+        assertNotEquals(key(TENANT, DOCTYPE, params), key(TENANT, DOCTYPE, different));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        cache.configure(0, 3);
+        put(TENANT, DOCTYPE, newList());
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testWriteInvalidatesDocType() throws Exception {
+        put(TENANT, DOCTYPE, newList());
+        put(TENANT, OTHER_DOCTYPE, newList());
+        put(OTHER_TENANT, DOCTYPE, newList());
+
+        cache.writeStarted(TENANT, DOCTYPE);
+        cache.writesEnded();
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+        assertNotNull(cache.get(key(TENANT, OTHER_DOCTYPE, null)));
+        assertNotNull(cache.get(key(OTHER_TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testListBuiltDuringWriteIsNotCached() throws Exception {
+        long generation = cache.getGeneration(TENANT, DOCTYPE);
+        cache.writeStarted(TENANT, DOCTYPE);
+        cache.put(key(TENANT, DOCTYPE, null), TENANT, DOCTYPE, newList(), 1, generation);
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testRelationWriteInvalidatesTenant() throws Exception {
+        put(TENANT, DOCTYPE, newList());
+        put(TENANT, OTHER_DOCTYPE, newList());
+        put(OTHER_TENANT, DOCTYPE, newList());
+
+        cache.writeStarted(TENANT, "Relation");
+        cache.writesEnded();
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+        assertNull(cache.get(key(TENANT, OTHER_DOCTYPE, null)));
+        assertNotNull(cache.get(key(OTHER_TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testInvalidateOnCommitWithoutTransaction() throws Exception {
+        put(TENANT, DOCTYPE, newList());
+        put(TENANT, OTHER_DOCTYPE, newList());
+
+        // Without a transaction, the lists are dropped right away
+        cache.invalidateOnCommit(TENANT, DOCTYPE);
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+        assertNotNull(cache.get(key(TENANT, OTHER_DOCTYPE, null)));
+
+        // Documents without a tenant ID aren't listed
+        cache.invalidateOnCommit(null, OTHER_DOCTYPE);
+
+        assertNotNull(cache.get(key(TENANT, OTHER_DOCTYPE, null)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreDropped() throws Exception {
+        put(TENANT, "A", newList());
+        put(TENANT, "B", newList());
+        put(TENANT, "C", newList());
+        cache.get(key(TENANT, "A", null));
+        put(TENANT, "D", newList());
+
+        assertEquals(cache.size(), 3);
+        assertNotNull(cache.get(key(TENANT, "A", null)));
+        assertNull(cache.get(key(TENANT, "B", null)));
+    }
+
+    @Test
+    public void testLargeListsAreNotCached() throws Exception {
+        cache.put(key(TENANT, DOCTYPE, null), TENANT, DOCTYPE, newList(), ListResultCache.MAX_CACHED_ITEMS + 1,
+                cache.getGeneration(TENANT, DOCTYPE));
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        cache.configure(1, 3);
+        put(TENANT, DOCTYPE, newList());
+        Thread.sleep(1100);
+
+        assertNull(cache.get(key(TENANT, DOCTYPE, null)));
+    }
+}
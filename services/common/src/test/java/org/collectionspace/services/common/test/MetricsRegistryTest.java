@@ -0,0 +1,134 @@
+package org.collectionspace.services.common.test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.collectionspace.services.common.metrics.Counter;
+import org.collectionspace.services.common.metrics.Gauge;
+import org.collectionspace.services.common.metrics.Histogram;
+import org.collectionspace.services.common.metrics.MetricFamily;
+import org.collectionspace.services.common.metrics.MetricsRegistry;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class MetricsRegistryTest {
+    private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    private static String write() throws Exception {
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testCounter() throws Exception {
+        Counter.Family requests = registry.counter("test_requests_total", "The requests.", "service", "result");
+        requests.labels("collectionobjects", "hit").inc();
+        requests.labels("collectionobjects", "hit").inc(2);
+        requests.labels("media", "miss").inc();
+
+        assertSame(registry.counter("test_requests_total", "The requests.", "service", "result"), requests);
+        assertEquals(requests.labels("collectionobjects", "hit").get(), 3);
+        String text = write();
+        assertTrue(text.contains("# HELP test_requests_total The requests.\n# TYPE test_requests_total counter\n"));
+        assertTrue(text.contains("test_requests_total{service=\"collectionobjects\",result=\"hit\"} 3\n"));
+        assertTrue(text.contains("test_requests_total{service=\"media\",result=\"miss\"} 1\n"));
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        Histogram.Family latency = registry.histogram("test_latency_seconds", "The latency.", new double[] {1, 0.1, 0.5}, "service");
+        Histogram histogram = latency.labels("media");
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.3);
+        histogram.observe(2);
+
+        assertEquals(histogram.getCount(), 4);
+        assertEquals(histogram.getSum(), 2.45, 0.0001);
+        assertEquals(histogram.getCumulativeCounts(), new long[] {2, 3, 3, 4});
+        String text = write();
+        assertTrue(text.contains("# TYPE test_latency_seconds histogram\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{service=\"media\",le=\"0.1\"} 2\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{service=\"media\",le=\"0.5\"} 3\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{service=\"media\",le=\"1\"} 3\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{service=\"media\",le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("test_latency_seconds_count{service=\"media\"} 4\n"));
+    }
+
+    @Test
+    public void testGauge() throws Exception {
+        registry.gauge("test_pool_connections", "The connections.", new Gauge.Source() {
+            @Override
+            public Map<List<String>, Number> getValues() {
+                return Collections.<List<String>, Number>singletonMap(Arrays.asList("cspace", "active"), 3);
+            }
+        }, "datasource", "state");
+        registry.gauge("test_broken_gauge", "A gauge whose source fails.", new Gauge.Source() {
+            @Override
+            public Map<List<String>, Number> getValues() throws Exception {
+                throw new Exception("failed");
+            }
+        });
+
+        String text = write();
+        assertTrue(text.contains("# TYPE test_pool_connections gauge\ntest_pool_connections{datasource=\"cspace\",state=\"active\"} 3\n"));
+        assertTrue(text.contains("# TYPE test_broken_gauge gauge\n"));
+    }
+
+    @Test
+    public void testLabelValuesAreEscaped() throws Exception {
+        registry.counter("test_escaped_total", "Escaped labels.", "path").labels("a\"b\\c\nd").inc();
+        assertTrue(write().contains("test_escaped_total{path=\"a\\\"b\\\\c\\nd\"} 1\n"));
+    }
+
+    @Test
+    public void testCardinalityIsCapped() throws Exception {
+        Counter.Family paths = registry.counter("test_paths_total", "Paths.", "path");
+        for (int i = 0; i < MetricFamily.MAX_CHILDREN + 10; i++) {
+            paths.labels("path" + i).inc();
+        }
+        assertEquals(paths.labels("path0").get(), 1);
+        assertEquals(paths.labels(MetricFamily.OVERFLOW_LABEL_VALUE).get(), 10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConflictingRegistration() {
+        registry.counter("test_conflict_total", "A counter.", "a");
+        registry.histogram("test_conflict_total", "A histogram.", new double[] {1}, "a");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongNumberOfLabelValues() {
+        registry.counter("test_labels_total", "A counter.", "a", "b").labels("a");
+    }
+
+    @Test(timeOut = 10000)
+    public void testConcurrentUpdates() throws Exception {
+        final Histogram.Family family = registry.histogram("test_concurrent_seconds", "Concurrent.", new double[] {0.5});
+        final int threadCount = 8;
+        final int observationCount = 10000;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < observationCount; j++) {
+                        family.labels().observe(1);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        Histogram histogram = family.labels();
+        assertEquals(histogram.getCount(), threadCount * observationCount);
+        assertEquals(histogram.getSum(), threadCount * observationCount, 0.0001);
+    }
+}
@@ -0,0 +1,56 @@
+package org.collectionspace.services.common.test;
+
+import java.util.Arrays;
+
+import org.collectionspace.services.common.query.nuxeo.NXQLClause;
+import org.collectionspace.services.common.query.nuxeo.QueryManagerNuxeoImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class NXQLClauseTest {
+    private final QueryManagerNuxeoImpl queryManager = new QueryManagerNuxeoImpl();
+
+    @Test
+    public void testRender() {
+        NXQLClause clause = new NXQLClause("dc:title ILIKE ? AND ecm:name = ?", "%O'Keeffe%", "a\\'b");
+
+        assertEquals(clause.getShape(), "dc:title ILIKE ? AND ecm:name = ?");
+        assertEquals(clause.getParameters(), Arrays.asList("%O'Keeffe%", "a\\'b"));
+        assertEquals(clause.toNXQL(), "dc:title ILIKE '%O\\'Keeffe%' AND ecm:name = 'a\\'b'");
+        assertEquals(NXQLClause.toLiteral("'quoted'"), "'\\'quoted\\''");
+        assertTrue(NXQLClause.EMPTY.isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTooFewParameters() {
+        new NXQLClause("a = ? AND b = ?", "x");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTooManyParameters() {
+        new NXQLClause("a = ?", "x", "y");
+    }
+
+    @Test
+    public void testKeywordClause() {
+        assertEquals(queryManager.createWhereClauseFromKeywords("red AND blue NOT green"),
+                "(ecm:fulltext  LIKE 'red blue -green')");
+        assertEquals(queryManager.createWhereClauseFromKeywords("\"O'Keeffe\" (1887)"),
+                "(ecm:fulltext  LIKE '\"O\\'Keeffe\" 1887')");
+        assertEquals(queryManager.createWhereClauseFromKeywords("\"a.b - c:d\""),
+                "(ecm:fulltext  LIKE '\"a b c d\"')");
+        assertEquals(queryManager.createWhereClauseFromKeywords(" AND * "), "");
+    }
+
+    @Test
+    public void testKeywordClausesShareShape() {
+        NXQLClause first = queryManager.getKeywordClause("vase");
+        NXQLClause second = queryManager.getKeywordClause("bowl NOT lid");
+
+        assertEquals(first.getShape(), second.getShape());
+        assertEquals(second.getParameters(), Arrays.asList("bowl -lid"));
+        // Repeated searches get the cached clause
+        assertSame(queryManager.getKeywordClause("vase"), first);
+    }
+}
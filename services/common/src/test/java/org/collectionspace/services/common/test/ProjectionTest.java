@@ -0,0 +1,53 @@
+package org.collectionspace.services.common.test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.collectionspace.services.client.IClientQueryParams;
+import org.collectionspace.services.common.query.Projection;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ProjectionTest {
+
+    @Test
+    public void testParameterNotSet() {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String, String>();
+        queryParams.add("pgSz", "10");
+
+        Projection parts = Projection.fromQueryParams(queryParams, IClientQueryParams.PARTS_PARAM);
+
+        assertTrue(parts.isAll());
+        assertTrue(parts.includes("collectionobjects_common"));
+        assertNull(parts.getNames());
+        assertSame(Projection.fromQueryParams(null, IClientQueryParams.PARTS_PARAM), Projection.ALL);
+    }
+
+    @Test
+    public void testCommaSeparatedAndRepeatedNames() {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String, String>();
+        queryParams.add(IClientQueryParams.PARTS_PARAM, "collectionobjects_common, collectionspace_core");
+        queryParams.add(IClientQueryParams.PARTS_PARAM, "account_permission");
+
+        Projection parts = Projection.fromQueryParams(queryParams, IClientQueryParams.PARTS_PARAM);
+
+        assertFalse(parts.isAll());
+        assertTrue(parts.includes("collectionspace_core"));
+        assertTrue(parts.includes("account_permission"));
+        assertFalse(parts.includes("collectionobjects_naturalhistory"));
+        assertEquals(parts.getNames(), new LinkedHashSet<String>(
+                Arrays.asList("collectionobjects_common", "collectionspace_core", "account_permission")));
+    }
+
+    @Test
+    public void testEmptyParameter() {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String, String>();
+        queryParams.add(IClientQueryParams.FIELDS_PARAM, " , ");
+
+        assertTrue(Projection.fromQueryParams(queryParams, IClientQueryParams.FIELDS_PARAM).isAll());
+    }
+}
@@ -0,0 +1,71 @@
+package org.collectionspace.services.common.test;
+
+import org.collectionspace.services.common.ReflectionMapper;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ReflectionMapperTest {
+
+    public static class ListItem {
+        private String csid;
+        private Object uri;
+        private String title;
+
+        public void setCsid(String csid) {
+            this.csid = csid;
+        }
+
+        public void setUri(Object uri) {
+            this.uri = uri;
+        }
+
+        public ListItem setTitle(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public void setFailing(String value) {
+            throw new IllegalStateException(value);
+        }
+    }
+
+    @Test
+    public void testCallSetter() {
+        ListItem item = new ListItem();
+
+        assertEquals(ReflectionMapper.callSetter(item, "setCsid", "1234"), ReflectionMapper.STATUS.OK);
+        assertEquals(ReflectionMapper.callSetter(item, "setUri", Integer.valueOf(5)), ReflectionMapper.STATUS.OK);
+        assertEquals(ReflectionMapper.callSetter(item, "setTitle", "A title"), ReflectionMapper.STATUS.OK);
+
+        assertEquals(item.csid, "1234");
+        assertEquals(item.uri, Integer.valueOf(5));
+        assertEquals(item.title, "A title");
+
+        // Cached setters are called on the right instance
+        ListItem item2 = new ListItem();
+        assertEquals(ReflectionMapper.callSetter(item2, "setCsid", "5678"), ReflectionMapper.STATUS.OK);
+        assertEquals(item2.csid, "5678");
+        assertEquals(item.csid, "1234");
+    }
+
+    @Test
+    public void testCallSetterFailures() throws Exception {
+        ListItem item = new ListItem();
+
+        assertEquals(ReflectionMapper.callSetter(item, "setNoSuchField", "x"), ReflectionMapper.STATUS.NO_SUCH_METHOD);
+        // Missing setters are cached, and still reported
+        assertEquals(ReflectionMapper.callSetter(item, "setNoSuchField", "x"), ReflectionMapper.STATUS.NO_SUCH_METHOD);
+        assertEquals(ReflectionMapper.callSetterUncaught(item, "", "x"), ReflectionMapper.STATUS.NO_SUCH_METHOD);
+        assertEquals(ReflectionMapper.callSetterUncaught(null, "setCsid", "x"), ReflectionMapper.STATUS.EXCEPTION);
+        assertEquals(ReflectionMapper.callSetter(item, "setCsid", Integer.valueOf(5)), ReflectionMapper.STATUS.EXCEPTION);
+        assertEquals(ReflectionMapper.callSetter(item, "setFailing", "x"), ReflectionMapper.STATUS.EXCEPTION);
+
+        try {
+            ReflectionMapper.callSetterUncaught(item, "setNoSuchField", "x");
+            fail("Expected NoSuchMethodException");
+        } catch (NoSuchMethodException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.collectionspace.services.common.test;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.collectionspace.services.common.relation.RelationsCleanupStatus;
+import org.collectionspace.services.common.relation.nuxeo.RelationsUtils;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.testng.Assert.*;
+
+public class RelationsCleanupStatusTest {
+    private static final String CSID = "1a2b3c4d-0000-0000-0000-000000000001";
+
+    @Test
+    public void testStatus() {
+        assertEquals(RelationsCleanupStatus.get(CSID, "project", 0, null).getStatus(), RelationsCleanupStatus.NOT_DELETED);
+        assertEquals(RelationsCleanupStatus.get(CSID, null, 0, null).getStatus(), RelationsCleanupStatus.NOT_DELETED);
+        assertEquals(RelationsCleanupStatus.get(CSID, "deleted", 0, null).getStatus(), RelationsCleanupStatus.COMPLETE);
+        assertEquals(RelationsCleanupStatus.get(CSID, "locked_deleted", 0, "Locked").getStatus(), RelationsCleanupStatus.COMPLETE);
+
+        RelationsCleanupStatus pending = RelationsCleanupStatus.get(CSID, "deleted", 12, null);
+        assertEquals(pending.getStatus(), RelationsCleanupStatus.PENDING);
+        assertEquals(pending.getPending(), 12);
+        assertNull(pending.getError());
+
+        RelationsCleanupStatus failed = RelationsCleanupStatus.get(CSID, "deleted", 2, "Locked");
+        assertEquals(failed.getStatus(), RelationsCleanupStatus.FAILED);
+        assertEquals(failed.getPending(), 2);
+        assertEquals(failed.getError(), "Locked");
+    }
+
+    @Test
+    public void testXml() throws Exception {
+        Element element = parse(RelationsCleanupStatus.get(CSID, "deleted", 12, null).toXml());
+
+        assertEquals(element.getTagName(), "relations-cleanup");
+        assertEquals(element.getAttribute("csid"), CSID);
+        assertEquals(element.getAttribute("status"), RelationsCleanupStatus.PENDING);
+        assertEquals(element.getAttribute("pending"), "12");
+        assertEquals(element.getElementsByTagName("error").getLength(), 0);
+
+        element = parse(RelationsCleanupStatus.get(CSID, "project", 0, null).toXml());
+
+        assertEquals(element.getAttribute("status"), RelationsCleanupStatus.NOT_DELETED);
+        assertFalse(element.hasAttribute("pending"));
+    }
+
+    @Test
+    public void testXmlIsEscaped() throws Exception {
+        String csid = "a\"b'<c>&d";
+        String error = "Could not soft delete </error><injected/>";
+        Element element = parse(RelationsCleanupStatus.get(csid, "deleted", 1, error).toXml());
+
+        assertEquals(element.getAttribute("csid"), csid);
+        assertEquals(element.getElementsByTagName("error").item(0).getTextContent(), error);
+        assertEquals(element.getElementsByTagName("injected").getLength(), 0);
+    }
+
+    @Test
+    public void testQueriesAreEscaped() {
+        String csid = "x' OR ecm:name LIKE '%";
+        String escaped = "'x\\' OR ecm:name LIKE \\'%'";
+
+        assertTrue(RelationsUtils.buildCascadeDeleteQuery(csid).contains(":subjectCsid = " + escaped + " OR "));
+        assertTrue(RelationsUtils.buildRecordQuery(csid, "1").startsWith("SELECT * FROM Document WHERE ecm:name = " + escaped + " AND "));
+    }
+
+    private static Element parse(byte[] xml) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        return document.getDocumentElement();
+    }
+}
@@ -0,0 +1,168 @@
+package org.collectionspace.services.common.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.collectionspace.services.common.blob.RemoteBlobFetcher;
+import org.collectionspace.services.common.document.DocumentException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests the RemoteBlobFetcher against a local HTTP server.
+ */
+public class RemoteBlobFetcherTest {
+    private static final byte[] CONTENT = "Hello, CollectionSpace".getBytes();
+    // The MD5 digest of CONTENT
+    private static final String CONTENT_DIGEST = "4df944586b28cca8ab5bd739c30178d0";
+    private static final long MAX_BYTES = 1024;
+
+    private HttpServer server;
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/files/image.jpg", new Responder(200, "image/jpeg", CONTENT));
+        server.createContext("/files/page.html", new Responder(200, "text/html", CONTENT));
+        server.createContext("/files/large.jpg", new Responder(200, "image/jpeg", new byte[(int) MAX_BYTES + 1]));
+        server.createContext("/files/missing.jpg", new Responder(404, "text/plain", new byte[0]));
+        server.createContext("/files/flaky.jpg", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (flakyRequests.incrementAndGet() == 1) {
+                    new Responder(503, "text/plain", new byte[0]).handle(exchange);
+                } else {
+                    new Responder(200, "image/jpeg", CONTENT).handle(exchange);
+                }
+            }
+        });
+        server.createContext("/files/slow.jpg", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    // fall through
+                }
+                new Responder(200, "image/jpeg", CONTENT).handle(exchange);
+            }
+        });
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http", "localhost", server.getAddress().getPort(), path);
+    }
+
+    private static RemoteBlobFetcher fetcher(long timeoutMillis, String... allowedContentTypes) {
+        return new RemoteBlobFetcher(2, timeoutMillis, MAX_BYTES, 3, Arrays.asList(allowedContentTypes));
+    }
+
+    private static int fetchStatus(RemoteBlobFetcher fetcher, URL url) {
+        try {
+            fetcher.fetch(url);
+        } catch (DocumentException e) {
+            return e.getErrorCode();
+        } finally {
+            fetcher.shutdown();
+        }
+        fail("Fetched " + url);
+        return 0;
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        RemoteBlobFetcher fetcher = fetcher(10000, "image/");
+        try {
+            RemoteBlobFetcher.FetchedFile fetched = fetcher.fetch(url("/files/image.jpg"));
+
+            assertEquals(fetched.getFile().getName(), "image.jpg");
+            assertEquals(FileUtils.readFileToByteArray(fetched.getFile()), CONTENT);
+            assertEquals(fetched.getSize(), CONTENT.length);
+            assertEquals(fetched.getContentType(), "image/jpeg");
+            assertEquals(fetched.getDigest(), CONTENT_DIGEST);
+            FileUtils.deleteQuietly(fetched.getFile().getParentFile());
+        } finally {
+            fetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetriesServerErrors() throws Exception {
+        RemoteBlobFetcher fetcher = fetcher(10000);
+        try {
+            File file = fetcher.fetch(url("/files/flaky.jpg")).getFile();
+
+            assertEquals(FileUtils.readFileToByteArray(file), CONTENT);
+            assertEquals(flakyRequests.get(), 2);
+            FileUtils.deleteQuietly(file.getParentFile());
+        } finally {
+            fetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testGuards() throws Exception {
+        assertEquals(fetchStatus(fetcher(10000), url("/files/missing.jpg")), 400);
+        assertEquals(fetchStatus(fetcher(10000), url("/files/large.jpg")), 400);
+        assertEquals(fetchStatus(fetcher(10000, "image/"), url("/files/page.html")), 400);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+
+        assertEquals(fetchStatus(fetcher(500), url("/files/slow.jpg")), 504);
+        assertTrue(System.currentTimeMillis() - start < 2500);
+    }
+
+    @Test
+    public void testFileName() throws Exception {
+        assertEquals(RemoteBlobFetcher.getFileName(new URL("http://example.org/a/b/photo%201.jpg?size=large")), "photo%201.jpg");
+        assertEquals(RemoteBlobFetcher.getFileName(new URL("http://example.org/")), "blob");
+        assertEquals(RemoteBlobFetcher.getFileName(new URL("http://example.org/a/..")), "blob");
+    }
+
+    private static class Responder implements HttpHandler {
+        private final int status;
+        private final String contentType;
+        private final byte[] content;
+
+        Responder(int status, String contentType, byte[] content) {
+            this.status = status;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, content.length > 0 ? content.length : -1);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
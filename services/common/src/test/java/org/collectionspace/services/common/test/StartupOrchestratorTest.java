@@ -0,0 +1,118 @@
+package org.collectionspace.services.common.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.collectionspace.services.common.init.StartupOrchestrator;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class StartupOrchestratorTest {
+
+    private static StartupOrchestrator.Task record(final List<String> log, final String entry) {
+        return new StartupOrchestrator.Task() {
+            @Override
+            public void run() throws Exception {
+                log.add(entry);
+            }
+        };
+    }
+
+    @Test
+    public void testDependencies() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 4);
+        orchestrator.addStep("a", record(log, "a"));
+        orchestrator.addStep("b", record(log, "b"), "a");
+        orchestrator.addParallelStep("c", Arrays.asList("1", "2", "3"), new StartupOrchestrator.ItemTask<String>() {
+            @Override
+            public void run(String item) throws Exception {
+                log.add("c" + item);
+            }
+        }, "b");
+        orchestrator.addStep("d", record(log, "d"), "c", "a");
+        orchestrator.run();
+
+        assertEquals(log.size(), 6);
+        assertEquals(log.get(0), "a");
+        assertEquals(log.get(1), "b");
+        assertTrue(log.subList(2, 5).containsAll(Arrays.asList("c1", "c2", "c3")));
+        assertEquals(log.get(5), "d");
+        assertEquals(orchestrator.getStepTimes().keySet(), new LinkedHashSet<String>(Arrays.asList("a", "b", "c", "d")));
+    }
+
+    @Test(timeOut = 10000)
+    public void testItemsRunConcurrently() throws Exception {
+        // Each item waits for the others to start, so this only completes if they run at the same time
+        final CountDownLatch started = new CountDownLatch(3);
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 3);
+        orchestrator.addParallelStep("tenants", Arrays.asList(1, 2, 3), new StartupOrchestrator.ItemTask<Integer>() {
+            @Override
+            public void run(Integer item) throws Exception {
+                started.countDown();
+                if (started.await(5, TimeUnit.SECONDS) == false) {
+                    throw new Exception("The items did not run concurrently.");
+                }
+            }
+        });
+        orchestrator.run();
+    }
+
+    @Test
+    public void testEmptyParallelStep() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 2);
+        orchestrator.addParallelStep("none", Collections.<String>emptyList(), new StartupOrchestrator.ItemTask<String>() {
+            @Override
+            public void run(String item) throws Exception {
+                fail();
+            }
+        });
+        orchestrator.addStep("after", record(log, "after"), "none");
+        orchestrator.run();
+
+        assertEquals(log, Arrays.asList("after"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 2);
+        orchestrator.addStep("fails", new StartupOrchestrator.Task() {
+            @Override
+            public void run() throws Exception {
+                throw new IllegalArgumentException("failed");
+            }
+        });
+        orchestrator.addStep("after", record(log, "after"), "fails");
+        try {
+            orchestrator.run();
+            fail("The failure was not thrown.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "failed");
+        }
+        assertTrue(log.isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCycle() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 2);
+        orchestrator.addStep("a", record(log, "a"), "b");
+        orchestrator.addStep("b", record(log, "b"), "a");
+        orchestrator.run();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownDependency() throws Exception {
+        StartupOrchestrator orchestrator = new StartupOrchestrator("test", 2);
+        orchestrator.addStep("a", record(new ArrayList<String>(), "a"), "missing");
+        orchestrator.run();
+    }
+}
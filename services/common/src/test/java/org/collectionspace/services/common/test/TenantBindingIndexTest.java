@@ -0,0 +1,104 @@
+package org.collectionspace.services.common.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.collectionspace.services.common.config.ServiceBindingInfo;
+import org.collectionspace.services.common.config.TenantBindingIndex;
+import org.collectionspace.services.common.context.ServiceBindingUtils;
+import org.collectionspace.services.config.service.ObjectPartType;
+import org.collectionspace.services.config.service.ServiceBindingType;
+import org.collectionspace.services.config.service.ServiceObjectType;
+import org.collectionspace.services.config.tenant.TenantBindingType;
+import org.collectionspace.services.config.types.PropertyItemType;
+import org.collectionspace.services.config.types.PropertyType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class TenantBindingIndexTest {
+
+    @Test
+    public void testLookups() {
+        TenantBindingType tenantBinding = new TenantBindingType();
+        tenantBinding.setId("1");
+
+        ServiceBindingType objects = createServiceBinding("CollectionObjects", "object", "CollectionObject");
+        ServiceBindingType intakes = createServiceBinding("Intakes", "procedure", "Intake");
+        ServiceBindingType persons = createServiceBinding("PersonAuthority", "authority", "Personauthority");
+        ServiceBindingType loansIn = createServiceBinding("LoansIn", "procedure", "Loanin");
+
+        tenantBinding.getServiceBindings().addAll(Arrays.asList(objects, intakes, persons, loansIn));
+
+        TenantBindingIndex index = new TenantBindingIndex(tenantBinding);
+
+        assertSame(index.getServiceBinding("collectionobjects"), objects);
+        assertSame(index.getServiceBinding("CollectionObjects"), objects);
+        assertNull(index.getServiceBinding("Movements"));
+        assertSame(index.getServiceBindingForDocType("Intake"), intakes);
+        assertNull(index.getServiceBindingForDocType("intake"));
+
+        assertEquals(index.getServiceBindingsByType(Collections.singletonList("procedure")), Arrays.asList(intakes, loansIn));
+        assertEquals(index.getServiceBindingsByType(Arrays.asList("procedure", "object")), Arrays.asList(objects, intakes, loansIn));
+        assertNull(index.getServiceBindingsByType(Collections.singletonList("utility")));
+    }
+
+    @Test
+    public void testServiceBindingInfo() {
+        ServiceBindingType objects = createServiceBinding("CollectionObjects", "object", "CollectionObject");
+
+        PropertyType serviceProps = new PropertyType();
+        serviceProps.getItem().add(createProperty(ServiceBindingUtils.OBJ_NUMBER_PROP, "collectionobjects_common:objectNumber"));
+        serviceProps.getItem().add(createProperty(ServiceBindingUtils.OBJ_NUMBER_PROP, "ignored"));
+        objects.getProperties().add(serviceProps);
+
+        ObjectPartType commonPart = new ObjectPartType();
+        commonPart.setLabel("collectionobjects_common");
+        PropertyType partProps = new PropertyType();
+        partProps.getItem().add(createProperty(ServiceBindingUtils.AUTH_REF_PROP, "owner"));
+        partProps.getItem().add(createProperty(ServiceBindingUtils.AUTH_REF_PROP, "fieldCollectors|fieldCollector"));
+        commonPart.getProperties().add(partProps);
+        objects.getObject().getPart().add(commonPart);
+
+        ServiceBindingInfo info = new ServiceBindingInfo(objects);
+
+        assertEquals(info.getPropertyValue(ServiceBindingUtils.OBJ_NUMBER_PROP), "collectionobjects_common:objectNumber");
+        assertNull(info.getPropertyValue(ServiceBindingUtils.OBJ_NAME_PROP));
+
+        assertEquals(info.getPropertyValuesForPart("collectionobjects_common", ServiceBindingUtils.AUTH_REF_PROP, false),
+                Arrays.asList("owner", "fieldCollectors|fieldCollector"));
+        assertEquals(info.getAllPartsPropertyValues(ServiceBindingUtils.AUTH_REF_PROP, true),
+                Arrays.asList("collectionobjects_common:owner", "collectionobjects_common:fieldCollectors|fieldCollector"));
+        assertTrue(info.getAllPartsPropertyValues(ServiceBindingUtils.TERM_REF_PROP, true).isEmpty());
+
+        List<?> authRefs = info.getAuthRefConfigInfos(ServiceBindingUtils.AUTH_REF_PROP);
+        assertEquals(authRefs.size(), 2);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testMissingPart() {
+        ServiceBindingType objects = createServiceBinding("CollectionObjects", "object", "CollectionObject");
+        new ServiceBindingInfo(objects).getPropertyValuesForPart("nonexistent_part", ServiceBindingUtils.AUTH_REF_PROP, false);
+    }
+
+    private ServiceBindingType createServiceBinding(String name, String type, String docType) {
+        ServiceBindingType serviceBinding = new ServiceBindingType();
+        serviceBinding.setName(name);
+        serviceBinding.setType(type);
+
+        ServiceObjectType objectType = new ServiceObjectType();
+        objectType.setName(docType);
+        serviceBinding.setObject(objectType);
+
+        return serviceBinding;
+    }
+
+    private PropertyItemType createProperty(String key, String value) {
+        PropertyItemType item = new PropertyItemType();
+        item.setKey(key);
+        item.setValue(value);
+
+        return item;
+    }
+}
@@ -0,0 +1,74 @@
+package org.collectionspace.services.common.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.collectionspace.services.common.document.DocumentVersion;
+import org.collectionspace.services.common.document.UpdatePreconditions;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class UpdatePreconditionsTest {
+    private static final String CSID = "1a2b3c4d-0000-0000-0000-000000000001";
+    private static final String USER = "admin@core.collectionspace.org";
+    private static final Date MODIFIED = new Date(1500000000123L);
+    private static final DocumentVersion VERSION = new DocumentVersion(Long.toString(MODIFIED.getTime()), MODIFIED, "project");
+    private static final DocumentVersion CHANGED = new DocumentVersion("1500000005000", new Date(1500000005000L), "project");
+
+    private static UpdatePreconditions ifMatch(String... values) {
+        return new UpdatePreconditions(CSID, USER, Arrays.asList(values), null);
+    }
+
+    private static String quoted(String entityTag) {
+        return "\"" + entityTag + "\"";
+    }
+
+    @Test
+    public void testIfMatch() {
+        String xmlTag = VERSION.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML);
+        String jsonTag = VERSION.getEntityTag(USER, DocumentVersion.REPRESENTATION_JSON);
+
+        assertTrue(ifMatch(quoted(xmlTag)).isMetBy(VERSION));
+        assertTrue(ifMatch(quoted(jsonTag)).isMetBy(VERSION));
+        assertTrue(ifMatch("\"other\", " + quoted(xmlTag)).isMetBy(VERSION));
+        assertTrue(ifMatch("\"other\"", quoted(xmlTag)).isMetBy(VERSION));
+        assertTrue(ifMatch("*").isMetBy(CHANGED));
+        assertFalse(ifMatch(quoted(xmlTag)).isMetBy(CHANGED));
+        // Weak tags never match
+        assertFalse(ifMatch("W/" + quoted(xmlTag)).isMetBy(VERSION));
+    }
+
+    @Test
+    public void testIfUnmodifiedSince() {
+        UpdatePreconditions preconditions = new UpdatePreconditions(CSID, USER, null, new Date(1500000000000L));
+
+        assertTrue(preconditions.isMetBy(VERSION));
+        assertFalse(preconditions.isMetBy(CHANGED));
+    }
+
+    @Test
+    public void testIfMatchTakesPrecedence() {
+        String xmlTag = VERSION.getEntityTag(USER, DocumentVersion.REPRESENTATION_XML);
+        UpdatePreconditions preconditions = new UpdatePreconditions(CSID, USER,
+                Collections.singletonList(quoted(xmlTag)), new Date(0));
+
+        assertTrue(preconditions.isMetBy(VERSION));
+    }
+
+    @Test
+    public void testAppliesToTheUpdatedDocument() {
+        UpdatePreconditions preconditions = ifMatch("*");
+
+        assertTrue(preconditions.appliesTo(CSID));
+        assertFalse(preconditions.appliesTo("1a2b3c4d-0000-0000-0000-000000000002"));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new UpdatePreconditions(CSID, USER, null, null).isEmpty());
+        assertTrue(new UpdatePreconditions(CSID, USER, Collections.<String>emptyList(), null).isEmpty());
+        assertFalse(ifMatch("*").isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package org.collectionspace.services.common.xmljson.test;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.collectionspace.services.common.xmljson.StreamPipe;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class StreamPipeTest {
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterClass
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPassesBytesThrough() throws Exception {
+        final StreamPipe pipe = new StreamPipe(16, 2);
+        final byte[] content = new byte[1000];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        Future<byte[]> read = executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return IOUtils.toByteArray(pipe.getInputStream());
+            }
+        });
+
+        OutputStream out = pipe.getOutputStream();
+
+        out.write(content, 0, 10);
+        out.write(content[10]);
+        out.write(content, 11, content.length - 11);
+        out.close();
+
+        assertEquals(read.get(5, TimeUnit.SECONDS), content);
+    }
+
+    @Test
+    public void testFlushedBytesAreReadWithoutDelay() throws Exception {
+        final StreamPipe pipe = new StreamPipe(1024, 2);
+
+        Future<Integer> read = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return pipe.getInputStream().read();
+            }
+        });
+
+        long start = System.currentTimeMillis();
+
+        pipe.getOutputStream().write(42);
+        pipe.getOutputStream().flush();
+
+        assertEquals(read.get(5, TimeUnit.SECONDS).intValue(), 42);
+        assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testClosingInputStopsWriter() throws Exception {
+        StreamPipe pipe = new StreamPipe(16, 2);
+        InputStream in = pipe.getInputStream();
+
+        in.read(new byte[0]);
+        in.close();
+
+        // Without a reader, the writer would block once the pipe is full.
+
+        OutputStream out = pipe.getOutputStream();
+
+        for (int i = 0; i < 100; i++) {
+            out.write(new byte[16]);
+        }
+    }
+}
@@ -6,10 +6,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.collectionspace.services.common.xmljson.XmlElementInfo;
+import org.collectionspace.services.common.xmljson.XmlElementInfoRegistry;
 import org.collectionspace.services.common.xmljson.XmlToJsonStreamConverter;
 import org.testng.annotations.Test;
 
@@ -21,6 +28,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class XmlToJsonStreamConverterTest {
     public final String FILE_PATH = "test-data/xmljson/";
     
+    /*
+     * The output of the converter that read each document into memory before writing
+     * any JSON, for every XML file. The streaming converter must match it byte for byte.
+     */
+    public final String GOLDEN_FILE_PATH = FILE_PATH + "golden/";
+    
     private ObjectMapper mapper = new ObjectMapper();
     private JsonFactory jsonFactory = mapper.getFactory();
     
@@ -32,22 +45,116 @@ public class XmlToJsonStreamConverterTest {
         testConvert("accountperms");
         testConvert("permissions");
         testConvert("vocabulary-items");
+        testConvert("single-list-item-list");
+    }
+    
+    @Test
+    public void testConvertRegisteredPart() throws XMLStreamException, IOException {
+        XmlElementInfoRegistry registry = createExampleRegistry();
+        
+        // Parts that are registered are converted the same way as parts that aren't.
+        
+        testConvert("record", registry);
+    }
+    
+    @Test
+    public void testMatchesPreviousConverter() throws XMLStreamException, IOException {
+        XmlElementInfoRegistry exampleRegistry = createExampleRegistry();
+        
+        // Among other things, a repeatable element that occurs once (as in single-list-item-json)
+        // is not converted to an array, and repeated elements that are not adjacent in an element
+        // without metadata (as in interrupted-list) are converted to one array.
+        
+        for (String fileName : Arrays.asList("record", "collectionobject", "collectionobject-list", "accountperms",
+                "permissions", "vocabulary-items", "single-list-item-list", "single-list-item-json", "interrupted-list")) {
+            String expectedJson = FileUtils.readFileToString(getResourceFile(GOLDEN_FILE_PATH + fileName + ".json"), "UTF-8");
+            
+            assertEquals(convert(fileName, XmlElementInfoRegistry.get()), expectedJson, fileName);
+            assertEquals(convert(fileName, exampleRegistry), expectedJson, fileName);
+        }
+    }
+    
+    @Test(expectedExceptions = XMLStreamException.class)
+    public void testNonAdjacentRegisteredElements() throws XMLStreamException, IOException {
+        Map<String, XmlElementInfo> parentChildren = new HashMap<String, XmlElementInfo>();
+        parentChildren.put("item", XmlElementInfo.TEXT);
+        parentChildren.put("other", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> partChildren = new HashMap<String, XmlElementInfo>();
+        partChildren.put("parent", new XmlElementInfo(parentChildren, Collections.singleton("item")));
+        
+        XmlElementInfoRegistry registry = new XmlElementInfoRegistry();
+        registry.registerPart("examples_common", new XmlElementInfo(partChildren, Collections.<String>emptySet()));
+        
+        // The item field has been written by the time the second run of items is
+        // read, so rather than write it again, the conversion fails.
+        
+        convert("interrupted-list", registry);
+    }
+    
+    /*
+     * Describes the examples_common part of the test records, as a Nuxeo schema would.
+     */
+    private XmlElementInfoRegistry createExampleRegistry() {
+        Map<String, XmlElementInfo> commentsChildren = new HashMap<String, XmlElementInfo>();
+        commentsChildren.put("comment", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> nestedStructChildren = new HashMap<String, XmlElementInfo>();
+        nestedStructChildren.put("id", XmlElementInfo.TEXT);
+        nestedStructChildren.put("description", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> structChildren = new HashMap<String, XmlElementInfo>();
+        structChildren.put("field1", XmlElementInfo.TEXT);
+        structChildren.put("field2", XmlElementInfo.TEXT);
+        structChildren.put("nestedstruct", new XmlElementInfo(nestedStructChildren, Collections.<String>emptySet()));
+        
+        Map<String, XmlElementInfo> repeatChildren = new HashMap<String, XmlElementInfo>();
+        repeatChildren.put("item", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> nestedRepeatChildren = new HashMap<String, XmlElementInfo>();
+        nestedRepeatChildren.put("nrval", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> innerStructChildren = new HashMap<String, XmlElementInfo>();
+        innerStructChildren.put("name", XmlElementInfo.TEXT);
+        innerStructChildren.put("color", XmlElementInfo.TEXT);
+        innerStructChildren.put("age", XmlElementInfo.TEXT);
+        innerStructChildren.put("nestedrepeat", new XmlElementInfo(nestedRepeatChildren, Collections.singleton("nrval")));
+        
+        Map<String, XmlElementInfo> repeatStructChildren = new HashMap<String, XmlElementInfo>();
+        repeatStructChildren.put("innerstruct", new XmlElementInfo(innerStructChildren, Collections.<String>emptySet()));
+        
+        Map<String, XmlElementInfo> emptyTopChildren = new HashMap<String, XmlElementInfo>();
+        emptyTopChildren.put("emptynested", XmlElementInfo.TEXT);
+        
+        Map<String, XmlElementInfo> partChildren = new HashMap<String, XmlElementInfo>();
+        partChildren.put("comments", new XmlElementInfo(commentsChildren, Collections.singleton("comment")));
+        partChildren.put("scalar", XmlElementInfo.TEXT);
+        partChildren.put("struct", new XmlElementInfo(structChildren, Collections.<String>emptySet()));
+        partChildren.put("repeat", new XmlElementInfo(repeatChildren, Collections.singleton("item")));
+        partChildren.put("empty", XmlElementInfo.TEXT);
+        partChildren.put("repeatstruct", new XmlElementInfo(repeatStructChildren, Collections.singleton("innerstruct")));
+        partChildren.put("emptytop", new XmlElementInfo(emptyTopChildren, Collections.<String>emptySet()));
+        
+        XmlElementInfoRegistry registry = new XmlElementInfoRegistry();
+        registry.registerPart("examples_common", new XmlElementInfo(partChildren, Collections.<String>emptySet()));
+        
+        return registry;
     }
     
     private void testConvert(String fileName) throws XMLStreamException, IOException {
+        testConvert(fileName, XmlElementInfoRegistry.get());
+    }
+    
+    private void testConvert(String fileName, XmlElementInfoRegistry registry) throws XMLStreamException, IOException {
         System.out.println("---------------------------------------------------------");
         System.out.println("Converting XML to JSON: " + fileName);
         System.out.println("---------------------------------------------------------");
 
-        ClassLoader classLoader = getClass().getClassLoader();
-        File xmlFile = new File(classLoader.getResource(FILE_PATH + fileName + ".xml").getFile());
-        File jsonFile = new File(classLoader.getResource(FILE_PATH + fileName + ".json").getFile());
+        File jsonFile = getResourceFile(FILE_PATH + fileName + ".json");
         
-        FileInputStream in = new FileInputStream(xmlFile);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         
-        XmlToJsonStreamConverter converter = new XmlToJsonStreamConverter(in, out);
-        converter.convert();
+        convert(fileName, registry, out);
         
         JsonNode actualJson = parseJsonStream(out.toInputStream());
         JsonNode expectedJson = parseJsonStream(new FileInputStream(jsonFile));
@@ -57,6 +164,30 @@ public class XmlToJsonStreamConverterTest {
         assertEquals(actualJson, expectedJson);
     }
     
+    private String convert(String fileName, XmlElementInfoRegistry registry) throws XMLStreamException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        convert(fileName, registry, out);
+        
+        return out.toString("UTF-8");
+    }
+    
+    private void convert(String fileName, XmlElementInfoRegistry registry, ByteArrayOutputStream out) throws XMLStreamException, IOException {
+        FileInputStream in = new FileInputStream(getResourceFile(FILE_PATH + fileName + ".xml"));
+        
+        try {
+            XmlToJsonStreamConverter converter = new XmlToJsonStreamConverter(in, out, registry);
+            converter.convert();
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    private File getResourceFile(String path) {
+        return new File(getClass().getClassLoader().getResource(path).getFile());
+    }
+    
     private JsonNode parseJsonStream(InputStream in) throws JsonParseException, IOException {
         return jsonFactory.createParser(in).readValueAsTree();
     }
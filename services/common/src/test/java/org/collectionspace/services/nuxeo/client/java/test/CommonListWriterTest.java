@@ -0,0 +1,103 @@
+package org.collectionspace.services.nuxeo.client.java.test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.collectionspace.services.jaxb.AbstractCommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonList;
+import org.collectionspace.services.nuxeo.client.java.CommonListWriter;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+
+import static org.testng.Assert.*;
+
+public class CommonListWriterTest {
+
+    @Test
+    public void testWrite() throws Exception {
+        CommonList list = createList();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CommonListWriter.write(list, out);
+
+        assertEquals(out.toString("UTF-8"),
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" +
+            "<ns2:abstract-common-list xmlns:ns2=\"http://collectionspace.org/services/jaxb\">" +
+            "<pageNum>0</pageNum><pageSize>40</pageSize><itemsInPage>2</itemsInPage><totalItems>2</totalItems>" +
+            "<fieldsReturned>csid|title|objectName</fieldsReturned>" +
+            "<list-item><csid>1</csid><title>A &amp; B</title><objectName>chair</objectName><objectName>seat</objectName></list-item>" +
+            "<list-item><csid>2</csid></list-item>" +
+            "</ns2:abstract-common-list>");
+    }
+
+    @Test
+    public void testWriteMatchesJaxb() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommonListWriter.write(createList(), out);
+
+        // The list is marshalled as it would be without CommonListWriter.
+        ByteArrayOutputStream jaxbOut = new ByteArrayOutputStream();
+        Marshaller marshaller = JAXBContext.newInstance(CommonList.class).createMarshaller();
+        marshaller.marshal(createList(), jaxbOut);
+
+        assertEquals(out.toString("UTF-8"), jaxbOut.toString("UTF-8"));
+    }
+
+    @Test
+    public void testGetListItem() throws Exception {
+        CommonList list = createList();
+        List<AbstractCommonList.ListItem> listItems = list.getListItem();
+
+        assertEquals(listItems.size(), 2);
+
+        List<Element> fields = listItems.get(0).getAny();
+
+        assertEquals(fields.size(), 4);
+        assertEquals(fields.get(0).getTagName(), "csid");
+        assertEquals(fields.get(0).getTextContent(), "1");
+        assertEquals(fields.get(1).getTagName(), "title");
+        assertEquals(fields.get(1).getTextContent(), "A & B");
+        assertEquals(fields.get(2).getTextContent(), "chair");
+        assertEquals(fields.get(3).getTextContent(), "seat");
+        assertEquals(listItems.get(1).getAny().size(), 1);
+
+        // Items that have been converted are still written, in order.
+        HashMap<String, Object> item = new HashMap<String, Object>();
+        item.put("csid", "3");
+        list.addItem(item);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommonListWriter.write(list, out);
+        String xml = out.toString("UTF-8");
+
+        assertTrue(xml.contains("<list-item><csid>2</csid></list-item><list-item><csid>3</csid></list-item>"));
+        assertEquals(list.getListItem().size(), 3);
+    }
+
+    private CommonList createList() throws Exception {
+        CommonList list = new CommonList();
+
+        list.setPageNum(0);
+        list.setPageSize(40);
+        list.setItemsInPage(2);
+        list.setTotalItems(2);
+        list.setFieldsReturned(new String[] {"csid", "title", "objectName"});
+
+        HashMap<String, Object> item = new HashMap<String, Object>();
+        item.put("csid", "1");
+        item.put("title", "A & B");
+        item.put("objectName", Arrays.asList("chair", "seat"));
+        list.addItem(item);
+        item.clear();
+
+        item.put("csid", "2");
+        list.addItem(item);
+
+        return list;
+    }
+}
@@ -0,0 +1,189 @@
+package org.collectionspace.services.nuxeo.listener.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.collectionspace.services.nuxeo.client.java.CoreSessionInterface;
+import org.collectionspace.services.nuxeo.listener.AbstractAsyncDocumentListener;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+import org.nuxeo.ecm.core.event.impl.EventBundleImpl;
+import org.nuxeo.ecm.core.event.impl.EventContextImpl;
+import org.nuxeo.ecm.core.event.impl.EventImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class AbstractAsyncDocumentListenerTest {
+    private static final String ACCEPTED = "documentModified";
+    private static final String IGNORED = "documentCreated";
+
+    @Test
+    public void testCoalescesEventsBySourceDocument() throws Exception {
+        TestListener listener = new TestListener();
+        Event a1 = documentEvent(ACCEPTED, "doc-a");
+        Event b1 = documentEvent(ACCEPTED, "doc-b");
+        Event a2 = documentEvent(ACCEPTED, "doc-a");
+        Event ignored = documentEvent(IGNORED, "doc-c");
+        Event a3 = documentEvent(ACCEPTED, "doc-a");
+
+        listener.handleEvent(bundle(a1, b1, a2, ignored, a3));
+
+        // The last event of each document, in order of each document's first event
+        assertEquals(listener.handled, Arrays.asList(a3, b1));
+    }
+
+    @Test
+    public void testDoesNotCoalesceEventsWithoutDocuments() throws Exception {
+        TestListener listener = new TestListener();
+        Event e1 = new EventImpl(ACCEPTED, new EventContextImpl());
+        Event e2 = new EventImpl(ACCEPTED, new EventContextImpl());
+
+        listener.handleEvent(bundle(e1, e2));
+
+        assertEquals(listener.handled, Arrays.asList(e1, e2));
+    }
+
+    @Test
+    public void testRetriesFailures() throws Exception {
+        TestListener listener = new TestListener();
+        Event event = documentEvent(ACCEPTED, "doc-a");
+        listener.failures.put(event, 2);
+
+        listener.handleEvent(bundle(event));
+
+        assertEquals(listener.handled, Arrays.asList(event, event, event));
+        assertTrue(listener.deadLetterAttempts.isEmpty());
+    }
+
+    @Test
+    public void testDeadLettersAfterMaxAttempts() throws Exception {
+        TestListener listener = new TestListener();
+        Event failing = documentEvent(ACCEPTED, "doc-a");
+        Event succeeding = documentEvent(ACCEPTED, "doc-b");
+        listener.failures.put(failing, Integer.MAX_VALUE);
+
+        listener.handleEvent(bundle(failing, succeeding));
+
+        assertEquals(listener.handled.size(), AbstractAsyncDocumentListener.MAX_ATTEMPTS + 1);
+        assertEquals(listener.handled.get(AbstractAsyncDocumentListener.MAX_ATTEMPTS), succeeding);
+        assertEquals(listener.deadLetterAttempts, Arrays.asList(AbstractAsyncDocumentListener.MAX_ATTEMPTS));
+    }
+
+    @Test
+    public void testBackoff() {
+        TestListener listener = new TestListener();
+
+        assertEquals(listener.getDefaultBackoffMillis(1), AbstractAsyncDocumentListener.INITIAL_BACKOFF_MILLIS);
+        assertEquals(listener.getDefaultBackoffMillis(2), 2 * AbstractAsyncDocumentListener.INITIAL_BACKOFF_MILLIS);
+        assertEquals(listener.getDefaultBackoffMillis(3), 4 * AbstractAsyncDocumentListener.INITIAL_BACKOFF_MILLIS);
+    }
+
+    @Test
+    public void testBackoffIsBoundedPerBundle() throws Exception {
+        // Backs off 1 ms, then 2 ms, with 4 ms for the bundle
+        TestListener listener = new TestListener();
+        listener.maxBackoffMillisPerBundle = 4;
+        Event first = documentEvent(ACCEPTED, "doc-a");
+        Event second = documentEvent(ACCEPTED, "doc-b");
+        Event third = documentEvent(ACCEPTED, "doc-c");
+        listener.failures.put(first, Integer.MAX_VALUE);
+        listener.failures.put(second, Integer.MAX_VALUE);
+        listener.failures.put(third, Integer.MAX_VALUE);
+
+        listener.handleEvent(bundle(first, second, third));
+
+        // The first event uses 3 ms, leaving enough for one retry of the second, and none for the third
+        assertEquals(listener.deadLetterAttempts, Arrays.asList(AbstractAsyncDocumentListener.MAX_ATTEMPTS, 2, 1));
+    }
+
+    private static EventBundle bundle(Event... events) {
+        EventBundleImpl bundle = new EventBundleImpl();
+        for (Event event : events) {
+            bundle.push(event);
+        }
+        return bundle;
+    }
+
+    private static Event documentEvent(String name, final String docId) {
+        DocumentModel docModel = (DocumentModel) Proxy.newProxyInstance(DocumentModel.class.getClassLoader(),
+                new Class<?>[] { DocumentModel.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                        case "getId":
+                        case "getName":
+                            return docId;
+                        case "hashCode":
+                            return docId.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return docId;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+        DocumentEventContext context = new DocumentEventContext(null, null, docModel);
+        context.setRepositoryName("default");
+        return new EventImpl(name, context);
+    }
+
+    private static class TestListener extends AbstractAsyncDocumentListener {
+        // The events handled, once per attempt
+        final List<Event> handled = new ArrayList<>();
+        // Event -> the number of attempts to fail
+        final Map<Event, Integer> failures = new HashMap<>();
+        final List<Integer> deadLetterAttempts = new ArrayList<>();
+        long maxBackoffMillisPerBundle = Long.MAX_VALUE;
+
+        @Override
+        protected boolean accepts(Event event) {
+            return event.getName().equals(ACCEPTED);
+        }
+
+        @Override
+        protected void handleDocumentEvent(Event event, CoreSessionInterface session) throws Exception {
+            handled.add(event);
+            Integer remainingFailures = failures.get(event);
+            if (remainingFailures != null && remainingFailures > 0) {
+                failures.put(event, remainingFailures - 1);
+                throw new Exception("Failed to handle " + event.getName());
+            }
+        }
+
+        @Override
+        protected CoreSessionInterface getSession(Event event) {
+            return null;
+        }
+
+        @Override
+        protected long getBackoffMillis(int attempt) {
+            return attempt;
+        }
+
+        long getDefaultBackoffMillis(int attempt) {
+            return super.getBackoffMillis(attempt);
+        }
+
+        @Override
+        protected long getMaxBackoffMillisPerBundle() {
+            return maxBackoffMillisPerBundle;
+        }
+
+        @Override
+        protected void deadLetter(Event event, int attempts, Throwable error) {
+            deadLetterAttempts.add(attempts);
+        }
+    }
+}